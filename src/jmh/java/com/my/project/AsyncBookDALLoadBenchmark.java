@@ -0,0 +1,141 @@
+package com.my.project;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Many callers blocking on {@link AsyncBookDAL} calls whose backend takes a
+ * fixed time, as a database round trip would, run on the default thread pool
+ * and on virtual threads. Throughput and the sampled latency percentiles
+ * (p0.99 in the results) show how far each mode gets with {@value #CALLERS}
+ * concurrent callers.
+ * <p>
+ * Virtual threads need a Java 21 fork, e.g. <code>-Djmh.args="AsyncBookDALLoad -jvm /path/to/jdk21/bin/java"</code>;
+ * on older JVMs both modes run on the thread pool.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(AsyncBookDALLoadBenchmark.CALLERS)
+@State(Scope.Benchmark)
+public class AsyncBookDALLoadBenchmark {
+
+    static final int CALLERS = 200;
+    static final int BOOKS = 1000;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1"})
+    public int latencyMillis;
+
+    private AsyncBookDAL async;
+    private final AtomicInteger nextIsbn = new AtomicInteger();
+    private final AtomicInteger nextCaller = new AtomicInteger();
+
+    /**
+     * In-memory DAL that sleeps on every call like a remote database.
+     */
+    static class SlowBookDAL extends BookDAL {
+
+        private final Map<String, Book> books = new ConcurrentHashMap<String, Book>();
+        private final int latencyMillis;
+
+        SlowBookDAL(int latencyMillis) {
+            super((com.my.project.jdbc.ConnectionPool) null);
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public Book getBook(String isbn) {
+            pause();
+            Book book = books.get(isbn);
+            return book == null ? null : new Book(book);
+        }
+
+        @Override
+        public String addBook(Book book) {
+            pause();
+            books.put(book.getIsbn(), new Book(book));
+            return book.getIsbn();
+        }
+
+        private void pause() {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The books of one caller: every {@value #CALLERS}th ISBN from its number
+     * on, so no two callers ever ask for the same book.
+     */
+    @State(Scope.Thread)
+    public static class Caller {
+
+        private int first;
+        private int next;
+
+        @Setup
+        public void setUp(AsyncBookDALLoadBenchmark benchmark) {
+            first = benchmark.nextCaller.getAndIncrement() % CALLERS;
+            next = first;
+        }
+
+        String nextIsbn() {
+            String isbn = BookDALBenchmark.isbn(next);
+            next = next + CALLERS < BOOKS ? next + CALLERS : first;
+            return isbn;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        SlowBookDAL bookDAL = new SlowBookDAL(latencyMillis);
+        for(int i = 0; i < BOOKS; i++) {
+            bookDAL.books.put(BookDALBenchmark.isbn(i), BookDALBenchmark.book(i, "Title " + i));
+        }
+        async = "virtual".equals(threads)
+            ? AsyncBookDAL.virtualThreads(bookDAL, AsyncBookDAL.DEFAULT_MAX_IN_FLIGHT, AsyncBookDAL.Saturation.CALLER_RUNS)
+            : new AsyncBookDAL(bookDAL, AsyncBookDAL.DEFAULT_THREADS, AsyncBookDAL.DEFAULT_QUEUE_CAPACITY,
+                AsyncBookDAL.Saturation.CALLER_RUNS);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        async.close();
+    }
+
+    @Benchmark
+    public Book getBook(Caller caller) {
+        //disjoint ISBNs per caller so coalescing does not hide the backend calls
+        return async.getBookAsync(caller.nextIsbn()).join();
+    }
+
+    @Benchmark
+    public String addBook() {
+        int i = BOOKS + nextIsbn.getAndIncrement();
+        return async.addBookAsync(BookDALBenchmark.book(i, "Title " + i)).join();
+    }
+}
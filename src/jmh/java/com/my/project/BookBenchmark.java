@@ -0,0 +1,68 @@
+package com.my.project;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Creating and reading {@link Book} and {@link CompactBook}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BookBenchmark {
+
+    private List<String> authors;
+    private Book book;
+    private SymbolTable symbols;
+
+    @Setup
+    public void setUp() {
+        authors = Arrays.asList("D. Jeffrey Ulman", "Ravi Sethi", "Alfred V. Aho", "Monica S. Lam");
+        book = new Book("8131721019", "Compilers Principles", authors, "Pearson Education Singapore Pte Ltd",
+            2008, 1009, "BOOK_IMAGE");
+        symbols = new SymbolTable();
+    }
+
+    @Benchmark
+    public Book construct() {
+        return new Book("8131721019", "Compilers Principles", authors, "Pearson Education Singapore Pte Ltd",
+            2008, 1009, "BOOK_IMAGE");
+    }
+
+    @Benchmark
+    public Book copy() {
+        return new Book(book);
+    }
+
+    @Benchmark
+    public void accessors(Blackhole blackhole) {
+        blackhole.consume(book.getIsbn());
+        blackhole.consume(book.getTitle());
+        blackhole.consume(book.getAuthors());
+        blackhole.consume(book.getPublication());
+        blackhole.consume(book.getYearOfPublication());
+        blackhole.consume(book.getNumberOfPages());
+        blackhole.consume(book.getImage());
+    }
+
+    @Benchmark
+    public CompactBook compact() {
+        return CompactBook.from(book, symbols);
+    }
+}
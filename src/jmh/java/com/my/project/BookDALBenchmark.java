@@ -0,0 +1,201 @@
+package com.my.project;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.my.project.jdbc.ConnectionPool;
+import com.my.project.jdbc.DatabaseConfig;
+import com.my.project.jdbc.PooledConnection;
+import com.my.project.jdbc.Schema;
+
+/**
+ * {@link BookDAL} lookups and bulk writes against the database of the test
+ * <code>jdbc.properties</code>, the in-memory H2 database unless
+ * <code>-Djdbc.url=...</code> points the fork somewhere else. The batch and
+ * fetch sizes are the production defaults rather than the tiny test values.
+ * The <code>Lazy</code> listings read the books with {@link BookDAL#setLazyLoading(boolean)},
+ * touching only the titles or the authors too; raise <code>imageSize</code>
+ * to see what not reading large cover images saves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djdbc.bulk.batchSize=500", "-Djdbc.stream.fetchSize=1000"})
+@State(Scope.Benchmark)
+public class BookDALBenchmark {
+
+    @Param({"1000"})
+    public int books;
+
+    @Param({"100"})
+    public int bulkSize;
+
+    //characters of each cover image, the ten of "BOOK_IMAGE" by default
+    @Param({"10"})
+    public int imageSize;
+
+    private ConnectionPool pool;
+    private BookDAL bookDAL;
+    private BookDAL lazyBookDAL;
+    private List<Book> bulk;
+
+    @Setup
+    public void setUp() throws SQLException {
+        //keep debug logging out of the measurements
+        Logger.getLogger("com.my.project").setLevel(org.apache.log4j.Level.WARN);
+        pool = new ConnectionPool(DatabaseConfig.load());
+        Schema.create(pool);
+        PooledConnection connection = pool.borrow();
+        try {
+            Statement statement = connection.getConnection().createStatement();
+            statement.executeUpdate("DELETE FROM book_author");
+            statement.executeUpdate("DELETE FROM book");
+            statement.close();
+        } finally {
+            connection.close();
+        }
+        bookDAL = new BookDAL(pool);
+        List<Book> all = new ArrayList<Book>(books);
+        char[] image = new char[imageSize];
+        Arrays.fill(image, 'x');
+        for(int i = 0; i < books; i++) {
+            Book book = book(i, "Title " + i);
+            if(imageSize != book.getImage().length()) {
+                book.setImage(new String(image));
+            }
+            all.add(book);
+        }
+        bookDAL.addBooks(all);
+        lazyBookDAL = new BookDAL(pool);
+        lazyBookDAL.setLazyLoading(true);
+        bulk = new ArrayList<Book>(all.subList(0, Math.min(bulkSize, books)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Fresh books for every {@link BookDALBenchmark#addBooks(Inserts)} call,
+     * deleted again after each iteration.
+     */
+    @State(Scope.Thread)
+    public static class Inserts {
+
+        private int next;
+        List<Book> batch;
+
+        @Setup(Level.Invocation)
+        public void nextBatch(BookDALBenchmark benchmark) {
+            if(next < benchmark.books) {
+                next = benchmark.books;
+            }
+            batch = new ArrayList<Book>(benchmark.bulkSize);
+            for(int i = 0; i < benchmark.bulkSize; i++, next++) {
+                batch.add(book(next, "Inserted " + next));
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void deleteInserted(BookDALBenchmark benchmark) throws SQLException {
+            PooledConnection connection = benchmark.pool.borrow();
+            try {
+                String last = isbn(benchmark.books - 1);
+                for(String sql : new String[] {"DELETE FROM book_author WHERE isbn > ?", "DELETE FROM book WHERE isbn > ?"}) {
+                    PreparedStatement statement = connection.getConnection().prepareStatement(sql);
+                    statement.setString(1, last);
+                    statement.executeUpdate();
+                    statement.close();
+                }
+            } finally {
+                connection.close();
+            }
+            next = benchmark.books;
+        }
+    }
+
+    static String isbn(int i) {
+        return Isbn.toString(Isbn.complete(978000000000L + i));
+    }
+
+    static Book book(int i, String title) {
+        return new Book(isbn(i), title, Arrays.asList("Author " + i, "Second Author"), "Publisher " + i % 50,
+            1950 + i % 70, 100 + i % 900, "BOOK_IMAGE");
+    }
+
+    @Benchmark
+    public Book getBook() {
+        return bookDAL.getBook(isbn(ThreadLocalRandom.current().nextInt(books)));
+    }
+
+    @Benchmark
+    public Book getMissingBook() {
+        return bookDAL.getBook(isbn(books + ThreadLocalRandom.current().nextInt(books)));
+    }
+
+    @Benchmark
+    public String getBookTitleByIsbn() {
+        return bookDAL.getBookTitleByIsbn(isbn(ThreadLocalRandom.current().nextInt(books)));
+    }
+
+    @Benchmark
+    public List<Book> getAllBooks() {
+        return bookDAL.getAllBooks();
+    }
+
+    @Benchmark
+    public int getAllBooksLazy() {
+        int length = 0;
+        for(Book book : lazyBookDAL.getAllBooks()) {
+            length += book.getTitle().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int getAllBooksLazyWithAuthors() {
+        int authors = 0;
+        for(Book book : lazyBookDAL.getAllBooks()) {
+            authors += book.getAuthors().size();
+        }
+        return authors;
+    }
+
+    @Benchmark
+    public long streamAllBooks() {
+        return bookDAL.streamAllBooks().count();
+    }
+
+    @Benchmark
+    public BulkResult addBooks(Inserts inserts) {
+        return bookDAL.addBooks(inserts.batch);
+    }
+
+    @Benchmark
+    public BulkResult updateBooks() {
+        return bookDAL.updateBooks(bulk);
+    }
+}
@@ -0,0 +1,38 @@
+package com.my.project;
+
+import java.util.Arrays;
+
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Footprint report: bytes per book of the object graph of {@link Book} and
+ * {@link CompactBook}, counting shared strings once.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.main=com.my.project.CompactBookFootprint -Djmh.args=[books]
+ * </pre>
+ */
+public final class CompactBookFootprint {
+
+    private CompactBookFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        Book[] books = new Book[count];
+        CompactBook[] compactBooks = new CompactBook[count];
+        SymbolTable symbols = new SymbolTable();
+        for(int i = 0; i < count; i++) {
+            //new String() models values read from a database or a file, which are never shared
+            books[i] = new Book(String.valueOf(9780000000000L + i), "Title " + i,
+                Arrays.asList(new String("Author " + i % 500), new String("Co-Author " + i % 50)),
+                new String("Publisher " + i % 20), 1950 + i % 70, 100 + i % 900, new String("BOOK_IMAGE"));
+            compactBooks[i] = CompactBook.from(books[i], symbols);
+        }
+
+        long legacy = GraphLayout.parseInstance((Object) books).totalSize() / count;
+        long compact = GraphLayout.parseInstance((Object) compactBooks).totalSize() / count;
+        System.out.printf("Footprint: Book %d bytes/book, CompactBook %d bytes/book (%.0f%%)%n",
+            legacy, compact, 100.0 * compact / legacy);
+        System.out.println(GraphLayout.parseInstance((Object) compactBooks).toFootprint());
+    }
+}
@@ -0,0 +1,72 @@
+package com.my.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compare two JMH JSON result files, e.g. from the previous release and from
+ * this build, and print the change of every benchmark score.
+ * <pre>
+ * java -cp ... com.my.project.JmhResultDiff baseline.json target/jmh-result.json [threshold%]
+ * </pre>
+ * Exits with status 1 if a benchmark got worse by more than the threshold
+ * (default 10%), taking into account whether its mode counts time or throughput.
+ */
+public final class JmhResultDiff {
+
+    private JmhResultDiff() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.err.println("Usage: JmhResultDiff <baseline.json> <current.json> [threshold%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+        int regressions = 0;
+        for(Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            JsonNode metric = entry.getValue().get("primaryMetric");
+            double score = metric.get("score").asDouble();
+            String unit = metric.get("scoreUnit").asText();
+            if(before == null) {
+                System.out.printf("%-70s %14.3f %-8s (new)%n", entry.getKey(), score, unit);
+                continue;
+            }
+            double old = before.get("primaryMetric").get("score").asDouble();
+            double change = old == 0 ? 0 : (score - old) / old * 100;
+            //throughput is better when higher, every other mode when lower
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().get("mode").asText());
+            boolean regressed = higherIsBetter ? change < -threshold : change > threshold;
+            if(regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %-8s %+8.1f%%%s%n", entry.getKey(), score, unit, change,
+                regressed ? "  REGRESSION" : "");
+        }
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * @return results keyed by benchmark name and parameters
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<String, JsonNode>();
+        for(JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText());
+            JsonNode params = result.get("params");
+            if(params != null) {
+                key.append(params.toString());
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,98 @@
+package com.my.project;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.ArgumentCaptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the Mockito calls the tests make: creating a mock, stubbing, calling
+ * a stub, verifying and capturing arguments.
+ * <p>
+ * Mockito 1.x generates classes with cglib, which needs
+ * <code>java.lang</code> opened on Java 9 and later. The flag is ignored on Java 8.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+@State(Scope.Thread)
+public class MockitoBenchmark {
+
+    @Param({"10"})
+    public int calls;
+
+    private Book book;
+    private BookDAL stubbed;
+
+    /**
+     * A fresh stub every iteration: Mockito records each call, so a long-lived
+     * mock gets slower the longer it is used.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        book = new Book("8131721019", "Compilers Principles", null, null, null, null, null);
+        stubbed = mock(BookDAL.class);
+        when(stubbed.getBook(anyString())).thenReturn(book);
+    }
+
+    @Benchmark
+    public BookDAL createMock() {
+        return mock(BookDAL.class);
+    }
+
+    @Benchmark
+    public BookDAL stub() {
+        reset(stubbed);
+        when(stubbed.getBook(anyString())).thenReturn(book);
+        return stubbed;
+    }
+
+    @Benchmark
+    public Book callStub() {
+        return stubbed.getBook("8131721019");
+    }
+
+    /**
+     * The mock is reset first, otherwise its recorded invocations would grow
+     * without bound and make every verify slower than the last.
+     */
+    @Benchmark
+    public BookDAL verifyTimes() {
+        reset(stubbed);
+        for(int i = 0; i < calls; i++) {
+            stubbed.getBook("8131721019");
+        }
+        verify(stubbed, times(calls)).getBook("8131721019");
+        return stubbed;
+    }
+
+    @Benchmark
+    public String captureArgument() {
+        reset(stubbed);
+        stubbed.setBookTitle(book, "Dragon Book");
+        ArgumentCaptor<String> title = ArgumentCaptor.forClass(String.class);
+        verify(stubbed).setBookTitle(eq(book), title.capture());
+        return title.getValue();
+    }
+}
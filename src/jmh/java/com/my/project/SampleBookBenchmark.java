@@ -0,0 +1,83 @@
+package com.my.project;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling of the {@link BookDAL} sample book snapshot with the number of
+ * threads. Scores are total operations of all threads, so reads, which take
+ * no lock, should grow with the threads up to the number of cores, while
+ * updates all retry on one compare-and-set and should stay flat or drop.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SampleBookBenchmark {
+
+    private static final UnaryOperator<Book> INCREMENT = new UnaryOperator<Book>() {
+        public Book apply(Book book) {
+            book.setNumberOfPages(book.getNumberOfPages() + 1);
+            return book;
+        }
+    };
+
+    private BookDAL bookDAL;
+
+    @Setup
+    public void setUp() {
+        bookDAL = new BookDAL(new Book("9780000000001", "Sample", Arrays.asList("Author"), "Publisher", 2000, 0,
+            "BOOK_IMAGE"));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Book read1() {
+        return bookDAL.getSampleBook();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Book read2() {
+        return bookDAL.getSampleBook();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Book read4() {
+        return bookDAL.getSampleBook();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Book read8() {
+        return bookDAL.getSampleBook();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Book update1() {
+        return bookDAL.updateSampleBook(INCREMENT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Book update4() {
+        return bookDAL.updateSampleBook(INCREMENT);
+    }
+}
@@ -0,0 +1,105 @@
+package com.my.project.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.my.project.Book;
+
+/**
+ * Scaling of {@link CatalogueAnalytics} with the number of fork-join workers,
+ * against counting into maps shared by all workers. Compare the scores across
+ * the <code>workers</code> parameter; run on a machine with at least that many cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CatalogueAnalyticsBenchmark {
+
+    private static final String[] PUBLISHERS = new String[500];
+
+    @Param({"1000000"})
+    public int books;
+
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    private List<Book> catalogue;
+    private ForkJoinPool pool;
+    private CatalogueAnalytics analytics;
+
+    @Setup
+    public void setUp() {
+        for(int i = 0; i < PUBLISHERS.length; i++) {
+            PUBLISHERS[i] = "Publisher " + i;
+        }
+        Random random = new Random(1);
+        catalogue = new ArrayList<Book>(books);
+        for(int i = 0; i < books; i++) {
+            catalogue.add(new Book(String.valueOf(i), "Title " + i, null, PUBLISHERS[random.nextInt(PUBLISHERS.length)],
+                1900 + random.nextInt(124), random.nextInt(3000), null));
+        }
+        pool = new ForkJoinPool(workers);
+        analytics = new CatalogueAnalytics(pool, CatalogueAnalytics.DEFAULT_PAGE_BUCKET_WIDTH);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public CatalogueReport perWorkerAccumulators() {
+        return analytics.analyze(catalogue);
+    }
+
+    /**
+     * The same counts with every worker incrementing shared concurrent maps.
+     */
+    @Benchmark
+    public Object sharedConcurrentMaps() throws Exception {
+        final Function<Object, LongAdder> newCounter = new Function<Object, LongAdder>() {
+            public LongAdder apply(Object key) {
+                return new LongAdder();
+            }
+        };
+        final ConcurrentMap<Integer, LongAdder> histogram = new ConcurrentHashMap<Integer, LongAdder>();
+        final ConcurrentMap<Integer, LongAdder> perYear = new ConcurrentHashMap<Integer, LongAdder>();
+        final ConcurrentMap<String, LongAdder> perPublisher = new ConcurrentHashMap<String, LongAdder>();
+        pool.submit(new Runnable() {
+            public void run() {
+                catalogue.parallelStream().forEach(new Consumer<Book>() {
+                    public void accept(Book book) {
+                        histogram.computeIfAbsent(book.getNumberOfPages() / 100, newCounter).increment();
+                        perYear.computeIfAbsent(book.getYearOfPublication(), newCounter).increment();
+                        perPublisher.computeIfAbsent(book.getPublication(), newCounter).increment();
+                    }
+                });
+            }
+        }).get();
+        return perPublisher;
+    }
+}
@@ -0,0 +1,79 @@
+package com.my.project.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.my.project.Book;
+
+/**
+ * Hit and miss paths of {@link ReadThroughCache}. The loader does no I/O, so
+ * a miss measures the cache's own cost of loading, inserting and evicting.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadThroughCacheBenchmark {
+
+    private static final int KEYS = 1024;
+
+    private ReadThroughCache<String, Book> hits;
+    private ReadThroughCache<String, Book> misses;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        Function<String, Book> loader = new Function<String, Book>() {
+            @Override
+            public Book apply(String isbn) {
+                return new Book(isbn, "Title " + isbn, null, null, null, null, null);
+            }
+        };
+        keys = new String[KEYS];
+        for(int i = 0; i < KEYS; i++) {
+            keys[i] = String.format("97800000%05d", i);
+        }
+        hits = new ReadThroughCache<String, Book>(loader, KEYS, 1, TimeUnit.HOURS);
+        for(String key : keys) {
+            hits.get(key);
+        }
+        //a single entry, so every other key evicts it and loads again
+        misses = new ReadThroughCache<String, Book>(loader, 1, 1, TimeUnit.HOURS);
+    }
+
+    @Benchmark
+    public Book hit() {
+        return hits.get(keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Book hitContended() {
+        return hits.get(keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    @Benchmark
+    public Book miss() {
+        return misses.get(keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    @Benchmark
+    public Book getIfPresentMiss() {
+        return misses.getIfPresent("9999999999999");
+    }
+}
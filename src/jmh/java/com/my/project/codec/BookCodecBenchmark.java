@@ -0,0 +1,120 @@
+package com.my.project.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.my.project.Book;
+
+/**
+ * Encoding and decoding one book with {@link BookCodec}, Java serialization and
+ * Jackson JSON. The codec is measured into a reused direct buffer, the way the
+ * book log uses it, and into a fresh byte array like the other two.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BookCodecBenchmark {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Book book;
+    private ByteBuffer direct;
+    private byte[] codecBytes;
+    private byte[] serializedBytes;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        book = new Book("8131721019", "Compilers Principles", Arrays.asList(
+            "D. Jeffrey Ulman",
+            "Ravi Sethi",
+            "Alfred V. Aho",
+            "Monica S. Lam"), "Pearson Education Singapore Pte Ltd", 2008, 1009, "BOOK_IMAGE");
+        direct = ByteBuffer.allocateDirect(BookCodec.sizeOf(book));
+        BookCodec.encode(book, direct);
+        codecBytes = BookCodec.toBytes(book);
+        serializedBytes = serialize();
+        jsonBytes = mapper.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public ByteBuffer codecEncodeDirect() {
+        direct.clear();
+        BookCodec.encode(book, direct);
+        return direct;
+    }
+
+    @Benchmark
+    public Book codecDecodeDirect() {
+        direct.clear();
+        return BookCodec.decode(direct);
+    }
+
+    @Benchmark
+    public String codecReadTitleDirect() {
+        return BookCodec.readTitle(direct, 0);
+    }
+
+    @Benchmark
+    public byte[] codecEncodeBytes() {
+        return BookCodec.toBytes(book);
+    }
+
+    @Benchmark
+    public Book codecDecodeBytes() {
+        return BookCodec.fromBytes(codecBytes);
+    }
+
+    @Benchmark
+    public byte[] serializableEncode() throws IOException {
+        return serialize();
+    }
+
+    @Benchmark
+    public Object serializableDecode() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serializedBytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() throws IOException {
+        return mapper.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public Book jsonDecode() throws IOException {
+        return mapper.readValue(jsonBytes, Book.class);
+    }
+
+    private byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(book);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package com.my.project.image;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of serving an image to a channel, here <code>/dev/null</code>: encoding
+ * the inline string of a book and writing it (<code>inline</code>) against
+ * {@link ImageStore#transferTo(ImageRef, java.nio.channels.WritableByteChannel)}
+ * (<code>transferTo</code>), and of reading the first 16 KB as a thumbnail
+ * from the string (<code>inlineRange</code>) and from the mapped blob
+ * (<code>mappedRange</code>). Run with <code>-prof gc</code> to compare the
+ * allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageStoreBenchmark {
+
+    private static final int THUMBNAIL = 16 * 1024;
+
+    @Param({"65536", "1048576"})
+    private int imageSize;
+
+    private File directory;
+    private ImageStore store;
+    private ImageRef ref;
+    private String image;
+    private FileChannel sink;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = File.createTempFile("images", "");
+        directory.delete();
+        char[] chars = new char[imageSize];
+        Arrays.fill(chars, 'i');
+        image = new String(chars);
+        store = new ImageStore(directory);
+        ref = store.put(image);
+        sink = new FileOutputStream("/dev/null").getChannel();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sink.close();
+        store.close();
+        for(File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public int inline() throws IOException {
+        return sink.write(ByteBuffer.wrap(image.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public long transferTo() throws IOException {
+        return store.transferTo(ref, sink);
+    }
+
+    @Benchmark
+    public int inlineRange() {
+        return image.substring(0, THUMBNAIL).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public int mappedRange() {
+        ByteBuffer range = store.read(ref, 0, THUMBNAIL);
+        return range.get(THUMBNAIL - 1);
+    }
+}
@@ -0,0 +1,115 @@
+package com.my.project.logging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a log call to the logging thread: a disabled debug call through
+ * {@link Log} and through log4j with the message built by concatenation, and
+ * an enabled call written to a file by the logging thread (<code>sync</code>)
+ * or handed to a {@link RingBufferAppender} (<code>async</code>). The async
+ * appender discards when full, so it measures the handoff, not the disk.
+ * Run with <code>-prof gc</code> to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss.SSS} [%t]-[%p] %m%n";
+
+    private File directory;
+    private Log syncLog;
+    private Log asyncLog;
+    private Logger syncLogger;
+    private WriterAppender syncFile;
+    private RingBufferAppender ring;
+    private String isbn = "9780000000002";
+    private Integer count = Integer.valueOf(1000);
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = File.createTempFile("logging", "");
+        directory.delete();
+        directory.mkdirs();
+
+        syncLog = Log.getLog("benchmark.sync");
+        syncLogger = syncLog.getLogger();
+        syncLogger.setAdditivity(false);
+        syncLogger.setLevel(Level.INFO);
+        syncFile = fileAppender("sync.log");
+        syncLogger.addAppender(syncFile);
+
+        ring = new RingBufferAppender();
+        ring.setName("benchmark");
+        ring.setBlocking(false);
+        ring.addAppender(fileAppender("async.log"));
+        ring.activateOptions();
+        asyncLog = Log.getLog("benchmark.async");
+        Logger asyncLogger = asyncLog.getLogger();
+        asyncLogger.setAdditivity(false);
+        asyncLogger.setLevel(Level.INFO);
+        asyncLogger.addAppender(ring);
+    }
+
+    private WriterAppender fileAppender(String name) throws IOException {
+        WriterAppender appender = new WriterAppender(new PatternLayout(PATTERN),
+            new FileOutputStream(new File(directory, name)));
+        appender.setImmediateFlush(true);
+        return appender;
+    }
+
+    @TearDown
+    public void tearDown() {
+        syncLogger.removeAllAppenders();
+        asyncLog.getLogger().removeAllAppenders();
+        syncFile.close();
+        //closes the file appender it feeds
+        ring.close();
+        for(File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void disabledDebug() {
+        syncLog.debug("Saved book {} after {} attempts", isbn, count);
+    }
+
+    @Benchmark
+    public void disabledDebugConcatenated() {
+        syncLogger.debug("Saved book " + isbn + " after " + count + " attempts");
+    }
+
+    @Benchmark
+    public void sync() {
+        syncLog.info("Saved book {} after {} attempts", isbn, count);
+    }
+
+    @Benchmark
+    public void async() {
+        asyncLog.info("Saved book {} after {} attempts", isbn, count);
+    }
+}
@@ -0,0 +1,103 @@
+package com.my.project.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+
+/**
+ * Cost of {@link InstrumentedBookRepository} per call: the difference between
+ * <code>instrumented</code> and <code>plain</code> over a repository that does
+ * no work. The budget is 50 ns per call. <code>instrumentedEveryCall</code>
+ * times every call and shows the cost of the clock, see <code>nanoTime</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstrumentationBenchmark {
+
+    private BookRepository plain;
+    private BookRepository instrumented;
+    private BookRepository instrumentedEveryCall;
+    private BookMetrics metrics;
+
+    @Setup
+    public void setUp() {
+        final Book book = new Book("9780000000002", "Title", null, null, null, null, null);
+        plain = new BookRepository() {
+            public List<Book> getAllBooks() {
+                return Collections.singletonList(book);
+            }
+
+            public Book getBook(String isbn) {
+                return book;
+            }
+
+            public String addBook(Book added) {
+                return added.getIsbn();
+            }
+
+            public String updateBook(Book updated) {
+                return updated.getIsbn();
+            }
+
+            public void setBookTitle(Book changed, String title) {
+            }
+
+            public String getBookTitleByIsbn(String isbn) {
+                return book.getTitle();
+            }
+        };
+        metrics = new BookMetrics("benchmark");
+        instrumented = new InstrumentedBookRepository(plain, metrics);
+        instrumentedEveryCall = new InstrumentedBookRepository(plain, new BookMetrics("every", 1));
+    }
+
+    @Benchmark
+    public Book plain() {
+        return plain.getBook("9780000000002");
+    }
+
+    @Benchmark
+    public Book instrumented() {
+        return instrumented.getBook("9780000000002");
+    }
+
+    @Benchmark
+    public Book instrumentedEveryCall() {
+        return instrumentedEveryCall.getBook("9780000000002");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Book instrumentedContended() {
+        return instrumented.getBook("9780000000002");
+    }
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public LatencySnapshot snapshot() {
+        return metrics.get(BookMetrics.Operation.GET_BOOK).getLatency();
+    }
+}
@@ -0,0 +1,130 @@
+package com.my.project.mvcc;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.my.project.Book;
+import com.my.project.Isbn;
+
+/**
+ * A full scan summing page counts racing an updater, on an
+ * {@link MvccBookStore} (<code>mvcc</code>) and on a map of books changed in
+ * place under a read-write lock (<code>locked</code>), where scans and writes
+ * wait for each other. The cleaner runs every 100 ms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class MvccBookStoreBenchmark {
+
+    @Param({"10000"})
+    private int books;
+
+    private MvccBookStore store;
+    private final Map<String, Book> map = new TreeMap<String, Book>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private String[] isbns;
+
+    @Setup
+    public void setUp() {
+        store = new MvccBookStore();
+        isbns = new String[books];
+        for(int i = 0; i < books; i++) {
+            isbns[i] = Isbn.toString(Isbn.complete(978000000000L + i));
+            Book book = book(isbns[i], 100);
+            store.addBook(book);
+            map.put(isbns[i], new Book(book));
+        }
+        store.startCleaner(100, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+    }
+
+    private static Book book(String isbn, int pages) {
+        return new Book(isbn, "Title", Arrays.asList("Author"), "Publisher", 2000, pages, null);
+    }
+
+    @Benchmark
+    @Group("mvcc")
+    @GroupThreads(1)
+    public long mvccScan() {
+        final long[] pages = new long[1];
+        MvccBookStore.Snapshot snapshot = store.snapshot();
+        try {
+            snapshot.forEach(new MvccBookStore.Visitor() {
+                @Override
+                public void visit(Book book) {
+                    pages[0] += book.getNumberOfPages();
+                }
+            });
+        } finally {
+            snapshot.close();
+        }
+        return pages[0];
+    }
+
+    @Benchmark
+    @Group("mvcc")
+    @GroupThreads(1)
+    public String mvccUpdate() {
+        int i = ThreadLocalRandom.current().nextInt(books);
+        return store.updateBook(book(isbns[i], i));
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public long lockedScan() {
+        long pages = 0;
+        lock.readLock().lock();
+        try {
+            for(Book book : map.values()) {
+                pages += book.getNumberOfPages();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return pages;
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public String lockedUpdate() {
+        int i = ThreadLocalRandom.current().nextInt(books);
+        lock.writeLock().lock();
+        try {
+            Book book = map.get(isbns[i]);
+            book.setTitle("Title");
+            book.setNumberOfPages(i);
+            return book.getIsbn();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
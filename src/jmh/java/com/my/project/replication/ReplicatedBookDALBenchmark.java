@@ -0,0 +1,132 @@
+package com.my.project.replication;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.Isbn;
+import com.my.project.replication.ReplicatedBookDAL.Consistency;
+import com.my.project.store.OffHeapBookStore;
+
+/**
+ * Throughput of lookups from 16 threads as read replicas are added, 0
+ * meaning every read goes to the primary. The primary and each replica
+ * stand for a node that serves one call at a time in
+ * {@link #SERVICE_MICROS} microseconds, so reads scale with the number of
+ * nodes rather than with the cores of the machine running the benchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class ReplicatedBookDALBenchmark {
+
+    static final long SERVICE_MICROS = 100;
+
+    private static final int BOOKS = 10000;
+
+    /**
+     * A node serving one call at a time, each taking the service time.
+     */
+    static final class Node implements BookRepository {
+
+        private final OffHeapBookStore store = new OffHeapBookStore(4 * 1024 * 1024);
+
+        private synchronized void serve() {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(SERVICE_MICROS));
+        }
+
+        public List<Book> getAllBooks() {
+            serve();
+            return store.getAllBooks();
+        }
+
+        public Book getBook(String isbn) {
+            serve();
+            return store.getBook(isbn);
+        }
+
+        public String addBook(Book book) {
+            //loading is not measured
+            return store.addBook(book);
+        }
+
+        public String updateBook(Book book) {
+            serve();
+            return store.updateBook(book);
+        }
+
+        public void setBookTitle(Book book, String title) {
+            serve();
+            store.setBookTitle(book, title);
+        }
+
+        public String getBookTitleByIsbn(String isbn) {
+            serve();
+            return store.getBookTitleByIsbn(isbn);
+        }
+    }
+
+    @Param({"0", "1", "2", "4"})
+    private int replicas;
+
+    private ReplicatedBookDAL dal;
+    private String[] isbns;
+
+    @Setup
+    public void setUp() {
+        Node primary = new Node();
+        isbns = new String[BOOKS];
+        for(int i = 0; i < BOOKS; i++) {
+            isbns[i] = Isbn.toString(Isbn.complete(978000000000L + i));
+            primary.addBook(new Book(isbns[i], "Title " + i, Arrays.asList("Author"), "Publisher", 2000, 100, null));
+        }
+        Map<Replica, ReplicationTransport> nodes = new LinkedHashMap<Replica, ReplicationTransport>();
+        for(int i = 0; i < replicas; i++) {
+            Replica replica = new Replica("replica-" + i, new Node());
+            nodes.put(replica, new InProcessTransport(replica));
+        }
+        dal = new ReplicatedBookDAL(primary, nodes, Consistency.BOUNDED_STALENESS, 1, TimeUnit.SECONDS);
+        if(!dal.awaitReplication(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Replicas did not catch up");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dal.close();
+    }
+
+    @Benchmark
+    public Book getBook() {
+        return dal.getBook(isbns[ThreadLocalRandom.current().nextInt(BOOKS)]);
+    }
+
+    @Benchmark
+    public String getBookTitleByIsbn() {
+        return dal.getBookTitleByIsbn(isbns[ThreadLocalRandom.current().nextInt(BOOKS)]);
+    }
+}
@@ -0,0 +1,113 @@
+package com.my.project.search;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Search and typeahead latency of {@link TitleSearchIndex} over a synthetic
+ * catalogue. Title words follow a skewed distribution like real titles, so some
+ * prefixes expand to very common words. Sample time mode reports the p99.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TitleSearchBenchmark {
+
+    private static final int WORDS = 20000;
+    private static final int QUERIES = 4096;
+
+    @Param({"1000000"})
+    public int books;
+
+    private TitleSearchIndex index;
+    private String[] words;
+    private String[] queries;
+    private String[] prefixes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        words = new String[WORDS];
+        for(int i = 0; i < WORDS; i++) {
+            words[i] = word(random, 3 + random.nextInt(8));
+        }
+        index = new TitleSearchIndex();
+        String[] titles = new String[QUERIES];
+        for(int i = 0; i < books; i++) {
+            StringBuilder title = new StringBuilder();
+            int length = 2 + random.nextInt(7);
+            for(int w = 0; w < length; w++) {
+                title.append(w == 0 ? "" : " ").append(words[skewed(random)]);
+            }
+            index.index(String.valueOf(i), title.toString());
+            if(i < QUERIES) {
+                titles[i] = title.toString();
+            }
+        }
+        queries = new String[QUERIES];
+        prefixes = new String[QUERIES];
+        for(int i = 0; i < QUERIES; i++) {
+            String[] parts = titles[i].split(" ");
+            queries[i] = parts[0] + " " + parts[1];
+            //the first word and the start of the second, as typed
+            prefixes[i] = parts[0] + " " + parts[1].substring(0, 1 + random.nextInt(parts[1].length()));
+        }
+    }
+
+    private static String word(Random random, int length) {
+        char[] letters = new char[length];
+        for(int i = 0; i < length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    /**
+     * A word index where low indexes are far more frequent than high ones.
+     */
+    private static int skewed(Random random) {
+        double u = random.nextDouble();
+        return (int) (WORDS * u * u * u);
+    }
+
+    private static int next() {
+        return ThreadLocalRandom.current().nextInt(QUERIES);
+    }
+
+    @Benchmark
+    public Object search() {
+        return index.search(queries[next()], 10);
+    }
+
+    @Benchmark
+    public Object typeahead() {
+        return index.searchPrefix(prefixes[next()], 10);
+    }
+
+    @Benchmark
+    public Object typeaheadOneLetter() {
+        return index.searchPrefix(words[next()].substring(0, 1), 10);
+    }
+
+    @Benchmark
+    public Object suggest() {
+        String word = words[next()];
+        return index.suggest(word.substring(0, Math.min(2, word.length())), 10);
+    }
+}
@@ -0,0 +1,130 @@
+package com.my.project.shard;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.Isbn;
+import com.my.project.store.OffHeapBookStore;
+
+/**
+ * Throughput of lookups and updates from 16 threads as shards are added.
+ * Each shard stands for a node that serves one call at a time in
+ * {@link #SERVICE_MICROS} microseconds, so the DAL scales with the number of
+ * nodes rather than with the cores of the machine running the benchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class ShardedBookDALBenchmark {
+
+    static final long SERVICE_MICROS = 100;
+
+    private static final int BOOKS = 10000;
+
+    /**
+     * A shard serving one call at a time, each taking the service time.
+     */
+    static final class Node implements BookRepository {
+
+        private final OffHeapBookStore store = new OffHeapBookStore(4 * 1024 * 1024);
+
+        private synchronized void serve() {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(SERVICE_MICROS));
+        }
+
+        public List<Book> getAllBooks() {
+            serve();
+            return store.getAllBooks();
+        }
+
+        public Book getBook(String isbn) {
+            serve();
+            return store.getBook(isbn);
+        }
+
+        public String addBook(Book book) {
+            //loading is not measured
+            return store.addBook(book);
+        }
+
+        public String updateBook(Book book) {
+            serve();
+            return store.updateBook(book);
+        }
+
+        public void setBookTitle(Book book, String title) {
+            serve();
+            store.setBookTitle(book, title);
+        }
+
+        public String getBookTitleByIsbn(String isbn) {
+            serve();
+            return store.getBookTitleByIsbn(isbn);
+        }
+    }
+
+    @Param({"1", "2", "4", "8"})
+    private int shards;
+
+    private ShardedBookDAL dal;
+    private String[] isbns;
+
+    @Setup
+    public void setUp() {
+        Map<String, BookRepository> nodes = new LinkedHashMap<String, BookRepository>();
+        for(int i = 0; i < shards; i++) {
+            nodes.put("node-" + i, new Node());
+        }
+        dal = new ShardedBookDAL(nodes);
+        isbns = new String[BOOKS];
+        for(int i = 0; i < BOOKS; i++) {
+            isbns[i] = Isbn.toString(Isbn.complete(978000000000L + i));
+            dal.addBook(book(isbns[i], 100));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dal.close();
+    }
+
+    private static Book book(String isbn, int pages) {
+        return new Book(isbn, "Title", Arrays.asList("Author"), "Publisher", 2000, pages, null);
+    }
+
+    @Benchmark
+    public Book getBook() {
+        return dal.getBook(isbns[ThreadLocalRandom.current().nextInt(BOOKS)]);
+    }
+
+    @Benchmark
+    public String updateBook() {
+        int i = ThreadLocalRandom.current().nextInt(BOOKS);
+        return dal.updateBook(book(isbns[i], i));
+    }
+}
@@ -0,0 +1,79 @@
+package com.my.project.writebehind;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.my.project.Book;
+
+/**
+ * Time an update call takes to return from a {@link WriteBehindQueue}, with
+ * and without the journal, over 10000 ISBNs so most updates coalesce.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBehindBenchmark {
+
+    private static final int BOOKS = 10000;
+
+    @Param({"false", "true"})
+    public boolean journal;
+
+    private File directory;
+    private WriteBehindQueue queue;
+    private Book[] books;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        books = new Book[BOOKS];
+        for(int i = 0; i < BOOKS; i++) {
+            books[i] = new Book(String.format("978%010d", i), "Title " + i, Arrays.asList("Author"), "Publisher",
+                2000, 100, null);
+        }
+        if(journal) {
+            directory = File.createTempFile("journal", "");
+            directory.delete();
+        }
+        queue = new WriteBehindQueue(new BatchWriter() {
+            public void write(List<WriteOperation> batch) {
+            }
+        }, directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queue.close();
+        if(directory != null) {
+            for(File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Benchmark
+    public void update() {
+        queue.update(books[next++ % BOOKS]);
+    }
+}
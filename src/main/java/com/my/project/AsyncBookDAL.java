@@ -0,0 +1,381 @@
+package com.my.project;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.my.project.logging.Log;
+
+/**
+ * Non-blocking facade over {@link BookDAL}: every call returns a
+ * {@link CompletableFuture} and the blocking work runs on a dedicated pool.
+ * <p>
+ * The pool has a fixed number of threads and a bounded queue. When the queue is
+ * full the {@link Saturation} policy applies: {@link Saturation#REJECT} fails
+ * the returned future with a {@link RejectedExecutionException} straight away,
+ * {@link Saturation#CALLER_RUNS} runs the call on the submitting thread, which
+ * slows the submitter down to the speed of the pool. Once closed, every call
+ * fails with a {@link RejectedExecutionException}, whatever the policy.
+ * <p>
+ * With {@link #virtualThreads(BookDAL, int, Saturation)}, or the system property
+ * <code>bookdal.virtualThreads=true</code>, every call runs on its own virtual
+ * thread instead, so blocking calls need no thread pool sizing. The number of
+ * calls in flight is then bounded by a semaphore and the same saturation policy.
+ * Virtual threads need Java 21; older JVMs fall back to the thread pool.
+ * <p>
+ * Concurrent {@link #getBookAsync(String)} calls for the same ISBN share one
+ * backend lookup; each caller still gets its own copy of the book. A write to
+ * an ISBN stops later lookups from joining a lookup that started before it.
+ */
+public class AsyncBookDAL implements AutoCloseable {
+
+    private static final Log logger = Log.getLog(AsyncBookDAL.class);
+
+    /**
+     * What to do with a call when the queue is full.
+     */
+    public enum Saturation {
+        /** Fail the returned future with a {@link RejectedExecutionException}. */
+        REJECT,
+        /** Run the call on the thread that made it. */
+        CALLER_RUNS
+    }
+
+    public static final int DEFAULT_THREADS = 10;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 10000;
+
+    private static final AtomicInteger poolNumber = new AtomicInteger();
+
+    private final BookDAL bookDAL;
+    private final ExecutorService executor;
+    //bounds the calls in flight on virtual threads, null for the thread pool
+    private final Semaphore permits;
+    private final Saturation saturation;
+    private final ConcurrentMap<String, CompletableFuture<Book>> lookups =
+        new ConcurrentHashMap<String, CompletableFuture<Book>>();
+
+    /**
+     * Use the default thread pool, or virtual threads if the system property
+     * <code>bookdal.virtualThreads</code> is true and the JVM has them.
+     */
+    public AsyncBookDAL(BookDAL bookDAL) {
+        this(bookDAL, VirtualThreads.isRequested() ? VirtualThreads.newThreadPerTaskExecutor() : null,
+            DEFAULT_MAX_IN_FLIGHT, Saturation.REJECT);
+    }
+
+    /**
+     * @param bookDAL the DAL to call
+     * @param threads number of threads running calls, e.g. the connection pool size
+     * @param queueCapacity number of calls that may wait for a thread
+     * @param saturation what to do with a call when the queue is full
+     */
+    public AsyncBookDAL(BookDAL bookDAL, int threads, int queueCapacity, Saturation saturation) {
+        this.bookDAL = bookDAL;
+        this.executor = threadPool(threads, queueCapacity, saturation);
+        this.permits = null;
+        this.saturation = saturation;
+    }
+
+    /**
+     * @param virtualExecutor a thread-per-task executor, or null for the default thread pool
+     */
+    private AsyncBookDAL(BookDAL bookDAL, ExecutorService virtualExecutor, int maxInFlight, Saturation saturation) {
+        this.bookDAL = bookDAL;
+        this.saturation = saturation;
+        if(virtualExecutor != null) {
+            this.executor = virtualExecutor;
+            this.permits = new Semaphore(maxInFlight);
+        } else {
+            this.executor = threadPool(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, saturation);
+            this.permits = null;
+        }
+    }
+
+    /**
+     * Run every call on its own virtual thread, falling back to the default
+     * thread pool on JVMs without virtual threads.
+     * @param bookDAL the DAL to call
+     * @param maxInFlight number of calls that may run at once
+     * @param saturation what to do with a call when that many are running
+     * @return the facade
+     */
+    public static AsyncBookDAL virtualThreads(BookDAL bookDAL, int maxInFlight, Saturation saturation) {
+        return new AsyncBookDAL(bookDAL, VirtualThreads.newThreadPerTaskExecutor(), maxInFlight, saturation);
+    }
+
+    public CompletableFuture<List<Book>> getAllBooksAsync() {
+        return submit(new Callable<List<Book>>() {
+            public List<Book> call() {
+                return bookDAL.getAllBooks();
+            }
+        });
+    }
+
+    /**
+     * @param isbn the ISBN to look up
+     * @return the book, or null if there is no book with that ISBN
+     */
+    public CompletableFuture<Book> getBookAsync(final String isbn) {
+        CompletableFuture<Book> lookup = new CompletableFuture<Book>();
+        CompletableFuture<Book> shared = isbn == null ? null : lookups.putIfAbsent(isbn, lookup);
+        if(shared == null) {
+            shared = lookup;
+            final CompletableFuture<Book> started = lookup;
+            execute(started, new Callable<Book>() {
+                public Book call() {
+                    try {
+                        return bookDAL.getBook(isbn);
+                    } finally {
+                        if(isbn != null) {
+                            lookups.remove(isbn, started);
+                        }
+                    }
+                }
+            }, isbn);
+        }
+        //every caller gets its own copy, Book is mutable
+        return shared.thenApply(new Function<Book, Book>() {
+            public Book apply(Book book) {
+                return book == null ? null : new Book(book);
+            }
+        });
+    }
+
+    public CompletableFuture<String> getBookTitleByIsbnAsync(final String isbn) {
+        return submit(new Callable<String>() {
+            public String call() {
+                return bookDAL.getBookTitleByIsbn(isbn);
+            }
+        });
+    }
+
+    public CompletableFuture<String> addBookAsync(final Book book) {
+        detachLookup(book);
+        return submit(new Callable<String>() {
+            public String call() {
+                return bookDAL.addBook(book);
+            }
+        });
+    }
+
+    public CompletableFuture<String> updateBookAsync(final Book book) {
+        detachLookup(book);
+        return submit(new Callable<String>() {
+            public String call() {
+                return bookDAL.updateBook(book);
+            }
+        });
+    }
+
+    public CompletableFuture<BulkResult> addBooksAsync(final Collection<Book> books) {
+        for(Book book : books) {
+            detachLookup(book);
+        }
+        return submit(new Callable<BulkResult>() {
+            public BulkResult call() {
+                return bookDAL.addBooks(books);
+            }
+        });
+    }
+
+    public CompletableFuture<BulkResult> updateBooksAsync(final Collection<Book> books) {
+        for(Book book : books) {
+            detachLookup(book);
+        }
+        return submit(new Callable<BulkResult>() {
+            public BulkResult call() {
+                return bookDAL.updateBooks(books);
+            }
+        });
+    }
+
+    /**
+     * The title of the book argument is changed on a pool thread, do not read
+     * it before the future completes.
+     */
+    public CompletableFuture<Void> setBookTitleAsync(final Book book, final String title) {
+        detachLookup(book);
+        return submit(new Callable<Void>() {
+            public Void call() {
+                bookDAL.setBookTitle(book, title);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @return whether calls run on virtual threads
+     */
+    public boolean isVirtual() {
+        return permits != null;
+    }
+
+    /**
+     * @return number of calls waiting for a thread, always 0 on virtual threads
+     */
+    public int getQueueSize() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+
+    /**
+     * Stop accepting calls and wait for the running and queued ones to finish.
+     * If they take more than a minute, or the closing thread is interrupted,
+     * running calls are interrupted and queued ones fail with a
+     * {@link RejectedExecutionException}; the interrupt status is kept.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Calls still running after one minute, interrupting them");
+                stop();
+            }
+        } catch(InterruptedException e) {
+            stop();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Interrupt the running calls and fail the queued ones.
+     */
+    private void stop() {
+        for(Runnable dropped : executor.shutdownNow()) {
+            if(dropped instanceof Task) {
+                ((Task<?>) dropped).reject(new RejectedExecutionException("Closed before the call ran"));
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        execute(future, call, null);
+        return future;
+    }
+
+    /**
+     * Run the call on the pool and complete the future with its outcome.
+     * @param isbn the ISBN of a shared lookup to forget if the call is rejected, or null
+     */
+    private <T> void execute(CompletableFuture<T> future, Callable<T> call, String isbn) {
+        Task<T> task = new Task<T>(future, call, isbn, permits != null && permits.tryAcquire());
+        try {
+            if(permits != null && !task.permitted) {
+                if(saturation != Saturation.CALLER_RUNS) {
+                    throw new RejectedExecutionException("Too many calls in flight");
+                }
+                if(executor.isShutdown()) {
+                    throw new RejectedExecutionException("Closed");
+                }
+                task.run();
+                return;
+            }
+            executor.execute(task);
+        } catch(RejectedExecutionException e) {
+            task.reject(e);
+        }
+    }
+
+    private static ThreadPoolExecutor threadPool(int threads, int queueCapacity, Saturation saturation) {
+        RejectedExecutionHandler handler = saturation == Saturation.CALLER_RUNS
+            ? new CallerRunsUnlessShutdown() : new ThreadPoolExecutor.AbortPolicy();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity), new DaemonThreadFactory(), handler);
+    }
+
+    /**
+     * Let lookups that start after this write run on their own instead of
+     * sharing one that may finish before the write.
+     */
+    private void detachLookup(Book book) {
+        if(book != null && book.getIsbn() != null) {
+            lookups.remove(book.getIsbn());
+        }
+    }
+
+    /**
+     * A call that completes its future with its outcome.
+     */
+    private final class Task<T> implements Runnable {
+
+        final CompletableFuture<T> future;
+        final Callable<T> call;
+        //the ISBN of a shared lookup, or null
+        final String isbn;
+        final boolean permitted;
+
+        Task(CompletableFuture<T> future, Callable<T> call, String isbn, boolean permitted) {
+            this.future = future;
+            this.call = call;
+            this.isbn = isbn;
+            this.permitted = permitted;
+        }
+
+        public void run() {
+            try {
+                future.complete(call.call());
+            } catch(Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                if(permitted) {
+                    permits.release();
+                }
+            }
+        }
+
+        /**
+         * Fail a call that will not run, and forget its shared lookup so later
+         * lookups of the ISBN do not join it.
+         */
+        void reject(RejectedExecutionException e) {
+            if(permitted) {
+                permits.release();
+            }
+            if(isbn != null) {
+                lookups.remove(isbn, future);
+            }
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Like {@link ThreadPoolExecutor.CallerRunsPolicy}, but rejects calls once the
+     * pool is shut down instead of silently dropping them.
+     */
+    private static final class CallerRunsUnlessShutdown implements RejectedExecutionHandler {
+
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if(executor.isShutdown()) {
+                throw new RejectedExecutionException("Closed");
+            }
+            r.run();
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final int pool = poolNumber.incrementAndGet();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "async-book-dal-" + pool + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
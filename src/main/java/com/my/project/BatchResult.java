@@ -0,0 +1,57 @@
+package com.my.project;
+
+/**
+ * Outcome of one batch of a bulk {@link BookDAL} call.
+ */
+public class BatchResult {
+
+    private final int offset;
+    private final int size;
+    private final int affected;
+    private final Exception failure;
+
+    public BatchResult(int offset, int size, int affected, Exception failure) {
+        this.offset = offset;
+        this.size = size;
+        this.affected = affected;
+        this.failure = failure;
+    }
+
+    /**
+     * @return position of the first book of this batch in the submitted collection
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return number of books in this batch
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of books written, which for updates excludes ISBNs that do not exist
+     */
+    public int getAffected() {
+        return affected;
+    }
+
+    /**
+     * @return why the batch was rolled back, or null if it was committed
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult[offset=" + offset + ", size=" + size + ", affected=" + affected
+            + (failure == null ? "" : ", failure=" + failure.getMessage()) + "]";
+    }
+}
@@ -1,11 +1,15 @@
 package com.my.project;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
 * Model class for the book details.
 */
-public class Book {
+public class Book implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String isbn;
     private String title;
@@ -28,6 +32,15 @@ public class Book {
 
     }
 
+    /**
+     * Copy constructor, the author list is copied as well.
+     * @param book the book to copy
+     */
+    public Book(Book book) {
+        this(book.getIsbn(), book.getTitle(), book.getAuthors() == null ? null : new ArrayList<String>(book.getAuthors()),
+            book.getPublication(), book.getYearOfPublication(), book.getNumberOfPages(), book.getImage());
+    }
+
     public Book(String title) {
         this.title = title;
     }
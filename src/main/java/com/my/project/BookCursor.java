@@ -0,0 +1,102 @@
+package com.my.project;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import com.my.project.jdbc.DataAccessException;
+import com.my.project.jdbc.PooledConnection;
+
+/**
+ * Reads books one at a time from a server-side cursor over the book/author join.
+ * <p>
+ * Rows arrive ordered by ISBN, so all authors of a book are adjacent and only
+ * the current book is held in memory. The connection is returned to the pool
+ * when the cursor is exhausted or closed, whichever comes first.
+ */
+class BookCursor extends Spliterators.AbstractSpliterator<Book> implements AutoCloseable {
+
+    static final String SELECT_BOOKS_WITH_AUTHORS =
+        "SELECT b.isbn, b.title, b.publication, b.year_of_publication, b.number_of_pages, b.image, a.author"
+            + " FROM book b LEFT JOIN book_author a ON a.isbn = b.isbn"
+            + " ORDER BY b.isbn, a.author_order";
+
+    private final PooledConnection connection;
+    private ResultSet rs;
+    private boolean hasRow;
+    private boolean closed;
+
+    BookCursor(PooledConnection connection, int fetchSize) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT);
+        this.connection = connection;
+        try {
+            //PostgreSQL only uses a cursor inside a transaction and with a fetch size set
+            connection.begin();
+            PreparedStatement statement = connection.prepare(SELECT_BOOKS_WITH_AUTHORS);
+            statement.setFetchSize(fetchSize);
+            this.rs = statement.executeQuery();
+            this.hasRow = rs.next();
+        } catch (SQLException e) {
+            connection.failed(e);
+            close();
+            throw new DataAccessException("Failed to open book cursor", e);
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Book> action) {
+        if(closed || !hasRow) {
+            close();
+            return false;
+        }
+        Book book;
+        try {
+            String isbn = rs.getString(1);
+            int year = rs.getInt(4);
+            Integer yearOfPublication = rs.wasNull() ? null : year;
+            int pages = rs.getInt(5);
+            Integer numberOfPages = rs.wasNull() ? null : pages;
+            List<String> authors = new ArrayList<String>();
+            book = new Book(isbn, rs.getString(2), authors, rs.getString(3), yearOfPublication, numberOfPages,
+                rs.getString(6));
+            do {
+                String author = rs.getString(7);
+                if(author != null) {
+                    authors.add(author);
+                }
+                hasRow = rs.next();
+            } while(hasRow && isbn.equals(rs.getString(1)));
+        } catch (SQLException e) {
+            connection.failed(e);
+            close();
+            throw new DataAccessException("Failed to read book cursor", e);
+        }
+        if(!hasRow) {
+            close();
+        }
+        action.accept(book);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if(rs != null) {
+                rs.close();
+            }
+        } catch (SQLException ignore) {
+            //the transaction is rolled back when the connection is returned
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -1,56 +1,609 @@
 package com.my.project;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import com.my.project.cache.ReadThroughCache;
+import com.my.project.jdbc.ConnectionPool;
+import com.my.project.jdbc.CopyEncoder;
+import com.my.project.jdbc.DataAccessException;
+import com.my.project.jdbc.DatabaseConfig;
+import com.my.project.jdbc.PooledConnection;
+import com.my.project.logging.Log;
 
 /**
 * API layer for persisting and retrieving the Book objects.
+* <p>
+* Instances are safe to share between threads without external locking:
+* <ul>
+* <li>{@link #getInstance()} is created during class initialization, so every
+* thread sees it fully constructed.</li>
+* <li>The sample book is an immutable snapshot held in an {@link AtomicReference}.
+* Writers publish a new snapshot with a compare-and-set, so a write
+* happens-before every read that returns it and concurrent updates are never lost.</li>
+* <li>Database state is isolated per call: each call borrows its own pooled
+* connection, and the pool hands connections over through a concurrent queue.</li>
+* <li>The cache is published through a volatile field.</li>
+* </ul>
+* Book arguments remain owned by the caller; do not change the same Book from
+* several threads while passing it to this class.
 */
-public class BookDAL {
+public class BookDAL implements BookRepository {
+
+    private static final Log logger = Log.getLog(BookDAL.class);
+
+    private static final String SELECT_BOOK =
+        "SELECT isbn, title, publication, year_of_publication, number_of_pages, image FROM book WHERE isbn = ?";
+    private static final String SELECT_ALL_BOOKS =
+        "SELECT isbn, title, publication, year_of_publication, number_of_pages, image FROM book ORDER BY isbn";
+    private static final String SELECT_BOOK_LAZY =
+        "SELECT isbn, title, publication, year_of_publication, number_of_pages FROM book WHERE isbn = ?";
+    private static final String SELECT_ALL_BOOKS_LAZY =
+        "SELECT isbn, title, publication, year_of_publication, number_of_pages FROM book ORDER BY isbn";
+    private static final String SELECT_AUTHORS =
+        "SELECT author FROM book_author WHERE isbn = ? ORDER BY author_order";
+    private static final String SELECT_ALL_AUTHORS =
+        "SELECT isbn, author FROM book_author ORDER BY isbn, author_order";
+    private static final String SELECT_TITLE =
+        "SELECT title FROM book WHERE isbn = ?";
+    private static final String INSERT_BOOK =
+        "INSERT INTO book (isbn, title, publication, year_of_publication, number_of_pages, image) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_BOOK =
+        "UPDATE book SET title = ?, publication = ?, year_of_publication = ?, number_of_pages = ?, image = ? WHERE isbn = ?";
+    private static final String UPDATE_TITLE =
+        "UPDATE book SET title = ? WHERE isbn = ?";
+    private static final String INSERT_AUTHOR =
+        "INSERT INTO book_author (isbn, author_order, author) VALUES (?, ?, ?)";
+    private static final String DELETE_AUTHORS =
+        "DELETE FROM book_author WHERE isbn = ?";
+    private static final String COPY_BOOKS =
+        "COPY book (isbn, title, publication, year_of_publication, number_of_pages, image) FROM STDIN";
+    private static final String COPY_AUTHORS =
+        "COPY book_author (isbn, author_order, author) FROM STDIN";
+
+    //IN lists are padded to a power of two so a few statements serve every page size
+    private static final String[] SELECT_AUTHORS_IN = inQueries(
+        "SELECT isbn, author FROM book_author WHERE isbn IN (", ") ORDER BY isbn, author_order");
+    private static final String[] SELECT_IMAGES_IN = inQueries(
+        "SELECT isbn, image FROM book WHERE isbn IN (", ")");
+    private static final String[] SELECT_BOOKS_IN = inQueries(
+        "SELECT isbn, title, publication, year_of_publication, number_of_pages, image FROM book WHERE isbn IN (", ")");
+    private static final String[] SELECT_BOOKS_IN_LAZY = inQueries(
+        "SELECT isbn, title, publication, year_of_publication, number_of_pages FROM book WHERE isbn IN (", ")");
+
+    private static final BookDAL bookDAL = new BookDAL();
 
-    private static BookDAL bookDAL = new BookDAL();
-    
     private BookDAL() {
+        this((ConnectionPool) null);
     }
-    
-    private Book book;
-    
+
+    private final AtomicReference<Book> book = new AtomicReference<Book>();
+
+    private final ConnectionPool pool;
+
+    private volatile ReadThroughCache<String, Book> cache;
+
+    private volatile boolean lazyLoading;
+
+    private final LazyBook.Loader loader = new LazyBook.Loader() {
+        public Map<String, List<String>> loadAuthors(List<String> isbns) {
+            return BookDAL.this.loadAuthors(isbns);
+        }
+
+        public Map<String, String> loadImages(List<String> isbns) {
+            return BookDAL.this.loadImages(isbns);
+        }
+    };
+
     public BookDAL(Book book) {
-        this.book = book;
+        this((ConnectionPool) null);
+        setBook(book);
     }
-    
+
+    /**
+     * @param pool the pool to borrow connections from, or null to use the
+     * shared pool configured by <code>jdbc.properties</code>
+     */
+    public BookDAL(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
     public void changeSampleTitle() {
-        this.book.setTitle("INJECTED");
+        updateSampleBook(new UnaryOperator<Book>() {
+            public Book apply(Book book) {
+                book.setTitle("INJECTED");
+                return book;
+            }
+        });
+    }
+
+    /**
+     * Atomically replace the sample book with an updated copy. The update may run
+     * more than once if other threads change the sample book at the same time, so
+     * it must have no side effects besides changing the copy it is given.
+     * @param update changes a private copy of the current sample book and returns it
+     * @return the new sample book
+     * @throws IllegalStateException if no sample book is set
+     */
+    public Book updateSampleBook(UnaryOperator<Book> update) {
+        while(true) {
+            Book current = book.get();
+            if(current == null) {
+                throw new IllegalStateException("No sample book set");
+            }
+            Book next = update.apply(new Book(current));
+            if(book.compareAndSet(current, next)) {
+                return new Book(next);
+            }
+        }
     }
-    
+
+    /**
+     * @return a copy of the current sample book, or null if none is set
+     */
     public Book getSampleBook() {
-        return this.book;
+        Book current = book.get();
+        return current == null ? null : new Book(current);
+    }
+
+    /**
+     * Make {@link #getAllBooks()} and {@link #getBook(String)} read the authors
+     * and the image of a book only when they are first accessed, batched over
+     * pages of the books read together.
+     * @param lazyLoading whether to load authors and images lazily
+     */
+    public void setLazyLoading(boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+    }
+
+    public boolean isLazyLoading() {
+        return lazyLoading;
     }
 
     public List<Book> getAllBooks() {
-        return Collections.emptyList();
+        if(lazyLoading) {
+            return getAllBooksLazily();
+        }
+        PooledConnection connection = pool().borrow();
+        try {
+            List<Book> books = new ArrayList<Book>();
+            Map<String, Book> byIsbn = new HashMap<String, Book>();
+            ResultSet rs = connection.prepare(SELECT_ALL_BOOKS).executeQuery();
+            try {
+                while(rs.next()) {
+                    Book book = readBook(rs);
+                    book.setAuthors(new ArrayList<String>());
+                    books.add(book);
+                    byIsbn.put(book.getIsbn(), book);
+                }
+            } finally {
+                rs.close();
+            }
+            rs = connection.prepare(SELECT_ALL_AUTHORS).executeQuery();
+            try {
+                while(rs.next()) {
+                    Book book = byIsbn.get(rs.getString(1));
+                    if(book != null) {
+                        book.getAuthors().add(rs.getString(2));
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+            return books;
+        } catch (SQLException e) {
+            throw failure(connection, "Failed to load books", e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private List<Book> getAllBooksLazily() {
+        PooledConnection connection = pool().borrow();
+        try {
+            List<Book> books = new ArrayList<Book>();
+            LazyBook.Group group = new LazyBook.Group(loader);
+            ResultSet rs = connection.prepare(SELECT_ALL_BOOKS_LAZY).executeQuery();
+            try {
+                while(rs.next()) {
+                    books.add(readLazyBook(rs, group));
+                }
+            } finally {
+                rs.close();
+            }
+            return books;
+        } catch (SQLException e) {
+            throw failure(connection, "Failed to load books", e);
+        } finally {
+            connection.close();
+        }
     }
 
+    /**
+     * Stream every book through a server-side cursor using <code>jdbc.stream.fetchSize</code>.
+     * @return the books ordered by ISBN
+     * @see #streamAllBooks(int)
+     */
+    public Stream<Book> streamAllBooks() {
+        return streamAllBooks(pool().getConfig().getFetchSize());
+    }
+
+    /**
+     * Stream every book through a server-side cursor. Only <code>fetchSize</code>
+     * rows are held in memory at a time, however large the table is.
+     * The stream holds a pooled connection until it is fully consumed or closed,
+     * so use it in a try-with-resources block.
+     * @param fetchSize number of rows to fetch per round trip
+     * @return the books ordered by ISBN
+     */
+    public Stream<Book> streamAllBooks(int fetchSize) {
+        final BookCursor cursor = new BookCursor(pool().borrow(), fetchSize);
+        return StreamSupport.stream(cursor, false).onClose(new Runnable() {
+            public void run() {
+                cursor.close();
+            }
+        });
+    }
+
+    /**
+     * Cache books by ISBN in front of {@link #getBook(String)} and
+     * {@link #getBookTitleByIsbn(String)}. Entries are invalidated by every write
+     * made through this DAL.
+     * @param maximumSize maximum number of cached books
+     * @param timeToLive how long a book is served from the cache after it was loaded
+     * @param unit unit of the time to live
+     * @return the cache, for its statistics
+     */
+    public ReadThroughCache<String, Book> enableCache(int maximumSize, long timeToLive, TimeUnit unit) {
+        ReadThroughCache<String, Book> cache = new ReadThroughCache<String, Book>(new Function<String, Book>() {
+            public Book apply(String isbn) {
+                return loadBook(isbn);
+            }
+        }, maximumSize, timeToLive, unit);
+        this.cache = cache;
+        return cache;
+    }
+
+    /**
+     * @return the cache, or null if caching is not enabled
+     */
+    public ReadThroughCache<String, Book> getCache() {
+        return cache;
+    }
+
+    /**
+     * @param isbn the ISBN to look up
+     * @return the book, or null if there is no book with that ISBN
+     */
     public Book getBook(String isbn) {
-        return null;
+        ReadThroughCache<String, Book> cache = this.cache;
+        if(cache == null) {
+            return loadBook(isbn);
+        }
+        //callers may change the book they get, so never hand out the cached instance
+        Book book = cache.get(isbn);
+        if(book instanceof LazyBook) {
+            //a plain copy would load the authors and the image
+            return ((LazyBook) book).copy();
+        }
+        return book == null ? null : new Book(book);
+    }
+
+    /**
+     * Load the books with one query per {@link LazyBook#PAGE_SIZE} ISBNs, and
+     * one more for their authors unless loading lazily. Reads the database,
+     * not the cache.
+     * @param isbns the ISBNs to look up
+     * @return the books found, by ISBN in the order asked for
+     */
+    @Override
+    public Map<String, Book> getBooks(Collection<String> isbns) {
+        List<String> distinct = new ArrayList<String>(new LinkedHashSet<String>(isbns));
+        distinct.remove(null);
+        Map<String, Book> found = new HashMap<String, Book>();
+        boolean lazy = lazyLoading;
+        if(!distinct.isEmpty()) {
+            PooledConnection connection = pool().borrow();
+            try {
+                LazyBook.Group group = lazy ? new LazyBook.Group(loader) : null;
+                for(int from = 0; from < distinct.size(); from += LazyBook.PAGE_SIZE) {
+                    List<String> page = distinct.subList(from, Math.min(distinct.size(), from + LazyBook.PAGE_SIZE));
+                    ResultSet rs = bindIn(connection, group == null ? SELECT_BOOKS_IN : SELECT_BOOKS_IN_LAZY, page)
+                        .executeQuery();
+                    try {
+                        while(rs.next()) {
+                            Book book = group == null ? readBook(rs) : readLazyBook(rs, group);
+                            found.put(book.getIsbn(), book);
+                        }
+                    } finally {
+                        rs.close();
+                    }
+                }
+            } catch (SQLException e) {
+                throw failure(connection, "Failed to load " + distinct.size() + " books", e);
+            } finally {
+                connection.close();
+            }
+            if(!lazy && !found.isEmpty()) {
+                Map<String, List<String>> authors = loadAuthors(new ArrayList<String>(found.keySet()));
+                for(Book book : found.values()) {
+                    List<String> list = authors.get(book.getIsbn());
+                    book.setAuthors(list == null ? new ArrayList<String>() : list);
+                }
+            }
+        }
+        Map<String, Book> books = new LinkedHashMap<String, Book>();
+        for(String isbn : distinct) {
+            Book book = found.get(isbn);
+            if(book != null) {
+                books.put(isbn, book);
+            }
+        }
+        return books;
+    }
+
+    private Book loadBook(String isbn) {
+        if(lazyLoading) {
+            return loadBookLazily(isbn);
+        }
+        PooledConnection connection = pool().borrow();
+        try {
+            Book book = null;
+            PreparedStatement statement = connection.prepare(SELECT_BOOK);
+            statement.setString(1, isbn);
+            ResultSet rs = statement.executeQuery();
+            try {
+                if(rs.next()) {
+                    book = readBook(rs);
+                }
+            } finally {
+                rs.close();
+            }
+            if(book != null) {
+                book.setAuthors(readAuthors(connection, isbn));
+            }
+            return book;
+        } catch (SQLException e) {
+            throw failure(connection, "Failed to load book " + isbn, e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private Book loadBookLazily(String isbn) {
+        PooledConnection connection = pool().borrow();
+        try {
+            PreparedStatement statement = connection.prepare(SELECT_BOOK_LAZY);
+            statement.setString(1, isbn);
+            ResultSet rs = statement.executeQuery();
+            try {
+                return rs.next() ? readLazyBook(rs, new LazyBook.Group(loader)) : null;
+            } finally {
+                rs.close();
+            }
+        } catch (SQLException e) {
+            throw failure(connection, "Failed to load book " + isbn, e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return the authors of each of the books that exist, in order
+     */
+    private Map<String, List<String>> loadAuthors(List<String> isbns) {
+        PooledConnection connection = pool().borrow();
+        try {
+            Map<String, List<String>> authors = new HashMap<String, List<String>>();
+            for(int from = 0; from < isbns.size(); from += LazyBook.PAGE_SIZE) {
+                List<String> page = isbns.subList(from, Math.min(isbns.size(), from + LazyBook.PAGE_SIZE));
+                ResultSet rs = bindIn(connection, SELECT_AUTHORS_IN, page).executeQuery();
+                try {
+                    while(rs.next()) {
+                        List<String> list = authors.get(rs.getString(1));
+                        if(list == null) {
+                            list = new ArrayList<String>();
+                            authors.put(rs.getString(1), list);
+                        }
+                        list.add(rs.getString(2));
+                    }
+                } finally {
+                    rs.close();
+                }
+            }
+            return authors;
+        } catch (SQLException e) {
+            throw failure(connection, "Failed to load authors of " + isbns.size() + " books", e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return the image of each of the books that exist, possibly null
+     */
+    private Map<String, String> loadImages(List<String> isbns) {
+        PooledConnection connection = pool().borrow();
+        try {
+            Map<String, String> images = new HashMap<String, String>();
+            for(int from = 0; from < isbns.size(); from += LazyBook.PAGE_SIZE) {
+                List<String> page = isbns.subList(from, Math.min(isbns.size(), from + LazyBook.PAGE_SIZE));
+                ResultSet rs = bindIn(connection, SELECT_IMAGES_IN, page).executeQuery();
+                try {
+                    while(rs.next()) {
+                        images.put(rs.getString(1), rs.getString(2));
+                    }
+                } finally {
+                    rs.close();
+                }
+            }
+            return images;
+        } catch (SQLException e) {
+            throw failure(connection, "Failed to load images of " + isbns.size() + " books", e);
+        } finally {
+            connection.close();
+        }
     }
 
     public String addBook(Book book) {
-        return book.getIsbn();
+        PooledConnection connection = pool().borrow();
+        try {
+            connection.begin();
+            PreparedStatement statement = connection.prepare(INSERT_BOOK);
+            statement.setString(1, book.getIsbn());
+            bindColumns(statement, 2, book);
+            statement.executeUpdate();
+            insertAuthors(connection, Collections.singletonList(book));
+            connection.commit();
+            return book.getIsbn();
+        } catch (SQLException e) {
+            throw failure(connection, "Failed to add book " + book.getIsbn(), e);
+        } finally {
+            connection.close();
+            invalidate(book.getIsbn());
+        }
     }
 
+    /**
+     * Replace every column and the authors of an existing book.
+     * @param book the new state of the book
+     * @return the ISBN, or null if there is no book with that ISBN
+     */
     public String updateBook(Book book) {
-        return book.getIsbn();
+        PooledConnection connection = pool().borrow();
+        try {
+            connection.begin();
+            PreparedStatement statement = connection.prepare(UPDATE_BOOK);
+            bindColumns(statement, 1, book);
+            statement.setString(6, book.getIsbn());
+            if(statement.executeUpdate() == 0) {
+                connection.commit();
+                return null;
+            }
+            statement = connection.prepare(DELETE_AUTHORS);
+            statement.setString(1, book.getIsbn());
+            statement.executeUpdate();
+            insertAuthors(connection, Collections.singletonList(book));
+            connection.commit();
+            return book.getIsbn();
+        } catch (SQLException e) {
+            throw failure(connection, "Failed to update book " + book.getIsbn(), e);
+        } finally {
+            connection.close();
+            invalidate(book.getIsbn());
+        }
     }
-    
+
+    /**
+     * Insert many books, <code>jdbc.bulk.batchSize</code> at a time. Each batch is
+     * sent as one JDBC batch and committed on its own. On PostgreSQL, collections of
+     * at least <code>jdbc.bulk.copyThreshold</code> books are streamed with
+     * <code>COPY FROM STDIN</code> instead.
+     * @param books the books to insert
+     * @return the outcome of every batch
+     */
+    public BulkResult addBooks(Collection<Book> books) {
+        final boolean useCopy = books.size() >= pool().getConfig().getCopyThreshold();
+        return writeBatches(books, new BatchWriter() {
+            public int write(PooledConnection connection, List<Book> batch) throws SQLException {
+                CopyManager copy = useCopy ? copyManager(connection) : null;
+                if(copy != null) {
+                    copyBooks(copy, batch);
+                } else {
+                    insertBooks(connection, batch);
+                }
+                return batch.size();
+            }
+        });
+    }
+
+    /**
+     * Update many books, <code>jdbc.bulk.batchSize</code> at a time. Each batch is
+     * sent as one JDBC batch and committed on its own. ISBNs that do not exist are
+     * skipped and not counted as affected.
+     * @param books the new state of the books
+     * @return the outcome of every batch
+     */
+    public BulkResult updateBooks(Collection<Book> books) {
+        return writeBatches(books, new BatchWriter() {
+            public int write(PooledConnection connection, List<Book> batch) throws SQLException {
+                return updateBatch(connection, batch);
+            }
+        });
+    }
+
+    /**
+     * Change the title of the book and, if it has an ISBN, of its stored copy.
+     * @param book the book to change
+     * @param title the new title
+     */
     public void setBookTitle(Book book, String title) {
         if(book != null) {
             book.setTitle(title);
+            if(book.getIsbn() != null) {
+                PooledConnection connection = pool().borrow();
+                try {
+                    PreparedStatement statement = connection.prepare(UPDATE_TITLE);
+                    statement.setString(1, title);
+                    statement.setString(2, book.getIsbn());
+                    statement.executeUpdate();
+                } catch (SQLException e) {
+                    throw failure(connection, "Failed to update title of book " + book.getIsbn(), e);
+                } finally {
+                    connection.close();
+                    invalidate(book.getIsbn());
+                }
+            }
         }
     }
-    
+
+    /**
+     * @param isbn the ISBN to look up
+     * @return the title, or null if there is no book with that ISBN
+     */
     public String getBookTitleByIsbn(String isbn) {
-        return "book title";
+        ReadThroughCache<String, Book> cache = this.cache;
+        if(cache != null) {
+            Book book = cache.get(isbn);
+            return book == null ? null : book.getTitle();
+        }
+        PooledConnection connection = pool().borrow();
+        try {
+            PreparedStatement statement = connection.prepare(SELECT_TITLE);
+            statement.setString(1, isbn);
+            ResultSet rs = statement.executeQuery();
+            try {
+                return rs.next() ? rs.getString(1) : null;
+            } finally {
+                rs.close();
+            }
+        } catch (SQLException e) {
+            throw failure(connection, "Failed to load title of book " + isbn, e);
+        } finally {
+            connection.close();
+        }
     }
 
     public static BookDAL getInstance() {
@@ -58,10 +611,297 @@ public class BookDAL {
     }
 
     /**
-     * @param book the book to set
+     * @param book the book to set, a copy is kept so later changes to it are not shared
      */
     public void setBook(Book book) {
-        this.book = book;
+        this.book.set(book == null ? null : new Book(book));
+    }
+
+    private ConnectionPool pool() {
+        return pool != null ? pool : DefaultPool.INSTANCE;
+    }
+
+    private void invalidate(String isbn) {
+        ReadThroughCache<String, Book> cache = this.cache;
+        if(cache != null && isbn != null) {
+            cache.invalidate(isbn);
+        }
+    }
+
+    private static Book readBook(ResultSet rs) throws SQLException {
+        return new Book(
+            rs.getString(1),
+            rs.getString(2),
+            null,
+            rs.getString(3),
+            getInteger(rs, 4),
+            getInteger(rs, 5),
+            rs.getString(6));
+    }
+
+    private static Book readLazyBook(ResultSet rs, LazyBook.Group group) throws SQLException {
+        return group.add(
+            rs.getString(1),
+            rs.getString(2),
+            rs.getString(3),
+            getInteger(rs, 4),
+            getInteger(rs, 5));
+    }
+
+    /**
+     * @param queries the query for each power of two of ISBNs up to the page size
+     * @param isbns at most a page of ISBNs, the last one is repeated up to the next power of two
+     */
+    private static PreparedStatement bindIn(PooledConnection connection, String[] queries, List<String> isbns)
+            throws SQLException {
+        int size = Integer.highestOneBit(isbns.size());
+        int slot = Integer.numberOfTrailingZeros(size < isbns.size() ? size << 1 : size);
+        PreparedStatement statement = connection.prepare(queries[slot]);
+        for(int i = 0; i < 1 << slot; i++) {
+            statement.setString(i + 1, isbns.get(Math.min(i, isbns.size() - 1)));
+        }
+        return statement;
+    }
+
+    private static String[] inQueries(String prefix, String suffix) {
+        String[] queries = new String[Integer.numberOfTrailingZeros(LazyBook.PAGE_SIZE) + 1];
+        for(int slot = 0; slot < queries.length; slot++) {
+            StringBuilder sql = new StringBuilder(prefix);
+            for(int i = 0; i < 1 << slot; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            queries[slot] = sql.append(suffix).toString();
+        }
+        return queries;
+    }
+
+    private static List<String> readAuthors(PooledConnection connection, String isbn) throws SQLException {
+        PreparedStatement statement = connection.prepare(SELECT_AUTHORS);
+        statement.setString(1, isbn);
+        ResultSet rs = statement.executeQuery();
+        try {
+            List<String> authors = new ArrayList<String>();
+            while(rs.next()) {
+                authors.add(rs.getString(1));
+            }
+            return authors;
+        } finally {
+            rs.close();
+        }
+    }
+
+    private static void insertAuthors(PooledConnection connection, List<Book> books) throws SQLException {
+        PreparedStatement statement = connection.prepare(INSERT_AUTHOR);
+        boolean pending = false;
+        for(Book book : books) {
+            if(book.getAuthors() == null) {
+                continue;
+            }
+            int order = 0;
+            for(String author : book.getAuthors()) {
+                statement.setString(1, book.getIsbn());
+                statement.setInt(2, order++);
+                statement.setString(3, author);
+                statement.addBatch();
+                pending = true;
+            }
+        }
+        if(pending) {
+            statement.executeBatch();
+        }
+    }
+
+    private static void insertBooks(PooledConnection connection, List<Book> batch) throws SQLException {
+        PreparedStatement statement = connection.prepare(INSERT_BOOK);
+        for(Book book : batch) {
+            statement.setString(1, book.getIsbn());
+            bindColumns(statement, 2, book);
+            statement.addBatch();
+        }
+        statement.executeBatch();
+        insertAuthors(connection, batch);
+    }
+
+    private static int updateBatch(PooledConnection connection, List<Book> batch) throws SQLException {
+        PreparedStatement statement = connection.prepare(UPDATE_BOOK);
+        for(Book book : batch) {
+            bindColumns(statement, 1, book);
+            statement.setString(6, book.getIsbn());
+            statement.addBatch();
+        }
+        int[] counts = statement.executeBatch();
+        List<Book> updated = new ArrayList<Book>(batch.size());
+        for(int i = 0; i < counts.length; i++) {
+            if(counts[i] != 0) {
+                updated.add(batch.get(i));
+            }
+        }
+        if(updated.isEmpty()) {
+            return 0;
+        }
+        statement = connection.prepare(DELETE_AUTHORS);
+        for(Book book : updated) {
+            statement.setString(1, book.getIsbn());
+            statement.addBatch();
+        }
+        statement.executeBatch();
+        insertAuthors(connection, updated);
+        return updated.size();
+    }
+
+    private static CopyManager copyManager(PooledConnection connection) throws SQLException {
+        Connection raw = connection.getConnection();
+        if(raw.isWrapperFor(PGConnection.class)) {
+            return raw.unwrap(PGConnection.class).getCopyAPI();
+        }
+        return null;
+    }
+
+    private static void copyBooks(CopyManager copy, List<Book> batch) throws SQLException {
+        CopyEncoder encoder = new CopyEncoder();
+        CopyIn in = copy.copyIn(COPY_BOOKS);
+        try {
+            for(Book book : batch) {
+                encoder.add(book.getIsbn())
+                    .add(book.getTitle())
+                    .add(book.getPublication())
+                    .add(book.getYearOfPublication())
+                    .add(book.getNumberOfPages())
+                    .add(book.getImage());
+                writeRow(in, encoder.endRow());
+            }
+            in.endCopy();
+        } finally {
+            if(in.isActive()) {
+                in.cancelCopy();
+            }
+        }
+        in = copy.copyIn(COPY_AUTHORS);
+        try {
+            for(Book book : batch) {
+                if(book.getAuthors() == null) {
+                    continue;
+                }
+                int order = 0;
+                for(String author : book.getAuthors()) {
+                    encoder.add(book.getIsbn()).add(order++).add(author);
+                    writeRow(in, encoder.endRow());
+                }
+            }
+            in.endCopy();
+        } finally {
+            if(in.isActive()) {
+                in.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeRow(CopyIn in, String row) throws SQLException {
+        byte[] bytes = row.getBytes(StandardCharsets.UTF_8);
+        in.writeToCopy(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Split the books into batches and run each batch in its own transaction.
+     */
+    private BulkResult writeBatches(Collection<Book> books, BatchWriter writer) {
+        ConnectionPool pool = pool();
+        int batchSize = pool.getConfig().getBatchSize();
+        BulkResult result = new BulkResult();
+        List<Book> batch = new ArrayList<Book>(Math.min(batchSize, books.size()));
+        int offset = 0;
+        PooledConnection connection = pool.borrow();
+        try {
+            for(Book book : books) {
+                batch.add(book);
+                if(batch.size() == batchSize) {
+                    result.add(writeBatch(connection, writer, offset, batch));
+                    offset += batch.size();
+                    batch.clear();
+                    if(connection.isBroken()) {
+                        PooledConnection broken = connection;
+                        //not closed again by the finally block if borrowing fails
+                        connection = null;
+                        broken.close();
+                        connection = pool.borrow();
+                    }
+                }
+            }
+            if(!batch.isEmpty()) {
+                result.add(writeBatch(connection, writer, offset, batch));
+            }
+        } finally {
+            if(connection != null) {
+                connection.close();
+            }
+            if(cache != null) {
+                for(Book book : books) {
+                    invalidate(book.getIsbn());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BatchResult writeBatch(PooledConnection connection, BatchWriter writer, int offset, List<Book> batch) {
+        try {
+            connection.begin();
+            int affected = writer.write(connection, batch);
+            connection.commit();
+            return new BatchResult(offset, batch.size(), affected, null);
+        } catch (SQLException e) {
+            logger.error("Batch of {} books at offset {} failed", batch.size(), offset, e);
+            connection.failed(e);
+            try {
+                connection.rollback();
+            } catch (SQLException ignore) {
+                //the pool discards connections it cannot reset
+            }
+            return new BatchResult(offset, batch.size(), 0, e);
+        }
+    }
+
+    /**
+     * Bind title, publication, year, pages and image starting at the given parameter index.
+     */
+    private static void bindColumns(PreparedStatement statement, int index, Book book) throws SQLException {
+        statement.setString(index, book.getTitle());
+        statement.setString(index + 1, book.getPublication());
+        setInteger(statement, index + 2, book.getYearOfPublication());
+        setInteger(statement, index + 3, book.getNumberOfPages());
+        statement.setString(index + 4, book.getImage());
+    }
+
+    private static Integer getInteger(ResultSet rs, int index) throws SQLException {
+        int value = rs.getInt(index);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static void setInteger(PreparedStatement statement, int index, Integer value) throws SQLException {
+        if(value == null) {
+            statement.setNull(index, Types.INTEGER);
+        } else {
+            statement.setInt(index, value);
+        }
+    }
+
+    private static DataAccessException failure(PooledConnection connection, String message, SQLException e) {
+        logger.error(message, e);
+        connection.failed(e);
+        return new DataAccessException(message, e);
+    }
+
+    /**
+     * Writes one batch of books inside an open transaction.
+     */
+    private interface BatchWriter {
+        int write(PooledConnection connection, List<Book> batch) throws SQLException;
+    }
+
+    /**
+     * Shared pool, created on first use so that loading this class never reads the configuration.
+     */
+    private static class DefaultPool {
+        static final ConnectionPool INSTANCE = new ConnectionPool(DatabaseConfig.load());
     }
-    
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.my.project;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookups and writes shared by every place books are kept: the database
+ * through {@link BookDAL} and the in-process stores.
+ */
+public interface BookRepository {
+
+    List<Book> getAllBooks();
+
+    /**
+     * @param isbn the ISBN to look up
+     * @return the book, or null if there is no book with that ISBN
+     */
+    Book getBook(String isbn);
+
+    /**
+     * Look up several books at once. Looks them up one by one unless the
+     * repository can fetch them together, as {@link BookDAL} does in one query.
+     * @param isbns the ISBNs to look up
+     * @return the books found, by ISBN in the order asked for
+     */
+    default Map<String, Book> getBooks(Collection<String> isbns) {
+        Map<String, Book> books = new LinkedHashMap<String, Book>();
+        for(String isbn : isbns) {
+            Book book = getBook(isbn);
+            if(book != null) {
+                books.put(isbn, book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * @param book the book to add
+     * @return the ISBN of the added book
+     */
+    String addBook(Book book);
+
+    /**
+     * @param book the new state of the book
+     * @return the ISBN, or null if there is no book with that ISBN
+     */
+    String updateBook(Book book);
+
+    /**
+     * Change the title of the book and of its stored copy.
+     * @param book the book to change
+     * @param title the new title
+     */
+    void setBookTitle(Book book, String title);
+
+    /**
+     * @param isbn the ISBN to look up
+     * @return the title, or null if there is no book with that ISBN
+     */
+    String getBookTitleByIsbn(String isbn);
+}
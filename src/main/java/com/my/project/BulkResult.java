@@ -0,0 +1,60 @@
+package com.my.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-batch report of a bulk {@link BookDAL} call. Each batch is committed or
+ * rolled back on its own, so a failed batch does not undo the others.
+ */
+public class BulkResult {
+
+    private final List<BatchResult> batches = new ArrayList<BatchResult>();
+
+    void add(BatchResult batch) {
+        batches.add(batch);
+    }
+
+    public List<BatchResult> getBatches() {
+        return Collections.unmodifiableList(batches);
+    }
+
+    /**
+     * @return the batches that were rolled back
+     */
+    public List<BatchResult> getFailedBatches() {
+        List<BatchResult> failed = new ArrayList<BatchResult>();
+        for(BatchResult batch : batches) {
+            if(!batch.isSuccess()) {
+                failed.add(batch);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * @return total number of books written by the committed batches
+     */
+    public int getAffected() {
+        int affected = 0;
+        for(BatchResult batch : batches) {
+            affected += batch.getAffected();
+        }
+        return affected;
+    }
+
+    public boolean isSuccess() {
+        for(BatchResult batch : batches) {
+            if(!batch.isSuccess()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkResult" + batches;
+    }
+}
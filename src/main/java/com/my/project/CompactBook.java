@@ -0,0 +1,236 @@
+package com.my.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, memory-compact form of {@link Book} for large in-memory catalogues.
+ * <p>
+ * Year and page count are primitive ints, with {@link #ABSENT} standing for a
+ * missing value. Authors are kept in an array, and publisher and author
+ * strings are interned through a {@link SymbolTable}, so books from the same
+ * publisher share one string instance. Images are unique per book and kept
+ * as given.
+ */
+public final class CompactBook {
+
+    /**
+     * Value of {@link #getYearOfPublication()} and {@link #getNumberOfPages()} when unknown.
+     */
+    public static final int ABSENT = Integer.MIN_VALUE;
+
+    private static final String[] NO_AUTHORS = new String[0];
+
+    private final String isbn;
+    private final String title;
+    private final String[] authors;
+    private final String publication;
+    private final int yearOfPublication;
+    private final int numberOfPages;
+    private final String image;
+
+    private CompactBook(Builder builder) {
+        this.isbn = builder.isbn;
+        this.title = builder.title;
+        this.authors = builder.authors;
+        this.publication = builder.publication;
+        this.yearOfPublication = builder.yearOfPublication;
+        this.numberOfPages = builder.numberOfPages;
+        this.image = builder.image;
+    }
+
+    public static Builder builder() {
+        return new Builder(SymbolTable.shared());
+    }
+
+    public static Builder builder(SymbolTable symbols) {
+        return new Builder(symbols);
+    }
+
+    /**
+     * @param book the book to convert
+     * @return the compact form, interned through the shared symbol table
+     */
+    public static CompactBook from(Book book) {
+        return from(book, SymbolTable.shared());
+    }
+
+    public static CompactBook from(Book book, SymbolTable symbols) {
+        return builder(symbols)
+            .isbn(book.getIsbn())
+            .title(book.getTitle())
+            .authors(book.getAuthors())
+            .publication(book.getPublication())
+            .yearOfPublication(book.getYearOfPublication())
+            .numberOfPages(book.getNumberOfPages())
+            .image(book.getImage())
+            .build();
+    }
+
+    /**
+     * @return a new mutable Book with the same values
+     */
+    public Book toBook() {
+        return new Book(isbn, title, new ArrayList<String>(Arrays.asList(authors)), publication,
+            yearOfPublication == ABSENT ? null : yearOfPublication,
+            numberOfPages == ABSENT ? null : numberOfPages,
+            image);
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return read-only view of the authors
+     */
+    public List<String> getAuthors() {
+        return Collections.unmodifiableList(Arrays.asList(authors));
+    }
+
+    public int getAuthorCount() {
+        return authors.length;
+    }
+
+    public String getAuthor(int index) {
+        return authors[index];
+    }
+
+    public String getPublication() {
+        return publication;
+    }
+
+    /**
+     * @return the year, or {@link #ABSENT}
+     */
+    public int getYearOfPublication() {
+        return yearOfPublication;
+    }
+
+    /**
+     * @return the page count, or {@link #ABSENT}
+     */
+    public int getNumberOfPages() {
+        return numberOfPages;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof CompactBook)) {
+            return false;
+        }
+        CompactBook other = (CompactBook) o;
+        return yearOfPublication == other.yearOfPublication
+            && numberOfPages == other.numberOfPages
+            && equal(isbn, other.isbn)
+            && equal(title, other.title)
+            && Arrays.equals(authors, other.authors)
+            && equal(publication, other.publication)
+            && equal(image, other.image);
+    }
+
+    @Override
+    public int hashCode() {
+        return isbn == null ? 0 : isbn.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CompactBook[isbn=" + isbn + ", title=" + title + "]";
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Builds a {@link CompactBook}, interning repeated strings as they are set.
+     */
+    public static final class Builder {
+
+        private final SymbolTable symbols;
+        private String isbn;
+        private String title;
+        private String[] authors = NO_AUTHORS;
+        private String publication;
+        private int yearOfPublication = ABSENT;
+        private int numberOfPages = ABSENT;
+        private String image;
+
+        private Builder(SymbolTable symbols) {
+            this.symbols = symbols;
+        }
+
+        public Builder isbn(String isbn) {
+            this.isbn = isbn;
+            return this;
+        }
+
+        public Builder title(String title) {
+            this.title = title;
+            return this;
+        }
+
+        public Builder authors(List<String> authors) {
+            if(authors == null || authors.isEmpty()) {
+                this.authors = NO_AUTHORS;
+                return this;
+            }
+            String[] interned = new String[authors.size()];
+            for(int i = 0; i < interned.length; i++) {
+                interned[i] = symbols.intern(authors.get(i));
+            }
+            this.authors = interned;
+            return this;
+        }
+
+        public Builder authors(String... authors) {
+            return authors(Arrays.asList(authors));
+        }
+
+        public Builder publication(String publication) {
+            this.publication = symbols.intern(publication);
+            return this;
+        }
+
+        public Builder yearOfPublication(int yearOfPublication) {
+            this.yearOfPublication = yearOfPublication;
+            return this;
+        }
+
+        public Builder yearOfPublication(Integer yearOfPublication) {
+            return yearOfPublication(yearOfPublication == null ? ABSENT : yearOfPublication.intValue());
+        }
+
+        public Builder numberOfPages(int numberOfPages) {
+            this.numberOfPages = numberOfPages;
+            return this;
+        }
+
+        public Builder numberOfPages(Integer numberOfPages) {
+            return numberOfPages(numberOfPages == null ? ABSENT : numberOfPages.intValue());
+        }
+
+        public Builder image(String image) {
+            this.image = image;
+            return this;
+        }
+
+        public CompactBook build() {
+            return new CompactBook(this);
+        }
+    }
+}
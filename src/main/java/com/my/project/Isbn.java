@@ -0,0 +1,124 @@
+package com.my.project;
+
+/**
+ * Converts ISBNs to and from a packed <code>long</code>.
+ * <p>
+ * Every ISBN is normalized to its 13 digit form, which always fits a long, so
+ * an ISBN-10 and the equivalent ISBN-13 give the same value. Hyphens and spaces
+ * are ignored and check digits are verified. Parsing does not allocate.
+ */
+public final class Isbn {
+
+    /**
+     * Returned by {@link #parse(CharSequence)} for input that is not a valid ISBN.
+     */
+    public static final long INVALID = -1L;
+
+    private static final long ISBN_13_MIN = 1000000000000L;
+    private static final long ISBN_13_MAX = 9999999999999L;
+
+    private Isbn() {
+    }
+
+    /**
+     * @param isbn an ISBN-10 or ISBN-13, optionally with hyphens or spaces
+     * @return the ISBN-13 digits as a long, or {@link #INVALID}
+     */
+    public static long parse(CharSequence isbn) {
+        if(isbn == null) {
+            return INVALID;
+        }
+        long digits = 0;
+        int count = 0;
+        int sum10 = 0;
+        int sum13 = 0;
+        boolean checkX = false;
+        for(int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if(c == '-' || c == ' ') {
+                continue;
+            }
+            int digit;
+            if(c >= '0' && c <= '9' && !checkX) {
+                digit = c - '0';
+            } else if((c == 'X' || c == 'x') && count == 9) {
+                //ISBN-10 check digit standing for 10, must be the last character
+                digit = 10;
+                checkX = true;
+            } else {
+                return INVALID;
+            }
+            if(++count > 13) {
+                return INVALID;
+            }
+            sum10 += digit * (11 - count);
+            sum13 += digit * (count % 2 == 1 ? 1 : 3);
+            digits = digits * 10 + digit % 10;
+        }
+        if(count == 10) {
+            if(sum10 % 11 != 0) {
+                return INVALID;
+            }
+            //drop the ISBN-10 check digit, prefix 978 and add the ISBN-13 check digit
+            return complete(978000000000L + digits / 10);
+        }
+        if(count == 13 && !checkX) {
+            return sum13 % 10 == 0 && digits >= ISBN_13_MIN ? digits : INVALID;
+        }
+        return INVALID;
+    }
+
+    /**
+     * @param isbn an ISBN-10 or ISBN-13
+     * @return the ISBN-13 digits as a long
+     * @throws IllegalArgumentException if the ISBN is not valid
+     */
+    public static long toLong(CharSequence isbn) {
+        long value = parse(isbn);
+        if(value == INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN: " + isbn);
+        }
+        return value;
+    }
+
+    public static boolean isValid(CharSequence isbn) {
+        return parse(isbn) != INVALID;
+    }
+
+    /**
+     * @param isbn a packed ISBN-13
+     * @return the 13 digits without hyphens
+     */
+    public static String toString(long isbn) {
+        if(isbn < ISBN_13_MIN || isbn > ISBN_13_MAX) {
+            throw new IllegalArgumentException("Not a packed ISBN-13: " + isbn);
+        }
+        return Long.toString(isbn);
+    }
+
+    /**
+     * @param isbn an ISBN-10 or ISBN-13
+     * @return the equivalent ISBN-13 without hyphens
+     * @throws IllegalArgumentException if the ISBN is not valid
+     */
+    public static String toIsbn13(CharSequence isbn) {
+        return toString(toLong(isbn));
+    }
+
+    /**
+     * Append the ISBN-13 check digit.
+     * @param first12Digits the first 12 digits, e.g. <code>978813172101L</code>
+     * @return the packed ISBN-13
+     */
+    public static long complete(long first12Digits) {
+        long remaining = first12Digits;
+        int sum = 0;
+        //walk from the 12th digit back, its weight is 3
+        for(int position = 11; position >= 0; position--) {
+            int digit = (int) (remaining % 10);
+            remaining /= 10;
+            sum += digit * (position % 2 == 0 ? 1 : 3);
+        }
+        return first12Digits * 10 + (10 - sum % 10) % 10;
+    }
+}
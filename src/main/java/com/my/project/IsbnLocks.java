@@ -0,0 +1,49 @@
+package com.my.project;
+
+/**
+ * A fixed set of monitors picked by ISBN. Synchronizing on the monitor of an
+ * ISBN serializes the writes to that book, while writes to books of other
+ * monitors run concurrently.
+ */
+public final class IsbnLocks {
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final Object[] locks;
+
+    public IsbnLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes number of monitors, more let more writes run at once
+     */
+    public IsbnLocks(int stripes) {
+        if(stripes <= 0) {
+            throw new IllegalArgumentException("Stripes must be positive: " + stripes);
+        }
+        locks = new Object[stripes];
+        for(int i = 0; i < stripes; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param isbn the ISBN, may be null
+     * @return the monitor to synchronize on, the same one for equal ISBNs
+     */
+    public Object of(String isbn) {
+        return locks[isbn == null ? 0 : (isbn.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    /**
+     * @return the ISBN of a book to write under its lock
+     * @throws IllegalArgumentException if the book has no ISBN
+     */
+    public static String requireIsbn(Book book) {
+        if(book == null || book.getIsbn() == null) {
+            throw new IllegalArgumentException("Book has no ISBN");
+        }
+        return book.getIsbn();
+    }
+}
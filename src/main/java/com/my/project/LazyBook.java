@@ -0,0 +1,209 @@
+package com.my.project;
+
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Book} whose authors and image are loaded on first access by
+ * {@link BookDAL} in lazy mode.
+ * <p>
+ * The books of one result set share a {@link Group}. The first access to the
+ * authors or the image of a book loads them for the whole page of
+ * {@link #PAGE_SIZE} books around it with one query, so iterating a list
+ * costs a query per page rather than per book. They are loaded when accessed,
+ * so they may reflect writes made after the rest of the book was read. A
+ * {@link #copy()} stays lazy and takes them from the book it copies, so the
+ * page is loaded once however many copies are made. A book serializes as a
+ * plain {@link Book}, loading what it has not yet.
+ */
+final class LazyBook extends Book {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of books whose authors or images are loaded together.
+     */
+    static final int PAGE_SIZE = 256;
+
+    /**
+     * Loads the lazy columns of many books at once.
+     */
+    interface Loader {
+
+        /**
+         * @return the authors of each of the books that exist, in order
+         */
+        Map<String, List<String>> loadAuthors(List<String> isbns);
+
+        /**
+         * @return the image of each of the books that exist, possibly null
+         */
+        Map<String, String> loadImages(List<String> isbns);
+    }
+
+    /**
+     * The books of one result set, in order.
+     */
+    static final class Group {
+
+        private final Loader loader;
+        private final List<LazyBook> books = new ArrayList<LazyBook>();
+
+        Group(Loader loader) {
+            this.loader = loader;
+        }
+
+        /**
+         * Add a book read without its authors and image.
+         */
+        LazyBook add(String isbn, String title, String publication, Integer yearOfPublication,
+                Integer numberOfPages) {
+            LazyBook book = new LazyBook(isbn, title, publication, yearOfPublication, numberOfPages, this,
+                books.size());
+            books.add(book);
+            return book;
+        }
+
+        synchronized void loadAuthors(int index) {
+            List<LazyBook> page = page(index);
+            List<String> isbns = new ArrayList<String>(page.size());
+            for(LazyBook book : page) {
+                if(!book.authorsLoaded) {
+                    isbns.add(book.getIsbn());
+                }
+            }
+            if(isbns.isEmpty()) {
+                return;
+            }
+            Map<String, List<String>> authors = loader.loadAuthors(isbns);
+            for(LazyBook book : page) {
+                if(!book.authorsLoaded) {
+                    List<String> loaded = authors.get(book.getIsbn());
+                    book.setAuthors(loaded != null ? loaded : new ArrayList<String>());
+                }
+            }
+        }
+
+        synchronized void loadImage(int index) {
+            List<LazyBook> page = page(index);
+            List<String> isbns = new ArrayList<String>(page.size());
+            for(LazyBook book : page) {
+                if(!book.imageLoaded) {
+                    isbns.add(book.getIsbn());
+                }
+            }
+            if(isbns.isEmpty()) {
+                return;
+            }
+            Map<String, String> images = loader.loadImages(isbns);
+            for(LazyBook book : page) {
+                if(!book.imageLoaded) {
+                    book.setImage(images.get(book.getIsbn()));
+                }
+            }
+        }
+
+        private List<LazyBook> page(int index) {
+            int from = index - index % PAGE_SIZE;
+            return books.subList(from, Math.min(books.size(), from + PAGE_SIZE));
+        }
+    }
+
+    private final transient Group group;
+    private final int index;
+    //the book this is a copy of, null for a book of the group
+    private final transient LazyBook source;
+    private volatile boolean authorsLoaded;
+    private volatile boolean imageLoaded;
+
+    private LazyBook(String isbn, String title, String publication, Integer yearOfPublication,
+            Integer numberOfPages, Group group, int index) {
+        super(isbn, title, null, publication, yearOfPublication, numberOfPages, null);
+        this.group = group;
+        this.index = index;
+        this.source = null;
+    }
+
+    private LazyBook(LazyBook source) {
+        super(source.getIsbn(), source.getTitle(), null, source.getPublication(), source.getYearOfPublication(),
+            source.getNumberOfPages(), null);
+        this.group = null;
+        this.index = -1;
+        this.source = source;
+    }
+
+    /**
+     * Copy the book without loading its authors or image, like {@link Book#Book(Book)} otherwise.
+     * @return a copy taking what is not loaded yet from this book when accessed
+     */
+    LazyBook copy() {
+        LazyBook copy = new LazyBook(this);
+        if(authorsLoaded) {
+            copy.setAuthors(copyOf(super.getAuthors()));
+        }
+        if(imageLoaded) {
+            copy.setImage(super.getImage());
+        }
+        return copy;
+    }
+
+    @Override
+    public List<String> getAuthors() {
+        if(!authorsLoaded) {
+            if(source != null) {
+                setAuthors(copyOf(source.getAuthors()));
+            } else {
+                group.loadAuthors(index);
+            }
+        }
+        return super.getAuthors();
+    }
+
+    @Override
+    public String getImage() {
+        if(!imageLoaded) {
+            if(source != null) {
+                setImage(source.getImage());
+            } else {
+                group.loadImage(index);
+            }
+        }
+        return super.getImage();
+    }
+
+    @Override
+    public void setAuthors(List<String> authors) {
+        super.setAuthors(authors);
+        authorsLoaded = true;
+    }
+
+    @Override
+    public void setImage(String image) {
+        super.setImage(image);
+        imageLoaded = true;
+    }
+
+    /**
+     * @return whether the authors were loaded or set, for tests
+     */
+    boolean isAuthorsLoaded() {
+        return authorsLoaded;
+    }
+
+    /**
+     * @return whether the image was loaded or set, for tests
+     */
+    boolean isImageLoaded() {
+        return imageLoaded;
+    }
+
+    private static List<String> copyOf(List<String> authors) {
+        return authors == null ? null : new ArrayList<String>(authors);
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new Book(this);
+    }
+}
@@ -0,0 +1,51 @@
+package com.my.project;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Deduplicates strings that repeat across many books, such as publisher and
+ * author names. Equal strings interned through the same table share one instance.
+ * <p>
+ * The table holds its strings weakly: a string is dropped once no book
+ * refers to it, so the shared table does not grow for the life of the JVM.
+ */
+public class SymbolTable {
+
+    private static final SymbolTable SHARED = new SymbolTable();
+
+    //the value refers to the key, so it must be weak as well
+    private final Map<String, WeakReference<String>> symbols = new WeakHashMap<String, WeakReference<String>>();
+
+    /**
+     * @return the table used by {@link CompactBook} unless another one is given
+     */
+    public static SymbolTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param value the string to intern
+     * @return the canonical instance equal to the value, or null for null
+     */
+    public synchronized String intern(String value) {
+        if(value == null) {
+            return null;
+        }
+        WeakReference<String> reference = symbols.get(value);
+        String existing = reference == null ? null : reference.get();
+        if(existing != null) {
+            return existing;
+        }
+        symbols.put(value, new WeakReference<String>(value));
+        return value;
+    }
+
+    /**
+     * @return number of distinct strings in the table still referred to
+     */
+    public synchronized int size() {
+        return symbols.size();
+    }
+}
@@ -0,0 +1,64 @@
+package com.my.project;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+import com.my.project.logging.Log;
+
+/**
+ * Access to virtual threads on Java 21 and later, looked up by reflection so the
+ * project still compiles and runs on Java 8.
+ */
+final class VirtualThreads {
+
+    private static final Log logger = Log.getLog(VirtualThreads.class);
+
+    /**
+     * System property that makes {@link AsyncBookDAL#AsyncBookDAL(BookDAL)} use virtual threads.
+     */
+    static final String PROPERTY = "bookdal.virtualThreads";
+
+    private static final Method NEW_EXECUTOR = lookup();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether the running JVM has virtual threads
+     */
+    static boolean isAvailable() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * @return whether virtual threads were asked for with the system property
+     */
+    static boolean isRequested() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    /**
+     * @return an executor that starts a virtual thread per task, or null if the
+     * JVM has no virtual threads
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        if(NEW_EXECUTOR == null) {
+            logger.info("Virtual threads need Java 21, using platform threads");
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch(ReflectiveOperationException e) {
+            logger.warn("Cannot create a virtual thread executor", e);
+            return null;
+        }
+    }
+
+    private static Method lookup() {
+        try {
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch(NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
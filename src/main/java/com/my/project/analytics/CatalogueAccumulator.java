@@ -0,0 +1,178 @@
+package com.my.project.analytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.my.project.Book;
+
+/**
+ * Counts of one worker of a parallel scan. Each fork-join leaf fills its own
+ * accumulator without any synchronization, and finished leaves are merged
+ * pairwise as the tasks join.
+ * <p>
+ * Page buckets and years are dense arrays indexed from the lowest value seen,
+ * so counting a book is an array increment; publishers are counted in a map of
+ * mutable cells, so a known publisher costs one lookup and no boxing. The arrays
+ * span at most {@link #MAX_PAGE_BUCKETS} buckets and {@link #MAX_YEAR_SPAN}
+ * years; outliers beyond are counted in sparse maps, so one bad value cannot
+ * make a worker allocate gigabytes.
+ */
+final class CatalogueAccumulator {
+
+    static final int MAX_PAGE_BUCKETS = 1024;
+    static final int MAX_YEAR_SPAN = 1024;
+
+    private final int pageBucketWidth;
+    private long books;
+    private long pages;
+    private long[] pageBuckets = new long[16];
+    //first year is only known once a book with a year is seen
+    private int firstYear;
+    private long[] years;
+    private final Map<String, long[]> publishers = new HashMap<String, long[]>();
+    //page buckets and years that do not fit the arrays
+    private final Map<Integer, long[]> sparsePageBuckets = new HashMap<Integer, long[]>();
+    private final Map<Integer, long[]> sparseYears = new HashMap<Integer, long[]>();
+
+    CatalogueAccumulator(int pageBucketWidth) {
+        this.pageBucketWidth = pageBucketWidth;
+    }
+
+    void accept(Book book) {
+        books++;
+        Integer numberOfPages = book.getNumberOfPages();
+        if(numberOfPages != null) {
+            int count = Math.max(0, numberOfPages);
+            pages += count;
+            countPages(count / pageBucketWidth, 1);
+        }
+        Integer year = book.getYearOfPublication();
+        if(year != null) {
+            countYear(year, 1);
+        }
+        String publication = book.getPublication();
+        if(publication != null) {
+            add(publishers, publication, 1);
+        }
+    }
+
+    /**
+     * Add the counts of another worker to this one.
+     * @return this accumulator
+     */
+    CatalogueAccumulator merge(CatalogueAccumulator other) {
+        books += other.books;
+        pages += other.pages;
+        if(other.pageBuckets.length > pageBuckets.length) {
+            pageBuckets = Arrays.copyOf(pageBuckets, other.pageBuckets.length);
+        }
+        for(int i = 0; i < other.pageBuckets.length; i++) {
+            pageBuckets[i] += other.pageBuckets[i];
+        }
+        for(Map.Entry<Integer, long[]> bucket : other.sparsePageBuckets.entrySet()) {
+            add(sparsePageBuckets, bucket.getKey(), bucket.getValue()[0]);
+        }
+        for(Map.Entry<Integer, long[]> year : other.sparseYears.entrySet()) {
+            countYear(year.getKey(), year.getValue()[0]);
+        }
+        if(other.years != null) {
+            for(int i = 0; i < other.years.length; i++) {
+                if(other.years[i] != 0) {
+                    countYear(other.firstYear + i, other.years[i]);
+                }
+            }
+        }
+        for(Map.Entry<String, long[]> publisher : other.publishers.entrySet()) {
+            long[] cell = publishers.get(publisher.getKey());
+            if(cell == null) {
+                publishers.put(publisher.getKey(), publisher.getValue());
+            } else {
+                cell[0] += publisher.getValue()[0];
+            }
+        }
+        return this;
+    }
+
+    CatalogueReport report() {
+        SortedMap<Integer, Long> histogram = new TreeMap<Integer, Long>();
+        for(int i = 0; i < pageBuckets.length; i++) {
+            if(pageBuckets[i] != 0) {
+                histogram.put(i * pageBucketWidth, pageBuckets[i]);
+            }
+        }
+        for(Map.Entry<Integer, long[]> bucket : sparsePageBuckets.entrySet()) {
+            histogram.put(bucket.getKey() * pageBucketWidth, bucket.getValue()[0]);
+        }
+        SortedMap<Integer, Long> perYear = new TreeMap<Integer, Long>();
+        if(years != null) {
+            for(int i = 0; i < years.length; i++) {
+                if(years[i] != 0) {
+                    perYear.put(firstYear + i, years[i]);
+                }
+            }
+        }
+        for(Map.Entry<Integer, long[]> year : sparseYears.entrySet()) {
+            Long dense = perYear.get(year.getKey());
+            perYear.put(year.getKey(), year.getValue()[0] + (dense == null ? 0 : dense));
+        }
+        SortedMap<String, Long> perPublisher = new TreeMap<String, Long>();
+        for(Map.Entry<String, long[]> publisher : publishers.entrySet()) {
+            perPublisher.put(publisher.getKey(), publisher.getValue()[0]);
+        }
+        return new CatalogueReport(books, pages, pageBucketWidth, histogram, perYear, perPublisher);
+    }
+
+    private void countPages(int bucket, long count) {
+        if(bucket >= MAX_PAGE_BUCKETS) {
+            add(sparsePageBuckets, bucket, count);
+            return;
+        }
+        if(bucket >= pageBuckets.length) {
+            pageBuckets = Arrays.copyOf(pageBuckets, Math.min(Math.max(bucket + 1, pageBuckets.length * 2),
+                MAX_PAGE_BUCKETS));
+        }
+        pageBuckets[bucket] += count;
+    }
+
+    private void countYear(int year, long count) {
+        if(years == null) {
+            firstYear = year;
+            years = new long[8];
+        }
+        //long arithmetic, years far apart overflow an int
+        long offset = (long) year - firstYear;
+        if(offset < 0) {
+            //grow downwards, keeping some room for older years still to come
+            long shift = Math.min(Math.max(-offset, years.length / 2),
+                Math.min(MAX_YEAR_SPAN - years.length, (long) firstYear - Integer.MIN_VALUE));
+            if(shift < -offset) {
+                add(sparseYears, year, count);
+                return;
+            }
+            long[] grown = new long[years.length + (int) shift];
+            System.arraycopy(years, 0, grown, (int) shift, years.length);
+            years = grown;
+            firstYear -= (int) shift;
+            offset += shift;
+        } else if(offset >= years.length) {
+            if(offset >= MAX_YEAR_SPAN) {
+                add(sparseYears, year, count);
+                return;
+            }
+            years = Arrays.copyOf(years, (int) Math.min(Math.max(offset + 1, years.length * 2L), MAX_YEAR_SPAN));
+        }
+        years[(int) offset] += count;
+    }
+
+    private static <K> void add(Map<K, long[]> cells, K key, long count) {
+        long[] cell = cells.get(key);
+        if(cell == null) {
+            cell = new long[1];
+            cells.put(key, cell);
+        }
+        cell[0] += count;
+    }
+}
@@ -0,0 +1,133 @@
+package com.my.project.analytics;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+
+/**
+ * Parallel aggregations over the whole catalogue: page count histogram, books
+ * per year and books per publisher, in one pass.
+ * <p>
+ * The scan is a parallel stream on a fork-join pool. Its spliterator splits the
+ * books into chunks, each leaf task counts its chunk into its own
+ * {@link CatalogueAccumulator}, and the accumulators are merged as the tasks
+ * join. No map or counter is shared between threads while books are counted, so
+ * throughput grows with the number of workers until memory bandwidth runs out.
+ * <p>
+ * A list, as returned by {@link BookRepository#getAllBooks()}, splits into even
+ * halves and scales best. A stream from {@link com.my.project.BookDAL#streamAllBooks()}
+ * is read by one thread at a time, which hands out batches of books to the
+ * workers; counting runs in parallel but reading the cursor does not.
+ */
+public class CatalogueAnalytics {
+
+    public static final int DEFAULT_PAGE_BUCKET_WIDTH = 100;
+
+    private final ForkJoinPool pool;
+    private final int pageBucketWidth;
+
+    /**
+     * Use the common fork-join pool and buckets of {@value #DEFAULT_PAGE_BUCKET_WIDTH} pages.
+     */
+    public CatalogueAnalytics() {
+        this(ForkJoinPool.commonPool(), DEFAULT_PAGE_BUCKET_WIDTH);
+    }
+
+    /**
+     * @param pool the pool running the scan, e.g. one sized to leave cores for request handling
+     * @param pageBucketWidth number of page counts per histogram bucket
+     */
+    public CatalogueAnalytics(ForkJoinPool pool, int pageBucketWidth) {
+        if(pageBucketWidth <= 0) {
+            throw new IllegalArgumentException("Page bucket width must be positive: " + pageBucketWidth);
+        }
+        this.pool = pool;
+        this.pageBucketWidth = pageBucketWidth;
+    }
+
+    /**
+     * @param repository the repository whose books are loaded and scanned
+     * @return the aggregates over all its books
+     */
+    public CatalogueReport analyze(BookRepository repository) {
+        return analyze(repository.getAllBooks());
+    }
+
+    /**
+     * @param books the books to scan, not changed while the scan runs
+     * @return the aggregates over the books
+     */
+    public CatalogueReport analyze(List<Book> books) {
+        return analyze(books.stream());
+    }
+
+    /**
+     * Scan a stream in parallel. The caller still owns the stream and closes it.
+     * @param books the books to scan
+     * @return the aggregates over the books
+     */
+    public CatalogueReport analyze(final Stream<Book> books) {
+        final Stream<Book> parallel = books.parallel().unordered();
+        //a stream runs on the pool of the thread that starts the terminal operation
+        if(pool == ForkJoinPool.commonPool()) {
+            return parallel.collect(collector());
+        }
+        try {
+            return pool.submit(new Callable<CatalogueReport>() {
+                public CatalogueReport call() {
+                    return parallel.collect(collector());
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning the catalogue", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Failed to scan the catalogue", cause);
+        }
+    }
+
+    /**
+     * @return a collector computing the report, for use in other stream pipelines
+     */
+    public Collector<Book, ?, CatalogueReport> collector() {
+        return Collector.of(
+            new Supplier<CatalogueAccumulator>() {
+                public CatalogueAccumulator get() {
+                    return new CatalogueAccumulator(pageBucketWidth);
+                }
+            },
+            new BiConsumer<CatalogueAccumulator, Book>() {
+                public void accept(CatalogueAccumulator accumulator, Book book) {
+                    accumulator.accept(book);
+                }
+            },
+            new BinaryOperator<CatalogueAccumulator>() {
+                public CatalogueAccumulator apply(CatalogueAccumulator left, CatalogueAccumulator right) {
+                    return left.merge(right);
+                }
+            },
+            new Function<CatalogueAccumulator, CatalogueReport>() {
+                public CatalogueReport apply(CatalogueAccumulator accumulator) {
+                    return accumulator.report();
+                }
+            },
+            Collector.Characteristics.UNORDERED);
+    }
+}
@@ -0,0 +1,79 @@
+package com.my.project.analytics;
+
+import java.util.Collections;
+import java.util.SortedMap;
+
+/**
+ * Aggregates over a catalogue, computed by {@link CatalogueAnalytics}.
+ * <p>
+ * Books without a page count, year or publisher are counted in the total but
+ * not in the corresponding aggregate.
+ */
+public final class CatalogueReport {
+
+    private final long bookCount;
+    private final long pageCount;
+    private final int pageBucketWidth;
+    private final SortedMap<Integer, Long> pageHistogram;
+    private final SortedMap<Integer, Long> booksPerYear;
+    private final SortedMap<String, Long> booksPerPublisher;
+
+    CatalogueReport(long bookCount, long pageCount, int pageBucketWidth, SortedMap<Integer, Long> pageHistogram,
+            SortedMap<Integer, Long> booksPerYear, SortedMap<String, Long> booksPerPublisher) {
+        this.bookCount = bookCount;
+        this.pageCount = pageCount;
+        this.pageBucketWidth = pageBucketWidth;
+        this.pageHistogram = Collections.unmodifiableSortedMap(pageHistogram);
+        this.booksPerYear = Collections.unmodifiableSortedMap(booksPerYear);
+        this.booksPerPublisher = Collections.unmodifiableSortedMap(booksPerPublisher);
+    }
+
+    /**
+     * @return number of books scanned
+     */
+    public long getBookCount() {
+        return bookCount;
+    }
+
+    /**
+     * @return sum of the page counts of all books
+     */
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return number of page counts per histogram bucket
+     */
+    public int getPageBucketWidth() {
+        return pageBucketWidth;
+    }
+
+    /**
+     * @return number of books per page count bucket, keyed by the lowest page
+     * count of the bucket; empty buckets are left out
+     */
+    public SortedMap<Integer, Long> getPageHistogram() {
+        return pageHistogram;
+    }
+
+    /**
+     * @return number of books per year of publication
+     */
+    public SortedMap<Integer, Long> getBooksPerYear() {
+        return booksPerYear;
+    }
+
+    /**
+     * @return number of books per publisher, as the publisher is spelled in the book
+     */
+    public SortedMap<String, Long> getBooksPerPublisher() {
+        return booksPerPublisher;
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogueReport[bookCount=" + bookCount + ", pageCount=" + pageCount + ", years="
+            + booksPerYear.size() + ", publishers=" + booksPerPublisher.size() + "]";
+    }
+}
@@ -0,0 +1,71 @@
+package com.my.project.cache;
+
+/**
+ * Point-in-time counters of a {@link ReadThroughCache}.
+ */
+public class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long loads;
+    private final long loadFailures;
+    private final long totalLoadNanos;
+
+    public CacheStats(long hits, long misses, long evictions, long loads, long loadFailures, long totalLoadNanos) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.loads = loads;
+        this.loadFailures = loadFailures;
+        this.totalLoadNanos = totalLoadNanos;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return lookups that found no usable value, including those that waited for another thread's load
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return entries removed to stay within the maximum size
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return calls to the loader, which is at most one per key at a time
+     */
+    public long getLoads() {
+        return loads;
+    }
+
+    public long getLoadFailures() {
+        return loadFailures;
+    }
+
+    public long getTotalLoadNanos() {
+        return totalLoadNanos;
+    }
+
+    public double getAverageLoadNanos() {
+        return loads == 0 ? 0 : (double) totalLoadNanos / loads;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 1 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", loads=" + loads
+            + ", loadFailures=" + loadFailures + ", averageLoadNanos=" + (long) getAverageLoadNanos() + "]";
+    }
+}
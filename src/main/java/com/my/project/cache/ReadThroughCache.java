@@ -0,0 +1,217 @@
+package com.my.project.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, concurrent cache that loads missing values through a loader function.
+ * <p>
+ * Concurrent misses for the same key share a single call to the loader; the
+ * other callers wait for its result. Entries expire a fixed time after they were
+ * loaded, and once the cache holds more than its maximum size the oldest loaded
+ * entries are evicted first. Null values are cached as well, so a lookup of an
+ * unknown key is not repeated until it expires or is invalidated.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class ReadThroughCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<K, Entry<K, V>>();
+    private final ConcurrentLinkedQueue<Entry<K, V>> loadOrder = new ConcurrentLinkedQueue<Entry<K, V>>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Function<? super K, ? extends V> loader;
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+
+    /**
+     * @param loader loads the value of a missing key
+     * @param maximumSize maximum number of entries
+     * @param timeToLive how long an entry is served after it was loaded
+     * @param unit unit of the time to live
+     */
+    public ReadThroughCache(Function<? super K, ? extends V> loader, int maximumSize, long timeToLive, TimeUnit unit) {
+        this(loader, maximumSize, timeToLive, unit, new LongSupplier() {
+            public long getAsLong() {
+                return System.nanoTime();
+            }
+        });
+    }
+
+    ReadThroughCache(Function<? super K, ? extends V> loader, int maximumSize, long timeToLive, TimeUnit unit,
+            LongSupplier clock) {
+        if(maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.loader = loader;
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.clock = clock;
+    }
+
+    /**
+     * Get the cached value, loading it if it is missing or expired.
+     * @param key the key
+     * @return the value, which may be null if the loader returned null
+     */
+    public V get(final K key) {
+        final long now = clock.getAsLong();
+        Entry<K, V> entry = entries.get(key);
+        if(entry != null && entry.isFresh(now)) {
+            hits.increment();
+            return entry.value.getNow(null);
+        }
+        misses.increment();
+        final Entry<K, V> created = new Entry<K, V>(key, timeToLiveNanos);
+        entry = entries.compute(key, new BiFunction<K, Entry<K, V>, Entry<K, V>>() {
+            public Entry<K, V> apply(K k, Entry<K, V> current) {
+                if(current == null || current.isExpired(now)) {
+                    return created;
+                }
+                return current;
+            }
+        });
+        if(entry != created) {
+            return entry.await();
+        }
+        return load(created);
+    }
+
+    /**
+     * @param key the key
+     * @return the cached value, or null if it is not cached, still loading or expired
+     */
+    public V getIfPresent(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if(entry != null && entry.isFresh(clock.getAsLong())) {
+            hits.increment();
+            return entry.value.getNow(null);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Drop the entry for the key. A load already in progress still completes for
+     * its callers but is not cached.
+     * @param key the key
+     */
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of cached and loading entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), loads.sum(), loadFailures.sum(),
+            totalLoadNanos.sum());
+    }
+
+    private V load(Entry<K, V> entry) {
+        loads.increment();
+        long start = clock.getAsLong();
+        V value;
+        try {
+            value = loader.apply(entry.key);
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            entries.remove(entry.key, entry);
+            entry.value.completeExceptionally(e);
+            throw e;
+        } catch (Error e) {
+            loadFailures.increment();
+            entries.remove(entry.key, entry);
+            entry.value.completeExceptionally(e);
+            throw e;
+        }
+        long end = clock.getAsLong();
+        totalLoadNanos.add(end - start);
+        entry.loadedAt = end;
+        entry.value.complete(value);
+        loadOrder.offer(entry);
+        if(queued.incrementAndGet() > maximumSize) {
+            evict();
+        }
+        return value;
+    }
+
+    /**
+     * Remove the oldest loaded entries until the load queue fits the maximum size.
+     * Queue entries whose key was invalidated or reloaded are skipped.
+     */
+    private void evict() {
+        while(queued.get() > maximumSize) {
+            Entry<K, V> oldest = loadOrder.poll();
+            if(oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if(entries.remove(oldest.key, oldest)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class Entry<K, V> {
+        final K key;
+        final CompletableFuture<V> value = new CompletableFuture<V>();
+        final long timeToLiveNanos;
+        volatile long loadedAt;
+
+        Entry(K key, long timeToLiveNanos) {
+            this.key = key;
+            this.timeToLiveNanos = timeToLiveNanos;
+        }
+
+        boolean isFresh(long now) {
+            return value.isDone() && !value.isCompletedExceptionally() && now - loadedAt < timeToLiveNanos;
+        }
+
+        boolean isExpired(long now) {
+            return value.isDone() && (value.isCompletedExceptionally() || now - loadedAt >= timeToLiveNanos);
+        }
+
+        V await() {
+            try {
+                return value.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + key + " to load", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if(cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if(cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("Failed to load " + key, cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.my.project.cdc;
+
+import java.util.List;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.IsbnLocks;
+
+/**
+ * Decorator publishing every change made through {@link #addBook(Book)},
+ * {@link #updateBook(Book)} and {@link #setBookTitle(Book, String)} to a
+ * {@link ChangeRingBuffer}, with snapshots of the book before and after.
+ * <p>
+ * Wrap a {@link com.my.project.BookDAL} to let caches and indexes follow the
+ * database incrementally instead of re-reading {@link #getAllBooks()}. The
+ * before snapshot costs one {@link BookRepository#getBook(String)} per update.
+ * Bulk writes of the DAL bypass this decorator and publish nothing.
+ * <p>
+ * Writes are serialized per ISBN by {@link IsbnLocks}, so the events of a book
+ * are in the order its writes were applied and each before snapshot is the
+ * previous after snapshot. A write that fails publishes nothing.
+ */
+public class CdcBookRepository implements BookRepository {
+
+
+    private final BookRepository delegate;
+    private final ChangeRingBuffer changes;
+    private final IsbnLocks locks = new IsbnLocks();
+
+    /**
+     * @param delegate the repository holding the books
+     * @param changes the buffer to publish the changes to
+     */
+    public CdcBookRepository(BookRepository delegate, ChangeRingBuffer changes) {
+        this.delegate = delegate;
+        this.changes = changes;
+    }
+
+    /**
+     * @return the buffer the changes are published to, to subscribe to them
+     */
+    public ChangeRingBuffer getChanges() {
+        return changes;
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        return delegate.getAllBooks();
+    }
+
+    @Override
+    public Book getBook(String isbn) {
+        return delegate.getBook(isbn);
+    }
+
+    @Override
+    public String getBookTitleByIsbn(String isbn) {
+        return delegate.getBookTitleByIsbn(isbn);
+    }
+
+    @Override
+    public String addBook(Book book) {
+        synchronized(locks.of(book.getIsbn())) {
+            String isbn = delegate.addBook(book);
+            changes.publish(ChangeEvent.Type.ADD, isbn, null, new Book(book));
+            return isbn;
+        }
+    }
+
+    @Override
+    public String updateBook(Book book) {
+        synchronized(locks.of(book.getIsbn())) {
+            Book before = delegate.getBook(book.getIsbn());
+            String isbn = delegate.updateBook(book);
+            if(isbn != null) {
+                changes.publish(ChangeEvent.Type.UPDATE, isbn, before, new Book(book));
+            }
+            return isbn;
+        }
+    }
+
+    @Override
+    public void setBookTitle(Book book, String title) {
+        if(book == null || book.getIsbn() == null) {
+            delegate.setBookTitle(book, title);
+            return;
+        }
+        synchronized(locks.of(book.getIsbn())) {
+            Book before = delegate.getBook(book.getIsbn());
+            delegate.setBookTitle(book, title);
+            if(before != null) {
+                Book after = new Book(before);
+                after.setTitle(title);
+                changes.publish(ChangeEvent.Type.SET_TITLE, book.getIsbn(), before, after);
+            }
+        }
+    }
+}
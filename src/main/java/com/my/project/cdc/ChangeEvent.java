@@ -0,0 +1,76 @@
+package com.my.project.cdc;
+
+import com.my.project.Book;
+
+/**
+ * One change to a book, as published by {@link CdcBookRepository}.
+ * <p>
+ * Sequence numbers start at 0 and have no gaps, so a subscriber that sees a
+ * jump has missed events and should re-read what it derives from them. The
+ * snapshots are private copies shared by all subscribers; do not change them.
+ */
+public final class ChangeEvent {
+
+    /**
+     * The repository write that made the change.
+     */
+    public enum Type {
+        ADD,
+        UPDATE,
+        SET_TITLE
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final String isbn;
+    private final Book before;
+    private final Book after;
+    private final long timestamp;
+
+    ChangeEvent(long sequence, Type type, String isbn, Book before, Book after, long timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.isbn = isbn;
+        this.before = before;
+        this.after = after;
+        this.timestamp = timestamp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    /**
+     * @return the book before the change, null for an added book
+     */
+    public Book getBefore() {
+        return before;
+    }
+
+    /**
+     * @return the book after the change
+     */
+    public Book getAfter() {
+        return after;
+    }
+
+    /**
+     * @return when the change was published, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent[sequence=" + sequence + ", type=" + type + ", isbn=" + isbn + "]";
+    }
+}
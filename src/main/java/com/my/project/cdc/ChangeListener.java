@@ -0,0 +1,17 @@
+package com.my.project.cdc;
+
+import java.util.List;
+
+/**
+ * Receives the changes published to a {@link ChangeRingBuffer}.
+ */
+public interface ChangeListener {
+
+    /**
+     * Called on the subscription's own thread with the events published since
+     * the last call, in sequence order. An exception is logged and the events
+     * are not delivered again.
+     * @param events one or more events, at most the batch size of the subscription
+     */
+    void onEvents(List<ChangeEvent> events);
+}
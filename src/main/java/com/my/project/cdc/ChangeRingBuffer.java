@@ -0,0 +1,192 @@
+package com.my.project.cdc;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.my.project.Book;
+
+/**
+ * Lock-free multi-producer ring buffer of {@link ChangeEvent}s with any number
+ * of subscribers, each reading at its own pace on its own thread.
+ * <p>
+ * A producer claims the next sequence number with one atomic increment and
+ * stores its event in slot <code>sequence % capacity</code>, unless a producer
+ * a lap ahead already stored a newer event there. The event carries
+ * its sequence number, so a subscriber knows whether a slot holds the event it
+ * waits for, one not yet published, or a newer one that overwrote it.
+ * Subscribers deliver events strictly in sequence order, in batches of what has
+ * been published since their last delivery.
+ * <p>
+ * When a subscriber falls a whole buffer behind, its {@link Overflow} policy
+ * applies: {@link Overflow#BLOCK} makes producers wait until it catches up,
+ * {@link Overflow#DROP} lets producers overwrite its events, and it skips ahead
+ * to the oldest event still in the buffer. Producers never wait for dropping
+ * subscribers.
+ * <p>
+ * An idle subscriber spins briefly and then parks until a producer that
+ * publishes an event wakes it.
+ */
+public class ChangeRingBuffer implements AutoCloseable {
+
+    /**
+     * What happens when a subscriber is a whole buffer behind the producers.
+     */
+    public enum Overflow {
+        /** Producers wait for the subscriber. */
+        BLOCK,
+        /** The subscriber misses the overwritten events. */
+        DROP
+    }
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final AtomicReferenceArray<ChangeEvent> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+    //at most the lowest sequence a blocking subscriber still needs, so producers rarely scan them
+    private volatile long gate;
+    private volatile boolean closed;
+
+    public ChangeRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of events kept for subscribers, a power of two
+     */
+    public ChangeRingBuffer(int capacity) {
+        if(capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<ChangeEvent>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Publish a change, waiting while a blocking subscriber is a whole buffer behind.
+     * @param before the book before the change, or null
+     * @param after the book after the change
+     * @return the sequence number of the event
+     * @throws IllegalStateException if the buffer is closed
+     */
+    public long publish(ChangeEvent.Type type, String isbn, Book before, Book after) {
+        if(closed) {
+            throw new IllegalStateException("Change buffer is closed");
+        }
+        long sequence = next.getAndIncrement();
+        awaitCapacity(sequence);
+        ChangeEvent event = new ChangeEvent(sequence, type, isbn, before, after, System.currentTimeMillis());
+        int index = index(sequence);
+        while(true) {
+            ChangeEvent current = slots.get(index);
+            if(current != null && current.getSequence() > sequence) {
+                //stalled for a whole lap without blocking subscribers, the event is already overwritten
+                return sequence;
+            }
+            if(slots.compareAndSet(index, current, event)) {
+                //stored before looking whether a subscriber sleeps, which it checks the other way round
+                for(Subscription subscription : subscriptions) {
+                    subscription.wake();
+                }
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * Deliver the events published from now on to a listener.
+     * @param listener called with batches of events on a thread of its own
+     * @param overflow what happens when the listener is a whole buffer behind
+     * @param batchSize maximum number of events per call of the listener
+     * @return the subscription, close it to stop the deliveries
+     */
+    public Subscription subscribe(ChangeListener listener, Overflow overflow, int batchSize) {
+        if(batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        if(closed) {
+            throw new IllegalStateException("Change buffer is closed");
+        }
+        Subscription subscription = new Subscription(this, listener, overflow, batchSize);
+        //registered before its start is read: producers scanning meanwhile wait for the start
+        subscriptions.add(subscription);
+        subscription.start(next.get());
+        return subscription;
+    }
+
+    /**
+     * @return the sequence number the next published event gets
+     */
+    public long getNextSequence() {
+        return next.get();
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Stop all subscriptions and refuse further events.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for(Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    ChangeEvent slot(long sequence) {
+        return slots.get(index(sequence));
+    }
+
+    void remove(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    /**
+     * Wait until every blocking subscriber has taken the event this sequence overwrites.
+     */
+    private void awaitCapacity(long sequence) {
+        long wrapped = sequence - slots.length();
+        if(wrapped < gate) {
+            return;
+        }
+        for(int attempt = 0; ; attempt++) {
+            //a subscriber added after this scan starts after this sequence
+            long lowest = sequence + 1;
+            for(Subscription subscription : subscriptions) {
+                if(subscription.getOverflow() == Overflow.BLOCK) {
+                    lowest = Math.min(lowest, subscription.getSequence());
+                }
+            }
+            gate = lowest;
+            if(wrapped < lowest) {
+                return;
+            }
+            if(closed) {
+                throw new IllegalStateException("Change buffer is closed");
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Spin briefly, then sleep in short naps, while waiting for another thread.
+     */
+    static void backOff(int attempt) {
+        if(attempt < 100) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(100000);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.my.project.cdc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.my.project.logging.Log;
+
+/**
+ * A listener reading a {@link ChangeRingBuffer} on its own thread.
+ */
+public final class Subscription implements AutoCloseable {
+
+    private static final Log logger = Log.getLog(Subscription.class);
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    //idle polls before the subscriber parks until a producer wakes it
+    private static final int SPINS = 100;
+    //how long an idle subscriber sleeps before it looks for events without being woken
+    private static final long IDLE_NANOS = 100000000L;
+
+    private final ChangeRingBuffer buffer;
+    private final ChangeListener listener;
+    private final ChangeRingBuffer.Overflow overflow;
+    private final int batchSize;
+    //next sequence to deliver, producers read it to know what a blocking subscriber still needs
+    private final AtomicLong sequence;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean sleeping;
+
+    Subscription(ChangeRingBuffer buffer, ChangeListener listener, ChangeRingBuffer.Overflow overflow,
+            int batchSize) {
+        this.buffer = buffer;
+        this.listener = listener;
+        this.overflow = overflow;
+        this.batchSize = batchSize;
+        //below every sequence until started, so blocking producers hold back
+        this.sequence = new AtomicLong(Long.MIN_VALUE);
+        this.thread = new Thread(new Runnable() {
+            public void run() {
+                deliver();
+            }
+        }, "cdc-subscriber-" + threadNumber.incrementAndGet());
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * @param start the sequence number of the first event to deliver
+     */
+    void start(long start) {
+        sequence.set(start);
+        thread.start();
+    }
+
+    public ChangeRingBuffer.Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * @return the sequence number of the next event to deliver
+     */
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * @return number of events skipped because they were overwritten before delivery
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stop delivering and wait for the listener to return. Events not delivered yet are lost.
+     */
+    @Override
+    public void close() {
+        running = false;
+        buffer.remove(this);
+        LockSupport.unpark(thread);
+        if(Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Unpark the subscriber thread if it sleeps, called by producers after storing an event.
+     */
+    void wake() {
+        if(sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void deliver() {
+        List<ChangeEvent> batch = new ArrayList<ChangeEvent>(Math.min(batchSize, 1024));
+        int idle = 0;
+        while(running) {
+            long next = sequence.get();
+            while(batch.size() < batchSize) {
+                ChangeEvent event = buffer.slot(next);
+                if(event == null || event.getSequence() < next) {
+                    //not published yet
+                    break;
+                }
+                if(event.getSequence() > next) {
+                    //overwritten, skip to the oldest event this slot's successors may still hold
+                    long resume = event.getSequence() - buffer.getCapacity() + 1;
+                    dropped.addAndGet(resume - next);
+                    next = resume;
+                    continue;
+                }
+                batch.add(event);
+                next++;
+            }
+            if(batch.isEmpty()) {
+                sequence.set(next);
+                if(idle++ < SPINS) {
+                    Thread.yield();
+                    continue;
+                }
+                sleeping = true;
+                //a producer stores its event before it looks whether the subscriber sleeps
+                ChangeEvent event = buffer.slot(next);
+                if((event == null || event.getSequence() < next) && running) {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                }
+                sleeping = false;
+                continue;
+            }
+            idle = 0;
+            try {
+                listener.onEvents(batch);
+            } catch (RuntimeException e) {
+                logger.error("Change listener failed on events {} to {}", batch.get(0).getSequence(),
+                    batch.get(batch.size() - 1).getSequence(), e);
+            }
+            //only now may blocking producers reuse the slots
+            sequence.set(next);
+            batch = new ArrayList<ChangeEvent>(Math.min(batchSize, 1024));
+        }
+    }
+}
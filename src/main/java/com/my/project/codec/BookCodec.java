@@ -0,0 +1,362 @@
+package com.my.project.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.my.project.Book;
+
+/**
+ * Binary encoding of a {@link Book} that reads and writes a {@link ByteBuffer}
+ * directly, heap or direct, without reflection or intermediate streams.
+ * <p>
+ * Layout of version 1:
+ * <pre>
+ * byte version
+ * byte presence   one bit per field, clear when the field is null
+ * int  year       if present
+ * int  pages      if present
+ * isbn, title, publication, image   each if present: int byte length, UTF-8 bytes
+ * authors         if present: int count, then each author as a string (length -1 for null)
+ * </pre>
+ * Fixed-size fields come first so single fields can be read in place with the
+ * <code>read...</code> methods, which skip over the strings before the wanted
+ * one by their lengths and decode nothing else. Decoders read every version up
+ * to their own and reject newer ones, whose added fields they cannot skip. A
+ * later version may only add fields behind the existing ones, so its decoder
+ * keeps reading older encodings.
+ */
+public final class BookCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int ISBN = 1;
+    private static final int TITLE = 1 << 1;
+    private static final int AUTHORS = 1 << 2;
+    private static final int PUBLICATION = 1 << 3;
+    private static final int YEAR = 1 << 4;
+    private static final int PAGES = 1 << 5;
+    private static final int IMAGE = 1 << 6;
+
+    //order of the fields after the presence byte
+    private static final int[] LAYOUT = {YEAR, PAGES, ISBN, TITLE, PUBLICATION, IMAGE, AUTHORS};
+
+    private static final int NULL_LENGTH = -1;
+
+    private BookCodec() {
+    }
+
+    /**
+     * @param book the book to measure
+     * @return the number of bytes {@link #encode(Book, ByteBuffer)} writes
+     */
+    public static int sizeOf(Book book) {
+        int size = 2;
+        if(book.getYearOfPublication() != null) {
+            size += 4;
+        }
+        if(book.getNumberOfPages() != null) {
+            size += 4;
+        }
+        size += stringSize(book.getIsbn()) + stringSize(book.getTitle())
+            + stringSize(book.getPublication()) + stringSize(book.getImage());
+        List<String> authors = book.getAuthors();
+        if(authors != null) {
+            size += 4;
+            for(String author : authors) {
+                size += author == null ? 4 : stringSize(author);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Write the book at the position of the buffer and advance it.
+     * @throws java.nio.BufferOverflowException if fewer than {@link #sizeOf(Book)} bytes remain
+     */
+    public static void encode(Book book, ByteBuffer out) {
+        out.put(VERSION);
+        out.put((byte) presence(book));
+        if(book.getYearOfPublication() != null) {
+            out.putInt(book.getYearOfPublication());
+        }
+        if(book.getNumberOfPages() != null) {
+            out.putInt(book.getNumberOfPages());
+        }
+        putPresent(book.getIsbn(), out);
+        putPresent(book.getTitle(), out);
+        putPresent(book.getPublication(), out);
+        putPresent(book.getImage(), out);
+        List<String> authors = book.getAuthors();
+        if(authors != null) {
+            out.putInt(authors.size());
+            for(String author : authors) {
+                putString(author, out);
+            }
+        }
+    }
+
+    /**
+     * Read a book at the position of the buffer and advance past it.
+     * @throws IllegalArgumentException if the book was written by a newer or an invalid version
+     */
+    public static Book decode(ByteBuffer in) {
+        checkVersion(in.get());
+        int presence = in.get();
+        Integer year = (presence & YEAR) != 0 ? in.getInt() : null;
+        Integer pages = (presence & PAGES) != 0 ? in.getInt() : null;
+        String isbn = (presence & ISBN) != 0 ? getString(in) : null;
+        String title = (presence & TITLE) != 0 ? getString(in) : null;
+        String publication = (presence & PUBLICATION) != 0 ? getString(in) : null;
+        String image = (presence & IMAGE) != 0 ? getString(in) : null;
+        List<String> authors = null;
+        if((presence & AUTHORS) != 0) {
+            int count = in.getInt();
+            authors = new ArrayList<String>(count);
+            for(int i = 0; i < count; i++) {
+                authors.add(getString(in));
+            }
+        }
+        return new Book(isbn, title, authors, publication, year, pages, image);
+    }
+
+    public static byte[] toBytes(Book book) {
+        byte[] bytes = new byte[sizeOf(book)];
+        encode(book, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    public static Book fromBytes(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * @param in buffer holding an encoded book, its position is not changed
+     * @param offset absolute offset of the encoded book
+     * @return the ISBN, decoding no other field
+     */
+    public static String readIsbn(ByteBuffer in, int offset) {
+        return readString(in, offset, ISBN);
+    }
+
+    /**
+     * @see #readIsbn(ByteBuffer, int)
+     */
+    public static String readTitle(ByteBuffer in, int offset) {
+        return readString(in, offset, TITLE);
+    }
+
+    /**
+     * @see #readIsbn(ByteBuffer, int)
+     */
+    public static String readPublication(ByteBuffer in, int offset) {
+        return readString(in, offset, PUBLICATION);
+    }
+
+    /**
+     * @see #readIsbn(ByteBuffer, int)
+     */
+    public static String readImage(ByteBuffer in, int offset) {
+        return readString(in, offset, IMAGE);
+    }
+
+    /**
+     * @see #readIsbn(ByteBuffer, int)
+     */
+    public static Integer readYearOfPublication(ByteBuffer in, int offset) {
+        int position = seek(in, offset, YEAR);
+        return position < 0 ? null : in.getInt(position);
+    }
+
+    /**
+     * @see #readIsbn(ByteBuffer, int)
+     */
+    public static Integer readNumberOfPages(ByteBuffer in, int offset) {
+        int position = seek(in, offset, PAGES);
+        return position < 0 ? null : in.getInt(position);
+    }
+
+    /**
+     * @see #readIsbn(ByteBuffer, int)
+     */
+    public static List<String> readAuthors(ByteBuffer in, int offset) {
+        int position = seek(in, offset, AUTHORS);
+        if(position < 0) {
+            return null;
+        }
+        int count = in.getInt(position);
+        position += 4;
+        List<String> authors = new ArrayList<String>(count);
+        for(int i = 0; i < count; i++) {
+            authors.add(stringAt(in, position));
+            position += 4 + Math.max(0, in.getInt(position));
+        }
+        return authors;
+    }
+
+    /**
+     * @return the absolute position of the field, or -1 if it is null
+     */
+    private static int seek(ByteBuffer in, int offset, int field) {
+        checkVersion(in.get(offset));
+        int presence = in.get(offset + 1);
+        if((presence & field) == 0) {
+            return -1;
+        }
+        int position = offset + 2;
+        for(int f : LAYOUT) {
+            if(f == field) {
+                break;
+            }
+            if((presence & f) != 0) {
+                position += f == YEAR || f == PAGES ? 4 : 4 + in.getInt(position);
+            }
+        }
+        return position;
+    }
+
+    private static String readString(ByteBuffer in, int offset, int field) {
+        int position = seek(in, offset, field);
+        return position < 0 ? null : stringAt(in, position);
+    }
+
+    private static int presence(Book book) {
+        int presence = 0;
+        if(book.getIsbn() != null) {
+            presence |= ISBN;
+        }
+        if(book.getTitle() != null) {
+            presence |= TITLE;
+        }
+        if(book.getAuthors() != null) {
+            presence |= AUTHORS;
+        }
+        if(book.getPublication() != null) {
+            presence |= PUBLICATION;
+        }
+        if(book.getYearOfPublication() != null) {
+            presence |= YEAR;
+        }
+        if(book.getNumberOfPages() != null) {
+            presence |= PAGES;
+        }
+        if(book.getImage() != null) {
+            presence |= IMAGE;
+        }
+        return presence;
+    }
+
+    private static void checkVersion(byte version) {
+        if(version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported book encoding version " + version);
+        }
+    }
+
+    private static int stringSize(String value) {
+        return value == null ? 0 : 4 + utf8Length(value);
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                length += 1;
+            } else if(c < 0x800) {
+                length += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if(Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void putPresent(String value, ByteBuffer out) {
+        if(value != null) {
+            putString(value, out);
+        }
+    }
+
+    /**
+     * Encode without an intermediate byte array. Unpaired surrogates become '?',
+     * as with {@link String#getBytes(java.nio.charset.Charset)}.
+     */
+    private static void putString(String value, ByteBuffer out) {
+        if(value == null) {
+            out.putInt(NULL_LENGTH);
+            return;
+        }
+        int length = utf8Length(value);
+        out.putInt(length);
+        if(out.hasArray() && length == value.length()) {
+            //ASCII, apart from unpaired surrogates, into a heap buffer: write the backing array directly
+            byte[] array = out.array();
+            int start = out.arrayOffset() + out.position();
+            if(out.remaining() < length) {
+                throw new BufferOverflowException();
+            }
+            for(int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                array[start + i] = c < 0x80 ? (byte) c : (byte) '?';
+            }
+            out.position(out.position() + length);
+            return;
+        }
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                out.put((byte) c);
+            } else if(c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if(Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | (codePoint >> 18)));
+                out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if(Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int position = in.position();
+        String value = stringAt(in, position);
+        in.position(position + 4 + Math.max(0, in.getInt(position)));
+        return value;
+    }
+
+    /**
+     * Decode the string at an absolute position. Heap buffers are decoded from
+     * their backing array without copying.
+     */
+    private static String stringAt(ByteBuffer in, int position) {
+        int length = in.getInt(position);
+        if(length == NULL_LENGTH) {
+            return null;
+        }
+        if(in.hasArray()) {
+            return new String(in.array(), in.arrayOffset() + position + 4, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer source = in.duplicate();
+        source.position(position + 4);
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
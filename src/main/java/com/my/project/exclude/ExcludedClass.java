@@ -1,18 +1,53 @@
 package com.my.project.exclude;
 
 import com.my.project.Book;
+import com.my.project.logging.Log;
+import com.my.project.writebehind.WriteBehindQueue;
 
-public class ExcludedClass {
+/**
+ * Write side of the books: the calls return once queued and are written
+ * behind by the {@link WriteBehindQueue}.
+ */
+public class ExcludedClass implements AutoCloseable {
+
+    private static final Log logger = Log.getLog(ExcludedClass.class);
+
+    private final WriteBehindQueue queue;
+
+    /**
+     * @param queue where the writes are queued, closed with this
+     */
+    public ExcludedClass(WriteBehindQueue queue) {
+        this.queue = queue;
+    }
 
     public void save(Book book) {
-        System.out.println("Save Book!");
+        queue.save(book);
+        logger.debug("Save book {}", book.getIsbn());
     }
 
     public void delete(String isbn) {
-        System.out.println("Delete Book!");
+        queue.delete(isbn);
+        logger.debug("Delete book {}", isbn);
     }
 
     public void update(Book book) {
-        System.out.println("Update Book!");
+        queue.update(book);
+        logger.debug("Update book {}", book.getIsbn());
+    }
+
+    /**
+     * Wait until the writes made so far are written.
+     */
+    public void flush() {
+        queue.flush();
+    }
+
+    /**
+     * Write everything queued and stop.
+     */
+    @Override
+    public void close() {
+        queue.close();
     }
 }
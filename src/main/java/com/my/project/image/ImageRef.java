@@ -0,0 +1,98 @@
+package com.my.project.image;
+
+import java.util.Arrays;
+
+/**
+ * Reference to an image in an {@link ImageStore}: the SHA-256 digest of its
+ * content. Its string form, <code>sha256:</code> followed by 64 hex digits, is
+ * what a {@link com.my.project.Book} holds as its image instead of the content.
+ */
+public final class ImageRef {
+
+    static final int DIGEST_LENGTH = 32;
+
+    private static final String PREFIX = "sha256:";
+    private static final int STRING_LENGTH = PREFIX.length() + 2 * DIGEST_LENGTH;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final byte[] digest;
+    private final int hashCode;
+
+    ImageRef(byte[] digest) {
+        if(digest.length != DIGEST_LENGTH) {
+            throw new IllegalArgumentException("Digest must be " + DIGEST_LENGTH + " bytes: " + digest.length);
+        }
+        this.digest = digest;
+        this.hashCode = Arrays.hashCode(digest);
+    }
+
+    /**
+     * @return whether the string is the string form of a reference
+     */
+    public static boolean isRef(String value) {
+        if(value == null || value.length() != STRING_LENGTH || !value.startsWith(PREFIX)) {
+            return false;
+        }
+        for(int i = PREFIX.length(); i < STRING_LENGTH; i++) {
+            if(Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param value the string form of a reference
+     * @throws IllegalArgumentException if it is not one
+     */
+    public static ImageRef parse(String value) {
+        if(!isRef(value)) {
+            throw new IllegalArgumentException("Not an image reference: " + value);
+        }
+        byte[] digest = new byte[DIGEST_LENGTH];
+        for(int i = 0; i < DIGEST_LENGTH; i++) {
+            int at = PREFIX.length() + 2 * i;
+            digest[i] = (byte) (Character.digit(value.charAt(at), 16) << 4 | Character.digit(value.charAt(at + 1), 16));
+        }
+        return new ImageRef(digest);
+    }
+
+    /**
+     * @param hex 64 hex digits
+     * @return the reference, or null if they are not
+     */
+    static ImageRef fromHex(String hex) {
+        return isRef(PREFIX + hex) ? parse(PREFIX + hex) : null;
+    }
+
+    /**
+     * @return the digest as 64 lower case hex digits
+     */
+    public String toHex() {
+        char[] hex = new char[2 * DIGEST_LENGTH];
+        for(int i = 0; i < DIGEST_LENGTH; i++) {
+            hex[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    byte[] getDigest() {
+        return digest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ImageRef && Arrays.equals(digest, ((ImageRef) o).digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return PREFIX + toHex();
+    }
+}
@@ -0,0 +1,466 @@
+package com.my.project.image;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.my.project.logging.Log;
+
+/**
+ * Content-addressed store of images in a local directory, keyed by the
+ * SHA-256 digest of their content, so books sharing an image store it once.
+ * <p>
+ * Each distinct image is a file <code>&lt;hex digest&gt;.blob</code> with a
+ * reference count. {@link #put(byte[])} and {@link #acquire(ImageRef)} add a
+ * reference and {@link #release(ImageRef)} drops one, deleting the file with
+ * the last. The changes of the counts are appended to <code>refs.log</code>,
+ * which is replayed and compacted on open; blobs left without references by a
+ * crash are deleted then. Adding a reference forces the blob and the log to
+ * disk, so a reference handed out survives a crash. A dropped one may not,
+ * which leaks the blob until it is released again.
+ * <p>
+ * Reads take no store lock and share one open channel per image, closed when
+ * the image is deleted or the store closed. {@link #read(ImageRef, long, int)}
+ * copies a range of up to {@link #MAP_THRESHOLD} bytes into the heap with a
+ * positional read and maps a larger one, and
+ * {@link #transferTo(ImageRef, long, long, WritableByteChannel)} sends a range
+ * with {@link FileChannel#transferTo} without copying it through the heap. The
+ * store keeps no mappings: one lasts as long as the buffer returned, so a
+ * deleted image stays mapped only while a reader holds it. Reading an image
+ * while its last reference is released may fail.
+ */
+public class ImageStore implements AutoCloseable {
+
+    private static final Log logger = Log.getLog(ImageStore.class);
+
+    static final String REFS_FILE = "refs.log";
+    //ranges up to this size are read into the heap, mapping them costs more than the copy
+    static final int MAP_THRESHOLD = 64 * 1024;
+
+    private static final String BLOB_SUFFIX = ".blob";
+    private static final String TEMP_SUFFIX = ".tmp";
+    //digest | int change of the count
+    private static final int RECORD = ImageRef.DIGEST_LENGTH + 4;
+
+    private final File directory;
+    private final Map<ImageRef, Blob> blobs = new ConcurrentHashMap<ImageRef, Blob>();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD);
+    private FileChannel refs;
+    private long storedBytes;
+    private boolean closed;
+
+    /**
+     * @param directory directory holding the blobs, created if missing
+     * @throws IOException if the store cannot be opened or recovered
+     */
+    public ImageStore(File directory) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create image directory " + directory);
+        }
+        this.directory = directory;
+        recover();
+    }
+
+    /**
+     * Store an image, or add a reference to it if it is stored already.
+     * @return the reference to release when it is no longer used
+     * @throws IllegalStateException if the store is closed
+     */
+    public ImageRef put(byte[] image) {
+        ImageRef ref = new ImageRef(sha256(image));
+        synchronized(this) {
+            checkOpen();
+            try {
+                Blob blob = blobs.get(ref);
+                if(blob == null) {
+                    blob = write(ref, image);
+                }
+                append(ref, 1, true);
+                if(blob.count++ == 0) {
+                    blobs.put(ref, blob);
+                    storedBytes += blob.size;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot store image " + ref, e);
+            }
+        }
+        return ref;
+    }
+
+    /**
+     * Store an image given as a string, encoded as UTF-8.
+     * @see #put(byte[])
+     */
+    public ImageRef put(String image) {
+        return put(image.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Add a reference to a stored image.
+     * @throws IllegalArgumentException if the image is not stored
+     * @throws IllegalStateException if the store is closed
+     */
+    public synchronized void acquire(ImageRef ref) {
+        checkOpen();
+        Blob blob = stored(ref);
+        try {
+            append(ref, 1, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot reference image " + ref, e);
+        }
+        blob.count++;
+    }
+
+    /**
+     * Drop a reference to a stored image, deleting it with the last.
+     * @return whether the image was deleted
+     * @throws IllegalArgumentException if the image is not stored
+     * @throws IllegalStateException if the store is closed
+     */
+    public synchronized boolean release(ImageRef ref) {
+        checkOpen();
+        Blob blob = stored(ref);
+        try {
+            append(ref, -1, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot release image " + ref, e);
+        }
+        if(--blob.count > 0) {
+            return false;
+        }
+        blobs.remove(ref);
+        storedBytes -= blob.size;
+        blob.close();
+        if(!blob.file.delete()) {
+            logger.warn("Cannot delete image {}, it is deleted on the next open", blob.file);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of references to the image, 0 if it is not stored
+     */
+    public synchronized int getReferenceCount(ImageRef ref) {
+        Blob blob = blobs.get(ref);
+        return blob != null ? blob.count : 0;
+    }
+
+    /**
+     * @return the size of the image in bytes, -1 if it is not stored
+     */
+    public long size(ImageRef ref) {
+        Blob blob = blobs.get(ref);
+        return blob != null ? blob.size : -1;
+    }
+
+    /**
+     * @return the whole image as a read-only buffer, or null if it is not stored
+     */
+    public ByteBuffer read(ImageRef ref) {
+        Blob blob = blobs.get(ref);
+        return blob != null ? blob.read(0, blob.size) : null;
+    }
+
+    /**
+     * @param offset the position of the first byte to read
+     * @param length the number of bytes to read
+     * @return the range of the image as a read-only buffer, memory-mapped if it is
+     * longer than {@link #MAP_THRESHOLD}, or null if it is not stored
+     * @throws IllegalArgumentException if the range is not within the image
+     */
+    public ByteBuffer read(ImageRef ref, long offset, int length) {
+        Blob blob = blobs.get(ref);
+        if(blob == null) {
+            return null;
+        }
+        checkRange(blob, offset, length);
+        return blob.read(offset, length);
+    }
+
+    /**
+     * @return the image decoded as UTF-8, or null if it is not stored
+     */
+    public String readString(ImageRef ref) {
+        ByteBuffer buffer = read(ref);
+        return buffer != null ? StandardCharsets.UTF_8.decode(buffer).toString() : null;
+    }
+
+    /**
+     * Send the whole image to a channel without copying it through the heap.
+     * @see #transferTo(ImageRef, long, long, WritableByteChannel)
+     */
+    public long transferTo(ImageRef ref, WritableByteChannel target) throws IOException {
+        return transferTo(ref, 0, size(ref), target);
+    }
+
+    /**
+     * Send a range of the image to a channel without copying it through the
+     * heap. A non-blocking channel may take less than the range.
+     * @param offset the position of the first byte to send
+     * @param length the number of bytes to send
+     * @return the number of bytes sent
+     * @throws IllegalArgumentException if the image is not stored or the range is not within it
+     * @throws IOException if reading the image or writing the channel fails
+     */
+    public long transferTo(ImageRef ref, long offset, long length, WritableByteChannel target) throws IOException {
+        Blob blob = stored(ref);
+        checkRange(blob, offset, length);
+        FileChannel channel = blob.channel();
+        long sent = 0;
+        while(sent < length) {
+            long count = channel.transferTo(offset + sent, length - sent, target);
+            if(count <= 0) {
+                break;
+            }
+            sent += count;
+        }
+        return sent;
+    }
+
+    /**
+     * @return the number of distinct images stored
+     */
+    public int getImageCount() {
+        return blobs.size();
+    }
+
+    /**
+     * @return the total size in bytes of the distinct images stored
+     */
+    public synchronized long getStoredBytes() {
+        return storedBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        for(Blob blob : blobs.values()) {
+            blob.close();
+        }
+        refs.force(false);
+        refs.close();
+    }
+
+    private void checkOpen() {
+        if(closed) {
+            throw new IllegalStateException("Image store is closed");
+        }
+    }
+
+    private Blob stored(ImageRef ref) {
+        Blob blob = blobs.get(ref);
+        if(blob == null) {
+            throw new IllegalArgumentException("Image is not stored: " + ref);
+        }
+        return blob;
+    }
+
+    private static void checkRange(Blob blob, long offset, long length) {
+        if(offset < 0 || length < 0 || offset + length > blob.size) {
+            throw new IllegalArgumentException("Range " + offset + "+" + length + " is not within the image of "
+                + blob.size + " bytes");
+        }
+    }
+
+    /**
+     * Write the blob file of a new image through a temporary file. Holds the lock.
+     */
+    private Blob write(ImageRef ref, byte[] image) throws IOException {
+        File file = new File(directory, ref.toHex() + BLOB_SUFFIX);
+        File temp = new File(directory, ref.toHex() + TEMP_SUFFIX);
+        FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(image);
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return new Blob(file, image.length, 0);
+    }
+
+    /**
+     * Append a change of a reference count. Holds the lock.
+     */
+    private void append(ImageRef ref, int change, boolean force) throws IOException {
+        record.clear();
+        record.put(ref.getDigest()).putInt(change).flip();
+        while(record.hasRemaining()) {
+            refs.write(record);
+        }
+        if(force) {
+            refs.force(false);
+        }
+    }
+
+    /**
+     * Replay the reference counts, delete the blobs nothing references and
+     * rewrite the counts as one record per image.
+     */
+    private void recover() throws IOException {
+        Map<ImageRef, Integer> counts = readCounts(new File(directory, REFS_FILE));
+        File[] listed = directory.listFiles();
+        for(File file : listed == null ? new File[0] : listed) {
+            String name = file.getName();
+            if(name.endsWith(TEMP_SUFFIX)) {
+                Files.delete(file.toPath());
+                continue;
+            }
+            if(!name.endsWith(BLOB_SUFFIX)) {
+                continue;
+            }
+            ImageRef ref = ImageRef.fromHex(name.substring(0, name.length() - BLOB_SUFFIX.length()));
+            Integer count = ref != null ? counts.remove(ref) : null;
+            if(count == null || count <= 0) {
+                logger.info("Deleting image {} that nothing references", file);
+                Files.delete(file.toPath());
+                continue;
+            }
+            blobs.put(ref, new Blob(file, file.length(), count));
+            storedBytes += file.length();
+        }
+        for(Map.Entry<ImageRef, Integer> lost : counts.entrySet()) {
+            if(lost.getValue() > 0) {
+                logger.warn("Image {} has {} references but is missing", lost.getKey(), lost.getValue());
+            }
+        }
+
+        File temp = new File(directory, REFS_FILE + TEMP_SUFFIX);
+        refs = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+        for(Map.Entry<ImageRef, Blob> entry : blobs.entrySet()) {
+            append(entry.getKey(), entry.getValue().count, false);
+        }
+        refs.force(false);
+        refs.close();
+        Files.move(temp.toPath(), new File(directory, REFS_FILE).toPath(), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        refs = FileChannel.open(new File(directory, REFS_FILE).toPath(), StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    }
+
+    private static Map<ImageRef, Integer> readCounts(File file) throws IOException {
+        Map<ImageRef, Integer> counts = new HashMap<ImageRef, Integer>();
+        if(!file.exists()) {
+            return counts;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long records = raf.length() / RECORD;
+            if(raf.length() % RECORD != 0) {
+                logger.warn("Ignoring the torn last record of {}", file);
+            }
+            byte[] digest = new byte[ImageRef.DIGEST_LENGTH];
+            for(long i = 0; i < records; i++) {
+                raf.readFully(digest);
+                ImageRef ref = new ImageRef(digest.clone());
+                Integer count = counts.get(ref);
+                counts.put(ref, (count != null ? count : 0) + raf.readInt());
+            }
+        } finally {
+            raf.close();
+        }
+        return counts;
+    }
+
+    private static byte[] sha256(byte[] image) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(image);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * One stored image.
+     */
+    private static final class Blob {
+
+        final File file;
+        final long size;
+        //changed under the store lock
+        int count;
+        //opened by the first read, guarded by the blob
+        private FileChannel channel;
+        private boolean closed;
+
+        Blob(File file, long size, int count) {
+            this.file = file;
+            this.size = size;
+            this.count = count;
+        }
+
+        /**
+         * @return the range copied into a read-only heap buffer, or a read-only
+         * mapping of it that is unmapped once the buffer is unreachable
+         */
+        ByteBuffer read(long offset, long length) {
+            try {
+                FileChannel channel = channel();
+                if(length > MAP_THRESHOLD) {
+                    //the mapping stays valid once the channel is closed
+                    return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) length);
+                while(buffer.hasRemaining()) {
+                    if(channel.read(buffer, offset + buffer.position()) < 0) {
+                        throw new EOFException("Image ends before byte " + (offset + length));
+                    }
+                }
+                buffer.flip();
+                return buffer.asReadOnlyBuffer();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read image " + file, e);
+            }
+        }
+
+        /**
+         * @return the channel of the image, opened again if an interrupted reader closed it
+         * @throws IOException if the image was deleted or cannot be opened
+         */
+        synchronized FileChannel channel() throws IOException {
+            if(closed) {
+                throw new ClosedChannelException();
+            }
+            if(channel == null || !channel.isOpen()) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+            return channel;
+        }
+
+        synchronized void close() {
+            closed = true;
+            if(channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Cannot close image {}", file, e);
+            }
+            channel = null;
+        }
+    }
+}
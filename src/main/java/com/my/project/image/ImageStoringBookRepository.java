@@ -0,0 +1,125 @@
+package com.my.project.image;
+
+import java.util.List;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.IsbnLocks;
+
+/**
+ * Decorator moving the images of the books written through it into an
+ * {@link ImageStore}, so the delegate and every cache in front of it hold
+ * the {@link ImageRef} string of the image instead of its content.
+ * <p>
+ * {@link #addBook(Book)} and {@link #updateBook(Book)} store the image and
+ * pass on a copy of the book holding its reference; an image that already is
+ * a reference gets one more. An update that replaces the image releases the
+ * reference of the previous one, which costs one
+ * {@link BookRepository#getBook(String)}. Read the images of the books
+ * returned through {@link #getImageStore()}. Writes are serialized per ISBN
+ * by {@link IsbnLocks}.
+ */
+public class ImageStoringBookRepository implements BookRepository {
+
+
+    private final BookRepository delegate;
+    private final ImageStore images;
+    private final IsbnLocks locks = new IsbnLocks();
+
+    /**
+     * @param delegate the repository holding the books
+     * @param images the store holding their images
+     */
+    public ImageStoringBookRepository(BookRepository delegate, ImageStore images) {
+        this.delegate = delegate;
+        this.images = images;
+    }
+
+    /**
+     * @return the store to read the images of the books from
+     */
+    public ImageStore getImageStore() {
+        return images;
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        return delegate.getAllBooks();
+    }
+
+    @Override
+    public Book getBook(String isbn) {
+        return delegate.getBook(isbn);
+    }
+
+    @Override
+    public String getBookTitleByIsbn(String isbn) {
+        return delegate.getBookTitleByIsbn(isbn);
+    }
+
+    @Override
+    public String addBook(Book book) {
+        synchronized(locks.of(book.getIsbn())) {
+            ImageRef ref = store(book.getImage());
+            try {
+                return delegate.addBook(withImage(book, ref));
+            } catch (RuntimeException e) {
+                release(ref);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public String updateBook(Book book) {
+        synchronized(locks.of(book.getIsbn())) {
+            Book before = delegate.getBook(book.getIsbn());
+            ImageRef ref = store(book.getImage());
+            String isbn;
+            try {
+                isbn = delegate.updateBook(withImage(book, ref));
+            } catch (RuntimeException e) {
+                release(ref);
+                throw e;
+            }
+            if(isbn == null) {
+                release(ref);
+            } else if(before != null && ImageRef.isRef(before.getImage())) {
+                release(ImageRef.parse(before.getImage()));
+            }
+            return isbn;
+        }
+    }
+
+    @Override
+    public void setBookTitle(Book book, String title) {
+        delegate.setBookTitle(book, title);
+    }
+
+    /**
+     * @return a reference to the image, null for none
+     */
+    private ImageRef store(String image) {
+        if(image == null) {
+            return null;
+        }
+        if(ImageRef.isRef(image)) {
+            ImageRef ref = ImageRef.parse(image);
+            images.acquire(ref);
+            return ref;
+        }
+        return images.put(image);
+    }
+
+    private void release(ImageRef ref) {
+        if(ref != null) {
+            images.release(ref);
+        }
+    }
+
+    private static Book withImage(Book book, ImageRef ref) {
+        Book copy = new Book(book);
+        copy.setImage(ref != null ? ref.toString() : null);
+        return copy;
+    }
+}
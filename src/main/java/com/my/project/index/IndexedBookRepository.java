@@ -0,0 +1,409 @@
+package com.my.project.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.search.SearchHit;
+import com.my.project.search.TitleSearchIndex;
+
+/**
+ * Decorator that keeps secondary indexes over any {@link BookRepository} and
+ * answers author, publisher and year range queries without a full scan.
+ * Titles go into a {@link TitleSearchIndex} for ranked full-text and typeahead search.
+ * <p>
+ * Author and publisher names map to posting sets of ISBNs, and years map to
+ * ISBNs in a sorted map, so a year range is a sub-map. Names are matched
+ * ignoring case and surrounding blanks. Postings are sorted by ISBN, which keeps
+ * pages stable while books are added. Queries page by offset, which walks the
+ * postings to count the total, or by cursor, which seeks straight to the key
+ * after the previous page. Either way the books of a page are fetched with one
+ * {@link BookRepository#getBooks(java.util.Collection)} call. The indexes are built from the delegate
+ * on construction and then kept up to date by {@link #addBook(Book)},
+ * {@link #updateBook(Book)} and {@link #setBookTitle(Book, String)}, so once the
+ * decorator exists all writes must go through it. Wrap a {@link com.my.project.BookDAL}
+ * to search the books stored in the database.
+ * <p>
+ * Writes are serialized on the decorator so the delegate and the indexes change
+ * together. Queries take no locks and may briefly miss a book being written.
+ */
+public class IndexedBookRepository implements BookRepository {
+
+    private final BookRepository delegate;
+    private final ConcurrentMap<String, NavigableSet<String>> byAuthor =
+        new ConcurrentHashMap<String, NavigableSet<String>>();
+    private final ConcurrentMap<String, NavigableSet<String>> byPublisher =
+        new ConcurrentHashMap<String, NavigableSet<String>>();
+    private final ConcurrentNavigableMap<Integer, NavigableSet<String>> byYear =
+        new ConcurrentSkipListMap<Integer, NavigableSet<String>>();
+    //indexed values of every book, to remove its old postings on update
+    private final ConcurrentMap<String, Book> indexed = new ConcurrentHashMap<String, Book>();
+    private final TitleSearchIndex titles = new TitleSearchIndex();
+
+    /**
+     * @param delegate the repository holding the books, its current books are indexed
+     */
+    public IndexedBookRepository(BookRepository delegate) {
+        this.delegate = delegate;
+        for(Book book : delegate.getAllBooks()) {
+            index(book);
+        }
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        return delegate.getAllBooks();
+    }
+
+    @Override
+    public Book getBook(String isbn) {
+        return delegate.getBook(isbn);
+    }
+
+    @Override
+    public String getBookTitleByIsbn(String isbn) {
+        return delegate.getBookTitleByIsbn(isbn);
+    }
+
+    @Override
+    public synchronized String addBook(Book book) {
+        String isbn = delegate.addBook(book);
+        index(book);
+        return isbn;
+    }
+
+    @Override
+    public synchronized String updateBook(Book book) {
+        String isbn = delegate.updateBook(book);
+        if(isbn != null) {
+            unindex(book.getIsbn());
+            index(book);
+        }
+        return isbn;
+    }
+
+    @Override
+    public synchronized void setBookTitle(Book book, String title) {
+        delegate.setBookTitle(book, title);
+        if(book != null && book.getIsbn() != null && indexed.containsKey(book.getIsbn())) {
+            titles.index(book.getIsbn(), title);
+        }
+    }
+
+    /**
+     * @param query words of the title, in any order and case
+     * @param limit maximum number of hits
+     * @return books whose titles match, the most relevant first
+     */
+    public List<SearchHit> searchTitles(String query, int limit) {
+        return titles.search(query, limit);
+    }
+
+    /**
+     * Typeahead: the last word of the query may be incomplete.
+     * @param query words typed so far
+     * @param limit maximum number of hits
+     * @return books whose titles match, the most relevant first
+     */
+    public List<SearchHit> typeahead(String query, int limit) {
+        return titles.searchPrefix(query, limit);
+    }
+
+    /**
+     * @param prefix start of a title word
+     * @param limit maximum number of words
+     * @return title words starting with the prefix, the most common first
+     */
+    public List<String> suggestTitleWords(String prefix, int limit) {
+        return titles.suggest(prefix, limit);
+    }
+
+    /**
+     * @param author the author, ignoring case
+     * @param offset number of matching books to skip
+     * @param limit maximum number of books to return
+     * @return books by the author, ordered by ISBN
+     */
+    public Page<Book> findByAuthor(String author, int offset, int limit) {
+        return page(postings(byAuthor, author), offset, limit);
+    }
+
+    /**
+     * @param author the author, ignoring case
+     * @param cursor {@link Page#getNextCursor()} of the previous page, null for the first page
+     * @param limit maximum number of books to return
+     * @return books by the author, ordered by ISBN
+     */
+    public Page<Book> findByAuthor(String author, String cursor, int limit) {
+        return seek(postings(byAuthor, author), cursor, limit);
+    }
+
+    /**
+     * @param publisher the publisher, ignoring case
+     * @param offset number of matching books to skip
+     * @param limit maximum number of books to return
+     * @return books of the publisher, ordered by ISBN
+     */
+    public Page<Book> findByPublisher(String publisher, int offset, int limit) {
+        return page(postings(byPublisher, publisher), offset, limit);
+    }
+
+    /**
+     * @param publisher the publisher, ignoring case
+     * @param cursor {@link Page#getNextCursor()} of the previous page, null for the first page
+     * @param limit maximum number of books to return
+     * @return books of the publisher, ordered by ISBN
+     */
+    public Page<Book> findByPublisher(String publisher, String cursor, int limit) {
+        return seek(postings(byPublisher, publisher), cursor, limit);
+    }
+
+    /**
+     * @param fromYear first year, inclusive
+     * @param toYear last year, inclusive
+     * @param offset number of matching books to skip
+     * @param limit maximum number of books to return
+     * @return books published in the range, ordered by year and then ISBN
+     */
+    public Page<Book> findByYearRange(int fromYear, int toYear, int offset, int limit) {
+        if(fromYear > toYear) {
+            return page(Collections.<NavigableSet<String>>emptyList(), offset, limit);
+        }
+        return page(byYear.subMap(fromYear, true, toYear, true).values(), offset, limit);
+    }
+
+    /**
+     * @param fromYear first year, inclusive
+     * @param toYear last year, inclusive
+     * @param cursor {@link Page#getNextCursor()} of the previous page, null for the first page
+     * @param limit maximum number of books to return
+     * @return books published in the range, ordered by year and then ISBN
+     * @throws IllegalArgumentException if the cursor was not returned by this query
+     */
+    public Page<Book> findByYearRange(int fromYear, int toYear, String cursor, int limit) {
+        requireLimit(limit);
+        int year = fromYear;
+        String after = null;
+        if(cursor != null) {
+            //year:isbn of the last book of the previous page
+            int colon = cursor.indexOf(':');
+            try {
+                year = Integer.parseInt(cursor.substring(0, Math.max(colon, 0)));
+            } catch(NumberFormatException e) {
+                throw new IllegalArgumentException("Not a year range cursor: " + cursor, e);
+            }
+            after = cursor.substring(colon + 1);
+        }
+        List<String> isbns = new ArrayList<String>();
+        String next = null;
+        if(year <= toYear) {
+            int lastYear = year;
+            for(Map.Entry<Integer, NavigableSet<String>> entry : byYear.subMap(year, true, toYear, true).entrySet()) {
+                NavigableSet<String> postings = entry.getKey() == year && after != null
+                    ? entry.getValue().tailSet(after, false) : entry.getValue();
+                if(isbns.size() == limit) {
+                    //the page ended with an earlier year, it goes on from the next year that has books
+                    if(!postings.isEmpty()) {
+                        next = lastYear + ":" + isbns.get(limit - 1);
+                        break;
+                    }
+                    continue;
+                }
+                String last = collect(postings, isbns, limit);
+                if(last != null) {
+                    next = entry.getKey() + ":" + last;
+                    break;
+                }
+                if(!postings.isEmpty()) {
+                    lastYear = entry.getKey();
+                }
+            }
+        }
+        return new Page<Book>(load(isbns), next);
+    }
+
+    /**
+     * @return number of distinct authors in the index
+     */
+    public int authorCount() {
+        return byAuthor.size();
+    }
+
+    private Page<Book> page(NavigableSet<String> postings, int offset, int limit) {
+        return page(postings == null ? Collections.<NavigableSet<String>>emptyList()
+            : Collections.singletonList(postings), offset, limit);
+    }
+
+    /**
+     * Walk the posting sets in order, skip the offset and load the books of the page.
+     */
+    private Page<Book> page(Collection<NavigableSet<String>> postings, int offset, int limit) {
+        if(offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative: " + offset + ", " + limit);
+        }
+        List<String> isbns = new ArrayList<String>(Math.min(limit, 64));
+        int total = 0;
+        for(NavigableSet<String> postingSet : postings) {
+            Iterator<String> it = postingSet.iterator();
+            while(it.hasNext()) {
+                String isbn = it.next();
+                if(total >= offset && isbns.size() < limit) {
+                    isbns.add(isbn);
+                }
+                total++;
+            }
+        }
+        return new Page<Book>(load(isbns), offset, total);
+    }
+
+    /**
+     * Start after the cursor and load the books of the page.
+     */
+    private Page<Book> seek(NavigableSet<String> postings, String cursor, int limit) {
+        requireLimit(limit);
+        List<String> isbns = new ArrayList<String>();
+        String next = null;
+        if(postings != null) {
+            next = collect(cursor == null ? postings : postings.tailSet(cursor, false), isbns, limit);
+        }
+        return new Page<Book>(load(isbns), next);
+    }
+
+    /**
+     * Add ISBNs of the postings until the page holds the limit.
+     * @return the last ISBN of the page if the postings go on after it, otherwise null
+     */
+    private static String collect(NavigableSet<String> postings, List<String> isbns, int limit) {
+        for(String isbn : postings) {
+            if(isbns.size() == limit) {
+                return isbns.get(limit - 1);
+            }
+            isbns.add(isbn);
+        }
+        return null;
+    }
+
+    /**
+     * Fetch the books of a page in one call, skipping those removed meanwhile.
+     */
+    private List<Book> load(List<String> isbns) {
+        if(isbns.isEmpty()) {
+            return new ArrayList<Book>();
+        }
+        return new ArrayList<Book>(delegate.getBooks(isbns).values());
+    }
+
+    private static void requireLimit(int limit) {
+        if(limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+    }
+
+    private void index(Book book) {
+        String isbn = book.getIsbn();
+        if(isbn == null) {
+            return;
+        }
+        //keep a snapshot of the indexed values, the caller may change the book later
+        Book values = new Book(isbn, null, book.getAuthors() == null ? null : new ArrayList<String>(book.getAuthors()),
+            book.getPublication(), book.getYearOfPublication(), null, null);
+        indexed.put(isbn, values);
+        titles.index(isbn, book.getTitle());
+        if(values.getAuthors() != null) {
+            for(String author : values.getAuthors()) {
+                post(byAuthor, author, isbn);
+            }
+        }
+        post(byPublisher, values.getPublication(), isbn);
+        if(values.getYearOfPublication() != null) {
+            NavigableSet<String> isbns = byYear.get(values.getYearOfPublication());
+            if(isbns == null) {
+                NavigableSet<String> created = new ConcurrentSkipListSet<String>();
+                isbns = byYear.putIfAbsent(values.getYearOfPublication(), created);
+                if(isbns == null) {
+                    isbns = created;
+                }
+            }
+            isbns.add(isbn);
+        }
+    }
+
+    private void unindex(String isbn) {
+        Book values = indexed.remove(isbn);
+        if(values == null) {
+            return;
+        }
+        titles.remove(isbn);
+        if(values.getAuthors() != null) {
+            for(String author : values.getAuthors()) {
+                unpost(byAuthor, author, isbn);
+            }
+        }
+        unpost(byPublisher, values.getPublication(), isbn);
+        if(values.getYearOfPublication() != null) {
+            NavigableSet<String> isbns = byYear.get(values.getYearOfPublication());
+            if(isbns != null) {
+                isbns.remove(isbn);
+                if(isbns.isEmpty()) {
+                    byYear.remove(values.getYearOfPublication(), isbns);
+                }
+            }
+        }
+    }
+
+    private static NavigableSet<String> postings(ConcurrentMap<String, NavigableSet<String>> index, String name) {
+        String key = normalize(name);
+        return key == null ? null : index.get(key);
+    }
+
+    private static void post(ConcurrentMap<String, NavigableSet<String>> index, String name, String isbn) {
+        String key = normalize(name);
+        if(key == null) {
+            return;
+        }
+        NavigableSet<String> isbns = index.get(key);
+        if(isbns == null) {
+            NavigableSet<String> created = new ConcurrentSkipListSet<String>();
+            isbns = index.putIfAbsent(key, created);
+            if(isbns == null) {
+                isbns = created;
+            }
+        }
+        isbns.add(isbn);
+    }
+
+    private static void unpost(ConcurrentMap<String, NavigableSet<String>> index, String name, String isbn) {
+        String key = normalize(name);
+        if(key == null) {
+            return;
+        }
+        NavigableSet<String> isbns = index.get(key);
+        if(isbns != null) {
+            isbns.remove(isbn);
+            //writes are serialized, nobody adds to the set while it is removed
+            if(isbns.isEmpty()) {
+                index.remove(key, isbns);
+            }
+        }
+    }
+
+    private static String normalize(String name) {
+        if(name == null) {
+            return null;
+        }
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        return key.isEmpty() ? null : key;
+    }
+}
@@ -0,0 +1,67 @@
+package com.my.project.index;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of query results, fetched by offset or by cursor.
+ * @param <T> type of the results
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final int offset;
+    private final int total;
+    private final String nextCursor;
+
+    public Page(List<T> items, int offset, int total) {
+        this(items, offset, total, null);
+    }
+
+    /**
+     * A page fetched by cursor, which has no offset or total.
+     * @param nextCursor where the next page starts, null if this is the last page
+     */
+    public Page(List<T> items, String nextCursor) {
+        this(items, -1, -1, nextCursor);
+    }
+
+    private Page(List<T> items, int offset, int total, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.offset = offset;
+        this.total = total;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return position of the first item among all results, -1 for a page fetched by cursor
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return number of results over all pages, -1 for a page fetched by cursor
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the cursor to fetch the next page with, null for the last page or a page fetched by offset
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return whether there are results after this page
+     */
+    public boolean hasNext() {
+        return nextCursor != null || offset + items.size() < total;
+    }
+}
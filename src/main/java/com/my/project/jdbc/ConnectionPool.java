@@ -0,0 +1,126 @@
+package com.my.project.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.my.project.logging.Log;
+
+/**
+ * Bounded pool of JDBC connections.
+ * <p>
+ * At most {@link DatabaseConfig#getMaxPoolSize()} connections are handed out at
+ * the same time; callers beyond that wait up to
+ * {@link DatabaseConfig#getBorrowTimeoutMillis()} for one to be returned.
+ * Connections are opened lazily, so creating a pool never touches the database.
+ * Idle connections are reused most-recently-returned first, which keeps their
+ * prepared statement caches warm.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Log logger = Log.getLog(ConnectionPool.class);
+
+    private final DatabaseConfig config;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<PooledConnection>();
+    private volatile boolean closed;
+
+    public ConnectionPool(DatabaseConfig config) {
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxPoolSize(), true);
+    }
+
+    /**
+     * Borrow a connection. It must be closed by the caller to return it to the pool.
+     * @return a connection with auto-commit enabled
+     */
+    public PooledConnection borrow() {
+        if(closed) {
+            throw new DataAccessException("Connection pool is closed");
+        }
+        try {
+            if(!permits.tryAcquire(config.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new DataAccessException("Timed out after " + config.getBorrowTimeoutMillis()
+                    + "ms waiting for a connection to " + config.getUrl());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            PooledConnection connection;
+            while((connection = idle.pollFirst()) != null) {
+                if(!connection.isBroken()) {
+                    connection.lease();
+                    return connection;
+                }
+                connection.closeQuietly();
+            }
+            return new PooledConnection(this, open(), config.getStatementCacheSize());
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public DatabaseConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return number of connections that can still be borrowed without waiting
+     */
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    void release(PooledConnection connection) {
+        try {
+            if(closed || connection.isBroken() || !reset(connection)) {
+                connection.closeQuietly();
+            } else {
+                idle.offerFirst(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reset(PooledConnection connection) {
+        try {
+            Connection raw = connection.getConnection();
+            if(!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Discarding connection that could not be reset", e);
+            return false;
+        }
+    }
+
+    private Connection open() {
+        try {
+            logger.debug("Opening connection to {}", config.getUrl());
+            return DriverManager.getConnection(config.getUrl(), config.getDriverProperties());
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to connect to " + config.getUrl(), e);
+        }
+    }
+
+    /**
+     * Close all idle connections. Borrowed connections are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while((connection = idle.pollFirst()) != null) {
+            connection.closeQuietly();
+        }
+    }
+}
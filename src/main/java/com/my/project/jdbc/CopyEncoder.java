@@ -0,0 +1,64 @@
+package com.my.project.jdbc;
+
+/**
+ * Builds rows in PostgreSQL's <code>COPY ... FROM STDIN</code> text format:
+ * tab separated columns, one row per line, <code>\N</code> for null.
+ */
+public final class CopyEncoder {
+
+    private final StringBuilder row = new StringBuilder(256);
+    private boolean first = true;
+
+    public CopyEncoder add(String value) {
+        separate();
+        if(value == null) {
+            row.append("\\N");
+            return this;
+        }
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch(c) {
+            case '\\':
+                row.append("\\\\");
+                break;
+            case '\t':
+                row.append("\\t");
+                break;
+            case '\n':
+                row.append("\\n");
+                break;
+            case '\r':
+                row.append("\\r");
+                break;
+            default:
+                row.append(c);
+            }
+        }
+        return this;
+    }
+
+    public CopyEncoder add(Integer value) {
+        separate();
+        row.append(value == null ? "\\N" : value.toString());
+        return this;
+    }
+
+    /**
+     * Finish the current row and start a new one.
+     * @return the finished row including its line terminator
+     */
+    public String endRow() {
+        row.append('\n');
+        String result = row.toString();
+        row.setLength(0);
+        first = true;
+        return result;
+    }
+
+    private void separate() {
+        if(!first) {
+            row.append('\t');
+        }
+        first = false;
+    }
+}
@@ -0,0 +1,17 @@
+package com.my.project.jdbc;
+
+/**
+ * Unchecked wrapper for failures raised while talking to the database.
+ */
+public class DataAccessException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DataAccessException(String message) {
+        super(message);
+    }
+
+    public DataAccessException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
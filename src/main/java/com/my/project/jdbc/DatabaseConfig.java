@@ -0,0 +1,147 @@
+package com.my.project.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Connection settings for the book database.
+ * <p>
+ * Values are read from <code>jdbc.properties</code> on the classpath and can be
+ * overridden with system properties of the same name, e.g.
+ * <code>-Djdbc.url=jdbc:postgresql://localhost:5432/books</code>.
+ * Any key starting with <code>jdbc.driver.</code> is passed to the driver as a
+ * connection property with the prefix removed.
+ */
+public class DatabaseConfig {
+
+    public static final String RESOURCE = "jdbc.properties";
+
+    private static final String DRIVER_PREFIX = "jdbc.driver.";
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maxPoolSize;
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+    private final int batchSize;
+    private final int copyThreshold;
+    private final int fetchSize;
+    private final Properties driverProperties = new Properties();
+
+    public DatabaseConfig(Properties properties) {
+        this.url = required(properties, "jdbc.url");
+        this.username = properties.getProperty("jdbc.username");
+        this.password = properties.getProperty("jdbc.password");
+        this.maxPoolSize = Integer.parseInt(properties.getProperty("jdbc.pool.maxSize", "10"));
+        this.borrowTimeoutMillis = Long.parseLong(properties.getProperty("jdbc.pool.borrowTimeoutMillis", "30000"));
+        this.statementCacheSize = Integer.parseInt(properties.getProperty("jdbc.pool.statementCacheSize", "64"));
+        this.batchSize = Integer.parseInt(properties.getProperty("jdbc.bulk.batchSize", "500"));
+        this.copyThreshold = Integer.parseInt(properties.getProperty("jdbc.bulk.copyThreshold", "10000"));
+        this.fetchSize = Integer.parseInt(properties.getProperty("jdbc.stream.fetchSize", "1000"));
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("jdbc.bulk.batchSize must be positive: " + batchSize);
+        }
+        if(maxPoolSize < 1) {
+            throw new IllegalArgumentException("jdbc.pool.maxSize must be positive: " + maxPoolSize);
+        }
+        for(String key : properties.stringPropertyNames()) {
+            if(key.startsWith(DRIVER_PREFIX)) {
+                driverProperties.setProperty(key.substring(DRIVER_PREFIX.length()), properties.getProperty(key));
+            }
+        }
+        if(username != null) {
+            driverProperties.setProperty("user", username);
+        }
+        if(password != null) {
+            driverProperties.setProperty("password", password);
+        }
+    }
+
+    /**
+     * Load the configuration from the classpath, applying system property overrides.
+     * @return the configuration
+     */
+    public static DatabaseConfig load() {
+        Properties properties = new Properties();
+        InputStream in = DatabaseConfig.class.getClassLoader().getResourceAsStream(RESOURCE);
+        if(in != null) {
+            try {
+                properties.load(in);
+            } catch (IOException e) {
+                throw new DataAccessException("Failed to read " + RESOURCE, e);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+                    //nothing to do
+                }
+            }
+        }
+        for(String key : System.getProperties().stringPropertyNames()) {
+            if(key.startsWith("jdbc.")) {
+                properties.setProperty(key, System.getProperty(key));
+            }
+        }
+        return new DatabaseConfig(properties);
+    }
+
+    private static String required(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if(value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing required property: " + key);
+        }
+        return value.trim();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @return number of rows written per JDBC batch (and per COPY transaction)
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return minimum number of rows for a bulk insert to use PostgreSQL COPY
+     */
+    public int getCopyThreshold() {
+        return copyThreshold;
+    }
+
+    /**
+     * @return number of rows fetched per round trip when streaming through a cursor
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @return a copy of the properties handed to the JDBC driver
+     */
+    public Properties getDriverProperties() {
+        Properties copy = new Properties();
+        copy.putAll(driverProperties);
+        return copy;
+    }
+}
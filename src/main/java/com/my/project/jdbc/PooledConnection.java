@@ -0,0 +1,153 @@
+package com.my.project.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}.
+ * <p>
+ * Prepared statements are cached per connection and keyed by their SQL, so a
+ * statement is parsed once and then re-executed for the lifetime of the physical
+ * connection. With the PostgreSQL driver this lets the statement cross the
+ * <code>prepareThreshold</code> and run as a named server-side statement.
+ * Statements returned by {@link #prepare(String)} must not be closed by callers.
+ * Closing this object returns the connection to the pool; closing it again
+ * before it is borrowed again does nothing.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private boolean broken;
+    //returned to the pool since it was last borrowed
+    private boolean released;
+
+    PooledConnection(ConnectionPool pool, Connection connection, final int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if(size() > statementCacheSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Get the cached statement for the SQL, preparing it on first use.
+     * @param sql the statement text
+     * @return a statement with its parameters cleared
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if(statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    /**
+     * Run the following statements in one transaction until {@link #commit()} is called.
+     * @throws SQLException if auto-commit cannot be disabled
+     */
+    public void begin() throws SQLException {
+        connection.setAutoCommit(false);
+    }
+
+    public void commit() throws SQLException {
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    /**
+     * Undo the current transaction and return to auto-commit mode.
+     * @throws SQLException if the rollback fails
+     */
+    public void rollback() throws SQLException {
+        try {
+            connection.rollback();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Record a failure raised on this connection. Connection-level failures
+     * (SQL state class 08) make the pool discard the connection instead of reusing it.
+     * @param e the failure
+     */
+    public void failed(SQLException e) {
+        String state = e.getSQLState();
+        if(state != null && state.startsWith("08")) {
+            this.broken = true;
+        }
+    }
+
+    /**
+     * @return true if the connection can no longer be used
+     */
+    public boolean isBroken() {
+        if(!broken) {
+            try {
+                broken = connection.isClosed();
+            } catch (SQLException e) {
+                broken = true;
+            }
+        }
+        return broken;
+    }
+
+    void closeQuietly() {
+        for(PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException ignore) {
+            //nothing to do
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignore) {
+            //nothing to do
+        }
+    }
+
+    @Override
+    public void close() {
+        if(released) {
+            return;
+        }
+        released = true;
+        pool.release(this);
+    }
+
+    /**
+     * Hand the connection out again after it was returned to the pool.
+     */
+    void lease() {
+        released = false;
+    }
+}
@@ -0,0 +1,81 @@
+package com.my.project.jdbc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Creates the book tables from <code>schema.sql</code> on the classpath.
+ */
+public final class Schema {
+
+    public static final String RESOURCE = "schema.sql";
+
+    private Schema() {
+    }
+
+    /**
+     * Run every statement of the schema script. The script only uses
+     * <code>IF NOT EXISTS</code> statements, so it is safe to run repeatedly.
+     * @param pool the pool to borrow a connection from
+     */
+    public static void create(ConnectionPool pool) {
+        String script = read();
+        PooledConnection connection = pool.borrow();
+        try {
+            Statement statement = connection.getConnection().createStatement();
+            try {
+                for(String sql : script.split(";")) {
+                    String trimmed = stripComments(sql);
+                    if(!trimmed.isEmpty()) {
+                        statement.execute(trimmed);
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            connection.failed(e);
+            throw new DataAccessException("Failed to create schema", e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static String stripComments(String sql) {
+        StringBuilder result = new StringBuilder();
+        for(String line : sql.split("\n")) {
+            if(!line.trim().startsWith("--")) {
+                result.append(line).append('\n');
+            }
+        }
+        return result.toString().trim();
+    }
+
+    private static String read() {
+        InputStream in = Schema.class.getClassLoader().getResourceAsStream(RESOURCE);
+        if(in == null) {
+            throw new DataAccessException("Missing " + RESOURCE + " on the classpath");
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to read " + RESOURCE, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+                //nothing to do
+            }
+        }
+    }
+}
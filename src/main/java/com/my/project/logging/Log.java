@@ -0,0 +1,196 @@
+package com.my.project.logging;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+ * Front of a log4j {@link Logger} with <code>{}</code> placeholder messages.
+ * <p>
+ * A call below the logger's level returns after the level check, without
+ * building the message. Enabled calls format the message into a buffer the
+ * calling thread reuses, so the only garbage is the message string and the
+ * log4j event. Arguments are rendered with {@link String#valueOf(Object)},
+ * except integers, which are appended without a temporary string. A trailing
+ * {@link Throwable} argument without a placeholder is logged with its stack
+ * trace. Primitive arguments are boxed before the level check, so guard calls
+ * with large numbers by {@link #isDebugEnabled()} on hot paths.
+ */
+public final class Log {
+
+    //log4j skips frames up to this class when it looks up the caller
+    private static final String FQCN = Log.class.getName();
+    //buffers that grew larger are not kept for the next message
+    private static final int MAX_RETAINED_CAPACITY = 4096;
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private final Logger logger;
+
+    private Log(Logger logger) {
+        this.logger = logger;
+    }
+
+    public static Log getLog(Class<?> type) {
+        return new Log(Logger.getLogger(type));
+    }
+
+    public static Log getLog(String name) {
+        return new Log(Logger.getLogger(name));
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+
+    public boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    public boolean isInfoEnabled() {
+        return logger.isInfoEnabled();
+    }
+
+    public void debug(String message) {
+        if(logger.isDebugEnabled()) {
+            log(Level.DEBUG, message, 0, null, null, null);
+        }
+    }
+
+    public void debug(String pattern, Object a) {
+        if(logger.isDebugEnabled()) {
+            log(Level.DEBUG, pattern, 1, a, null, null);
+        }
+    }
+
+    public void debug(String pattern, Object a, Object b) {
+        if(logger.isDebugEnabled()) {
+            log(Level.DEBUG, pattern, 2, a, b, null);
+        }
+    }
+
+    public void debug(String pattern, Object a, Object b, Object c) {
+        if(logger.isDebugEnabled()) {
+            log(Level.DEBUG, pattern, 3, a, b, c);
+        }
+    }
+
+    public void info(String message) {
+        if(logger.isInfoEnabled()) {
+            log(Level.INFO, message, 0, null, null, null);
+        }
+    }
+
+    public void info(String pattern, Object a) {
+        if(logger.isInfoEnabled()) {
+            log(Level.INFO, pattern, 1, a, null, null);
+        }
+    }
+
+    public void info(String pattern, Object a, Object b) {
+        if(logger.isInfoEnabled()) {
+            log(Level.INFO, pattern, 2, a, b, null);
+        }
+    }
+
+    public void info(String pattern, Object a, Object b, Object c) {
+        if(logger.isInfoEnabled()) {
+            log(Level.INFO, pattern, 3, a, b, c);
+        }
+    }
+
+    public void warn(String message) {
+        if(logger.isEnabledFor(Level.WARN)) {
+            log(Level.WARN, message, 0, null, null, null);
+        }
+    }
+
+    public void warn(String pattern, Object a) {
+        if(logger.isEnabledFor(Level.WARN)) {
+            log(Level.WARN, pattern, 1, a, null, null);
+        }
+    }
+
+    public void warn(String pattern, Object a, Object b) {
+        if(logger.isEnabledFor(Level.WARN)) {
+            log(Level.WARN, pattern, 2, a, b, null);
+        }
+    }
+
+    public void warn(String pattern, Object a, Object b, Object c) {
+        if(logger.isEnabledFor(Level.WARN)) {
+            log(Level.WARN, pattern, 3, a, b, c);
+        }
+    }
+
+    public void error(String message) {
+        if(logger.isEnabledFor(Level.ERROR)) {
+            log(Level.ERROR, message, 0, null, null, null);
+        }
+    }
+
+    public void error(String pattern, Object a) {
+        if(logger.isEnabledFor(Level.ERROR)) {
+            log(Level.ERROR, pattern, 1, a, null, null);
+        }
+    }
+
+    public void error(String pattern, Object a, Object b) {
+        if(logger.isEnabledFor(Level.ERROR)) {
+            log(Level.ERROR, pattern, 2, a, b, null);
+        }
+    }
+
+    public void error(String pattern, Object a, Object b, Object c) {
+        if(logger.isEnabledFor(Level.ERROR)) {
+            log(Level.ERROR, pattern, 3, a, b, c);
+        }
+    }
+
+    private void log(Level level, String pattern, int count, Object a, Object b, Object c) {
+        if(count == 0) {
+            logger.log(FQCN, level, pattern, null);
+            return;
+        }
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        int used = format(buffer, pattern, count, a, b, c);
+        Object last = count == 1 ? a : count == 2 ? b : c;
+        Throwable thrown = used < count && last instanceof Throwable ? (Throwable) last : null;
+        String message = buffer.toString();
+        if(buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        logger.log(FQCN, level, message, thrown);
+    }
+
+    /**
+     * Append the pattern with each <code>{}</code> replaced by the next argument.
+     * Placeholders beyond the arguments stay as they are.
+     * @return the number of arguments used
+     */
+    static int format(StringBuilder out, String pattern, int count, Object a, Object b, Object c) {
+        int used = 0;
+        int from = 0;
+        for(int at; used < count && (at = pattern.indexOf("{}", from)) >= 0; from = at + 2) {
+            out.append(pattern, from, at);
+            append(out, used == 0 ? a : used == 1 ? b : c);
+            used++;
+        }
+        out.append(pattern, from, pattern.length());
+        return used;
+    }
+
+    private static void append(StringBuilder out, Object argument) {
+        if(argument instanceof Long) {
+            out.append(((Long) argument).longValue());
+        } else if(argument instanceof Integer) {
+            out.append(((Integer) argument).intValue());
+        } else {
+            out.append(argument);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.my.project.logging;
+
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.helpers.AppenderAttachableImpl;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.AppenderAttachable;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Appender handing events to its attached appenders on a background thread,
+ * so logging threads never wait for the console or the disk.
+ * <p>
+ * Events go through a bounded ring buffer of <code>BufferSize</code> slots, a
+ * power of two. A logging thread claims a slot with one compare-and-set and
+ * stores the event in it, the flusher thread passes the events on in order.
+ * When the buffer is full, a <code>Blocking</code> appender makes the logging
+ * thread wait for a free slot; otherwise the event is discarded and the
+ * flusher later logs how many were. Unlike {@link AppenderSkeleton} the
+ * appender takes no lock of its own.
+ * <p>
+ * Configure it in <code>log4j.xml</code> with <code>appender-ref</code>s to the
+ * appenders that do the writing. Set <code>LocationInfo</code> when one of
+ * them prints the caller, since the flusher cannot find it out. Pending events
+ * are written when the appender is closed, at the latest on JVM shutdown; an
+ * event logged while the appender closes is either written or counted as
+ * discarded.
+ */
+public class RingBufferAppender extends AppenderSkeleton implements AppenderAttachable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+    //how long an idle flusher sleeps before it looks for events without being woken
+    private static final long IDLE_NANOS = 100000000L;
+    //the next sequence once the flusher has finished, so no slot can be claimed any more
+    private static final long SEALED = Long.MAX_VALUE;
+
+    private final AppenderAttachableImpl appenders = new AppenderAttachableImpl();
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean blocking = true;
+    private boolean locationInfo;
+    private AtomicReferenceArray<LoggingEvent> slots;
+    private int mask;
+    //the flusher has passed on the events before this sequence and freed their slots
+    private volatile long consumed;
+    private volatile boolean sleeping;
+    private volatile boolean stopping;
+    private Thread flusher;
+    private Thread shutdownHook;
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @param bufferSize number of events waiting for the flusher at most, a power of two
+     */
+    public void setBufferSize(int bufferSize) {
+        if(bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Buffer size must be a power of two: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    public boolean isBlocking() {
+        return blocking;
+    }
+
+    /**
+     * @param blocking whether logging threads wait when the buffer is full, rather than discard their events
+     */
+    public void setBlocking(boolean blocking) {
+        this.blocking = blocking;
+    }
+
+    public boolean getLocationInfo() {
+        return locationInfo;
+    }
+
+    /**
+     * @param locationInfo whether to find out the caller of each event before queueing it, which is slow
+     */
+    public void setLocationInfo(boolean locationInfo) {
+        this.locationInfo = locationInfo;
+    }
+
+    /**
+     * @return the number of events discarded because the buffer was full
+     */
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    @Override
+    public void activateOptions() {
+        slots = new AtomicReferenceArray<LoggingEvent>(bufferSize);
+        mask = bufferSize - 1;
+        flusher = new Thread(new Runnable() {
+            public void run() {
+                flush();
+            }
+        }, "log-flusher-" + getName());
+        flusher.setDaemon(true);
+        flusher.start();
+        shutdownHook = new Thread(new Runnable() {
+            public void run() {
+                close();
+            }
+        }, "log-flusher-shutdown-" + getName());
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queue the event if it passes the threshold and the filters. Not
+     * synchronized, unlike {@link AppenderSkeleton#doAppend(LoggingEvent)}.
+     */
+    @Override
+    public void doAppend(LoggingEvent event) {
+        if(stopping || slots == null || !isAsSevereAsThreshold(event.getLevel())) {
+            return;
+        }
+        for(Filter filter = getFirstFilter(); filter != null; filter = filter.getNext()) {
+            int decision = filter.decide(event);
+            if(decision == Filter.DENY) {
+                return;
+            }
+            if(decision == Filter.ACCEPT) {
+                break;
+            }
+        }
+        append(event);
+    }
+
+    @Override
+    protected void append(LoggingEvent event) {
+        //what only the logging thread knows
+        event.getThreadName();
+        event.getNDC();
+        event.getMDCCopy();
+        event.getRenderedMessage();
+        if(locationInfo) {
+            event.getLocationInformation();
+        }
+        for(int attempt = 0; ; attempt++) {
+            long sequence = next.get();
+            if(sequence - consumed < slots.length()) {
+                if(next.compareAndSet(sequence, sequence + 1)) {
+                    slots.set(index(sequence), event);
+                    if(sleeping) {
+                        LockSupport.unpark(flusher);
+                    }
+                    return;
+                }
+            } else if(!blocking || stopping) {
+                discarded.incrementAndGet();
+                return;
+            } else {
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Stop taking events, wait until the flusher has passed on the queued ones
+     * and close the attached appenders.
+     */
+    @Override
+    public void close() {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+        }
+        stopping = true;
+        if(flusher == null) {
+            closeAppenders();
+            return;
+        }
+        LockSupport.unpark(flusher);
+        if(Thread.currentThread() != flusher) {
+            try {
+                flusher.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if(flusher.isAlive()) {
+            LogLog.warn("Log flusher of " + getName() + " did not finish within " + CLOSE_TIMEOUT_MILLIS + " ms");
+        }
+        if(Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                //the JVM is shutting down already
+            }
+        }
+    }
+
+    @Override
+    public boolean requiresLayout() {
+        return false;
+    }
+
+    public void addAppender(Appender appender) {
+        synchronized(appenders) {
+            appenders.addAppender(appender);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    public Enumeration getAllAppenders() {
+        synchronized(appenders) {
+            return appenders.getAllAppenders();
+        }
+    }
+
+    public Appender getAppender(String name) {
+        synchronized(appenders) {
+            return appenders.getAppender(name);
+        }
+    }
+
+    public boolean isAttached(Appender appender) {
+        synchronized(appenders) {
+            return appenders.isAttached(appender);
+        }
+    }
+
+    public void removeAllAppenders() {
+        synchronized(appenders) {
+            appenders.removeAllAppenders();
+        }
+    }
+
+    public void removeAppender(Appender appender) {
+        synchronized(appenders) {
+            appenders.removeAppender(appender);
+        }
+    }
+
+    public void removeAppender(String name) {
+        synchronized(appenders) {
+            appenders.removeAppender(name);
+        }
+    }
+
+    /**
+     * The flusher loop: pass on events in sequence order until stopped and drained.
+     */
+    private void flush() {
+        long sequence = consumed;
+        long reported = 0;
+        while(true) {
+            int index = index(sequence);
+            LoggingEvent event = slots.get(index);
+            if(event != null) {
+                dispatch(event);
+                slots.lazySet(index, null);
+                consumed = ++sequence;
+                if(index == 0) {
+                    reported = reportDiscarded(reported);
+                }
+                continue;
+            }
+            reported = reportDiscarded(reported);
+            //a logging thread past the stopping check either claimed a slot before this, or finds none
+            if(stopping && next.compareAndSet(sequence, SEALED)) {
+                break;
+            }
+            sleeping = true;
+            //a logging thread stores its event before it looks whether the flusher sleeps
+            if(slots.get(index) == null && !stopping) {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            } else if(stopping) {
+                //claimed but not yet stored
+                Thread.yield();
+            }
+            sleeping = false;
+        }
+        closeAppenders();
+    }
+
+    private long reportDiscarded(long reported) {
+        long total = discarded.get();
+        if(total != reported) {
+            dispatch(new LoggingEvent(RingBufferAppender.class.getName(), Logger.getLogger(RingBufferAppender.class),
+                Level.WARN, "Discarded " + (total - reported) + " logging events, the buffer of " + bufferSize
+                + " events was full", null));
+        }
+        return total;
+    }
+
+    private void dispatch(LoggingEvent event) {
+        try {
+            synchronized(appenders) {
+                appenders.appendLoopOnAppenders(event);
+            }
+        } catch (RuntimeException e) {
+            LogLog.error("Appender of " + getName() + " failed", e);
+        }
+    }
+
+    private void closeAppenders() {
+        synchronized(appenders) {
+            for(Enumeration<?> attached = appenders.getAllAppenders(); attached != null && attached.hasMoreElements(); ) {
+                ((Appender) attached.nextElement()).close();
+            }
+        }
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    /**
+     * Spin briefly, then sleep in short naps, while the buffer is full.
+     */
+    private static void backOff(int attempt) {
+        if(attempt < 100) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(100000);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.my.project.metrics;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of every operation of one {@link com.my.project.BookRepository},
+ * recorded by {@link InstrumentedBookRepository}.
+ * <p>
+ * Each operation is published over JMX as an {@link OperationMetricsMXBean}
+ * named <code>com.my.project:type=BookMetrics,name=&lt;name&gt;,operation=&lt;operation&gt;</code>,
+ * and all of them as text in the Prometheus exposition format by
+ * {@link #writeText(Appendable)}, which {@link MetricsHttpServer} serves.
+ */
+public class BookMetrics {
+
+    /**
+     * The instrumented repository operations.
+     */
+    public enum Operation {
+        GET_ALL_BOOKS("getAllBooks"),
+        GET_BOOK("getBook"),
+        GET_BOOK_TITLE_BY_ISBN("getBookTitleByIsbn"),
+        ADD_BOOK("addBook"),
+        UPDATE_BOOK("updateBook"),
+        SET_BOOK_TITLE("setBookTitle");
+
+        private final String method;
+
+        Operation(String method) {
+            this.method = method;
+        }
+
+        /**
+         * @return the name of the repository method
+         */
+        public String getMethod() {
+            return method;
+        }
+    }
+
+    /**
+     * One in that many calls is timed by default.
+     */
+    public static final int DEFAULT_TIMING_INTERVAL = 8;
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final String name;
+    private final Map<Operation, OperationMetrics> operations = new EnumMap<Operation, OperationMetrics>(Operation.class);
+
+    /**
+     * Time one in {@value #DEFAULT_TIMING_INTERVAL} calls.
+     * @param name name of the repository in JMX names and metric labels, e.g. <code>bookdal</code>
+     */
+    public BookMetrics(String name) {
+        this(name, DEFAULT_TIMING_INTERVAL);
+    }
+
+    /**
+     * @param name name of the repository in JMX names and metric labels, e.g. <code>bookdal</code>
+     * @param timingInterval time one in that many calls, a power of two; 1 times every call
+     */
+    public BookMetrics(String name, int timingInterval) {
+        if(timingInterval <= 0 || Integer.bitCount(timingInterval) != 1) {
+            throw new IllegalArgumentException("Timing interval must be a power of two: " + timingInterval);
+        }
+        this.name = name;
+        for(Operation operation : Operation.values()) {
+            operations.put(operation, new OperationMetrics(operation.getMethod(), timingInterval));
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OperationMetrics get(Operation operation) {
+        return operations.get(operation);
+    }
+
+    public Collection<OperationMetrics> getOperations() {
+        return Collections.unmodifiableCollection(operations.values());
+    }
+
+    /**
+     * Register an MXBean per operation, replacing ones registered under the same names.
+     * @param server e.g. {@link java.lang.management.ManagementFactory#getPlatformMBeanServer()}
+     */
+    public void registerMBeans(MBeanServer server) {
+        try {
+            for(Map.Entry<Operation, OperationMetrics> operation : operations.entrySet()) {
+                ObjectName objectName = objectName(operation.getKey());
+                if(server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(operation.getValue(), objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics of " + name, e);
+        }
+    }
+
+    public void unregisterMBeans(MBeanServer server) {
+        try {
+            for(Operation operation : operations.keySet()) {
+                ObjectName objectName = objectName(operation);
+                if(server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister metrics of " + name, e);
+        }
+    }
+
+    ObjectName objectName(Operation operation) throws JMException {
+        return new ObjectName("com.my.project:type=BookMetrics,name=" + ObjectName.quote(name)
+            + ",operation=" + operation.getMethod());
+    }
+
+    /**
+     * Write the metrics in the Prometheus text exposition format: a call and an
+     * error counter and a latency summary in seconds per operation. The summary
+     * covers the timed calls and its sum is estimated from the histogram.
+     */
+    public void writeText(Appendable out) throws IOException {
+        out.append("# HELP book_repository_calls_total Calls of a repository operation.\n");
+        out.append("# TYPE book_repository_calls_total counter\n");
+        out.append("# HELP book_repository_errors_total Calls of a repository operation that threw.\n");
+        out.append("# TYPE book_repository_errors_total counter\n");
+        out.append("# HELP book_repository_latency_seconds Latency of a repository operation.\n");
+        out.append("# TYPE book_repository_latency_seconds summary\n");
+        for(OperationMetrics operation : operations.values()) {
+            String labels = "repository=\"" + escape(name) + "\",operation=\"" + operation.getOperation() + "\"";
+            LatencySnapshot latency = operation.getLatency();
+            out.append("book_repository_calls_total{").append(labels).append("} ")
+                .append(Long.toString(operation.getCalls())).append('\n');
+            out.append("book_repository_errors_total{").append(labels).append("} ")
+                .append(Long.toString(operation.getErrors())).append('\n');
+            for(double quantile : QUANTILES) {
+                out.append("book_repository_latency_seconds{").append(labels).append(",quantile=\"")
+                    .append(Double.toString(quantile)).append("\"} ")
+                    .append(seconds(latency.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            out.append("book_repository_latency_seconds_sum{").append(labels).append("} ")
+                .append(seconds(latency.getMean() * latency.getCount())).append('\n');
+            out.append("book_repository_latency_seconds_count{").append(labels).append("} ")
+                .append(Long.toString(latency.getCount())).append('\n');
+        }
+    }
+
+    private static String seconds(double nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,123 @@
+package com.my.project.metrics;
+
+import java.util.List;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+
+/**
+ * Decorator counting every call, and whether it threw, and recording the
+ * latencies of a sample of them into {@link BookMetrics}. Wrap a
+ * {@link com.my.project.BookDAL} to measure the database operations. Every
+ * call costs a striped counter increment; the
+ * calls sampled for timing also cost two {@link System#nanoTime()} reads and a
+ * histogram increment.
+ */
+public class InstrumentedBookRepository implements BookRepository {
+
+    private final BookRepository delegate;
+    private final BookMetrics metrics;
+    //looked up once, the hot path does no map lookups
+    private final OperationMetrics getAllBooks;
+    private final OperationMetrics getBook;
+    private final OperationMetrics getBookTitleByIsbn;
+    private final OperationMetrics addBook;
+    private final OperationMetrics updateBook;
+    private final OperationMetrics setBookTitle;
+
+    /**
+     * @param delegate the repository to measure
+     * @param metrics where to record, e.g. shared by decorators of the same repository
+     */
+    public InstrumentedBookRepository(BookRepository delegate, BookMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.getAllBooks = metrics.get(BookMetrics.Operation.GET_ALL_BOOKS);
+        this.getBook = metrics.get(BookMetrics.Operation.GET_BOOK);
+        this.getBookTitleByIsbn = metrics.get(BookMetrics.Operation.GET_BOOK_TITLE_BY_ISBN);
+        this.addBook = metrics.get(BookMetrics.Operation.ADD_BOOK);
+        this.updateBook = metrics.get(BookMetrics.Operation.UPDATE_BOOK);
+        this.setBookTitle = metrics.get(BookMetrics.Operation.SET_BOOK_TITLE);
+    }
+
+    public BookMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        long start = getAllBooks.start();
+        try {
+            List<Book> books = delegate.getAllBooks();
+            getAllBooks.success(start);
+            return books;
+        } catch (RuntimeException e) {
+            getAllBooks.failure(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Book getBook(String isbn) {
+        long start = getBook.start();
+        try {
+            Book book = delegate.getBook(isbn);
+            getBook.success(start);
+            return book;
+        } catch (RuntimeException e) {
+            getBook.failure(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public String getBookTitleByIsbn(String isbn) {
+        long start = getBookTitleByIsbn.start();
+        try {
+            String title = delegate.getBookTitleByIsbn(isbn);
+            getBookTitleByIsbn.success(start);
+            return title;
+        } catch (RuntimeException e) {
+            getBookTitleByIsbn.failure(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public String addBook(Book book) {
+        long start = addBook.start();
+        try {
+            String isbn = delegate.addBook(book);
+            addBook.success(start);
+            return isbn;
+        } catch (RuntimeException e) {
+            addBook.failure(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public String updateBook(Book book) {
+        long start = updateBook.start();
+        try {
+            String isbn = delegate.updateBook(book);
+            updateBook.success(start);
+            return isbn;
+        } catch (RuntimeException e) {
+            updateBook.failure(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void setBookTitle(Book book, String title) {
+        long start = setBookTitle.start();
+        try {
+            delegate.setBookTitle(book, title);
+            setBookTitle.success(start);
+        } catch (RuntimeException e) {
+            setBookTitle.failure(start);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.my.project.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent latency histogram with log-linear buckets, in the manner of
+ * HdrHistogram.
+ * <p>
+ * Every power of two of nanoseconds is split into {@value #SUB_BUCKETS} equal
+ * buckets, so a recorded value is known to within about 3% from one nanosecond
+ * up to {@value #MAX_BITS} bits (about 18 minutes); longer values fall into the
+ * last bucket. Recording is a bucket computation and one atomic increment.
+ * <p>
+ * Counts are striped: each thread increments its own copy of the buckets,
+ * chosen by thread id, so threads on different cores rarely share a cache
+ * line. A {@link #snapshot()} sums the stripes.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MAX_BITS = 40;
+    static final int BUCKETS = (MAX_BITS - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray[] stripes;
+    private final int stripeMask;
+
+    public LatencyHistogram() {
+        //a power of two of at least the number of cores, up to 16
+        int cores = Math.min(16, Runtime.getRuntime().availableProcessors());
+        int stripeCount = Integer.highestOneBit(cores * 2 - 1);
+        stripes = new AtomicLongArray[stripeCount];
+        for(int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+        stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * @param nanos a latency, negative values count as 0
+     */
+    public void record(long nanos) {
+        stripes[(int) Thread.currentThread().getId() & stripeMask].incrementAndGet(index(nanos));
+    }
+
+    /**
+     * @return the counts at this moment, recording may go on meanwhile
+     */
+    public LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for(AtomicLongArray stripe : stripes) {
+            for(int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        return new LatencySnapshot(counts);
+    }
+
+    static int index(long nanos) {
+        if(nanos < SUB_BUCKETS) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        if(msb >= MAX_BITS) {
+            return BUCKETS - 1;
+        }
+        int shift = msb - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the lowest value counted in the bucket
+     */
+    static long lowestValue(int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        return (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+    }
+
+    /**
+     * @return the highest value counted in the bucket
+     */
+    static long highestValue(int index) {
+        return index == BUCKETS - 1 ? Long.MAX_VALUE : lowestValue(index + 1) - 1;
+    }
+}
@@ -0,0 +1,80 @@
+package com.my.project.metrics;
+
+/**
+ * Counts of a {@link LatencyHistogram} at one moment. Values are reported as
+ * the highest value of their bucket, so they are at most about 3% too high.
+ */
+public final class LatencySnapshot {
+
+    private final long[] counts;
+    private final long count;
+
+    LatencySnapshot(long[] counts) {
+        this.counts = counts;
+        long total = 0;
+        for(long bucket : counts) {
+            total += bucket;
+        }
+        this.count = total;
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the value that many percent of the recorded values are at or below,
+     * in nanoseconds, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        if(count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if(seen >= rank) {
+                return LatencyHistogram.highestValue(i);
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return the highest recorded value in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMax() {
+        for(int i = counts.length - 1; i >= 0; i--) {
+            if(counts[i] != 0) {
+                return LatencyHistogram.highestValue(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the mean in nanoseconds, taking every value as the middle of its bucket
+     */
+    public double getMean() {
+        if(count == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for(int i = 0; i < counts.length; i++) {
+            if(counts[i] != 0) {
+                long low = LatencyHistogram.lowestValue(i);
+                long high = i == counts.length - 1 ? low : LatencyHistogram.highestValue(i);
+                sum += counts[i] * (low + (high - low) / 2.0);
+            }
+        }
+        return sum / count;
+    }
+}
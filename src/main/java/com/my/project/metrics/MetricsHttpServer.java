@@ -0,0 +1,78 @@
+package com.my.project.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import com.my.project.logging.Log;
+
+/**
+ * Serves {@link BookMetrics} as text at <code>/metrics</code> for a
+ * Prometheus-style scraper, using the HTTP server built into the JDK.
+ */
+public class MetricsHttpServer implements AutoCloseable {
+
+    private static final Log logger = Log.getLog(MetricsHttpServer.class);
+
+    public static final String PATH = "/metrics";
+
+    private final HttpServer server;
+    private final List<BookMetrics> metrics;
+
+    /**
+     * Start serving.
+     * @param address where to listen, port 0 picks a free port
+     * @param metrics the metrics to serve
+     */
+    public MetricsHttpServer(InetSocketAddress address, BookMetrics... metrics) throws IOException {
+        this.metrics = Arrays.asList(metrics);
+        this.server = HttpServer.create(address, 0);
+        server.createContext(PATH, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.start();
+        logger.info("Serving metrics at http://{}:{}{}", address.getHostString(), getPort(), PATH);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            if(!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder text = new StringBuilder(4096);
+            for(BookMetrics metric : metrics) {
+                metric.writeText(text);
+            }
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Stop serving, without waiting for running requests.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
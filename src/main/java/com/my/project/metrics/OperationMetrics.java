@@ -0,0 +1,105 @@
+package com.my.project.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calls, errors and latencies of one repository operation. Calls that throw
+ * count as errors and their latency is recorded like any other.
+ * <p>
+ * Every call is counted, but only a random sample of one in
+ * <code>timingInterval</code> calls is timed, since reading the clock twice
+ * costs more than the rest of the bookkeeping.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+
+    //start of a call that is not timed
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private final String operation;
+    private final int timingMask;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param timingInterval time one in that many calls, a power of two
+     */
+    OperationMetrics(String operation, int timingInterval) {
+        this.operation = operation;
+        this.timingMask = timingInterval - 1;
+    }
+
+    /**
+     * Count a call that starts now.
+     * @return the value to pass to {@link #success(long)} or {@link #failure(long)}
+     */
+    long start() {
+        calls.increment();
+        return (ThreadLocalRandom.current().nextInt() & timingMask) == 0 ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * @param start what {@link #start()} returned
+     */
+    void success(long start) {
+        if(start != NOT_TIMED) {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param start what {@link #start()} returned
+     */
+    void failure(long start) {
+        errors.increment();
+        success(start);
+    }
+
+    /**
+     * @return the latency counts of the timed calls at this moment
+     */
+    public LatencySnapshot getLatency() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.snapshot().getMean() / 1000;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.snapshot().getValueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.snapshot().getValueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.snapshot().getValueAtPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.snapshot().getMax() / 1000.0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.my.project.metrics;
+
+/**
+ * JMX view of the metrics of one repository operation.
+ */
+public interface OperationMetricsMXBean {
+
+    String getOperation();
+
+    long getCalls();
+
+    long getErrors();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
@@ -0,0 +1,472 @@
+package com.my.project.mvcc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.IsbnLocks;
+import com.my.project.logging.Log;
+
+/**
+ * In-process catalogue keeping several versions of every book, so readers
+ * see a consistent state of the catalogue while it is written.
+ * <p>
+ * Books are never changed in place. Every write stores a private copy of
+ * the new state as a version numbered by a global clock, linked to the
+ * version it replaces. A {@link Snapshot} pins the clock when it is opened
+ * and reads, for each book, the newest version not newer than that, so a
+ * scan sees every book as it was at one instant however long it runs.
+ * Snapshots take no locks and writers never wait for them. Writes are
+ * serialized on the store, but only for linking the version in.
+ * <p>
+ * Versions no open snapshot can read any more are dropped by
+ * {@link #clean()}, which can also run in the background through
+ * {@link #startCleaner(long, TimeUnit)}. A snapshot left open keeps every
+ * version since it was opened, so close it when done.
+ * <p>
+ * Given a delegate, such as a {@link com.my.project.BookDAL}, the store is
+ * loaded from it and writes go to it first, then become a version when the
+ * delegate accepted them. Writes to one ISBN are serialized then, so the
+ * versions follow the order of the delegate.
+ */
+public class MvccBookStore implements BookRepository, AutoCloseable {
+
+    private static final Log logger = Log.getLog(MvccBookStore.class);
+
+
+    /**
+     * Receives the books of a snapshot without copying them.
+     */
+    public interface Visitor {
+
+        /**
+         * @param book the stored version, which must not be changed
+         */
+        void visit(Book book);
+    }
+
+    private final BookRepository delegate;
+    //the versions of every ISBN, ordered like the database lists them
+    private final ConcurrentSkipListMap<String, Chain> chains = new ConcurrentSkipListMap<String, Chain>();
+    private final Set<Snapshot> open = ConcurrentHashMap.newKeySet();
+    private final Object commit = new Object();
+    private final IsbnLocks locks = new IsbnLocks();
+    //the newest version whose write is complete
+    private volatile long clock;
+    private long pruned;
+    private ScheduledExecutorService cleaner;
+
+    /**
+     * Empty store keeping the books only in memory.
+     */
+    public MvccBookStore() {
+        this(null);
+    }
+
+    /**
+     * @param delegate where the books are loaded from and written to, null for none
+     */
+    public MvccBookStore(BookRepository delegate) {
+        this.delegate = delegate;
+        if(delegate != null) {
+            for(Book book : delegate.getAllBooks()) {
+                commit(book.getIsbn(), new Book(book), Expect.ANY);
+            }
+        }
+    }
+
+    /**
+     * Pin the current state of the catalogue.
+     * @return the snapshot, to close when done
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        //registered before the clock is read, so the cleaner keeps what it needs
+        open.add(snapshot);
+        snapshot.version = clock;
+        return snapshot;
+    }
+
+    /**
+     * @return every book of a snapshot taken now, ordered by ISBN
+     */
+    @Override
+    public List<Book> getAllBooks() {
+        Snapshot snapshot = snapshot();
+        try {
+            return snapshot.getAllBooks();
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    @Override
+    public Book getBook(String isbn) {
+        Book book = latest(isbn);
+        return book == null ? null : new Book(book);
+    }
+
+    @Override
+    public String getBookTitleByIsbn(String isbn) {
+        Book book = latest(isbn);
+        return book == null ? null : book.getTitle();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the book has no ISBN
+     * @throws IllegalStateException if a book with the same ISBN is already stored
+     */
+    @Override
+    public String addBook(Book book) {
+        String isbn = IsbnLocks.requireIsbn(book);
+        synchronized(locks.of(isbn)) {
+            if(delegate != null) {
+                isbn = delegate.addBook(book);
+                commit(isbn, new Book(book), Expect.ANY);
+            } else if(!commit(isbn, new Book(book), Expect.ABSENT)) {
+                throw new IllegalStateException("Book " + isbn + " already exists");
+            }
+            return isbn;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the book has no ISBN
+     */
+    @Override
+    public String updateBook(Book book) {
+        String isbn = IsbnLocks.requireIsbn(book);
+        synchronized(locks.of(isbn)) {
+            if(delegate != null) {
+                if(delegate.updateBook(book) == null) {
+                    return null;
+                }
+                commit(isbn, new Book(book), Expect.ANY);
+                return isbn;
+            }
+            return commit(isbn, new Book(book), Expect.PRESENT) ? isbn : null;
+        }
+    }
+
+    /**
+     * Change the title of the book and store a new version of its stored copy
+     * with the title changed.
+     */
+    @Override
+    public void setBookTitle(Book book, String title) {
+        if(book == null || book.getIsbn() == null) {
+            if(delegate != null) {
+                delegate.setBookTitle(book, title);
+            } else if(book != null) {
+                book.setTitle(title);
+            }
+            return;
+        }
+        synchronized(locks.of(book.getIsbn())) {
+            if(delegate != null) {
+                delegate.setBookTitle(book, title);
+            } else {
+                book.setTitle(title);
+            }
+            Book current = latest(book.getIsbn());
+            if(current != null) {
+                Book changed = new Book(current);
+                changed.setTitle(title);
+                commit(book.getIsbn(), changed, Expect.PRESENT);
+            }
+        }
+    }
+
+    /**
+     * Remove a book from the store only; snapshots opened before still see it.
+     * @return whether the book was stored
+     */
+    public boolean deleteBook(String isbn) {
+        synchronized(locks.of(isbn)) {
+            return commit(isbn, null, Expect.PRESENT);
+        }
+    }
+
+    /**
+     * @return the version of the newest complete write
+     */
+    public long getVersion() {
+        return clock;
+    }
+
+    /**
+     * @return the number of snapshots open
+     */
+    public int getOpenSnapshots() {
+        return open.size();
+    }
+
+    /**
+     * Count every version kept, including those only snapshots can read.
+     */
+    public long getVersionCount() {
+        long count = 0;
+        for(Chain chain : chains.values()) {
+            for(Version version = chain.head; version != null; version = version.previous) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of versions dropped by {@link #clean()} so far
+     */
+    public synchronized long getPrunedVersions() {
+        return pruned;
+    }
+
+    /**
+     * Drop the versions that no open snapshot, nor any opened later, can read.
+     * @return the number of versions dropped
+     */
+    public synchronized long clean() {
+        long horizon = clock;
+        for(Snapshot snapshot : open) {
+            long version = snapshot.version;
+            if(version < 0) {
+                //still reading the clock, it may be older than the horizon
+                return 0;
+            }
+            horizon = Math.min(horizon, version);
+        }
+        long dropped = 0;
+        for(Map.Entry<String, Chain> entry : chains.entrySet()) {
+            Chain chain = entry.getValue();
+            Version visible = chain.head;
+            while(visible != null && visible.version > horizon) {
+                visible = visible.previous;
+            }
+            if(visible == null) {
+                continue;
+            }
+            for(Version old = visible.previous; old != null; old = old.previous) {
+                dropped++;
+            }
+            visible.previous = null;
+            if(visible.book == null) {
+                synchronized(commit) {
+                    if(chain.head == visible) {
+                        chains.remove(entry.getKey());
+                        dropped++;
+                    }
+                }
+            }
+        }
+        pruned += dropped;
+        return dropped;
+    }
+
+    /**
+     * Drop old versions every period in a background thread until closed.
+     */
+    public synchronized void startCleaner(long period, TimeUnit unit) {
+        if(cleaner != null) {
+            return;
+        }
+        cleaner = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "mvcc-cleaner");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        cleaner.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long dropped = clean();
+                    logger.debug("Dropped {} old book versions", dropped);
+                } catch(RuntimeException e) {
+                    logger.error("Cleaning old book versions failed", e);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stop the background cleaner.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService cleaner;
+        synchronized(this) {
+            cleaner = this.cleaner;
+            this.cleaner = null;
+        }
+        if(cleaner != null) {
+            cleaner.shutdown();
+            try {
+                cleaner.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while stopping the cleaner", e);
+            }
+        }
+    }
+
+    private enum Expect { ANY, ABSENT, PRESENT }
+
+    /**
+     * Link a new version in and publish it.
+     * @param book the private copy to store, null to delete
+     * @return false if the book was not absent or present as expected
+     */
+    private boolean commit(String isbn, Book book, Expect expect) {
+        synchronized(commit) {
+            Chain chain = chains.get(isbn);
+            boolean present = chain != null && chain.head.book != null;
+            if(expect == Expect.ABSENT && present || expect == Expect.PRESENT && !present) {
+                return false;
+            }
+            long version = clock + 1;
+            if(chain == null) {
+                chains.put(isbn, new Chain(new Version(book, version, null)));
+            } else {
+                chain.head = new Version(book, version, chain.head);
+            }
+            clock = version;
+            return true;
+        }
+    }
+
+    /**
+     * @return the newest stored version of the book, not to be changed
+     */
+    private Book latest(String isbn) {
+        if(isbn == null) {
+            return null;
+        }
+        Chain chain = chains.get(isbn);
+        return chain == null ? null : chain.head.book;
+    }
+
+    /**
+     * The versions of one ISBN, newest first. Stays in the map across
+     * updates, so only adding a book and dropping a deleted one change the map.
+     */
+    private static final class Chain {
+
+        volatile Version head;
+
+        Chain(Version head) {
+            this.head = head;
+        }
+    }
+
+    /**
+     * One state of a book, linked to the state it replaced.
+     */
+    private static final class Version {
+
+        //null once the book is deleted
+        final Book book;
+        final long version;
+        //cut by the cleaner once no snapshot can read it
+        volatile Version previous;
+
+        Version(Book book, long version, Version previous) {
+            this.book = book;
+            this.version = version;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * The catalogue as it was when the snapshot was opened. Safe to share
+     * between threads; close it to let the versions it reads be dropped.
+     */
+    public final class Snapshot implements AutoCloseable {
+
+        //-1 until the clock is read
+        private volatile long version = -1;
+        private volatile boolean closed;
+
+        private Snapshot() {
+        }
+
+        /**
+         * @return the version of the newest write the snapshot sees
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return a copy of the book as of the snapshot, or null if it was not stored then
+         * @throws IllegalStateException if the snapshot is closed
+         */
+        public Book getBook(String isbn) {
+            checkOpen();
+            Book book = isbn == null ? null : visible(chains.get(isbn));
+            return book == null ? null : new Book(book);
+        }
+
+        /**
+         * @return copies of every book as of the snapshot, ordered by ISBN
+         * @throws IllegalStateException if the snapshot is closed
+         */
+        public List<Book> getAllBooks() {
+            final List<Book> books = new ArrayList<Book>();
+            forEach(new Visitor() {
+                @Override
+                public void visit(Book book) {
+                    books.add(new Book(book));
+                }
+            });
+            return books;
+        }
+
+        /**
+         * Pass every book as of the snapshot to the visitor without copying it, ordered by ISBN.
+         * @throws IllegalStateException if the snapshot is closed
+         */
+        public void forEach(Visitor visitor) {
+            checkOpen();
+            for(Chain chain : chains.values()) {
+                Book book = visible(chain);
+                if(book != null) {
+                    visitor.visit(book);
+                }
+            }
+        }
+
+        /**
+         * Release the versions pinned by the snapshot.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            open.remove(this);
+        }
+
+        private Book visible(Chain chain) {
+            Version version = chain == null ? null : chain.head;
+            while(version != null && version.version > this.version) {
+                version = version.previous;
+            }
+            return version == null ? null : version.book;
+        }
+
+        private void checkOpen() {
+            if(closed) {
+                throw new IllegalStateException("Snapshot is closed");
+            }
+        }
+    }
+}
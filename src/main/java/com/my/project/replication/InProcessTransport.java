@@ -0,0 +1,27 @@
+package com.my.project.replication;
+
+/**
+ * Transport to a {@link Replica} in the same process: the shipping thread
+ * applies every entry to the replica itself.
+ */
+public class InProcessTransport implements ReplicationTransport {
+
+    private final Replica replica;
+
+    public InProcessTransport(Replica replica) {
+        this.replica = replica;
+    }
+
+    @Override
+    public void send(ReplicationEntry entry) {
+        replica.apply(entry);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,141 @@
+package com.my.project.replication;
+
+import java.util.concurrent.TimeUnit;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.logging.Log;
+
+/**
+ * A read replica: a local repository the entries of the replication log are
+ * applied to, in order, by whatever transport delivers them.
+ * <p>
+ * The replica records the last entry applied, so readers can tell how far
+ * behind the primary it is. Entries at or below it, such as those sent again
+ * after a reconnect, are skipped. The replica follows one replication log at
+ * a time, identified by its epoch. The first entry of another log, which
+ * starts with every book of its primary, resets it to follow that log. Any
+ * other entry of another log is refused.
+ */
+public class Replica {
+
+    private static final Log logger = Log.getLog(Replica.class);
+
+    private final String name;
+    private final BookRepository store;
+    //changed after the sequence is reset, see getAppliedSequence(long)
+    private volatile long epoch;
+    private volatile long appliedSequence;
+    private volatile long appliedTimestamp;
+
+    /**
+     * @param name the name of the replica, for logs
+     * @param store the repository holding its copy of the books, only written by the replica
+     */
+    public Replica(String name, BookRepository store) {
+        this.name = name;
+        this.store = store;
+    }
+
+    /**
+     * Apply an entry: store the state of its book, adding the book if needed.
+     * Called by one transport thread at a time.
+     * @throws IllegalStateException if the entry is of another log and not its first
+     */
+    public synchronized void apply(ReplicationEntry entry) {
+        if(entry.getEpoch() != epoch) {
+            if(entry.getSequence() != 1) {
+                throw new IllegalStateException("Replica " + name + " follows log " + epoch + " and cannot apply #"
+                    + entry.getSequence() + " of log " + entry.getEpoch());
+            }
+            if(appliedSequence > 0) {
+                logger.info("Replica {} starts over with log {} instead of log {}", name, entry.getEpoch(), epoch);
+            }
+            appliedSequence = 0;
+            appliedTimestamp = 0;
+            epoch = entry.getEpoch();
+        }
+        if(entry.getSequence() <= appliedSequence) {
+            return;
+        }
+        Book book = entry.getBook();
+        if(store.updateBook(book) == null) {
+            store.addBook(book);
+        }
+        appliedTimestamp = entry.getTimestamp();
+        //published last, readers checking the sequence see the book
+        appliedSequence = entry.getSequence();
+        notifyAll();
+    }
+
+    /**
+     * Wait until the replica has applied an entry of a log.
+     * @return whether it did before the timeout
+     * @throws IllegalStateException if interrupted while waiting
+     */
+    public synchronized boolean awaitSequence(long epoch, long sequence, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            while(this.epoch != epoch || appliedSequence < sequence) {
+                long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if(wait <= 0) {
+                    return false;
+                }
+                wait(wait);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for replica " + name, e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the repository to read the copy of the books from
+     */
+    public BookRepository getStore() {
+        return store;
+    }
+
+    /**
+     * @return the sequence of the last entry applied, 0 for none
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * @return the sequence of the last entry of the log applied, -1 if the replica follows another log
+     */
+    public long getAppliedSequence(long epoch) {
+        if(this.epoch != epoch) {
+            return -1;
+        }
+        long applied = appliedSequence;
+        //the sequence is reset before the epoch changes, so the same epoch after it vouches for it
+        return this.epoch == epoch ? applied : -1;
+    }
+
+    /**
+     * @return the epoch of the log followed, 0 before the first entry
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return when the primary applied the last entry applied here, in epoch milliseconds
+     */
+    public long getAppliedTimestamp() {
+        return appliedTimestamp;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
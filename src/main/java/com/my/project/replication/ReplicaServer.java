@@ -0,0 +1,96 @@
+package com.my.project.replication;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import com.my.project.logging.Log;
+
+/**
+ * Receives the replication log of a {@link SocketTransport} and applies it
+ * to a {@link Replica}. Serves one primary connection at a time and accepts
+ * the next when it closes. A connection that sends a bad frame is dropped,
+ * the server keeps listening.
+ */
+public class ReplicaServer implements AutoCloseable {
+
+    private static final Log logger = Log.getLog(ReplicaServer.class);
+
+    private final Replica replica;
+    private final ServerSocket server;
+    private final Thread thread;
+    private volatile Socket connection;
+    private volatile boolean closed;
+
+    /**
+     * Listen on the loopback interface.
+     * @param port the port, 0 for any free one
+     * @throws IOException if the port cannot be bound
+     */
+    public ReplicaServer(Replica replica, int port) throws IOException {
+        this.replica = replica;
+        this.server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+        thread = new Thread(new Runnable() {
+            public void run() {
+                serve();
+            }
+        }, "replica-server-" + replica.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the address to connect a {@link SocketTransport} to
+     */
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(server.getInetAddress(), server.getLocalPort());
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        Socket socket = connection;
+        if(socket != null) {
+            socket.close();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while closing replica server " + replica.getName(), e);
+        }
+    }
+
+    private void serve() {
+        while(!closed) {
+            try {
+                Socket socket = server.accept();
+                connection = socket;
+                try {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    while(true) {
+                        replica.apply(SocketTransport.read(in));
+                    }
+                } catch (EOFException e) {
+                    logger.info("Primary disconnected from replica {} at #{}", replica.getName(),
+                        replica.getAppliedSequence());
+                } catch (RuntimeException e) {
+                    //an entry the replica refuses or cannot decode, the primary sees the connection fail
+                    logger.error("Replica {} refused the log of the primary", replica.getName(), e);
+                } finally {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                if(!closed) {
+                    logger.warn("Replication connection of replica {} failed", replica.getName(), e);
+                }
+            }
+        }
+    }
+}
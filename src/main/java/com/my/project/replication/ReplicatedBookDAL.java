@@ -0,0 +1,368 @@
+package com.my.project.replication;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.IsbnLocks;
+import com.my.project.logging.Log;
+
+/**
+ * {@link BookRepository} writing to a primary and reading from replicas.
+ * <p>
+ * {@link #addBook(Book)}, {@link #updateBook(Book)} and
+ * {@link #setBookTitle(Book, String)} apply on the primary, then append the
+ * new state of the book to an ordered replication log. A thread per replica
+ * ships the log through its {@link ReplicationTransport}; the replica
+ * applies it in order. On construction the log starts with every book of
+ * the primary, so empty replicas catch up. Each log has a random epoch, so
+ * a replica that followed the log of an earlier instance starts over rather
+ * than mistaking its sequence for one of this log.
+ * <p>
+ * Reads go to the replicas in turn that follow this log and have applied its
+ * initial books, skipping those that do not meet the {@link Consistency}, and
+ * to the primary when none does:
+ * <ul>
+ * <li>{@link Consistency#READ_YOUR_WRITES}: the replica has applied the
+ * last write of the calling thread.</li>
+ * <li>{@link Consistency#BOUNDED_STALENESS}: the replica has applied the
+ * whole log, or a write the primary applied at most <code>maxStaleness</code>
+ * ago. The lag is measured from the last write applied, so it is overstated
+ * when the first write after a quiet period is in flight.</li>
+ * </ul>
+ * A replica whose transport fails, or that falls <code>capacity</code>
+ * entries behind, is no longer shipped to or read from. Writes to one ISBN
+ * are serialized, so their entries are in the order the primary applied them.
+ */
+public class ReplicatedBookDAL implements BookRepository, AutoCloseable {
+
+    private static final Log logger = Log.getLog(ReplicatedBookDAL.class);
+
+    public static final int DEFAULT_CAPACITY = 100000;
+
+    private static final long AWAIT_SLICE_MILLIS = 10;
+    //tells a shipping thread to flush and stop
+    private static final ReplicationEntry END = new ReplicationEntry(0, 0, 0, null);
+
+    /**
+     * Which replicas may serve a read.
+     */
+    public enum Consistency { READ_YOUR_WRITES, BOUNDED_STALENESS }
+
+    private final BookRepository primary;
+    private final long epoch;
+    //the entries holding the books of the primary on construction
+    private final long seeded;
+    private final List<Link> links;
+    private final Consistency consistency;
+    private final long maxStalenessMillis;
+    private final IsbnLocks locks = new IsbnLocks();
+    private final Object log = new Object();
+    private final ThreadLocal<long[]> lastWritten = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    //the last entry appended, written under the log lock
+    private volatile long sequence;
+
+    /**
+     * Replication with up to {@link #DEFAULT_CAPACITY} entries queued per replica.
+     * @see #ReplicatedBookDAL(BookRepository, Map, Consistency, long, TimeUnit, int)
+     */
+    public ReplicatedBookDAL(BookRepository primary, Map<Replica, ReplicationTransport> replicas,
+            Consistency consistency, long maxStaleness, TimeUnit unit) {
+        this(primary, replicas, consistency, maxStaleness, unit, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param primary the repository written to
+     * @param replicas the replicas to read from and the transport shipping the log to each
+     * @param consistency which replicas may serve a read
+     * @param maxStaleness how far behind a replica may be for {@link Consistency#BOUNDED_STALENESS}
+     * @param capacity number of writes queued for a replica at which it is no longer shipped to
+     */
+    public ReplicatedBookDAL(BookRepository primary, Map<Replica, ReplicationTransport> replicas,
+            Consistency consistency, long maxStaleness, TimeUnit unit, int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.primary = primary;
+        this.consistency = consistency;
+        this.maxStalenessMillis = unit.toMillis(maxStaleness);
+        long epoch;
+        do {
+            epoch = ThreadLocalRandom.current().nextLong();
+        } while(epoch == 0);
+        this.epoch = epoch;
+        //shipped ahead of the queued writes, so the queues hold writes only
+        List<ReplicationEntry> seed = new ArrayList<ReplicationEntry>();
+        long now = System.currentTimeMillis();
+        for(Book book : primary.getAllBooks()) {
+            seed.add(new ReplicationEntry(epoch, seed.size() + 1, now, book));
+        }
+        this.seeded = seed.size();
+        this.sequence = seeded;
+        List<Link> links = new ArrayList<Link>(replicas.size());
+        for(Map.Entry<Replica, ReplicationTransport> replica : replicas.entrySet()) {
+            links.add(new Link(replica.getKey(), replica.getValue(), seed, capacity));
+        }
+        this.links = Collections.unmodifiableList(links);
+        for(Link link : links) {
+            link.thread.start();
+        }
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        return reader().getAllBooks();
+    }
+
+    @Override
+    public Book getBook(String isbn) {
+        return reader().getBook(isbn);
+    }
+
+    @Override
+    public String getBookTitleByIsbn(String isbn) {
+        return reader().getBookTitleByIsbn(isbn);
+    }
+
+    @Override
+    public String addBook(Book book) {
+        synchronized(locks.of(book.getIsbn())) {
+            String isbn = primary.addBook(book);
+            append(new Book(book));
+            return isbn;
+        }
+    }
+
+    @Override
+    public String updateBook(Book book) {
+        synchronized(locks.of(book.getIsbn())) {
+            String isbn = primary.updateBook(book);
+            if(isbn != null) {
+                append(new Book(book));
+            }
+            return isbn;
+        }
+    }
+
+    @Override
+    public void setBookTitle(Book book, String title) {
+        if(book == null || book.getIsbn() == null) {
+            primary.setBookTitle(book, title);
+            return;
+        }
+        synchronized(locks.of(book.getIsbn())) {
+            primary.setBookTitle(book, title);
+            //ship the whole state, the replicas may not have the caller's copy
+            Book stored = primary.getBook(book.getIsbn());
+            if(stored != null) {
+                append(stored);
+            }
+        }
+    }
+
+    /**
+     * Wait until every replica still shipped to has applied the log so far.
+     * @return whether they did before the timeout
+     */
+    public boolean awaitReplication(long timeout, TimeUnit unit) {
+        long target = sequence;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for(Link link : links) {
+            //wait in slices, the link may break meanwhile
+            while(!link.broken
+                    && !link.replica.awaitSequence(epoch, target, AWAIT_SLICE_MILLIS, TimeUnit.MILLISECONDS)) {
+                if(System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the epoch identifying the replication log
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return the sequence of the last entry of the replication log
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the number of reads served by a replica
+     */
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    /**
+     * @return the number of reads served by the primary because no replica was fresh enough
+     */
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    /**
+     * Ship what is logged, then stop the shipping threads and close the
+     * transports. The primary and the replicas stay open.
+     */
+    @Override
+    public void close() {
+        try {
+            for(Link link : links) {
+                //waits for room, the shipping thread drains the queue or clears it when it fails
+                link.queue.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while closing", e);
+        }
+        for(Link link : links) {
+            try {
+                link.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while closing", e);
+            }
+            try {
+                link.transport.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close the transport to replica {}", link.replica, e);
+            }
+        }
+    }
+
+    /**
+     * @param book the state to ship, not changed afterwards
+     */
+    private void append(Book book) {
+        long appended;
+        synchronized(log) {
+            appended = sequence + 1;
+            ReplicationEntry entry = new ReplicationEntry(epoch, appended, System.currentTimeMillis(), book);
+            for(Link link : links) {
+                if(!link.broken) {
+                    link.ship(entry);
+                }
+            }
+            sequence = appended;
+        }
+        lastWritten.get()[0] = appended;
+    }
+
+    private BookRepository reader() {
+        int count = links.size();
+        int start = next.getAndIncrement() & Integer.MAX_VALUE;
+        for(int i = 0; i < count; i++) {
+            Link link = links.get((start + i) % count);
+            if(!link.broken && fresh(link.replica)) {
+                replicaReads.increment();
+                return link.replica.getStore();
+            }
+        }
+        primaryReads.increment();
+        return primary;
+    }
+
+    private boolean fresh(Replica replica) {
+        long applied = replica.getAppliedSequence(epoch);
+        if(applied < seeded) {
+            //following another log, or missing books of the primary
+            return false;
+        }
+        if(consistency == Consistency.READ_YOUR_WRITES) {
+            return applied >= lastWritten.get()[0];
+        }
+        return applied >= sequence || System.currentTimeMillis() - replica.getAppliedTimestamp()
+            <= maxStalenessMillis;
+    }
+
+    /**
+     * A replica, its transport and the thread shipping the log to it.
+     */
+    private static final class Link implements Runnable {
+
+        final Replica replica;
+        final ReplicationTransport transport;
+        final LinkedBlockingQueue<ReplicationEntry> queue;
+        final Thread thread;
+        //shipped first, then dropped
+        private List<ReplicationEntry> seed;
+        volatile boolean broken;
+
+        Link(Replica replica, ReplicationTransport transport, List<ReplicationEntry> seed, int capacity) {
+            this.replica = replica;
+            this.transport = transport;
+            this.seed = seed;
+            this.queue = new LinkedBlockingQueue<ReplicationEntry>(capacity);
+            this.thread = new Thread(this, "replication-" + replica.getName());
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Queue an entry, or give up on the replica if it is too far behind. Holds the log lock.
+         */
+        void ship(ReplicationEntry entry) {
+            if(!queue.offer(entry)) {
+                logger.error("Replica {} is {} writes behind at #{}, it is no longer read from", replica,
+                    queue.size(), replica.getAppliedSequence());
+                broken = true;
+                queue.clear();
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<ReplicationEntry> seed = this.seed;
+                this.seed = null;
+                for(ReplicationEntry entry : seed) {
+                    transport.send(entry);
+                }
+                transport.flush();
+                while(true) {
+                    ReplicationEntry entry = queue.take();
+                    if(entry == END) {
+                        transport.flush();
+                        return;
+                    }
+                    transport.send(entry);
+                    if(queue.isEmpty()) {
+                        transport.flush();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Shipping to replica {} failed at #{}, it is no longer read from", replica,
+                    replica.getAppliedSequence(), e);
+                broken = true;
+                queue.clear();
+            } catch (InterruptedException e) {
+                broken = true;
+                queue.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.my.project.replication;
+
+import com.my.project.Book;
+
+/**
+ * One write of the primary as shipped to the replicas: the complete new
+ * state of a book, numbered in the order the replicas apply it. The epoch
+ * identifies the replication log the number belongs to, since every log
+ * numbers its entries from 1.
+ */
+public final class ReplicationEntry {
+
+    private final long epoch;
+    private final long sequence;
+    private final long timestamp;
+    private final Book book;
+
+    /**
+     * @param epoch the identifier of the replication log
+     * @param sequence the position in the replication log, from 1
+     * @param timestamp when the primary applied the write, in epoch milliseconds
+     * @param book the state of the book after the write, not changed afterwards
+     */
+    public ReplicationEntry(long epoch, long sequence, long timestamp, Book book) {
+        this.epoch = epoch;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.book = book;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + book.getIsbn();
+    }
+}
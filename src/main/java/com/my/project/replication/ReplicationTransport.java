@@ -0,0 +1,27 @@
+package com.my.project.replication;
+
+import java.io.IOException;
+
+/**
+ * Carries the replication log from the primary to one {@link Replica}.
+ * <p>
+ * Each transport is used by one shipping thread of the
+ * {@link ReplicatedBookDAL}, which sends the entries in sequence order and
+ * flushes whenever it has no more to send.
+ */
+public interface ReplicationTransport extends AutoCloseable {
+
+    /**
+     * Send the next entry; may buffer it until {@link #flush()}.
+     * @throws IOException if the replica cannot be reached, which stops shipping to it
+     */
+    void send(ReplicationEntry entry) throws IOException;
+
+    /**
+     * Deliver the entries buffered so far.
+     */
+    void flush() throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
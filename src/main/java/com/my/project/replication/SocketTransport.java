@@ -0,0 +1,84 @@
+package com.my.project.replication;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import com.my.project.codec.BookCodec;
+
+/**
+ * Transport to a {@link ReplicaServer} over a TCP connection, e.g. on the
+ * loopback interface. Entries are written as frames of <code>long epoch |
+ * long sequence | long timestamp | int length | </code>{@link BookCodec} encoding, buffered
+ * until {@link #flush()} so a burst of writes travels in few packets. A frame
+ * longer than {@link #MAX_BOOK_LENGTH} is refused on both ends, so a corrupt
+ * length cannot make the replica allocate an arbitrary buffer.
+ */
+public class SocketTransport implements ReplicationTransport {
+
+    static final int MAX_BOOK_LENGTH = 16 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Socket socket;
+    private final DataOutputStream out;
+
+    /**
+     * @param address where the replica server listens
+     * @throws IOException if it cannot be connected
+     */
+    public SocketTransport(InetSocketAddress address) throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(address);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+    }
+
+    @Override
+    public void send(ReplicationEntry entry) throws IOException {
+        write(entry, out);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    static void write(ReplicationEntry entry, DataOutputStream out) throws IOException {
+        byte[] book = BookCodec.toBytes(entry.getBook());
+        if(book.length > MAX_BOOK_LENGTH) {
+            throw new IOException("Book of " + book.length + " bytes in entry #" + entry.getSequence()
+                + " exceeds the frame limit of " + MAX_BOOK_LENGTH);
+        }
+        out.writeLong(entry.getEpoch());
+        out.writeLong(entry.getSequence());
+        out.writeLong(entry.getTimestamp());
+        out.writeInt(book.length);
+        out.write(book);
+    }
+
+    static ReplicationEntry read(DataInputStream in) throws IOException {
+        long epoch = in.readLong();
+        long sequence = in.readLong();
+        long timestamp = in.readLong();
+        int length = in.readInt();
+        if(length < 0 || length > MAX_BOOK_LENGTH) {
+            throw new IOException("Bad book length " + length + " in entry #" + sequence);
+        }
+        byte[] book = new byte[length];
+        in.readFully(book);
+        return new ReplicationEntry(epoch, sequence, timestamp, BookCodec.fromBytes(book));
+    }
+}
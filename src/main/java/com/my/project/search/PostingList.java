@@ -0,0 +1,153 @@
+package com.my.project.search;
+
+import java.util.Arrays;
+
+/**
+ * Documents containing one term, compressed.
+ * <p>
+ * Each posting is the gap to the previous document number followed by the
+ * term frequency, both as variable-length integers of 7 bits per byte. Most
+ * postings of a large catalogue take two or three bytes. Documents must be
+ * appended in increasing order. Not thread-safe, the index guards it.
+ * <p>
+ * Every {@link #SKIP_INTERVAL} postings a skip entry records the document
+ * before the block and where the block starts, so {@link Cursor#advance(int)}
+ * jumps over blocks instead of decoding them.
+ */
+final class PostingList {
+
+    static final int SKIP_INTERVAL = 64;
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int lastDoc = -1;
+    private int size;
+    private int[] skipDocs = new int[1];
+    private int[] skipOffsets = new int[1];
+    private int skips;
+    //best documents for this term alone, computed by the index on demand
+    volatile int[] champions;
+
+    void add(int doc, int frequency) {
+        if(doc <= lastDoc) {
+            throw new IllegalArgumentException("Document " + doc + " is not after " + lastDoc);
+        }
+        if(size % SKIP_INTERVAL == 0) {
+            if(skips == skipDocs.length) {
+                skipDocs = Arrays.copyOf(skipDocs, skips * 2);
+                skipOffsets = Arrays.copyOf(skipOffsets, skips * 2);
+            }
+            skipDocs[skips] = lastDoc;
+            skipOffsets[skips] = length;
+            skips++;
+        }
+        ensure(10);
+        writeVarInt(doc - lastDoc);
+        writeVarInt(frequency);
+        lastDoc = doc;
+        size++;
+        champions = null;
+    }
+
+    /**
+     * @return number of postings, removed documents included
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return bytes used by the postings and skip entries
+     */
+    int bytes() {
+        return length + skips * 8;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Forward-only reader over the postings.
+     */
+    final class Cursor {
+
+        private int position;
+        private int doc = -1;
+        private int frequency;
+        //postings read so far
+        private int read;
+
+        boolean next() {
+            if(position >= length) {
+                return false;
+            }
+            doc += readVarInt();
+            frequency = readVarInt();
+            read++;
+            return true;
+        }
+
+        int doc() {
+            return doc;
+        }
+
+        int frequency() {
+            return frequency;
+        }
+
+        /**
+         * Move to the first document at or after the target.
+         * @return false if there is none
+         */
+        boolean advance(int target) {
+            if(doc >= target) {
+                return true;
+            }
+            //skip only if the target is past the block being read
+            int nextBlock = read / SKIP_INTERVAL + 1;
+            if(nextBlock < skips && skipDocs[nextBlock] < target) {
+                //last block whose previous document is before the target
+                int block = Arrays.binarySearch(skipDocs, nextBlock, skips, target - 1);
+                if(block < 0) {
+                    block = -block - 2;
+                }
+                position = skipOffsets[block];
+                doc = skipDocs[block];
+                read = block * SKIP_INTERVAL;
+            }
+            while(doc < target) {
+                if(!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while(b < 0);
+            return value;
+        }
+    }
+
+    private void writeVarInt(int value) {
+        while((value & ~0x7f) != 0) {
+            data[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    private void ensure(int extra) {
+        if(length + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.my.project.search;
+
+/**
+ * A book found by a title search.
+ */
+public final class SearchHit {
+
+    private final String isbn;
+    private final String title;
+    private final double score;
+
+    SearchHit(String isbn, String title, double score) {
+        this.isbn = isbn;
+        this.title = title;
+        this.score = score;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return BM25 relevance, higher is better
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return isbn + " " + title + " (" + score + ")";
+    }
+}
@@ -0,0 +1,65 @@
+package com.my.project.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits titles into search terms.
+ * <p>
+ * Terms are runs of letters and digits, lower-cased and stripped of accents, so
+ * "Let Us C 13th Edition" gives <code>let, us, c, 13th, edition</code> and
+ * "Élan" matches "elan". Queries go through the same analysis.
+ */
+public final class TitleAnalyzer {
+
+    private TitleAnalyzer() {
+    }
+
+    /**
+     * @param text a title or a query, may be null
+     * @return the terms in order, duplicates kept
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<String>();
+        if(text == null) {
+            return terms;
+        }
+        String folded = fold(text);
+        int start = -1;
+        for(int i = 0; i <= folded.length(); i++) {
+            boolean part = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if(part && start < 0) {
+                start = i;
+            } else if(!part && start >= 0) {
+                terms.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Lower-case and remove accents, leaving plain ASCII text as it is.
+     */
+    static String fold(String text) {
+        boolean ascii = true;
+        for(int i = 0; i < text.length() && ascii; i++) {
+            ascii = text.charAt(i) < 0x80;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        if(ascii) {
+            return lower;
+        }
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for(int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if(Character.getType(c) != Character.NON_SPACING_MARK) {
+                folded.append(c);
+            }
+        }
+        return folded.toString();
+    }
+}
@@ -0,0 +1,617 @@
+package com.my.project.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over book titles with BM25 ranking and prefix search.
+ * <p>
+ * Titles are split by {@link TitleAnalyzer}. Every indexed title is a document
+ * with a number; each term maps to a {@link PostingList} of document numbers
+ * and term frequencies compressed with delta and variable-length encoding.
+ * Terms are kept in a sorted dictionary, so all terms starting with a prefix
+ * are one range of it, which serves typeahead.
+ * <p>
+ * Re-indexing a book appends a new document and marks the old one removed;
+ * searches skip removed documents. Once more than half of the documents are
+ * removed the postings are rebuilt without them. Searches share a read lock,
+ * changes take the write lock.
+ * <p>
+ * Scores are summed in a small hash table per query, sized by the postings it
+ * reads, so both the time and the memory of a query follow those postings
+ * rather than the size of the catalogue.
+ */
+public class TitleSearchIndex {
+
+    //BM25 term frequency saturation and length normalization
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    //completions of the last query term that prefix search scores
+    private static final int PREFIX_EXPANSIONS = 16;
+    //documents kept per term for prefix-only typeahead
+    private static final int CHAMPIONS = 64;
+    private static final int MIN_REBUILD = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TreeMap<String, PostingList> terms = new TreeMap<String, PostingList>();
+    private List<String> isbns = new ArrayList<String>();
+    private List<String> titles = new ArrayList<String>();
+    private int[] lengths = new int[1024];
+    private BitSet removed = new BitSet();
+    private int removedCount;
+    private Map<String, Integer> documents = new HashMap<String, Integer>();
+    private long totalLength;
+
+    /**
+     * Index the title of a book, replacing its previous title.
+     * @param isbn the ISBN of the book
+     * @param title the title, null removes the book from the index
+     */
+    public void index(String isbn, String title) {
+        lock.writeLock().lock();
+        try {
+            drop(isbn);
+            if(title != null) {
+                add(isbn, title);
+            }
+            if(removedCount > Math.max(MIN_REBUILD, documents.size())) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param isbn the ISBN of the book to drop from the index
+     */
+    public void remove(String isbn) {
+        lock.writeLock().lock();
+        try {
+            drop(isbn);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of indexed books
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of distinct terms
+     */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rank titles containing any of the query terms by BM25.
+     * @param query words to look for
+     * @param limit maximum number of hits
+     * @return the best hits first
+     */
+    public List<SearchHit> search(String query, int limit) {
+        Collection<String> queryTerms = asSet(TitleAnalyzer.tokenize(query));
+        lock.readLock().lock();
+        try {
+            long postings = 0;
+            for(String term : queryTerms) {
+                PostingList list = terms.get(term);
+                postings += list != null ? list.size() : 0;
+            }
+            Accumulator scores = new Accumulator((int) Math.min(postings, documents.size()));
+            int group = 0;
+            for(String term : queryTerms) {
+                score(terms.get(term), scores, group++);
+            }
+            return top(scores, limit, 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Typeahead search: titles containing all the query terms, where the last
+     * one may be incomplete and matches the most frequent terms it is a prefix of.
+     * <p>
+     * Candidates come from the rarest complete term, or from the completions
+     * if they are rarer, and the other terms are only checked against them. A query of a bare prefix takes its candidates from
+     * the champion lists of the completions, so a single letter costs no more
+     * than a word; a title containing several completions but in none of their
+     * champion lists can be missed.
+     * @param query words typed so far
+     * @param limit maximum number of hits
+     * @return the best hits by BM25 first
+     */
+    public List<SearchHit> searchPrefix(String query, int limit) {
+        List<String> tokens = TitleAnalyzer.tokenize(query);
+        if(tokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String prefix = tokens.remove(tokens.size() - 1);
+        lock.readLock().lock();
+        try {
+            //one group per complete term, and one for all completions of the prefix
+            List<List<PostingList>> groups = new ArrayList<List<PostingList>>();
+            for(String term : asSet(tokens)) {
+                PostingList postings = terms.get(term);
+                if(postings == null) {
+                    return Collections.emptyList();
+                }
+                groups.add(Collections.singletonList(postings));
+            }
+            List<PostingList> completions = new ArrayList<PostingList>();
+            for(String completion : completions(prefix, PREFIX_EXPANSIONS)) {
+                completions.add(terms.get(completion));
+            }
+            groups.add(completions);
+            Accumulator scores;
+            int[] candidates;
+            int group = 0;
+            if(groups.size() == 1) {
+                candidates = champions(completions);
+                scores = new Accumulator(candidates.length);
+            } else {
+                Collections.sort(groups, new Comparator<List<PostingList>>() {
+                    public int compare(List<PostingList> a, List<PostingList> b) {
+                        return Long.compare(size(a), size(b));
+                    }
+                });
+                List<PostingList> rarest = groups.remove(0);
+                scores = new Accumulator((int) Math.min(size(rarest), documents.size()));
+                for(PostingList postings : rarest) {
+                    score(postings, scores, group);
+                }
+                candidates = scores.docs();
+                if(rarest.size() > 1) {
+                    Arrays.sort(candidates);
+                }
+                group++;
+            }
+            for(List<PostingList> next : groups) {
+                for(PostingList postings : next) {
+                    score(postings, scores, group, candidates);
+                }
+                group++;
+            }
+            return top(scores, limit, group);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param prefix start of a word
+     * @param limit maximum number of suggestions
+     * @return indexed terms starting with the prefix, the most frequent first
+     */
+    public List<String> suggest(String prefix, int limit) {
+        List<String> folded = TitleAnalyzer.tokenize(prefix);
+        if(folded.size() != 1) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            return completions(folded.get(0), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return bytes used by all posting lists
+     */
+    public long postingBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for(PostingList postings : terms.values()) {
+                bytes += postings.bytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(String isbn, String title) {
+        List<String> tokens = TitleAnalyzer.tokenize(title);
+        int doc = isbns.size();
+        isbns.add(isbn);
+        titles.add(title);
+        if(doc == lengths.length) {
+            lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+        lengths[doc] = tokens.size();
+        totalLength += tokens.size();
+        documents.put(isbn, doc);
+        for(Map.Entry<String, Integer> frequency : frequencies(tokens).entrySet()) {
+            PostingList postings = terms.get(frequency.getKey());
+            if(postings == null) {
+                postings = new PostingList();
+                terms.put(frequency.getKey(), postings);
+            }
+            postings.add(doc, frequency.getValue());
+        }
+    }
+
+    private void drop(String isbn) {
+        Integer doc = documents.remove(isbn);
+        if(doc != null) {
+            removed.set(doc);
+            removedCount++;
+            totalLength -= lengths[doc];
+        }
+    }
+
+    /**
+     * Index the live documents again from scratch, dropping removed ones.
+     */
+    private void rebuild() {
+        List<String> liveIsbns = new ArrayList<String>(documents.size());
+        List<String> liveTitles = new ArrayList<String>(documents.size());
+        for(int doc = 0; doc < isbns.size(); doc++) {
+            if(!removed.get(doc)) {
+                liveIsbns.add(isbns.get(doc));
+                liveTitles.add(titles.get(doc));
+            }
+        }
+        terms = new TreeMap<String, PostingList>();
+        isbns = new ArrayList<String>(liveIsbns.size());
+        titles = new ArrayList<String>(liveIsbns.size());
+        lengths = new int[Math.max(1024, liveIsbns.size())];
+        removed = new BitSet();
+        removedCount = 0;
+        documents = new HashMap<String, Integer>(liveIsbns.size() * 2);
+        totalLength = 0;
+        for(int i = 0; i < liveIsbns.size(); i++) {
+            add(liveIsbns.get(i), liveTitles.get(i));
+        }
+    }
+
+    /**
+     * Add the BM25 contribution of one term to the score of every live document containing it.
+     * @param group number of the query term, completions of a prefix share one
+     */
+    private void score(PostingList postings, Accumulator scores, int group) {
+        if(postings == null || documents.isEmpty()) {
+            return;
+        }
+        double idf = idf(postings);
+        PostingList.Cursor cursor = postings.cursor();
+        while(cursor.next()) {
+            int doc = cursor.doc();
+            if(!removed.get(doc)) {
+                scores.add(doc, group, bm25(idf, doc, cursor.frequency()));
+            }
+        }
+    }
+
+    /**
+     * Like {@link #score(PostingList, Accumulator, int)}, but only for the candidates
+     * that matched every earlier query term. A short posting list is read whole
+     * and checked against the accumulator, a long one skips to each candidate.
+     * @param candidates document numbers in increasing order
+     */
+    private void score(PostingList postings, Accumulator scores, int group, int[] candidates) {
+        double idf = idf(postings);
+        PostingList.Cursor cursor = postings.cursor();
+        if(postings.size() < candidates.length) {
+            while(cursor.next()) {
+                int doc = cursor.doc();
+                if(scores.matches(doc) >= group && !removed.get(doc)) {
+                    scores.add(doc, group, bm25(idf, doc, cursor.frequency()));
+                }
+            }
+            return;
+        }
+        for(int doc : candidates) {
+            if(scores.matches(doc) < group) {
+                continue;
+            }
+            if(!cursor.advance(doc)) {
+                return;
+            }
+            if(cursor.doc() == doc) {
+                scores.add(doc, group, bm25(idf, doc, cursor.frequency()));
+            }
+        }
+    }
+
+    /**
+     * Inverse document frequency of a term. Removed documents still count in
+     * its document frequency until the next rebuild.
+     */
+    private double idf(PostingList postings) {
+        int live = documents.size();
+        int frequency = Math.min(postings.size(), live);
+        return Math.log(1 + (live - frequency + 0.5) / (frequency + 0.5));
+    }
+
+    private double bm25(double idf, int doc, int tf) {
+        double averageLength = Math.max(1, (double) totalLength / documents.size());
+        return idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[doc] / averageLength));
+    }
+
+    private static long size(List<PostingList> group) {
+        long size = 0;
+        for(PostingList postings : group) {
+            size += postings.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the live documents in the champion lists of the terms, in increasing order
+     */
+    private int[] champions(List<PostingList> completions) {
+        BitSet union = new BitSet();
+        for(PostingList completion : completions) {
+            for(int doc : champions(completion)) {
+                if(!removed.get(doc)) {
+                    union.set(doc);
+                }
+            }
+        }
+        int[] docs = new int[union.cardinality()];
+        for(int i = 0, doc = union.nextSetBit(0); doc >= 0; i++, doc = union.nextSetBit(doc + 1)) {
+            docs[i] = doc;
+        }
+        return docs;
+    }
+
+    /**
+     * The documents scoring best for the term alone. Computed on first use and
+     * dropped by the next posting added to the term; concurrent readers may both
+     * compute it, with the same result, and publish it through the volatile field.
+     */
+    private int[] champions(PostingList postings) {
+        int[] champions = postings.champions;
+        if(champions != null) {
+            return champions;
+        }
+        int[] docs = new int[CHAMPIONS];
+        double[] best = new double[CHAMPIONS];
+        int count = 0;
+        int weakest = 0;
+        double idf = idf(postings);
+        PostingList.Cursor cursor = postings.cursor();
+        while(cursor.next()) {
+            int doc = cursor.doc();
+            if(removed.get(doc)) {
+                continue;
+            }
+            double score = bm25(idf, doc, cursor.frequency());
+            if(count < CHAMPIONS) {
+                docs[count] = doc;
+                best[count++] = score;
+            } else if(score > best[weakest]) {
+                docs[weakest] = doc;
+                best[weakest] = score;
+            } else {
+                continue;
+            }
+            if(count == CHAMPIONS) {
+                for(int i = 0; i < CHAMPIONS; i++) {
+                    if(best[i] < best[weakest]) {
+                        weakest = i;
+                    }
+                }
+            }
+        }
+        champions = Arrays.copyOf(docs, count);
+        postings.champions = champions;
+        return champions;
+    }
+
+    /**
+     * Pick the best scored documents.
+     * @param required number of query terms a document must match
+     */
+    private List<SearchHit> top(Accumulator scores, int limit, int required) {
+        PriorityQueue<Integer> best = new PriorityQueue<Integer>(Math.max(1, limit), new ScoreOrder(scores));
+        for(int entry = 0; entry < scores.size && limit > 0; entry++) {
+            if(scores.matches[entry] < required) {
+                continue;
+            }
+            if(best.size() < limit) {
+                best.add(entry);
+            } else if(best.comparator().compare(entry, best.peek()) > 0) {
+                best.poll();
+                best.add(entry);
+            }
+        }
+        SearchHit[] hits = new SearchHit[best.size()];
+        for(int i = hits.length - 1; i >= 0; i--) {
+            int entry = best.poll();
+            int doc = scores.docs[entry];
+            hits[i] = new SearchHit(isbns.get(doc), titles.get(doc), scores.scores[entry]);
+        }
+        return Arrays.asList(hits);
+    }
+
+    /**
+     * @return terms starting with the prefix, the ones in most documents first
+     */
+    private List<String> completions(String prefix, int limit) {
+        if(limit <= 0) {
+            return Collections.emptyList();
+        }
+        Comparator<Map.Entry<String, PostingList>> byFrequency = new Comparator<Map.Entry<String, PostingList>>() {
+            public int compare(Map.Entry<String, PostingList> a, Map.Entry<String, PostingList> b) {
+                int bySize = Integer.compare(a.getValue().size(), b.getValue().size());
+                return bySize != 0 ? bySize : b.getKey().compareTo(a.getKey());
+            }
+        };
+        //keep the best completions seen so far, the least frequent on top
+        PriorityQueue<Map.Entry<String, PostingList>> best =
+            new PriorityQueue<Map.Entry<String, PostingList>>(limit, byFrequency);
+        SortedMap<String, PostingList> range = terms.subMap(prefix, prefix + Character.MAX_VALUE);
+        for(Map.Entry<String, PostingList> term : range.entrySet()) {
+            if(best.size() < limit) {
+                best.add(term);
+            } else if(byFrequency.compare(term, best.peek()) > 0) {
+                best.poll();
+                best.add(term);
+            }
+        }
+        String[] completions = new String[best.size()];
+        for(int i = completions.length - 1; i >= 0; i--) {
+            completions[i] = best.poll().getKey();
+        }
+        return Arrays.asList(completions);
+    }
+
+    private static Map<String, Integer> frequencies(List<String> tokens) {
+        Map<String, Integer> frequencies = new LinkedHashMap<String, Integer>();
+        for(String token : tokens) {
+            Integer count = frequencies.get(token);
+            frequencies.put(token, count == null ? 1 : count + 1);
+        }
+        return frequencies;
+    }
+
+    private static Collection<String> asSet(List<String> tokens) {
+        return new LinkedHashSet<String>(tokens);
+    }
+
+    /**
+     * Orders accumulator entries by score, lowest first, and by document number on ties.
+     */
+    private static final class ScoreOrder implements Comparator<Integer> {
+
+        private final Accumulator scores;
+
+        ScoreOrder(Accumulator scores) {
+            this.scores = scores;
+        }
+
+        public int compare(Integer a, Integer b) {
+            int byScore = Double.compare(scores.scores[a], scores.scores[b]);
+            return byScore != 0 ? byScore : Integer.compare(scores.docs[b], scores.docs[a]);
+        }
+    }
+
+    /**
+     * Scores of the documents a query has matched so far, in entries found
+     * through an open-addressing table keyed by document number. It grows with
+     * the documents matched, never with the size of the index.
+     */
+    private static final class Accumulator {
+
+        //entry number + 1 of the document hashed to each slot, 0 for a free slot
+        private int[] table;
+        private int[] docs;
+        private double[] scores;
+        //query terms each document matched, and the last term counted
+        private int[] matches;
+        private int[] groups;
+        private int size;
+
+        /**
+         * @param expected number of documents the query is likely to match
+         */
+        Accumulator(int expected) {
+            int slots = 16;
+            while(slots < expected * 2 && slots < 1 << 30) {
+                slots <<= 1;
+            }
+            table = new int[slots];
+            docs = new int[slots / 2];
+            scores = new double[slots / 2];
+            matches = new int[slots / 2];
+            groups = new int[slots / 2];
+        }
+
+        void add(int doc, int group, double score) {
+            int slot = slot(doc);
+            int entry = table[slot] - 1;
+            if(entry < 0) {
+                if(size == docs.length) {
+                    grow();
+                    slot = slot(doc);
+                }
+                entry = size++;
+                table[slot] = entry + 1;
+                docs[entry] = doc;
+                matches[entry] = 1;
+                groups[entry] = group;
+                scores[entry] = score;
+                return;
+            }
+            if(groups[entry] != group) {
+                matches[entry]++;
+                groups[entry] = group;
+            }
+            scores[entry] += score;
+        }
+
+        /**
+         * @return the number of query terms the document matched so far
+         */
+        int matches(int doc) {
+            int entry = table[slot(doc)] - 1;
+            return entry < 0 ? 0 : matches[entry];
+        }
+
+        /**
+         * @return the matched documents in the order they were first added
+         */
+        int[] docs() {
+            return Arrays.copyOf(docs, size);
+        }
+
+        /**
+         * @return the slot holding the document, or the free slot it would take
+         */
+        private int slot(int doc) {
+            int mask = table.length - 1;
+            int hash = doc * 0x9e3779b9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while(table[slot] != 0 && docs[table[slot] - 1] != doc) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int capacity = docs.length * 2;
+            docs = Arrays.copyOf(docs, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            matches = Arrays.copyOf(matches, capacity);
+            groups = Arrays.copyOf(groups, capacity);
+            table = new int[capacity * 2];
+            for(int entry = 0; entry < size; entry++) {
+                table[slot(docs[entry])] = entry + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.my.project.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Immutable consistent hash ring mapping ISBNs to shard names.
+ * <p>
+ * Each shard is placed on the ring at <code>virtualNodes</code> points, and
+ * a key belongs to the shard of the first point at or after its hash,
+ * wrapping around. Adding a shard moves only the keys that now fall before
+ * its points, about 1/N of them, and spreads the moves over all other
+ * shards. Lookups are a binary search over a sorted array.
+ */
+public final class HashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int virtualNodes;
+    private final List<String> shards;
+    //sorted hashes of all points and the shard of each
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * @param shards the names of the shards, not empty
+     * @param virtualNodes points per shard on the ring
+     */
+    public HashRing(List<String> shards, int virtualNodes) {
+        if(shards.isEmpty() || virtualNodes <= 0) {
+            throw new IllegalArgumentException("Need at least one shard and one virtual node: " + shards + ", "
+                + virtualNodes);
+        }
+        if(shards.size() != new HashSet<String>(shards).size()) {
+            throw new IllegalArgumentException("Shard names must be distinct: " + shards);
+        }
+        this.virtualNodes = virtualNodes;
+        this.shards = Collections.unmodifiableList(new ArrayList<String>(shards));
+        int count = shards.size() * virtualNodes;
+        final long[] keyed = new long[count];
+        String[] byPoint = new String[count];
+        int n = 0;
+        for(String shard : shards) {
+            for(int i = 0; i < virtualNodes; i++) {
+                keyed[n] = hash(shard + "#" + i);
+                byPoint[n++] = shard;
+            }
+        }
+        //sort the points, carrying their shard along
+        Integer[] order = new Integer[count];
+        for(int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.compare(keyed[a], keyed[b]);
+            }
+        });
+        points = new long[count];
+        owners = new String[count];
+        for(int i = 0; i < count; i++) {
+            points[i] = keyed[order[i]];
+            owners[i] = byPoint[order[i]];
+        }
+    }
+
+    /**
+     * @return a ring with one more shard and the same number of virtual nodes
+     * @throws IllegalArgumentException if the ring has that shard already
+     */
+    public HashRing withShard(String shard) {
+        List<String> more = new ArrayList<String>(shards);
+        more.add(shard);
+        return new HashRing(more, virtualNodes);
+    }
+
+    /**
+     * @return the shard owning the key
+     */
+    public String shardFor(String key) {
+        int at = Arrays.binarySearch(points, hash(key));
+        if(at < 0) {
+            at = -at - 1;
+        }
+        return owners[at == points.length ? 0 : at];
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * FNV-1a over the characters, finished with the MurmurHash3 mixer so
+     * that similar keys such as consecutive ISBNs spread over the ring.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for(int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,427 @@
+package com.my.project.shard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.IsbnLocks;
+import com.my.project.logging.Log;
+
+/**
+ * {@link BookRepository} partitioning the catalogue over several shards by
+ * ISBN, each shard being any repository, e.g. a {@link com.my.project.BookDAL}
+ * on its own database.
+ * <p>
+ * A {@link HashRing} routes each ISBN to one shard. Lookups and writes go to
+ * that shard only; {@link #getAllBooks()} asks every shard in parallel and
+ * merges their books by ISBN.
+ * <p>
+ * {@link #addShard(String, BookRepository)} rebalances online. While the
+ * books moving to the new shard are copied, the shards of the previous ring
+ * stay authoritative: writes go to both the previous and the new owner, and
+ * lookups and scans read the previous owners, since the new shard may still
+ * hold stale books of an earlier attempt the copy has not reached. Once
+ * the copy is complete the new ring takes over. If the copy fails, the
+ * previous ring stays, having missed no write. Copies left on the previous
+ * owners are not removed, since repositories cannot delete; scans skip books
+ * a shard does not own. Writes are serialized per ISBN by {@link IsbnLocks}.
+ */
+public class ShardedBookDAL implements BookRepository, AutoCloseable {
+
+    private static final Log logger = Log.getLog(ShardedBookDAL.class);
+
+    public static final int DEFAULT_THREADS = 16;
+
+    private static final AtomicInteger poolNumber = new AtomicInteger();
+
+    private static final Comparator<Book> BY_ISBN = new Comparator<Book>() {
+        @Override
+        public int compare(Book a, Book b) {
+            return a.getIsbn().compareTo(b.getIsbn());
+        }
+    };
+
+    /**
+     * The shards and how ISBNs are routed to them; replaced as a whole.
+     */
+    private static final class Routing {
+
+        final Map<String, BookRepository> shards;
+        final HashRing ring;
+        //the authoritative ring while books are copied to a new shard, else null
+        final HashRing previous;
+
+        Routing(Map<String, BookRepository> shards, HashRing ring, HashRing previous) {
+            this.shards = shards;
+            this.ring = ring;
+            this.previous = previous;
+        }
+
+        BookRepository owner(String isbn) {
+            return shards.get(ring.shardFor(isbn));
+        }
+
+        /**
+         * @return the owner under the previous ring if it differs, else null
+         */
+        BookRepository previousOwner(String isbn) {
+            if(previous == null) {
+                return null;
+            }
+            String shard = previous.shardFor(isbn);
+            return shard.equals(ring.shardFor(isbn)) ? null : shards.get(shard);
+        }
+
+        /**
+         * @return the shard whose copy of the book is authoritative
+         */
+        BookRepository reader(String isbn) {
+            return shards.get(authoritative().shardFor(isbn));
+        }
+
+        HashRing authoritative() {
+            return previous != null ? previous : ring;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final IsbnLocks locks = new IsbnLocks(256);
+    private volatile Routing routing;
+
+    /**
+     * @param shards the repository of each shard by name, in ring order
+     */
+    public ShardedBookDAL(Map<String, BookRepository> shards) {
+        this(shards, HashRing.DEFAULT_VIRTUAL_NODES, null);
+    }
+
+    /**
+     * @param shards the repository of each shard by name, in ring order
+     * @param virtualNodes points per shard on the ring
+     * @param executor runs the calls fanned out to the shards and the rebalancing,
+     *        null for a pool of {@value #DEFAULT_THREADS} threads closed with this DAL
+     */
+    public ShardedBookDAL(Map<String, BookRepository> shards, int virtualNodes, ExecutorService executor) {
+        Map<String, BookRepository> copy = new LinkedHashMap<String, BookRepository>(shards);
+        this.routing = new Routing(Collections.unmodifiableMap(copy),
+            new HashRing(new ArrayList<String>(copy.keySet()), virtualNodes), null);
+        this.ownsExecutor = executor == null;
+        this.executor = executor != null ? executor : threadPool(DEFAULT_THREADS);
+    }
+
+    /**
+     * @return the name of the shard the ISBN is routed to
+     */
+    public String shardFor(String isbn) {
+        return routing.ring.shardFor(isbn);
+    }
+
+    /**
+     * @return the names of the shards, including one being added
+     */
+    public List<String> getShards() {
+        return routing.ring.getShards();
+    }
+
+    /**
+     * @return whether books are being copied to a new shard
+     */
+    public boolean isRebalancing() {
+        return routing.previous != null;
+    }
+
+    /**
+     * @return the books of all shards, read in parallel, ordered by ISBN
+     */
+    @Override
+    public List<Book> getAllBooks() {
+        final Routing routing = this.routing;
+        final HashRing owners = routing.authoritative();
+        List<Future<List<Book>>> futures = new ArrayList<Future<List<Book>>>();
+        for(final Map.Entry<String, BookRepository> shard : routing.shards.entrySet()) {
+            if(!owners.getShards().contains(shard.getKey())) {
+                //a shard being added holds copies only
+                continue;
+            }
+            futures.add(executor.submit(new Callable<List<Book>>() {
+                public List<Book> call() {
+                    List<Book> owned = new ArrayList<Book>();
+                    for(Book book : shard.getValue().getAllBooks()) {
+                        if(owners.shardFor(book.getIsbn()).equals(shard.getKey())) {
+                            owned.add(book);
+                        }
+                    }
+                    Collections.sort(owned, BY_ISBN);
+                    return owned;
+                }
+            }));
+        }
+        List<List<Book>> lists = new ArrayList<List<Book>>(futures.size());
+        for(Future<List<Book>> future : futures) {
+            lists.add(await(future, "Failed to load books from a shard"));
+        }
+        return merge(lists);
+    }
+
+    @Override
+    public Book getBook(String isbn) {
+        return routing.reader(isbn).getBook(isbn);
+    }
+
+    @Override
+    public String getBookTitleByIsbn(String isbn) {
+        return routing.reader(isbn).getBookTitleByIsbn(isbn);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the book has no ISBN
+     */
+    @Override
+    public String addBook(Book book) {
+        synchronized(locks.of(IsbnLocks.requireIsbn(book))) {
+            Routing routing = this.routing;
+            BookRepository previous = routing.previousOwner(book.getIsbn());
+            if(previous != null) {
+                //fails on a duplicate before the new owner is written
+                previous.addBook(book);
+            }
+            return routing.owner(book.getIsbn()).addBook(book);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the book has no ISBN
+     */
+    @Override
+    public String updateBook(Book book) {
+        synchronized(locks.of(IsbnLocks.requireIsbn(book))) {
+            Routing routing = this.routing;
+            BookRepository owner = routing.owner(book.getIsbn());
+            BookRepository previous = routing.previousOwner(book.getIsbn());
+            if(previous == null) {
+                return owner.updateBook(book);
+            }
+            String isbn = previous.updateBook(book);
+            if(isbn != null && owner.updateBook(book) == null) {
+                //not copied yet, the copy would be older than this update
+                owner.addBook(book);
+            }
+            return isbn;
+        }
+    }
+
+    @Override
+    public void setBookTitle(Book book, String title) {
+        if(book == null || book.getIsbn() == null) {
+            if(book != null) {
+                book.setTitle(title);
+            }
+            return;
+        }
+        synchronized(locks.of(book.getIsbn())) {
+            Routing routing = this.routing;
+            BookRepository owner = routing.owner(book.getIsbn());
+            BookRepository previous = routing.previousOwner(book.getIsbn());
+            if(previous == null) {
+                owner.setBookTitle(book, title);
+                return;
+            }
+            previous.setBookTitle(book, title);
+            if(owner.getBook(book.getIsbn()) != null) {
+                owner.setBookTitle(book, title);
+            } else {
+                copy(book.getIsbn(), previous, owner);
+            }
+        }
+    }
+
+    /**
+     * Add a shard and move the books it now owns to it in the background.
+     * Calls keep being served while the books are copied.
+     * @param name the name of the new shard
+     * @param shard its repository, books it holds already are replaced by those moving to it
+     * @return completes with the number of books copied once the new shard serves them
+     * @throws IllegalStateException if a shard is being added already
+     * @throws IllegalArgumentException if there is a shard of that name
+     */
+    public synchronized CompletableFuture<Integer> addShard(final String name, BookRepository shard) {
+        final Routing current = routing;
+        if(current.previous != null) {
+            throw new IllegalStateException("Shard " + current.ring.getShards().get(current.ring.getShards().size() - 1)
+                + " is still being added");
+        }
+        if(current.shards.containsKey(name)) {
+            throw new IllegalArgumentException("Shard " + name + " exists already");
+        }
+        Map<String, BookRepository> shards = new LinkedHashMap<String, BookRepository>(current.shards);
+        shards.put(name, shard);
+        final Routing migrating = new Routing(Collections.unmodifiableMap(shards), current.ring.withShard(name),
+            current.ring);
+        //from here on every write reaches both owners
+        routing = migrating;
+        logger.info("Adding shard {}, copying its books from {}", name, current.ring.getShards());
+        return CompletableFuture.supplyAsync(new Supplier<Integer>() {
+            public Integer get() {
+                try {
+                    int copied = copyMoved(migrating);
+                    routing = new Routing(migrating.shards, migrating.ring, null);
+                    logger.info("Shard {} serves its books, {} copied", name, copied);
+                    return copied;
+                } catch (RuntimeException e) {
+                    logger.error("Adding shard {} failed, keeping the previous shards", name, e);
+                    routing = current;
+                    throw e;
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Stop the threads of the pool this DAL created, not the shards.
+     */
+    @Override
+    public void close() {
+        if(ownsExecutor) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while closing", e);
+            }
+        }
+    }
+
+    /**
+     * Copy every book whose owner changes under the new ring to it.
+     * @return the number of books copied
+     */
+    private int copyMoved(Routing migrating) {
+        int copied = 0;
+        for(String name : migrating.previous.getShards()) {
+            BookRepository source = migrating.shards.get(name);
+            for(Book book : source.getAllBooks()) {
+                String isbn = book.getIsbn();
+                if(!migrating.previous.shardFor(isbn).equals(name)) {
+                    //left behind by an earlier rebalancing
+                    continue;
+                }
+                BookRepository target = migrating.owner(isbn);
+                if(target != source) {
+                    synchronized(locks.of(isbn)) {
+                        if(copy(isbn, source, target)) {
+                            copied++;
+                        }
+                    }
+                }
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Copy the current state of a book, replacing what the target has: the
+     * source is authoritative, and the target may hold a stale copy left by a
+     * failed rebalancing. Holds the lock of the ISBN.
+     * @return whether the book was copied
+     */
+    private static boolean copy(String isbn, BookRepository source, BookRepository target) {
+        Book current = source.getBook(isbn);
+        if(current == null) {
+            return false;
+        }
+        if(target.updateBook(current) == null) {
+            target.addBook(current);
+        }
+        return true;
+    }
+
+    /**
+     * Merge lists ordered by ISBN.
+     */
+    private static List<Book> merge(List<List<Book>> lists) {
+        int size = 0;
+        for(List<Book> list : lists) {
+            size += list.size();
+        }
+        List<Book> merged = new ArrayList<Book>(size);
+        if(lists.size() == 1) {
+            merged.addAll(lists.get(0));
+            return merged;
+        }
+        //the next book of each list, with the index of the list
+        PriorityQueue<Object[]> heads = new PriorityQueue<Object[]>(Math.max(1, lists.size()),
+            new Comparator<Object[]>() {
+                @Override
+                public int compare(Object[] a, Object[] b) {
+                    return BY_ISBN.compare((Book) a[0], (Book) b[0]);
+                }
+            });
+        int[] next = new int[lists.size()];
+        for(int i = 0; i < lists.size(); i++) {
+            if(!lists.get(i).isEmpty()) {
+                heads.add(new Object[] {lists.get(i).get(0), i});
+                next[i] = 1;
+            }
+        }
+        while(!heads.isEmpty()) {
+            Object[] head = heads.poll();
+            merged.add((Book) head[0]);
+            int i = (Integer) head[1];
+            if(next[i] < lists.get(i).size()) {
+                head[0] = lists.get(i).get(next[i]++);
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static <T> T await(Future<T> future, String message) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(message, cause);
+        }
+    }
+
+    private static ExecutorService threadPool(int threads) {
+        final int pool = poolNumber.incrementAndGet();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "sharded-dal-" + pool + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,675 @@
+package com.my.project.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.Isbn;
+import com.my.project.codec.BookCodec;
+import com.my.project.logging.Log;
+
+/**
+ * Persistent catalogue kept as an append-only log of memory-mapped segment files.
+ * <p>
+ * Every write appends the complete new state of a book as one record:
+ * <pre>
+ * int length | int CRC32 of the payload | payload
+ * </pre>
+ * The payload is a {@link BookCodec} encoding written straight into the mapped segment and the length is
+ * written last, so a record whose length is set but whose checksum does not
+ * match was torn by a crash. A {@link LongIndex} maps each ISBN to the
+ * position of its latest record, with the segment number in the high 32 bits
+ * and the offset in the low 32 bits.
+ * <p>
+ * On open the index is loaded from the last checkpoint, if there is a usable one,
+ * and the records written after it are replayed. The checkpoint also records
+ * where each sealed segment ends, so the segments before it are not read at
+ * all and opening costs the records written since the checkpoint rather than
+ * the size of the log. Only the last segment can end
+ * with a torn record, since a segment is forced before the next one is started:
+ * the torn tail is zeroed, so the log ends with the last complete record. A bad
+ * record in an earlier, sealed segment is corruption rather than a crash, so
+ * the open fails and no segment is touched.
+ * <p>
+ * Old segments fill up with records that have been superseded. {@link #compact()}
+ * copies the live records of mostly dead segments to the end of the log and
+ * deletes the segments; it can also run in the background through
+ * {@link #startCompaction(long, TimeUnit)}. Writes are serialized on the log,
+ * reads take no locks.
+ */
+public class BookLog implements BookRepository, AutoCloseable {
+
+    private static final Log logger = Log.getLog(BookLog.class);
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    static final String CHECKPOINT_FILE = "index.checkpoint";
+
+    private static final int HEADER = 8;
+    private static final int CHECKPOINT_MAGIC = 0x424b4c48;
+    private static final String SEGMENT_SUFFIX = ".log";
+    //compact a segment when less than this share of its records is live
+    private static final double COMPACT_BELOW = 0.5;
+
+    private final File directory;
+    private final int segmentSize;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<Integer, Segment>();
+    private final LongIndex index = new LongIndex();
+    private Segment head;
+    private ScheduledExecutorService compactor;
+    private boolean closed;
+
+    /**
+     * @param directory directory holding the segment files, created if missing
+     * @throws IOException if the log cannot be opened or recovered
+     */
+    public BookLog(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory directory holding the segment files, created if missing
+     * @param segmentSize size in bytes of each segment file
+     * @throws IOException if the log cannot be opened or recovered
+     */
+    public BookLog(File directory, int segmentSize) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create log directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        recover();
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        //read in log order, which is the order the books were last written
+        final long[] positions = new long[index.size()];
+        final int[] count = new int[1];
+        index.forEach(new LongIndex.Visitor() {
+            @Override
+            public void visit(long key, long value) {
+                if(count[0] < positions.length) {
+                    positions[count[0]++] = value;
+                }
+            }
+        });
+        Arrays.sort(positions, 0, count[0]);
+        List<Book> books = new ArrayList<Book>(count[0]);
+        for(int i = 0; i < count[0]; i++) {
+            Book book = read(positions[i]);
+            if(book == null) {
+                //compacted while reading, the index has moved on
+                return getAllBooks();
+            }
+            books.add(book);
+        }
+        return books;
+    }
+
+    @Override
+    public Book getBook(String isbn) {
+        long key = Isbn.parse(isbn);
+        if(key == Isbn.INVALID) {
+            return null;
+        }
+        //a concurrent compaction may delete the segment after the lookup, then the index has moved on
+        while(true) {
+            long position = index.get(key);
+            if(position == LongIndex.NOT_FOUND) {
+                return null;
+            }
+            Book book = read(position);
+            if(book != null) {
+                return book;
+            }
+        }
+    }
+
+    @Override
+    public String getBookTitleByIsbn(String isbn) {
+        long key = Isbn.parse(isbn);
+        if(key == Isbn.INVALID) {
+            return null;
+        }
+        while(true) {
+            long position = index.get(key);
+            if(position == LongIndex.NOT_FOUND) {
+                return null;
+            }
+            Segment segment = segments.get((int) (position >>> 32));
+            if(segment != null) {
+                //decode the title in place, the rest of the record is skipped
+                return BookCodec.readTitle(segment.buffer, (int) position + HEADER);
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the book has no valid ISBN
+     * @throws IllegalStateException if a book with the same ISBN is already stored
+     */
+    @Override
+    public synchronized String addBook(Book book) {
+        long key = requireIsbn(book);
+        if(index.get(key) != LongIndex.NOT_FOUND) {
+            throw new IllegalStateException("Book " + book.getIsbn() + " already exists");
+        }
+        index.put(key, append(book));
+        return book.getIsbn();
+    }
+
+    @Override
+    public synchronized String updateBook(Book book) {
+        long key = requireIsbn(book);
+        if(index.get(key) == LongIndex.NOT_FOUND) {
+            return null;
+        }
+        index.put(key, append(book));
+        return book.getIsbn();
+    }
+
+    @Override
+    public void setBookTitle(Book book, String title) {
+        if(book == null) {
+            return;
+        }
+        book.setTitle(title);
+        long key = Isbn.parse(book.getIsbn());
+        if(key == Isbn.INVALID) {
+            return;
+        }
+        synchronized(this) {
+            long position = index.get(key);
+            if(position == LongIndex.NOT_FOUND) {
+                return;
+            }
+            Book stored = read(position);
+            stored.setTitle(title);
+            index.put(key, append(stored));
+        }
+    }
+
+    /**
+     * @return number of stored books
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return number of segment files
+     */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Force the written records of the current segment to disk.
+     */
+    public synchronized void flush() {
+        head.buffer.force();
+    }
+
+    /**
+     * Force the log to disk and save the index, so the next open only replays
+     * records written after this point.
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public synchronized void checkpoint() throws IOException {
+        for(Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+        File temp = new File(directory, CHECKPOINT_FILE + ".tmp");
+        CheckedOutputStream checked = new CheckedOutputStream(
+            new BufferedOutputStream(new FileOutputStream(temp)), new CRC32());
+        final DataOutputStream out = new DataOutputStream(checked);
+        try {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(segmentSize);
+            out.writeLong(position(head, head.end));
+            out.writeInt(segments.size() - 1);
+            for(Segment segment : segments.values()) {
+                if(segment != head) {
+                    out.writeInt(segment.id);
+                    out.writeInt(segment.end);
+                }
+            }
+            out.writeInt(index.size());
+            final IOException[] failure = new IOException[1];
+            index.forEach(new LongIndex.Visitor() {
+                @Override
+                public void visit(long key, long value) {
+                    try {
+                        out.writeLong(key);
+                        out.writeLong(value);
+                    } catch(IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if(failure[0] != null) {
+                throw failure[0];
+            }
+            out.writeLong(checked.getChecksum().getValue());
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), new File(directory, CHECKPOINT_FILE).toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Rewrite the live records of sealed segments that are mostly superseded and
+     * delete those segments.
+     * @return number of segments deleted
+     * @throws IOException if a segment cannot be deleted or the checkpoint written
+     */
+    public synchronized int compact() throws IOException {
+        List<Segment> sealed = new ArrayList<Segment>();
+        for(Segment segment : segments.values()) {
+            if(segment.id != head.id) {
+                sealed.add(segment);
+            }
+        }
+        int removed = 0;
+        for(Segment segment : sealed) {
+            List<Integer> live = new ArrayList<Integer>();
+            int records = 0;
+            for(int offset = 0; offset < segment.end; offset += HEADER + segment.buffer.getInt(offset)) {
+                records++;
+                if(index.get(key(segment, offset)) == position(segment, offset)) {
+                    live.add(offset);
+                }
+            }
+            if(records > 0 && live.size() >= records * COMPACT_BELOW) {
+                continue;
+            }
+            for(int offset : live) {
+                ByteBuffer record = segment.buffer.duplicate();
+                record.limit(offset + HEADER + record.getInt(offset)).position(offset);
+                long key = key(segment, offset);
+                index.put(key, copy(record));
+            }
+            //the copies must be durable before the only other copy is deleted
+            head.buffer.force();
+            segments.remove(segment.id);
+            segment.close();
+            if(!segment.file.delete()) {
+                throw new IOException("Cannot delete compacted segment " + segment.file);
+            }
+            removed++;
+            if(logger.isDebugEnabled()) {
+                logger.debug("Compacted segment {}, kept {} of {} records", segment.file, live.size(), records);
+            }
+        }
+        if(removed > 0) {
+            //the old checkpoint may point into deleted segments
+            checkpoint();
+        }
+        return removed;
+    }
+
+    /**
+     * Run {@link #compact()} periodically on a daemon thread until the log is closed.
+     * @param period time between runs
+     * @param unit unit of the period
+     */
+    public synchronized void startCompaction(long period, TimeUnit unit) {
+        if(compactor != null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "book-log-compactor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        compactor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compact();
+                } catch(IOException | RuntimeException e) {
+                    logger.error("Compaction of {} failed", directory, e);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stop background compaction, write a checkpoint and release the segment files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        if(compactor != null) {
+            compactor.shutdownNow();
+        }
+        checkpoint();
+        for(Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    /**
+     * @return the book at the position, or null if its segment has been compacted away
+     */
+    private Book read(long position) {
+        Segment segment = segments.get((int) (position >>> 32));
+        if(segment == null) {
+            return null;
+        }
+        int offset = (int) position;
+        ByteBuffer payload = segment.buffer.duplicate();
+        payload.limit(offset + HEADER + payload.getInt(offset)).position(offset + HEADER);
+        return BookCodec.decode(payload);
+    }
+
+    private long append(Book book) {
+        int size = BookCodec.sizeOf(book);
+        reserve(HEADER + size);
+        int offset = head.end;
+        ByteBuffer payload = head.buffer.duplicate();
+        payload.position(offset + HEADER);
+        BookCodec.encode(book, payload);
+        publish(head, offset, size);
+        return position(head, offset);
+    }
+
+    /**
+     * Append an existing record, header included, without decoding it.
+     */
+    private long copy(ByteBuffer record) {
+        reserve(record.remaining());
+        int offset = head.end;
+        ByteBuffer target = head.buffer.duplicate();
+        target.position(offset);
+        target.put(record);
+        head.end = target.position();
+        return position(head, offset);
+    }
+
+    /**
+     * Checksum the payload and write the length last, which makes the record valid.
+     */
+    private void publish(Segment segment, int offset, int size) {
+        ByteBuffer payload = segment.buffer.duplicate();
+        payload.limit(offset + HEADER + size).position(offset + HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        segment.buffer.putInt(offset + 4, (int) crc.getValue());
+        segment.buffer.putInt(offset, size);
+        segment.end = offset + HEADER + size;
+    }
+
+    private void reserve(int size) {
+        if(closed) {
+            throw new IllegalStateException("Book log " + directory + " is closed");
+        }
+        if(size > segmentSize) {
+            throw new IllegalArgumentException("Record of " + size + " bytes does not fit a segment of " + segmentSize);
+        }
+        if(head.end + size > segmentSize) {
+            try {
+                head.buffer.force();
+                head = openSegment(head.id + 1);
+            } catch(IOException e) {
+                throw new UncheckedIOException("Cannot start a new segment in " + directory, e);
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        TreeMap<Integer, File> files = new TreeMap<Integer, File>();
+        File[] listed = directory.listFiles();
+        for(File file : listed == null ? new File[0] : listed) {
+            String name = file.getName();
+            if(name.endsWith(SEGMENT_SUFFIX) && name.matches("\\d+\\.log")) {
+                files.put(Integer.valueOf(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        Map<Integer, Integer> sealedEnds = new HashMap<Integer, Integer>();
+        long replayFrom = readCheckpoint(files.keySet(), sealedEnds);
+        for(Integer id : files.keySet()) {
+            Segment segment = openSegment(id);
+            head = segment;
+            if(id < (int) (replayFrom >>> 32)) {
+                Integer end = sealedEnds.get(id);
+                segment.end = end != null ? end.intValue() : scan(segment, 0, false);
+            } else {
+                int from = id == (int) (replayFrom >>> 32) ? (int) replayFrom : 0;
+                segment.end = scan(segment, from, true);
+            }
+            if(!torn(segment)) {
+                continue;
+            }
+            if(id.intValue() != files.lastKey().intValue()) {
+                for(Segment opened : segments.values()) {
+                    opened.close();
+                }
+                throw new IOException("Corrupt record at offset " + segment.end + " of sealed segment "
+                    + segment.file + ", restore it before opening the log");
+            }
+            truncate(segment);
+        }
+        if(head == null) {
+            head = openSegment(0);
+        }
+        if(logger.isDebugEnabled()) {
+            logger.debug("Opened book log {} with {} books in {} segments", directory, index.size(), segments.size());
+        }
+    }
+
+    /**
+     * Load the index from the checkpoint file.
+     * @param sealedEnds filled with the end offset of each segment sealed before the checkpoint
+     * @return the position to replay from, 0 to replay the whole log
+     */
+    private long readCheckpoint(Set<Integer> segmentIds, Map<Integer, Integer> sealedEnds) {
+        File file = new File(directory, CHECKPOINT_FILE);
+        if(!file.exists()) {
+            return 0;
+        }
+        CheckedInputStream checked = null;
+        try {
+            checked = new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if(in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Bad magic number");
+            }
+            int size = in.readInt();
+            if(size != segmentSize) {
+                throw new IOException("Written for segments of " + size + " bytes");
+            }
+            long position = in.readLong();
+            int sealed = in.readInt();
+            int[] ends = new int[sealed * 2];
+            for(int i = 0; i < ends.length; i += 2) {
+                ends[i] = in.readInt();
+                ends[i + 1] = in.readInt();
+                if(ends[i + 1] < 0 || ends[i + 1] > segmentSize) {
+                    throw new IOException("Bad end " + ends[i + 1] + " of segment " + ends[i]);
+                }
+            }
+            int count = in.readInt();
+            long[] entries = new long[count * 2];
+            Set<Integer> referenced = new HashSet<Integer>();
+            referenced.add((int) (position >>> 32));
+            for(int i = 0; i < entries.length; i += 2) {
+                entries[i] = in.readLong();
+                entries[i + 1] = in.readLong();
+                referenced.add((int) (entries[i + 1] >>> 32));
+            }
+            long expected = checked.getChecksum().getValue();
+            if(in.readLong() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+            if(!segmentIds.containsAll(referenced)) {
+                throw new IOException("Checkpoint refers to missing segments");
+            }
+            for(int i = 0; i < entries.length; i += 2) {
+                index.put(entries[i], entries[i + 1]);
+            }
+            for(int i = 0; i < ends.length; i += 2) {
+                sealedEnds.put(ends[i], ends[i + 1]);
+            }
+            return position;
+        } catch(EOFException e) {
+            logger.warn("Ignoring truncated checkpoint {}, replaying the whole log", file);
+        } catch(IOException e) {
+            logger.warn("Ignoring unusable checkpoint {}, replaying the whole log", file, e);
+        } finally {
+            if(checked != null) {
+                try {
+                    checked.close();
+                } catch(IOException e) {
+                    logger.debug("Cannot close checkpoint {}", file, e);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return whether the valid records of the segment are followed by a torn or corrupt one
+     */
+    private boolean torn(Segment segment) {
+        return segment.end + HEADER <= segmentSize && segment.buffer.getInt(segment.end) != 0;
+    }
+
+    /**
+     * Zero the segment after its last valid record.
+     */
+    private void truncate(Segment segment) {
+        logger.warn("Truncating {} at torn record offset {}", segment.file, segment.end);
+        for(int i = segment.end; i < segmentSize; i++) {
+            segment.buffer.put(i, (byte) 0);
+        }
+        segment.buffer.force();
+    }
+
+    /**
+     * Walk the valid records from the offset.
+     * @param apply whether to put each record in the index
+     * @return the offset after the last valid record
+     */
+    private int scan(Segment segment, int from, boolean apply) {
+        int offset = from;
+        CRC32 crc = new CRC32();
+        while(offset + HEADER <= segmentSize) {
+            int length = segment.buffer.getInt(offset);
+            if(length <= 0 || length > segmentSize - offset - HEADER) {
+                break;
+            }
+            ByteBuffer payload = segment.buffer.duplicate();
+            payload.limit(offset + HEADER + length).position(offset + HEADER);
+            crc.reset();
+            crc.update(payload);
+            if((int) crc.getValue() != segment.buffer.getInt(offset + 4)) {
+                break;
+            }
+            if(apply) {
+                index.put(key(segment, offset), position(segment, offset));
+            }
+            offset += HEADER + length;
+        }
+        return offset;
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        File file = new File(directory, String.format("%010d%s", id, SEGMENT_SUFFIX));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            //new and truncated files grow to full size, the gap reads as zeros
+            if(raf.length() < segmentSize) {
+                raf.setLength(segmentSize);
+            }
+            FileChannel channel = raf.getChannel();
+            Segment segment = new Segment(id, file, raf, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+            segments.put(id, segment);
+            return segment;
+        } catch(IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private static long key(Segment segment, int offset) {
+        return Isbn.toLong(BookCodec.readIsbn(segment.buffer, offset + HEADER));
+    }
+
+    private static long position(Segment segment, int offset) {
+        return ((long) segment.id << 32) | offset;
+    }
+
+    private static long requireIsbn(Book book) {
+        long key = Isbn.parse(book.getIsbn());
+        if(key == Isbn.INVALID) {
+            throw new IllegalArgumentException("Book has no valid ISBN: " + book.getIsbn());
+        }
+        return key;
+    }
+
+    /**
+     * One mapped segment file. Only the head segment is written to.
+     */
+    private static final class Segment {
+
+        final int id;
+        final File file;
+        final RandomAccessFile raf;
+        final MappedByteBuffer buffer;
+        int end;
+
+        Segment(int id, File file, RandomAccessFile raf, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.raf = raf;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Close the file. The mapping stays readable until it is garbage collected,
+         * so readers that still hold the segment are not affected.
+         */
+        void close() throws IOException {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.my.project.store;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed-width values indexed by row number, kept in direct (off-heap) memory.
+ * <p>
+ * Storage grows in chunks of {@link #ROWS_PER_CHUNK} rows, so appending never
+ * copies existing values and a column is not limited to 2GB. Writes must be
+ * serialized by the caller; reads are safe from any thread once the row has
+ * been published to it.
+ */
+final class Column {
+
+    static final int ROWS_PER_CHUNK = 1 << 16;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int ROW_MASK = ROWS_PER_CHUNK - 1;
+
+    private final int width;
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    /**
+     * @param width bytes per value, 4 for int and 8 for long columns
+     */
+    Column(int width) {
+        this.width = width;
+    }
+
+    long getLong(int row) {
+        return chunks[row >>> CHUNK_SHIFT].getLong((row & ROW_MASK) * width);
+    }
+
+    void putLong(int row, long value) {
+        chunk(row).putLong((row & ROW_MASK) * width, value);
+    }
+
+    int getInt(int row) {
+        return chunks[row >>> CHUNK_SHIFT].getInt((row & ROW_MASK) * width);
+    }
+
+    void putInt(int row, int value) {
+        chunk(row).putInt((row & ROW_MASK) * width, value);
+    }
+
+    long capacity() {
+        return (long) chunks.length * ROWS_PER_CHUNK * width;
+    }
+
+    private ByteBuffer chunk(int row) {
+        int index = row >>> CHUNK_SHIFT;
+        ByteBuffer[] current = chunks;
+        if(index < current.length) {
+            return current[index];
+        }
+        ByteBuffer[] grown = Arrays.copyOf(current, index + 1);
+        for(int i = current.length; i <= index; i++) {
+            grown[i] = ByteBuffer.allocateDirect(ROWS_PER_CHUNK * width);
+        }
+        chunks = grown;
+        return grown[index];
+    }
+}
@@ -0,0 +1,221 @@
+package com.my.project.store;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash index from a <code>long</code> key, such as a packed
+ * ISBN, to a non-negative <code>long</code> value such as a row number or a
+ * file offset.
+ * <p>
+ * Keys and values are stored next to each other in one <code>long[]</code>
+ * with linear probing, which costs about 32 bytes per entry at the maximum load
+ * factor and no objects per entry. Lookups do not allocate and normally take no
+ * lock: they run as an optimistic read and only retry under the read lock if a
+ * write happened at the same time. Writes take the write lock.
+ */
+public class LongIndex {
+
+    /**
+     * Returned by {@link #get(long)} for keys that are not in the index.
+     */
+    public static final long NOT_FOUND = -1L;
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] table;
+    private int size;
+    private int resizeAt;
+
+    public LongIndex() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize number of entries to size the table for
+     */
+    public LongIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @param key the key, which must not be 0
+     * @return the value, or {@link #NOT_FOUND}
+     */
+    public long get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        long value = find(table, key);
+        if(lock.validate(stamp)) {
+            return value;
+        }
+        stamp = lock.readLock();
+        try {
+            return find(table, key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param key the key, which must not be 0
+     * @param value the value, which must not be negative
+     * @return the previous value, or {@link #NOT_FOUND}
+     */
+    public long put(long key, long value) {
+        if(key == EMPTY) {
+            throw new IllegalArgumentException("Key must not be 0");
+        }
+        if(value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(table, key);
+            if(table[slot] == key) {
+                long previous = table[slot + 1];
+                table[slot + 1] = value;
+                return previous;
+            }
+            table[slot + 1] = value;
+            table[slot] = key;
+            if(++size > resizeAt) {
+                resize();
+            }
+            return NOT_FOUND;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return the removed value, or {@link #NOT_FOUND}
+     */
+    public long remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            long[] t = table;
+            int slot = slot(t, key);
+            if(t[slot] != key || key == EMPTY) {
+                return NOT_FOUND;
+            }
+            long previous = t[slot + 1];
+            //shift later entries of the probe sequence back so lookups still find them
+            int mask = t.length - 1;
+            int gap = slot;
+            int next = (gap + 2) & mask;
+            while(t[next] != EMPTY) {
+                int home = home(t, t[next]);
+                if(((next - home) & mask) >= ((next - gap) & mask)) {
+                    t[gap] = t[next];
+                    t[gap + 1] = t[next + 1];
+                    gap = next;
+                }
+                next = (next + 2) & mask;
+            }
+            t[gap] = EMPTY;
+            t[gap + 1] = 0;
+            size--;
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Visit every entry under the read lock.
+     * @param visitor receives each key and value
+     */
+    public void forEach(Visitor visitor) {
+        long stamp = lock.readLock();
+        try {
+            long[] t = table;
+            for(int i = 0; i < t.length; i += 2) {
+                if(t[i] != EMPTY) {
+                    visitor.visit(t[i], t[i + 1]);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Receives the entries of {@link LongIndex#forEach(Visitor)}.
+     */
+    public interface Visitor {
+        void visit(long key, long value);
+    }
+
+    /**
+     * Probe for the key. The table may be changing under an optimistic read, so
+     * the probe is bounded by the table size and its result is only trusted after
+     * the stamp is validated.
+     */
+    private static long find(long[] t, long key) {
+        int mask = t.length - 1;
+        int slot = home(t, key);
+        for(int probes = 0; probes < t.length; probes += 2) {
+            long k = t[slot];
+            if(k == key) {
+                return t[slot + 1];
+            }
+            if(k == EMPTY) {
+                return NOT_FOUND;
+            }
+            slot = (slot + 2) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * @return the slot holding the key, or the empty slot where it belongs
+     */
+    private static int slot(long[] t, long key) {
+        int mask = t.length - 1;
+        int slot = home(t, key);
+        while(t[slot] != EMPTY && t[slot] != key) {
+            slot = (slot + 2) & mask;
+        }
+        return slot;
+    }
+
+    private static int home(long[] t, long key) {
+        //murmur3 finalizer, keys that differ in low digits spread over the table
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & (t.length - 2);
+    }
+
+    private void allocate(int entries) {
+        table = new long[entries * 2];
+        resizeAt = (int) (entries * LOAD_FACTOR);
+    }
+
+    private void resize() {
+        long[] old = table;
+        allocate(old.length);
+        for(int i = 0; i < old.length; i += 2) {
+            if(old[i] != EMPTY) {
+                int slot = slot(table, old[i]);
+                table[slot] = old[i];
+                table[slot + 1] = old[i + 1];
+            }
+        }
+    }
+}
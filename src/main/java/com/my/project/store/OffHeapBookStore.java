@@ -0,0 +1,305 @@
+package com.my.project.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.CompactBook;
+import com.my.project.Isbn;
+
+/**
+ * In-process catalogue that keeps every book in off-heap columns.
+ * <p>
+ * Each book is one row. Year and page count are stored as int columns, and
+ * every string is stored as a <code>long</code> reference into a shared
+ * {@link StringArena}. Publisher names are stored once and shared by all rows
+ * that use them. {@link Book} objects are only created when a book is read.
+ * ISBNs are indexed as packed longs in a {@link LongIndex}, so the heap holds
+ * about 32 bytes per book, however many books are stored. ISBN-10 and ISBN-13
+ * spellings of the same book find the same row.
+ * <p>
+ * Updates append a new row and retire the old one by negating its ISBN
+ * reference. Writes are serialized on the store; lookups take no locks.
+ * Writers publish under the write lock of a {@link StampedLock}, and
+ * {@link #getAllBooks()} scans optimistically, scanning again under the read
+ * lock if a write was published meanwhile, so an updated book is returned
+ * exactly once.
+ * <p>
+ * Retired rows and the strings only they referenced stay in direct memory,
+ * counted by {@link #retiredBytes()}, until {@link #compact()} copies the live
+ * rows into fresh columns and a fresh arena. The old ones are freed once the
+ * lookups still reading them are done and the garbage collector finds them
+ * unreachable, so a store that is updated often should be compacted from time
+ * to time.
+ */
+public class OffHeapBookStore implements BookRepository {
+
+    static final int DEFAULT_ARENA_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    //bytes of the five long and two int columns of a row
+    private static final int ROW_BYTES = 5 * 8 + 2 * 4;
+
+    private final int arenaChunkSize;
+    private final StampedLock publishing = new StampedLock();
+    //replaced as a whole by compact(), so a reader sees the rows of one generation
+    private volatile Rows data;
+
+    public OffHeapBookStore() {
+        this(DEFAULT_ARENA_CHUNK_SIZE);
+    }
+
+    /**
+     * @param arenaChunkSize bytes of direct memory reserved at a time for strings
+     */
+    public OffHeapBookStore(int arenaChunkSize) {
+        this.arenaChunkSize = arenaChunkSize;
+        this.data = new Rows(arenaChunkSize);
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        long stamp = publishing.tryOptimisticRead();
+        if(stamp != 0) {
+            List<Book> books = data.scan();
+            if(publishing.validate(stamp)) {
+                return books;
+            }
+        }
+        //an update moved a book past the scanned rows or retired one mid-scan
+        stamp = publishing.readLock();
+        try {
+            return data.scan();
+        } finally {
+            publishing.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Book getBook(String isbn) {
+        Rows rows = data;
+        int row = rows.find(isbn);
+        return row < 0 ? null : rows.read(row);
+    }
+
+    @Override
+    public String getBookTitleByIsbn(String isbn) {
+        Rows rows = data;
+        int row = rows.find(isbn);
+        return row < 0 ? null : rows.arena.read(rows.titles.getLong(row));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the book has no valid ISBN
+     * @throws IllegalStateException if a book with the same ISBN is already stored
+     */
+    @Override
+    public synchronized String addBook(Book book) {
+        requireIsbn(book);
+        Rows rows = data;
+        if(rows.find(book.getIsbn()) >= 0) {
+            throw new IllegalStateException("Book " + book.getIsbn() + " already exists");
+        }
+        publish(rows, book.getIsbn(), rows.append(book), -1);
+        return book.getIsbn();
+    }
+
+    @Override
+    public synchronized String updateBook(Book book) {
+        requireIsbn(book);
+        Rows rows = data;
+        int old = rows.find(book.getIsbn());
+        if(old < 0) {
+            return null;
+        }
+        int row = rows.append(book);
+        rows.retiredBytes += ROW_BYTES + rows.arena.size(rows.isbns.getLong(old))
+            + rows.arena.size(rows.titles.getLong(old)) + rows.arena.listSize(rows.authors.getLong(old))
+            + rows.arena.size(rows.images.getLong(old));
+        publish(rows, book.getIsbn(), row, old);
+        return book.getIsbn();
+    }
+
+    @Override
+    public void setBookTitle(Book book, String title) {
+        if(book == null) {
+            return;
+        }
+        book.setTitle(title);
+        if(book.getIsbn() == null) {
+            return;
+        }
+        synchronized(this) {
+            Rows rows = data;
+            int old = rows.find(book.getIsbn());
+            if(old < 0) {
+                return;
+            }
+            //reuse every reference of the old row except the title
+            int row = rows.count;
+            rows.isbns.putLong(row, rows.isbns.getLong(old));
+            rows.titles.putLong(row, rows.arena.append(title));
+            rows.authors.putLong(row, rows.authors.getLong(old));
+            rows.publications.putLong(row, rows.publications.getLong(old));
+            rows.images.putLong(row, rows.images.getLong(old));
+            rows.years.putInt(row, rows.years.getInt(old));
+            rows.pages.putInt(row, rows.pages.getInt(old));
+            rows.retiredBytes += ROW_BYTES + rows.arena.size(rows.titles.getLong(old));
+            publish(rows, book.getIsbn(), row, old);
+        }
+    }
+
+    /**
+     * Copy the live rows into fresh columns and a fresh arena, dropping the
+     * retired rows and the strings only they referenced. Writes wait meanwhile,
+     * lookups go on reading the previous rows until the copy is published.
+     */
+    public synchronized void compact() {
+        Rows rows = data;
+        Rows compacted = new Rows(arenaChunkSize);
+        for(int row = 0; row < rows.count; row++) {
+            if(rows.isbns.getLong(row) >= 0) {
+                Book book = rows.read(row);
+                compacted.index.put(Isbn.toLong(book.getIsbn()), compacted.append(book));
+                compacted.count++;
+            }
+        }
+        long stamp = publishing.writeLock();
+        try {
+            data = compacted;
+        } finally {
+            publishing.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return number of stored books
+     */
+    public int size() {
+        return data.index.size();
+    }
+
+    /**
+     * @return bytes of direct memory reserved for columns and strings
+     */
+    public long offHeapBytes() {
+        Rows rows = data;
+        return rows.arena.capacity() + rows.isbns.capacity() + rows.titles.capacity() + rows.authors.capacity()
+            + rows.publications.capacity() + rows.images.capacity() + rows.years.capacity() + rows.pages.capacity();
+    }
+
+    /**
+     * @return bytes of retired rows and of the strings only they reference, which {@link #compact()} reclaims
+     */
+    public synchronized long retiredBytes() {
+        return data.retiredBytes;
+    }
+
+    /**
+     * Make the row visible to readers and retire the row it replaces.
+     */
+    private void publish(Rows rows, String isbn, int row, int old) {
+        long stamp = publishing.writeLock();
+        try {
+            rows.count = row + 1;
+            rows.index.put(Isbn.toLong(isbn), row);
+            if(old >= 0) {
+                rows.isbns.putLong(old, -rows.isbns.getLong(old) - 2);
+            }
+        } finally {
+            //releases the retirement to scans validating after it
+            publishing.unlockWrite(stamp);
+        }
+    }
+
+    private static void requireIsbn(Book book) {
+        if(!Isbn.isValid(book.getIsbn())) {
+            throw new IllegalArgumentException("Book has no valid ISBN: " + book.getIsbn());
+        }
+    }
+
+    /**
+     * One generation of rows: their columns, strings and index. Written only
+     * under the store lock; rows up to {@link #count} may be read from any thread.
+     */
+    private static final class Rows {
+
+        final StringArena arena;
+        final Column isbns = new Column(8);
+        final Column titles = new Column(8);
+        final Column authors = new Column(8);
+        final Column publications = new Column(8);
+        final Column images = new Column(8);
+        final Column years = new Column(4);
+        final Column pages = new Column(4);
+        final LongIndex index = new LongIndex();
+        final Map<String, Long> publicationRefs = new HashMap<String, Long>();
+        volatile int count;
+        long retiredBytes;
+
+        Rows(int arenaChunkSize) {
+            arena = new StringArena(arenaChunkSize);
+        }
+
+        List<Book> scan() {
+            int rows = count;
+            List<Book> books = new ArrayList<Book>(index.size());
+            for(int row = 0; row < rows; row++) {
+                if(isbns.getLong(row) >= 0) {
+                    books.add(read(row));
+                }
+            }
+            return books;
+        }
+
+        int find(String isbn) {
+            long key = Isbn.parse(isbn);
+            return key == Isbn.INVALID ? -1 : (int) index.get(key);
+        }
+
+        Book read(int row) {
+            int year = years.getInt(row);
+            int pageCount = pages.getInt(row);
+            long isbn = isbns.getLong(row);
+            return new Book(
+                //a lookup or scan may read a row an update retires meanwhile
+                arena.read(isbn >= 0 ? isbn : -isbn - 2),
+                arena.read(titles.getLong(row)),
+                arena.readList(authors.getLong(row)),
+                arena.read(publications.getLong(row)),
+                year == CompactBook.ABSENT ? null : year,
+                pageCount == CompactBook.ABSENT ? null : pageCount,
+                arena.read(images.getLong(row)));
+        }
+
+        /**
+         * Write the book into the next free row without making it visible.
+         */
+        int append(Book book) {
+            int row = count;
+            isbns.putLong(row, arena.append(book.getIsbn()));
+            titles.putLong(row, arena.append(book.getTitle()));
+            authors.putLong(row, arena.appendList(book.getAuthors()));
+            publications.putLong(row, publicationRef(book.getPublication()));
+            images.putLong(row, arena.append(book.getImage()));
+            years.putInt(row, book.getYearOfPublication() == null ? CompactBook.ABSENT : book.getYearOfPublication());
+            pages.putInt(row, book.getNumberOfPages() == null ? CompactBook.ABSENT : book.getNumberOfPages());
+            return row;
+        }
+
+        private long publicationRef(String publication) {
+            if(publication == null) {
+                return StringArena.NULL;
+            }
+            Long ref = publicationRefs.get(publication);
+            if(ref == null) {
+                ref = arena.append(publication);
+                publicationRefs.put(publication, ref);
+            }
+            return ref;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.my.project.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only storage for strings in direct (off-heap) memory.
+ * <p>
+ * Strings are written as a length-prefixed UTF-8 record into fixed-size chunks
+ * and addressed by a <code>long</code> reference holding the chunk number in the
+ * high 32 bits and the offset in the low 32 bits. A record never spans chunks.
+ * Appends must be serialized by the caller; reads are safe from any thread once
+ * the reference has been published to it.
+ */
+final class StringArena {
+
+    static final long NULL = -1L;
+
+    private final int chunkSize;
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private ByteBuffer current;
+
+    StringArena(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    long append(String value) {
+        if(value == null) {
+            return NULL;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer chunk = reserve(4 + bytes.length);
+        long ref = ref(chunk.position());
+        chunk.putInt(bytes.length).put(bytes);
+        return ref;
+    }
+
+    /**
+     * Append a list as one record: a count followed by length-prefixed strings.
+     */
+    long appendList(List<String> values) {
+        if(values == null) {
+            return NULL;
+        }
+        byte[][] encoded = new byte[values.size()][];
+        int size = 4;
+        for(int i = 0; i < encoded.length; i++) {
+            encoded[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+            size += 4 + encoded[i].length;
+        }
+        ByteBuffer chunk = reserve(size);
+        long ref = ref(chunk.position());
+        chunk.putInt(encoded.length);
+        for(byte[] bytes : encoded) {
+            chunk.putInt(bytes.length).put(bytes);
+        }
+        return ref;
+    }
+
+    String read(long ref) {
+        if(ref == NULL) {
+            return null;
+        }
+        ByteBuffer chunk = chunks[(int) (ref >>> 32)].duplicate();
+        chunk.position((int) ref);
+        return readString(chunk);
+    }
+
+    List<String> readList(long ref) {
+        if(ref == NULL) {
+            return null;
+        }
+        ByteBuffer chunk = chunks[(int) (ref >>> 32)].duplicate();
+        chunk.position((int) ref);
+        int count = chunk.getInt();
+        List<String> values = new ArrayList<String>(count);
+        for(int i = 0; i < count; i++) {
+            values.add(readString(chunk));
+        }
+        return values;
+    }
+
+    /**
+     * @return bytes the record of a string takes, 0 for {@link #NULL}
+     */
+    int size(long ref) {
+        if(ref == NULL) {
+            return 0;
+        }
+        return 4 + chunks[(int) (ref >>> 32)].getInt((int) ref);
+    }
+
+    /**
+     * @return bytes the record of a list takes, 0 for {@link #NULL}
+     */
+    int listSize(long ref) {
+        if(ref == NULL) {
+            return 0;
+        }
+        ByteBuffer chunk = chunks[(int) (ref >>> 32)];
+        int offset = (int) ref;
+        int count = chunk.getInt(offset);
+        int size = 4;
+        for(int i = 0; i < count; i++) {
+            size += 4 + chunk.getInt(offset + size);
+        }
+        return size;
+    }
+
+    /**
+     * @return bytes reserved in direct memory
+     */
+    long capacity() {
+        return (long) chunks.length * chunkSize;
+    }
+
+    private static String readString(ByteBuffer chunk) {
+        int length = chunk.getInt();
+        byte[] bytes = new byte[length];
+        chunk.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long ref(int offset) {
+        return ((long) (chunks.length - 1) << 32) | offset;
+    }
+
+    private ByteBuffer reserve(int size) {
+        if(size > chunkSize) {
+            throw new IllegalArgumentException("Value of " + size + " bytes does not fit a chunk of " + chunkSize);
+        }
+        if(current == null || current.remaining() < size) {
+            current = ByteBuffer.allocateDirect(chunkSize);
+            ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            grown[grown.length - 1] = current;
+            chunks = grown;
+        }
+        return current;
+    }
+}
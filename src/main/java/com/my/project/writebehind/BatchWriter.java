@@ -0,0 +1,20 @@
+package com.my.project.writebehind;
+
+import java.util.List;
+
+/**
+ * Where a {@link WriteBehindQueue} writes its operations, e.g. a database.
+ */
+public interface BatchWriter {
+
+    /**
+     * Apply a batch of operations in order. An ISBN appears more than once only
+     * for calls that do not coalesce, such as a save after a delete. Called on
+     * the writer thread of the queue only. A batch that throws is retried, then
+     * written one operation at a time to find those that fail, and a batch may
+     * be written again after a crash, so applying an operation twice must do
+     * no harm.
+     * @param batch the operations, in the order of their calls
+     */
+    void write(List<WriteOperation> batch);
+}
@@ -0,0 +1,509 @@
+package com.my.project.writebehind;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.my.project.Book;
+import com.my.project.logging.Log;
+
+/**
+ * Write-behind queue: {@link #save(Book)}, {@link #update(Book)} and
+ * {@link #delete(String)} return once the call is queued, and a background
+ * thread writes the queued operations to a {@link BatchWriter} in batches.
+ * <p>
+ * Calls for an ISBN that is still queued are coalesced with its operation:
+ * updates after a save or an update replace the book, a delete after a save
+ * cancels both if no earlier call for the ISBN is queued or being written,
+ * and a delete after an update, or any other save, replaces it. Other sequences,
+ * such as a save after a delete, are queued in order. A batch is written once
+ * <code>batchSize</code> operations are queued, or when the oldest has waited
+ * <code>maxDelay</code>. A failed batch is retried with growing pauses, up to
+ * {@link #MAX_ATTEMPTS} times, then its operations are written one by one and
+ * those that still fail are moved aside to {@link #getFailed()}. Once closed,
+ * failed batches are not retried. Callers wait only when <code>capacity</code>
+ * operations are queued. The queue keeps copies of the books it is given.
+ * <p>
+ * With a journal directory, every call is appended to a journal there
+ * before it returns, and the journal is forced to disk before each batch.
+ * Calls not yet written when the process stops are queued again by the next
+ * queue opened on the directory, so operations are written at least once.
+ * So are the operations of batches that fail after {@link #close()}: they
+ * stay in the journal rather than being moved aside.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    private static final Log logger = Log.getLog(WriteBehindQueue.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 100;
+    public static final int DEFAULT_CAPACITY = 100000;
+
+    /** How often a batch is written before its operations are tried one by one. */
+    public static final int MAX_ATTEMPTS = 8;
+
+    private static final long MAX_RETRY_PAUSE_MILLIS = 1000;
+
+    private final BatchWriter writer;
+    private final WriteJournal journal;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    //signalled when a batch may be ready, a slot got free, or a batch was written
+    private final Condition work = lock.newCondition();
+    private final Condition space = lock.newCondition();
+    private final Condition progress = lock.newCondition();
+    //signalled on close, ends the pause before a retry
+    private final Condition closing = lock.newCondition();
+    //in the order of their first call, including cancelled ones not yet skipped
+    private final ArrayDeque<WriteOperation> queue = new ArrayDeque<WriteOperation>();
+    //the queued operation of each ISBN that later calls can still fold into
+    private final Map<String, WriteOperation> open = new HashMap<String, WriteOperation>();
+    private final List<WriteOperation> failed = new ArrayList<WriteOperation>();
+    //the ISBNs of the batch being written
+    private final Set<String> writingIsbns = new HashSet<String>();
+    private final Thread thread;
+    private long nextSequence;
+    //first call of the batch being written, -1 when none is
+    private long writing = -1;
+    private int pending;
+    private long coalesced;
+    private long written;
+    private boolean flushing;
+    private boolean closed;
+
+    /**
+     * Queue with the default batch size, delay and capacity.
+     * @param journalDirectory where to keep the journal, null for none
+     * @throws IOException if the journal cannot be opened or recovered
+     */
+    public WriteBehindQueue(BatchWriter writer, File journalDirectory) throws IOException {
+        this(writer, journalDirectory, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS, TimeUnit.MILLISECONDS,
+            DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param writer where the operations are written
+     * @param journalDirectory where to keep the journal, null for none
+     * @param batchSize maximum number of operations per batch
+     * @param maxDelay how long an operation waits for a batch to fill up at most
+     * @param capacity number of queued operations at which callers wait
+     * @throws IOException if the journal cannot be opened or recovered
+     */
+    public WriteBehindQueue(BatchWriter writer, File journalDirectory, int batchSize, long maxDelay, TimeUnit unit,
+            int capacity) throws IOException {
+        if(batchSize <= 0 || capacity < batchSize) {
+            throw new IllegalArgumentException("Batch size must be positive and at most the capacity: " + batchSize
+                + ", " + capacity);
+        }
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.capacity = capacity;
+        if(journalDirectory != null) {
+            journal = new WriteJournal(journalDirectory, WriteJournal.DEFAULT_SEGMENT_SIZE);
+            List<WriteOperation> recovered = new ArrayList<WriteOperation>();
+            lock.lock();
+            try {
+                for(WriteJournal.Record record : journal.recover()) {
+                    //any recovered call may have been written before the crash
+                    enqueue(record.type, record.isbn, record.book, false);
+                }
+                for(WriteOperation operation : queue) {
+                    if(!operation.isCancelled()) {
+                        recovered.add(operation);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            journal.rewrite(recovered);
+        } else {
+            journal = null;
+        }
+        thread = new Thread(new Runnable() {
+            public void run() {
+                writeBatches();
+            }
+        }, "write-behind");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue the insert of a book that is not stored yet.
+     * @throws IllegalArgumentException if the book has no ISBN
+     * @throws IllegalStateException if the queue is closed
+     */
+    public void save(Book book) {
+        submit(WriteOperation.Type.SAVE, requireIsbn(book), new Book(book));
+    }
+
+    /**
+     * Queue the replacement of a stored book.
+     * @throws IllegalArgumentException if the book has no ISBN
+     * @throws IllegalStateException if the queue is closed
+     */
+    public void update(Book book) {
+        submit(WriteOperation.Type.UPDATE, requireIsbn(book), new Book(book));
+    }
+
+    /**
+     * Queue the removal of a book.
+     * @throws IllegalStateException if the queue is closed
+     */
+    public void delete(String isbn) {
+        if(isbn == null) {
+            throw new IllegalArgumentException("ISBN is null");
+        }
+        submit(WriteOperation.Type.DELETE, isbn, null);
+    }
+
+    /**
+     * Write the operations queued so far without waiting for batches to fill
+     * up, and wait until they are written.
+     * @throws IllegalStateException if interrupted while waiting
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            long target = nextSequence;
+            flushing = true;
+            work.signal();
+            while(writtenBefore() < target) {
+                progress.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while flushing", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Refuse further calls, write everything queued and stop the writer thread.
+     * A batch waiting to be retried is tried once more without a pause.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            work.signal();
+            space.signalAll();
+            closing.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while closing", e);
+        }
+        if(journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot close the journal", e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of operations waiting to be written
+     */
+    public int getPending() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of calls folded into an operation queued before, including cancelling deletes
+     */
+    public long getCoalesced() {
+        lock.lock();
+        try {
+            return coalesced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the operations that failed on their own after their batch failed
+     *         {@link #MAX_ATTEMPTS} times, in the order of their calls
+     */
+    public List<WriteOperation> getFailed() {
+        lock.lock();
+        try {
+            return new ArrayList<WriteOperation>(failed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of operations written
+     */
+    public long getWritten() {
+        lock.lock();
+        try {
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void submit(WriteOperation.Type type, String isbn, Book book) {
+        lock.lock();
+        try {
+            while(queue.size() >= capacity && !closed) {
+                space.await();
+            }
+            if(closed) {
+                throw new IllegalStateException("Write-behind queue is closed");
+            }
+            if(journal != null) {
+                journal.append(nextSequence, type, isbn, book);
+            }
+            enqueue(type, isbn, book, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-behind queue", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot journal " + type + " " + isbn, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Coalesce a call with the open operation of its ISBN or queue it. Holds the lock.
+     * @param known whether the queue knows every earlier call, false for recovered ones
+     */
+    private void enqueue(WriteOperation.Type type, String isbn, Book book, boolean known) {
+        long sequence = nextSequence++;
+        WriteOperation operation = open.get(isbn);
+        boolean first = known && operation == null && !writingIsbns.contains(isbn);
+        if(operation != null && operation.merge(type, book)) {
+            coalesced++;
+            if(operation.isCancelled()) {
+                open.remove(isbn);
+                pending--;
+                if(queue.peekLast() == operation) {
+                    queue.pollLast();
+                }
+            }
+            return;
+        }
+        operation = new WriteOperation(sequence, type, isbn, book, first);
+        queue.addLast(operation);
+        open.put(isbn, operation);
+        pending++;
+        if(pending == 1 || pending == batchSize) {
+            work.signal();
+        }
+    }
+
+    /**
+     * @return every call before this sequence is written
+     */
+    private long writtenBefore() {
+        if(writing >= 0) {
+            return writing;
+        }
+        WriteOperation first = queue.peekFirst();
+        return first != null ? first.getSequence() : nextSequence;
+    }
+
+    /**
+     * The writer thread: take batches until closed and drained.
+     */
+    private void writeBatches() {
+        //false once a batch failed after close, its calls stay in the journal
+        boolean release = true;
+        while(true) {
+            List<WriteOperation> batch;
+            lock.lock();
+            try {
+                batch = awaitBatch();
+            } catch (InterruptedException e) {
+                logger.error("Write-behind writer interrupted, {} operations are not written", pending);
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if(batch == null) {
+                return;
+            }
+            List<WriteOperation> rejected = write(batch);
+            long done;
+            lock.lock();
+            try {
+                writing = -1;
+                writingIsbns.clear();
+                written += batch.size() - rejected.size();
+                done = writtenBefore();
+                if(!rejected.isEmpty()) {
+                    if(journal != null && closed) {
+                        release = false;
+                        logger.error("{} operations failed while closing, they stay in the journal",
+                            rejected.size());
+                    } else {
+                        failed.addAll(rejected);
+                        logger.error("{} operations failed and are moved aside: {}", rejected.size(), rejected);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if(journal != null && release) {
+                try {
+                    journal.release(done);
+                } catch (IOException e) {
+                    logger.warn("Cannot release written calls from the journal", e);
+                }
+            }
+            //flushes return once the journal is released too
+            lock.lock();
+            try {
+                progress.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Wait until a batch is due and take it. Holds the lock.
+     * @return the batch, or null when closed and nothing is left
+     */
+    private List<WriteOperation> awaitBatch() throws InterruptedException {
+        while(true) {
+            //skip cancelled operations at the head, their calls need no writing
+            while(!queue.isEmpty() && queue.peekFirst().isCancelled()) {
+                queue.pollFirst();
+            }
+            if(pending == 0) {
+                flushing = false;
+                progress.signalAll();
+                space.signalAll();
+                if(closed) {
+                    return null;
+                }
+                work.await();
+                continue;
+            }
+            long wait = queue.peekFirst().getEnqueued() + maxDelayNanos - System.nanoTime();
+            if(pending >= batchSize || flushing || closed || wait <= 0) {
+                return take();
+            }
+            work.awaitNanos(wait);
+        }
+    }
+
+    private List<WriteOperation> take() {
+        List<WriteOperation> batch = new ArrayList<WriteOperation>(Math.min(pending, batchSize));
+        writing = queue.peekFirst().getSequence();
+        while(batch.size() < batchSize && !queue.isEmpty()) {
+            WriteOperation operation = queue.pollFirst();
+            if(operation.isCancelled()) {
+                continue;
+            }
+            if(open.get(operation.getIsbn()) == operation) {
+                open.remove(operation.getIsbn());
+            }
+            batch.add(operation);
+            writingIsbns.add(operation.getIsbn());
+        }
+        pending -= batch.size();
+        space.signalAll();
+        return batch;
+    }
+
+    /**
+     * @return the operations that could not be written
+     */
+    private List<WriteOperation> write(List<WriteOperation> batch) {
+        if(journal != null) {
+            try {
+                //calls queued after the batch are on disk too
+                journal.force();
+            } catch (IOException e) {
+                logger.warn("Cannot force the journal to disk", e);
+            }
+        }
+        List<WriteOperation> unmodifiable = Collections.unmodifiableList(batch);
+        for(int attempt = 1; ; attempt++) {
+            try {
+                writer.write(unmodifiable);
+                return Collections.emptyList();
+            } catch (RuntimeException e) {
+                logger.error("Writing {} operations failed, attempt {}", batch.size(), attempt, e);
+            }
+            if(attempt >= MAX_ATTEMPTS || !pause(attempt)) {
+                break;
+            }
+        }
+        //find the operations failing the batch, the others are written
+        List<WriteOperation> rejected = new ArrayList<WriteOperation>();
+        for(WriteOperation operation : batch) {
+            try {
+                writer.write(Collections.singletonList(operation));
+            } catch (RuntimeException e) {
+                logger.error("Writing {} failed", operation, e);
+                rejected.add(operation);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Wait before retrying a batch.
+     * @return false if the queue was closed or the writer interrupted meanwhile
+     */
+    private boolean pause(int attempt) {
+        lock.lock();
+        try {
+            long millis = Math.min(MAX_RETRY_PAUSE_MILLIS, 10L << Math.min(attempt, 10));
+            long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+            while(nanos > 0 && !closed) {
+                nanos = closing.awaitNanos(nanos);
+            }
+            return !closed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String requireIsbn(Book book) {
+        if(book == null || book.getIsbn() == null) {
+            throw new IllegalArgumentException("Book has no ISBN");
+        }
+        return book.getIsbn();
+    }
+}
@@ -0,0 +1,275 @@
+package com.my.project.writebehind;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import com.my.project.Book;
+import com.my.project.codec.BookCodec;
+import com.my.project.logging.Log;
+
+/**
+ * Segment files in a local directory holding every call of a
+ * {@link WriteBehindQueue} until it is written, so the calls survive a crash.
+ * <p>
+ * Each call is appended as a record to the head segment: <code>int length |
+ * int CRC32 of the payload | payload</code>, where the payload is the
+ * operation type and the ISBN for a delete, or the type and the
+ * {@link BookCodec} encoding of the book. A segment is deleted once all calls
+ * in it are written, and the head segment is emptied once all calls are.
+ * Records reach the operating system when they are appended, which survives
+ * a crash of the process, and the disk on {@link #force()}.
+ */
+class WriteJournal {
+
+    private static final Log logger = Log.getLog(WriteJournal.class);
+
+    static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final int HEADER = 8;
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    /**
+     * A call read back from the journal.
+     */
+    static final class Record {
+
+        final WriteOperation.Type type;
+        final String isbn;
+        final Book book;
+
+        Record(WriteOperation.Type type, String isbn, Book book) {
+            this.type = type;
+            this.isbn = isbn;
+            this.book = book;
+        }
+    }
+
+    private final File directory;
+    private final int segmentSize;
+    //full segments and the last call in each, oldest first
+    private final ArrayDeque<Segment> full = new ArrayDeque<Segment>();
+    private final CRC32 crc = new CRC32();
+    //the segments read by recover(), replaced by rewrite()
+    private final List<File> recovered = new ArrayList<File>();
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private Segment head;
+    private int nextId;
+
+    /**
+     * @param directory directory holding the segment files, created if missing
+     * @param segmentSize size in bytes after which a new segment is started
+     */
+    WriteJournal(File directory, int segmentSize) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Read the calls of all segments in order. Only the last segment may end
+     * in a torn record, the one being appended to when the process stopped.
+     * Call once, before anything is appended.
+     * @throws IOException if a segment before the last has a torn record
+     */
+    List<Record> recover() throws IOException {
+        TreeMap<Integer, File> files = new TreeMap<Integer, File>();
+        File[] listed = directory.listFiles();
+        for(File file : listed == null ? new File[0] : listed) {
+            String name = file.getName();
+            if(name.matches("\\d+\\" + SEGMENT_SUFFIX)) {
+                files.put(Integer.valueOf(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        List<Record> records = new ArrayList<Record>();
+        for(Map.Entry<Integer, File> file : files.entrySet()) {
+            if(!read(file.getValue(), records) && !file.getKey().equals(files.lastKey())) {
+                //a sealed segment was complete when the next one started, its calls cannot be skipped
+                throw new IOException("Torn record in sealed journal segment " + file.getValue());
+            }
+        }
+        recovered.addAll(files.values());
+        nextId = files.isEmpty() ? 0 : files.lastKey() + 1;
+        if(!records.isEmpty()) {
+            logger.info("Recovered {} calls from the journal in {}", records.size(), directory);
+        }
+        return records;
+    }
+
+    /**
+     * Replace the segments read by {@link #recover()} by one holding just the
+     * operations still to write, and delete them.
+     * @param pending the operations in the order of their calls
+     */
+    synchronized void rewrite(Collection<WriteOperation> pending) throws IOException {
+        for(WriteOperation operation : pending) {
+            append(operation.getSequence(), operation.getType(), operation.getIsbn(), operation.getBook());
+        }
+        force();
+        for(File file : recovered) {
+            if(!file.delete()) {
+                throw new IOException("Cannot delete journal segment " + file);
+            }
+        }
+        recovered.clear();
+    }
+
+    /**
+     * Append a call.
+     * @param sequence the position of the call among all calls, increasing
+     */
+    synchronized void append(long sequence, WriteOperation.Type type, String isbn, Book book) throws IOException {
+        if(head == null || head.size >= segmentSize) {
+            roll();
+        }
+        byte[] payload = type == WriteOperation.Type.DELETE ? isbn.getBytes(StandardCharsets.UTF_8) : null;
+        int length = 1 + (payload != null ? payload.length : BookCodec.sizeOf(book));
+        if(buffer.capacity() < HEADER + length) {
+            buffer = ByteBuffer.allocate(Integer.highestOneBit(HEADER + length) << 1);
+        }
+        buffer.clear();
+        buffer.position(HEADER);
+        buffer.put((byte) type.ordinal());
+        if(payload != null) {
+            buffer.put(payload);
+        } else {
+            BookCodec.encode(book, buffer);
+        }
+        crc.reset();
+        crc.update(buffer.array(), HEADER, length);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            head.channel.write(buffer);
+        }
+        head.size += HEADER + length;
+        head.last = sequence;
+    }
+
+    /**
+     * Write the appended records through to the disk.
+     */
+    synchronized void force() throws IOException {
+        if(head != null) {
+            head.channel.force(false);
+        }
+    }
+
+    /**
+     * Drop the records of written calls.
+     * @param written every call before this sequence is written
+     */
+    synchronized void release(long written) throws IOException {
+        while(!full.isEmpty() && full.peekFirst().last < written) {
+            Segment segment = full.pollFirst();
+            if(!segment.file.delete()) {
+                logger.warn("Cannot delete journal segment {}", segment.file);
+            }
+        }
+        if(head != null && head.size > 0 && head.last < written) {
+            head.channel.truncate(0);
+            head.channel.position(0);
+            head.size = 0;
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if(head != null) {
+            head.channel.force(false);
+            head.raf.close();
+            head = null;
+        }
+    }
+
+    private void roll() throws IOException {
+        if(head != null) {
+            head.channel.force(false);
+            head.raf.close();
+            full.addLast(head);
+        }
+        File file = new File(directory, String.format("%010d%s", nextId++, SEGMENT_SUFFIX));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        head = new Segment(file, raf);
+    }
+
+    /**
+     * @return false if the segment ends in a torn record
+     */
+    private static boolean read(File file, List<Record> records) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            CRC32 crc = new CRC32();
+            long size = file.length();
+            long offset = 0;
+            while(true) {
+                if(offset == size) {
+                    return true;
+                }
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if(length <= 0 || length > size - offset - HEADER) {
+                    logger.warn("Torn record in journal segment {}", file);
+                    return false;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                offset += HEADER + length;
+                crc.reset();
+                crc.update(payload);
+                if((int) crc.getValue() != checksum) {
+                    logger.warn("Torn record in journal segment {}", file);
+                    return false;
+                }
+                WriteOperation.Type type = WriteOperation.Type.values()[payload[0]];
+                if(type == WriteOperation.Type.DELETE) {
+                    records.add(new Record(type, new String(payload, 1, length - 1, StandardCharsets.UTF_8), null));
+                } else {
+                    Book book = BookCodec.decode(ByteBuffer.wrap(payload, 1, length - 1).slice());
+                    records.add(new Record(type, book.getIsbn(), book));
+                }
+            }
+        } catch(EOFException e) {
+            logger.warn("Torn record in journal segment {}", file);
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * One segment file, open while it is the head.
+     */
+    private static final class Segment {
+
+        final File file;
+        final RandomAccessFile raf;
+        final FileChannel channel;
+        long size;
+        //the last call appended, -1 before the first
+        long last = -1;
+
+        Segment(File file, RandomAccessFile raf) {
+            this.file = file;
+            this.raf = raf;
+            this.channel = raf.getChannel();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.my.project.writebehind;
+
+import com.my.project.Book;
+
+/**
+ * A write waiting in a {@link WriteBehindQueue}: the net effect of the calls
+ * for one ISBN that were coalesced into it.
+ */
+public final class WriteOperation {
+
+    public enum Type {
+        /** Insert the book. */
+        SAVE,
+        /** Replace the stored book. */
+        UPDATE,
+        /** Remove the book. */
+        DELETE
+    }
+
+    private final long sequence;
+    private final String isbn;
+    private final long enqueued;
+    //no earlier call for the ISBN was queued, being written or recovered
+    private final boolean first;
+    private Type type;
+    private Book book;
+    private boolean cancelled;
+
+    /**
+     * @param first whether no earlier call for the ISBN is queued or being written
+     */
+    WriteOperation(long sequence, Type type, String isbn, Book book, boolean first) {
+        this.sequence = sequence;
+        this.type = type;
+        this.isbn = isbn;
+        this.book = book;
+        this.first = first;
+        this.enqueued = System.nanoTime();
+    }
+
+    /**
+     * @return the position of the first call coalesced into this operation among all calls of the queue
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    /**
+     * @return the book to save or update, null for {@link Type#DELETE}
+     */
+    public Book getBook() {
+        return book;
+    }
+
+    long getEnqueued() {
+        return enqueued;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Fold a later call for the same ISBN into this operation, if its net effect is one operation.
+     * @return false if the call must follow as an operation of its own
+     */
+    boolean merge(Type later, Book laterBook) {
+        switch(type) {
+        case SAVE:
+            if(later == Type.DELETE && first) {
+                //never written, so nothing to delete
+                cancelled = true;
+                book = null;
+            } else if(later == Type.DELETE) {
+                //an earlier call may have stored the book, and a save stores it over that
+                type = Type.DELETE;
+                book = null;
+            } else {
+                book = laterBook;
+            }
+            return true;
+        case UPDATE:
+            if(later == Type.SAVE) {
+                return false;
+            }
+            type = later;
+            book = laterBook;
+            return true;
+        default:
+            return later == Type.DELETE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + isbn;
+    }
+}
@@ -0,0 +1,17 @@
+-- Book tables, usable on PostgreSQL and on H2 in PostgreSQL mode.
+
+CREATE TABLE IF NOT EXISTS book (
+    isbn VARCHAR(17) PRIMARY KEY,
+    title VARCHAR(512),
+    publication VARCHAR(256),
+    year_of_publication INTEGER,
+    number_of_pages INTEGER,
+    image TEXT
+);
+
+CREATE TABLE IF NOT EXISTS book_author (
+    isbn VARCHAR(17) NOT NULL REFERENCES book (isbn),
+    author_order INTEGER NOT NULL,
+    author VARCHAR(256) NOT NULL,
+    PRIMARY KEY (isbn, author_order)
+);
@@ -0,0 +1,189 @@
+package com.my.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class AsyncBookDALTest {
+
+    private BookDAL bookDAL;
+    private AsyncBookDAL async;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        bookDAL = mock(BookDAL.class);
+        when(bookDAL.getBook("8131721019")).thenAnswer(new Answer<Book>() {
+            public Book answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return new Book("8131721019", "Compilers Principles", null, null, null, null, null);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        async.close();
+    }
+
+    @Test
+    public void testCoalesceConcurrentLookups() throws Exception {
+        async = new AsyncBookDAL(bookDAL, 4, 10, AsyncBookDAL.Saturation.REJECT);
+        List<CompletableFuture<Book>> futures = new ArrayList<CompletableFuture<Book>>();
+        for(int i = 0; i < 20; i++) {
+            futures.add(async.getBookAsync("8131721019"));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        Book first = futures.get(0).get(5, TimeUnit.SECONDS);
+        assertEquals("Compilers Principles", first.getTitle());
+        for(CompletableFuture<Book> future : futures.subList(1, futures.size())) {
+            assertNotSame(first, future.get(5, TimeUnit.SECONDS));
+        }
+        verify(bookDAL, times(1)).getBook("8131721019");
+
+        //a finished lookup is not reused
+        async.getBookAsync("8131721019").get(5, TimeUnit.SECONDS);
+        verify(bookDAL, times(2)).getBook("8131721019");
+    }
+
+    @Test
+    public void testWriteDetachesRunningLookup() throws Exception {
+        async = new AsyncBookDAL(bookDAL, 4, 10, AsyncBookDAL.Saturation.REJECT);
+        CompletableFuture<Book> before = async.getBookAsync("8131721019");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        async.updateBookAsync(new Book("8131721019", "Dragon Book", null, null, null, null, null));
+        CompletableFuture<Book> after = async.getBookAsync("8131721019");
+        release.countDown();
+
+        before.get(5, TimeUnit.SECONDS);
+        after.get(5, TimeUnit.SECONDS);
+        verify(bookDAL, times(2)).getBook("8131721019");
+    }
+
+    @Test
+    public void testRejectWhenQueueIsFull() throws Exception {
+        async = new AsyncBookDAL(bookDAL, 1, 1, AsyncBookDAL.Saturation.REJECT);
+        CompletableFuture<Book> running = async.getBookAsync("8131721019");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = async.getBookTitleByIsbnAsync("9788183331630");
+        CompletableFuture<String> rejected = async.addBookAsync(new Book("9788183331630", "Let Us C", null, null,
+            null, null, null));
+
+        assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+            fail("Expected the call to be rejected");
+        } catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        verify(bookDAL, times(0)).addBook(any(Book.class));
+    }
+
+    @Test
+    public void testCallerRunsWhenQueueIsFull() throws Exception {
+        async = new AsyncBookDAL(bookDAL, 1, 1, AsyncBookDAL.Saturation.CALLER_RUNS);
+        when(bookDAL.getBookTitleByIsbn("9788183331630")).thenAnswer(new Answer<String>() {
+            public String answer(InvocationOnMock invocation) {
+                return Thread.currentThread().getName();
+            }
+        });
+        async.getBookAsync("8131721019");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        async.getBookTitleByIsbnAsync("9788183331630");
+
+        CompletableFuture<String> overflow = async.getBookTitleByIsbnAsync("9788183331630");
+        assertTrue(overflow.isDone());
+        assertEquals(Thread.currentThread().getName(), overflow.get());
+    }
+
+    @Test
+    public void testVirtualThreadsOrFallback() throws Exception {
+        async = AsyncBookDAL.virtualThreads(bookDAL, 1, AsyncBookDAL.Saturation.REJECT);
+        assertEquals(VirtualThreads.isAvailable(), async.isVirtual());
+        CompletableFuture<Book> running = async.getBookAsync("8131721019");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> next = async.getBookTitleByIsbnAsync("9788183331630");
+        if(async.isVirtual()) {
+            //one call in flight at most
+            assertTrue(next.isCompletedExceptionally());
+        }
+        release.countDown();
+        assertEquals("Compilers Principles", running.get(5, TimeUnit.SECONDS).getTitle());
+    }
+
+    @Test
+    public void testCallerRunsRejectsOnceClosed() throws Exception {
+        async = new AsyncBookDAL(bookDAL, 1, 1, AsyncBookDAL.Saturation.CALLER_RUNS);
+        async.close();
+        for(int i = 0; i < 2; i++) {
+            //a rejected lookup is not left behind for the next one to join
+            CompletableFuture<Book> lookup = async.getBookAsync("8131721019");
+            assertTrue(lookup.isCompletedExceptionally());
+            try {
+                lookup.get(5, TimeUnit.SECONDS);
+                fail("Expected the lookup to be rejected");
+            } catch(ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+        verify(bookDAL, times(0)).getBook("8131721019");
+    }
+
+    @Test
+    public void testInterruptedCloseFailsQueuedCalls() throws Exception {
+        async = new AsyncBookDAL(bookDAL, 1, 1, AsyncBookDAL.Saturation.REJECT);
+        CompletableFuture<Book> running = async.getBookAsync("8131721019");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = async.getBookTitleByIsbnAsync("9788183331630");
+
+        Thread closer = new Thread(new Runnable() {
+            public void run() {
+                async.close();
+            }
+        });
+        closer.start();
+        closer.interrupt();
+        closer.join(5000);
+        try {
+            queued.get(5, TimeUnit.SECONDS);
+            fail("Expected the queued call to fail");
+        } catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        //the running call was interrupted rather than left to finish
+        try {
+            running.get(5, TimeUnit.SECONDS);
+            fail("Expected the running call to be interrupted");
+        } catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        }
+    }
+}
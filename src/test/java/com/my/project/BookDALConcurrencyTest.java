@@ -0,0 +1,124 @@
+package com.my.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.UnaryOperator;
+
+import org.junit.Test;
+
+/**
+ * Stress test for the sample book snapshot of BookDAL.
+ */
+public class BookDALConcurrencyTest {
+
+    private static final int UPDATES_PER_THREAD = 2000;
+    //every update copies the book, more writers only add retries on the one snapshot
+    private static final int MAX_THREADS = 8;
+
+    @Test
+    public void testSnapshotIsCopied() {
+        Book sample = new Book("Original Title");
+        BookDAL bookDAL = new BookDAL(sample);
+        sample.setTitle("Changed");
+        assertEquals("Original Title", bookDAL.getSampleBook().getTitle());
+        assertNotSame(bookDAL.getSampleBook(), bookDAL.getSampleBook());
+
+        bookDAL.changeSampleTitle();
+        assertEquals("INJECTED", bookDAL.getSampleBook().getTitle());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUpdateWithoutSampleBook() {
+        new BookDAL((Book) null).changeSampleTitle();
+    }
+
+    @Test
+    public void testNoLostUpdates() throws Exception {
+        int threads = Math.min(MAX_THREADS, Math.max(4, Runtime.getRuntime().availableProcessors()));
+        Book sample = new Book("Sample");
+        sample.setNumberOfPages(0);
+        BookDAL bookDAL = new BookDAL(sample);
+
+        run(bookDAL, threads);
+
+        assertEquals(threads * UPDATES_PER_THREAD, bookDAL.getSampleBook().getNumberOfPages().intValue());
+    }
+
+    @Test
+    public void testReadersSeeCompleteSnapshots() throws Exception {
+        final Book sample = new Book("Sample");
+        sample.setIsbn("0");
+        final BookDAL bookDAL = new BookDAL(sample);
+        final CountDownLatch done = new CountDownLatch(1);
+        final Set<String> torn = new HashSet<String>();
+
+        //the writer always sets the ISBN and the title to the same value
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                for(int i = 1; i <= 20000; i++) {
+                    final String value = String.valueOf(i);
+                    bookDAL.updateSampleBook(new UnaryOperator<Book>() {
+                        public Book apply(Book book) {
+                            book.setIsbn(value);
+                            book.setTitle(value);
+                            return book;
+                        }
+                    });
+                }
+                done.countDown();
+            }
+        });
+        bookDAL.updateSampleBook(new UnaryOperator<Book>() {
+            public Book apply(Book book) {
+                book.setTitle("0");
+                return book;
+            }
+        });
+        writer.start();
+        while(done.getCount() > 0) {
+            Book snapshot = bookDAL.getSampleBook();
+            if(!snapshot.getIsbn().equals(snapshot.getTitle())) {
+                torn.add(snapshot.getIsbn());
+            }
+        }
+        writer.join();
+        assertTrue("torn snapshots: " + torn, torn.isEmpty());
+    }
+
+    private static void run(final BookDAL bookDAL, int threads) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<Thread>();
+        for(int t = 0; t < threads; t++) {
+            Thread worker = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for(int i = 0; i < UPDATES_PER_THREAD; i++) {
+                        bookDAL.updateSampleBook(new UnaryOperator<Book>() {
+                            public Book apply(Book book) {
+                                book.setNumberOfPages(book.getNumberOfPages() + 1);
+                                return book;
+                            }
+                        });
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for(Thread worker : workers) {
+            worker.join();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.my.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.my.project.cache.ReadThroughCache;
+import com.my.project.jdbc.ConnectionPool;
+import com.my.project.jdbc.DataAccessException;
+import com.my.project.jdbc.DatabaseConfig;
+import com.my.project.jdbc.PooledConnection;
+import com.my.project.jdbc.Schema;
+
+/**
+ * Runs BookDAL against the database from the test jdbc.properties (in-memory H2 by default,
+ * or a local PostgreSQL with -Djdbc.url=...).
+ */
+public class BookDALDatabaseTest {
+
+    private static ConnectionPool pool;
+    private BookDAL bookDAL;
+
+    @BeforeClass
+    public static void createSchema() {
+        pool = new ConnectionPool(DatabaseConfig.load());
+        Schema.create(pool);
+    }
+
+    @AfterClass
+    public static void closePool() {
+        pool.close();
+    }
+
+    @Before
+    public void clean() throws SQLException {
+        PooledConnection connection = pool.borrow();
+        try {
+            Statement statement = connection.getConnection().createStatement();
+            statement.executeUpdate("DELETE FROM book_author");
+            statement.executeUpdate("DELETE FROM book");
+            statement.close();
+        } finally {
+            connection.close();
+        }
+        bookDAL = new BookDAL(pool);
+    }
+
+    static Book compilers() {
+        return new Book("8131721019", "Compilers Principles", Arrays.asList(
+            "D. Jeffrey Ulman",
+            "Ravi Sethi",
+            "Alfred V. Aho",
+            "Monica S. Lam"), "Pearson Education Singapore Pte Ltd", 2008, 1009, "BOOK_IMAGE");
+    }
+
+    static Book letUsC() {
+        return new Book("9788183331630", "Let Us C 13th Edition", Arrays.asList("Yashavant Kanetkar"),
+            "BPB PUBLICATIONS", 2012, 675, "BOOK_IMAGE");
+    }
+
+    @Test
+    public void testAddAndGetBook() {
+        assertEquals("8131721019", bookDAL.addBook(compilers()));
+
+        Book book = bookDAL.getBook("8131721019");
+        assertNotNull(book);
+        assertEquals("Compilers Principles", book.getTitle());
+        assertEquals(Arrays.asList("D. Jeffrey Ulman", "Ravi Sethi", "Alfred V. Aho", "Monica S. Lam"),
+            book.getAuthors());
+        assertEquals("Pearson Education Singapore Pte Ltd", book.getPublication());
+        assertEquals((Integer) 2008, book.getYearOfPublication());
+        assertEquals((Integer) 1009, book.getNumberOfPages());
+        assertEquals("BOOK_IMAGE", book.getImage());
+
+        assertNull(bookDAL.getBook("0000000000"));
+    }
+
+    @Test
+    public void testGetAllBooks() {
+        bookDAL.addBook(letUsC());
+        bookDAL.addBook(compilers());
+
+        List<Book> books = bookDAL.getAllBooks();
+        assertEquals(2, books.size());
+        assertEquals("8131721019", books.get(0).getIsbn());
+        assertEquals(4, books.get(0).getAuthors().size());
+        assertEquals("9788183331630", books.get(1).getIsbn());
+        assertEquals(Arrays.asList("Yashavant Kanetkar"), books.get(1).getAuthors());
+    }
+
+    @Test
+    public void testUpdateBook() {
+        bookDAL.addBook(compilers());
+
+        Book book = compilers();
+        book.setAuthors(Arrays.asList("Alfred V. Aho"));
+        book.setNumberOfPages(null);
+        assertEquals("8131721019", bookDAL.updateBook(book));
+
+        Book updated = bookDAL.getBook("8131721019");
+        assertEquals(Arrays.asList("Alfred V. Aho"), updated.getAuthors());
+        assertNull(updated.getNumberOfPages());
+
+        assertNull(bookDAL.updateBook(letUsC()));
+    }
+
+    @Test
+    public void testSetBookTitle() {
+        Book book = compilers();
+        bookDAL.addBook(book);
+
+        bookDAL.setBookTitle(book, "Dragon Book");
+        assertEquals("Dragon Book", book.getTitle());
+        assertEquals("Dragon Book", bookDAL.getBookTitleByIsbn("8131721019"));
+        assertNull(bookDAL.getBookTitleByIsbn("0000000000"));
+    }
+
+    @Test(expected = DataAccessException.class)
+    public void testAddDuplicateBook() {
+        bookDAL.addBook(compilers());
+        bookDAL.addBook(compilers());
+    }
+
+    @Test
+    public void testConnectionsAreReturned() {
+        int available = pool.availablePermits();
+        bookDAL.addBook(compilers());
+        for(int i = 0; i < 100; i++) {
+            bookDAL.getBook("8131721019");
+        }
+        try {
+            bookDAL.addBook(compilers());
+        } catch (DataAccessException expected) {
+            //the connection is still returned
+        }
+        assertEquals(available, pool.availablePermits());
+
+        //closing twice returns the connection once
+        PooledConnection connection = pool.borrow();
+        connection.close();
+        connection.close();
+        assertEquals(available, pool.availablePermits());
+        PooledConnection again = pool.borrow();
+        assertEquals(available - 1, pool.availablePermits());
+        again.close();
+        assertEquals(available, pool.availablePermits());
+    }
+
+    static List<Book> generate(int count) {
+        List<Book> books = new ArrayList<Book>();
+        for(int i = 0; i < count; i++) {
+            books.add(new Book(String.format("97800000%05d", i), "Title " + i, Arrays.asList("Author " + i, "Co-Author"),
+                "Publisher " + (i % 3), 2000 + i % 10, 100 + i, "BOOK_IMAGE"));
+        }
+        return books;
+    }
+
+    @Test
+    public void testAddBooks() {
+        //batch size is 3 in the test configuration
+        BulkResult result = bookDAL.addBooks(generate(7));
+        assertTrue(result.isSuccess());
+        assertEquals(3, result.getBatches().size());
+        assertEquals(6, result.getBatches().get(2).getOffset());
+        assertEquals(1, result.getBatches().get(2).getSize());
+        assertEquals(7, result.getAffected());
+
+        List<Book> books = bookDAL.getAllBooks();
+        assertEquals(7, books.size());
+        assertEquals(Arrays.asList("Author 4", "Co-Author"), books.get(4).getAuthors());
+    }
+
+    @Test
+    public void testAddBooksReportsFailedBatch() {
+        List<Book> books = generate(7);
+        //duplicate key inside the second batch
+        books.set(4, generate(1).get(0));
+
+        BulkResult result = bookDAL.addBooks(books);
+        assertFalse(result.isSuccess());
+        assertEquals(1, result.getFailedBatches().size());
+        assertEquals(3, result.getFailedBatches().get(0).getOffset());
+        assertNotNull(result.getFailedBatches().get(0).getFailure());
+        assertEquals(4, result.getAffected());
+        assertEquals(4, bookDAL.getAllBooks().size());
+    }
+
+    @Test
+    public void testUpdateBooks() {
+        bookDAL.addBooks(generate(5));
+        List<Book> books = generate(6);
+        for(Book book : books) {
+            book.setTitle(book.getTitle() + " (2nd)");
+            book.setAuthors(Arrays.asList("Editor"));
+        }
+
+        BulkResult result = bookDAL.updateBooks(books);
+        assertTrue(result.isSuccess());
+        //the sixth ISBN does not exist
+        assertEquals(5, result.getAffected());
+        assertEquals("Title 3 (2nd)", bookDAL.getBookTitleByIsbn(books.get(3).getIsbn()));
+        assertEquals(Arrays.asList("Editor"), bookDAL.getBook(books.get(3).getIsbn()).getAuthors());
+    }
+
+    @Test
+    public void testStreamAllBooks() {
+        bookDAL.addBooks(generate(7));
+        bookDAL.addBook(new Book("9780000000999", "No Authors", null, null, null, null, null));
+        int available = pool.availablePermits();
+
+        //fetch size is 2 in the test configuration, so authors of a book can span fetches
+        try (Stream<Book> books = bookDAL.streamAllBooks()) {
+            List<Book> all = books.collect(Collectors.toList());
+            assertEquals(8, all.size());
+            assertEquals("9780000000004", all.get(4).getIsbn());
+            assertEquals(Arrays.asList("Author 4", "Co-Author"), all.get(4).getAuthors());
+            assertTrue(all.get(7).getAuthors().isEmpty());
+            assertNull(all.get(7).getYearOfPublication());
+            //exhausting the cursor returns the connection
+            assertEquals(available, pool.availablePermits());
+        }
+        assertEquals(available, pool.availablePermits());
+    }
+
+    @Test
+    public void testCloseStreamEarly() {
+        bookDAL.addBooks(generate(7));
+        int available = pool.availablePermits();
+
+        Stream<Book> books = bookDAL.streamAllBooks(1);
+        Iterator<Book> iterator = books.iterator();
+        assertEquals("9780000000000", iterator.next().getIsbn());
+        assertEquals(available - 1, pool.availablePermits());
+        books.close();
+        assertEquals(available, pool.availablePermits());
+    }
+
+    @Test
+    public void testCacheIsInvalidatedByWrites() {
+        ReadThroughCache<String, Book> cache = bookDAL.enableCache(100, 1, TimeUnit.MINUTES);
+        assertNull(bookDAL.getBook("8131721019"));
+
+        Book book = compilers();
+        bookDAL.addBook(book);
+        assertEquals("Compilers Principles", bookDAL.getBookTitleByIsbn("8131721019"));
+
+        //changing a returned copy does not change the cached book
+        bookDAL.getBook("8131721019").setTitle("Changed");
+        assertEquals("Compilers Principles", bookDAL.getBook("8131721019").getTitle());
+
+        bookDAL.setBookTitle(book, "Dragon Book");
+        assertEquals("Dragon Book", bookDAL.getBookTitleByIsbn("8131721019"));
+
+        book.setPublication("Addison-Wesley");
+        bookDAL.updateBook(book);
+        assertEquals("Addison-Wesley", bookDAL.getBook("8131721019").getPublication());
+
+        assertEquals(4, cache.getStats().getLoads());
+        assertEquals(2, cache.getStats().getHits());
+    }
+
+    @Test
+    public void testLazyLoading() {
+        List<Book> added = new ArrayList<Book>();
+        for(int i = 0; i < LazyBook.PAGE_SIZE + 10; i++) {
+            added.add(new Book(String.format("978%010d", i), "Title " + i,
+                i % 3 == 0 ? Arrays.<String>asList() : Arrays.asList("Author " + i, "Second " + i), "Publisher",
+                2000, 100, "IMAGE " + i));
+        }
+        bookDAL.addBooks(added);
+        bookDAL.setLazyLoading(true);
+
+        List<Book> books = bookDAL.getAllBooks();
+        assertEquals(added.size(), books.size());
+        LazyBook first = (LazyBook) books.get(0);
+        LazyBook second = (LazyBook) books.get(1);
+        LazyBook nextPage = (LazyBook) books.get(LazyBook.PAGE_SIZE);
+        assertEquals("Title 1", second.getTitle());
+        assertFalse(second.isAuthorsLoaded());
+
+        assertEquals(Arrays.asList("Author 1", "Second 1"), second.getAuthors());
+        //loaded for the whole page by the same query
+        assertTrue(first.isAuthorsLoaded());
+        assertEquals(Arrays.<String>asList(), first.getAuthors());
+        assertFalse(first.isImageLoaded());
+        assertFalse(nextPage.isAuthorsLoaded());
+        assertEquals(Arrays.asList("Author " + LazyBook.PAGE_SIZE, "Second " + LazyBook.PAGE_SIZE),
+            nextPage.getAuthors());
+        assertEquals("IMAGE 2", books.get(2).getImage());
+
+        Book single = bookDAL.getBook(String.format("978%010d", 5));
+        assertEquals("IMAGE 5", single.getImage());
+        assertEquals(Arrays.asList("Author 5", "Second 5"), single.getAuthors());
+        //a copy is a plain book
+        assertEquals(Book.class, new Book(single).getClass());
+    }
+
+    @Test
+    public void testCachedLazyBookStaysLazy() {
+        bookDAL.addBook(compilers());
+        bookDAL.setLazyLoading(true);
+        bookDAL.enableCache(100, 1, TimeUnit.MINUTES);
+
+        LazyBook copy = (LazyBook) bookDAL.getBook("8131721019");
+        assertEquals("Compilers Principles", copy.getTitle());
+        assertFalse(copy.isAuthorsLoaded());
+        assertFalse(copy.isImageLoaded());
+        assertEquals(compilers().getAuthors(), copy.getAuthors());
+        copy.getAuthors().clear();
+
+        //the cached book loaded the authors once, the image is still not loaded
+        LazyBook again = (LazyBook) bookDAL.getBook("8131721019");
+        assertTrue(again.isAuthorsLoaded());
+        assertFalse(again.isImageLoaded());
+        assertEquals(compilers().getAuthors(), again.getAuthors());
+        assertEquals(compilers().getImage(), again.getImage());
+    }
+
+    @Test
+    public void testGetBooks() {
+        bookDAL.addBook(compilers());
+        bookDAL.addBook(letUsC());
+        bookDAL.addBook(new Book("9780000000002", "No Authors", null, null, null, null, null));
+
+        Map<String, Book> books = bookDAL.getBooks(Arrays.asList("9788183331630", "0000000000", "8131721019",
+            "9780000000002"));
+        assertEquals(Arrays.asList("9788183331630", "8131721019", "9780000000002"),
+            new ArrayList<String>(books.keySet()));
+        assertEquals(compilers().getAuthors(), books.get("8131721019").getAuthors());
+        assertEquals("BOOK_IMAGE", books.get("9788183331630").getImage());
+        assertTrue(books.get("9780000000002").getAuthors().isEmpty());
+
+        bookDAL.setLazyLoading(true);
+        books = bookDAL.getBooks(Arrays.asList("8131721019", "9788183331630"));
+        assertEquals(compilers().getAuthors(), books.get("8131721019").getAuthors());
+        assertEquals(letUsC().getAuthors(), books.get("9788183331630").getAuthors());
+    }
+}
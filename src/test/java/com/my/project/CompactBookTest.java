@@ -0,0 +1,88 @@
+package com.my.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+public class CompactBookTest {
+
+    private static final int BOOKS = 10000;
+
+    @Test
+    public void testRoundTrip() {
+        Book book = new Book("8131721019", "Compilers Principles", Arrays.asList(
+            "D. Jeffrey Ulman",
+            "Ravi Sethi",
+            "Alfred V. Aho",
+            "Monica S. Lam"), "Pearson Education Singapore Pte Ltd", 2008, 1009, "BOOK_IMAGE");
+
+        CompactBook compact = CompactBook.from(book, new SymbolTable());
+        assertEquals(2008, compact.getYearOfPublication());
+        assertEquals(4, compact.getAuthorCount());
+        assertEquals("Alfred V. Aho", compact.getAuthor(2));
+
+        Book copy = compact.toBook();
+        assertEquals(book.getAuthors(), copy.getAuthors());
+        assertEquals(book.getYearOfPublication(), copy.getYearOfPublication());
+        assertEquals(book.getNumberOfPages(), copy.getNumberOfPages());
+        assertEquals(compact, CompactBook.from(copy, new SymbolTable()));
+    }
+
+    @Test
+    public void testAbsentValues() {
+        CompactBook compact = CompactBook.from(new Book("Only Title"));
+        assertEquals(CompactBook.ABSENT, compact.getYearOfPublication());
+        assertEquals(CompactBook.ABSENT, compact.getNumberOfPages());
+        assertEquals(0, compact.getAuthorCount());
+        assertNull(compact.toBook().getYearOfPublication());
+    }
+
+    @Test
+    public void testSharedStrings() {
+        SymbolTable symbols = new SymbolTable();
+        CompactBook first = CompactBook.builder(symbols).publication(new String("BPB PUBLICATIONS"))
+            .authors(new String("Yashavant Kanetkar")).build();
+        CompactBook second = CompactBook.builder(symbols).publication(new String("BPB PUBLICATIONS"))
+            .authors(new String("Yashavant Kanetkar")).build();
+        assertSame(first.getPublication(), second.getPublication());
+        assertSame(first.getAuthor(0), second.getAuthor(0));
+        assertEquals(2, symbols.size());
+    }
+
+    @Test
+    public void testImageNotInterned() {
+        SymbolTable symbols = new SymbolTable();
+        String image = new String("BOOK_IMAGE");
+        CompactBook compact = CompactBook.builder(symbols).image(image).build();
+        assertSame(image, compact.getImage());
+        assertEquals(0, symbols.size());
+    }
+
+    /**
+     * Bytes per book of the object graph, counting shared strings once.
+     * CompactBookFootprint in src/jmh/java prints the report.
+     */
+    @Test
+    public void testFootprint() {
+        Book[] books = new Book[BOOKS];
+        CompactBook[] compactBooks = new CompactBook[BOOKS];
+        SymbolTable symbols = new SymbolTable();
+        for(int i = 0; i < BOOKS; i++) {
+            //new String() models values read from a database or a file, which are never shared
+            books[i] = new Book(String.valueOf(9780000000000L + i), "Title " + i,
+                Arrays.asList(new String("Author " + i % 500), new String("Co-Author " + i % 50)),
+                new String("Publisher " + i % 20), 1950 + i % 70, 100 + i % 900, new String("BOOK_IMAGE"));
+            compactBooks[i] = CompactBook.from(books[i], symbols);
+        }
+
+        long legacy = GraphLayout.parseInstance((Object) books).totalSize() / BOOKS;
+        long compact = GraphLayout.parseInstance((Object) compactBooks).totalSize() / BOOKS;
+        assertTrue(compact < legacy);
+    }
+}
@@ -0,0 +1,55 @@
+package com.my.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IsbnTest {
+
+    @Test
+    public void testIsbn13() {
+        assertEquals(9788183331630L, Isbn.parse("9788183331630"));
+        assertEquals(9788183331630L, Isbn.parse("978-81-8333-163-0"));
+        assertEquals("9788183331630", Isbn.toString(9788183331630L));
+    }
+
+    @Test
+    public void testIsbn10IsConvertedTo13() {
+        assertEquals(9788131721018L, Isbn.parse("8131721019"));
+        assertEquals(Isbn.parse("8131721019"), Isbn.parse("978-8131721018"));
+        assertEquals("9780306406157", Isbn.toIsbn13("0-306-40615-2"));
+        //X stands for a check digit of 10
+        assertEquals(9780439420891L, Isbn.parse("043942089X"));
+        assertEquals(9780439420891L, Isbn.parse("043942089x"));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertEquals(Isbn.INVALID, Isbn.parse(null));
+        assertEquals(Isbn.INVALID, Isbn.parse(""));
+        assertEquals(Isbn.INVALID, Isbn.parse("8131721018"));
+        assertEquals(Isbn.INVALID, Isbn.parse("9788183331631"));
+        assertEquals(Isbn.INVALID, Isbn.parse("978818333163"));
+        assertEquals(Isbn.INVALID, Isbn.parse("97881833316300"));
+        assertEquals(Isbn.INVALID, Isbn.parse("X43942089X"));
+        assertEquals(Isbn.INVALID, Isbn.parse("043942089X123"));
+        assertEquals(Isbn.INVALID, Isbn.parse("ISBN-8131721019"));
+        assertFalse(Isbn.isValid("0000000000000"));
+        assertTrue(Isbn.isValid("8131721019"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testToLongRejectsInvalid() {
+        Isbn.toLong("8131721018");
+    }
+
+    @Test
+    public void testComplete() {
+        assertEquals(9788183331630L, Isbn.complete(978818333163L));
+        for(long prefix = 978000000000L; prefix < 978000001000L; prefix++) {
+            assertEquals(Isbn.complete(prefix), Isbn.parse(Isbn.toString(Isbn.complete(prefix))));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.my.project;
+
+import java.util.Arrays;
+
+/**
+ * Books for the tests, numbered from 0 and with valid ISBN-13s.
+ */
+public final class TestBooks {
+
+    private TestBooks() {
+    }
+
+    /**
+     * @return the ISBN-13 of book <code>i</code>
+     */
+    public static String isbn(int i) {
+        return Isbn.toString(Isbn.complete(978000000000L + i));
+    }
+
+    public static Book book(int i, String title) {
+        return book(i, title, 100);
+    }
+
+    public static Book book(int i, String title, int pages) {
+        return new Book(isbn(i), title, Arrays.asList("Author " + i), "Publisher", 2000, pages, null);
+    }
+}
@@ -0,0 +1,121 @@
+package com.my.project.analytics;
+
+import static com.my.project.TestBooks.isbn;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.my.project.Book;
+import com.my.project.Isbn;
+import com.my.project.store.OffHeapBookStore;
+
+public class CatalogueAnalyticsTest {
+
+    private static List<Book> books(int count) {
+        Random random = new Random(7);
+        String[] publishers = {"Pearson", "BPB Publications", "O'Reilly", null};
+        List<Book> books = new ArrayList<Book>();
+        for(int i = 0; i < count; i++) {
+            books.add(new Book(isbn(i), "Title " + i, null,
+                publishers[random.nextInt(publishers.length)],
+                random.nextInt(10) == 0 ? null : 2023 - random.nextInt(200),
+                random.nextInt(10) == 0 ? null : random.nextInt(2000), null));
+        }
+        return books;
+    }
+
+    private static <K> void increment(SortedMap<K, Long> counts, K key) {
+        Long count = counts.get(key);
+        counts.put(key, count == null ? 1L : count + 1);
+    }
+
+    @Test
+    public void testParallelScanMatchesSequentialCounts() {
+        List<Book> books = books(50000);
+        SortedMap<Integer, Long> histogram = new TreeMap<Integer, Long>();
+        SortedMap<Integer, Long> perYear = new TreeMap<Integer, Long>();
+        SortedMap<String, Long> perPublisher = new TreeMap<String, Long>();
+        long pages = 0;
+        for(Book book : books) {
+            if(book.getNumberOfPages() != null) {
+                pages += book.getNumberOfPages();
+                increment(histogram, book.getNumberOfPages() / 250 * 250);
+            }
+            if(book.getYearOfPublication() != null) {
+                increment(perYear, book.getYearOfPublication());
+            }
+            if(book.getPublication() != null) {
+                increment(perPublisher, book.getPublication());
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CatalogueReport report = new CatalogueAnalytics(pool, 250).analyze(books);
+            assertEquals(50000, report.getBookCount());
+            assertEquals(pages, report.getPageCount());
+            assertEquals(histogram, report.getPageHistogram());
+            assertEquals(perYear, report.getBooksPerYear());
+            assertEquals(perPublisher, report.getBooksPerPublisher());
+        } finally {
+            pool.shutdown();
+        }
+        //the common pool and a sequential stream give the same report
+        CatalogueAnalytics analytics = new CatalogueAnalytics(ForkJoinPool.commonPool(), 250);
+        assertEquals(perYear, analytics.analyze(books.stream()).getBooksPerYear());
+        assertEquals(histogram, books.stream().collect(analytics.collector()).getPageHistogram());
+    }
+
+    @Test
+    public void testAnalyzeRepository() {
+        OffHeapBookStore store = new OffHeapBookStore();
+        store.addBook(new Book(Isbn.toString(Isbn.complete(978000000001L)), "A", null, "Pearson", 2006, 1009, null));
+        store.addBook(new Book(Isbn.toString(Isbn.complete(978000000002L)), "B", null, "Pearson", 1850, 99, null));
+        store.addBook(new Book(Isbn.toString(Isbn.complete(978000000003L)), "C", null, null, null, null, null));
+
+        CatalogueReport report = new CatalogueAnalytics().analyze(store);
+        assertEquals(3, report.getBookCount());
+        assertEquals(1108, report.getPageCount());
+        assertEquals(Arrays.asList(0, 1000), new ArrayList<Integer>(report.getPageHistogram().keySet()));
+        assertEquals(Arrays.asList(1850, 2006), new ArrayList<Integer>(report.getBooksPerYear().keySet()));
+        assertEquals(Long.valueOf(2), report.getBooksPerPublisher().get("Pearson"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyBuckets() {
+        new CatalogueAnalytics(ForkJoinPool.commonPool(), 0);
+    }
+
+    @Test
+    public void testOutliersAreCountedSparsely() {
+        CatalogueAccumulator first = new CatalogueAccumulator(250);
+        first.accept(new Book(null, null, null, null, 2000, Integer.MAX_VALUE, null));
+        first.accept(new Book(null, null, null, null, Integer.MIN_VALUE, 100, null));
+        first.accept(new Book(null, null, null, null, Integer.MAX_VALUE, 100, null));
+        CatalogueAccumulator second = new CatalogueAccumulator(250);
+        second.accept(new Book(null, null, null, null, Integer.MAX_VALUE, 300, null));
+        second.accept(new Book(null, null, null, null, 1990, 300, null));
+        CatalogueReport report = first.merge(second).report();
+
+        assertEquals(5, report.getBookCount());
+        SortedMap<Integer, Long> histogram = new TreeMap<Integer, Long>();
+        histogram.put(0, 2L);
+        histogram.put(250, 2L);
+        histogram.put(Integer.MAX_VALUE / 250 * 250, 1L);
+        assertEquals(histogram, report.getPageHistogram());
+        SortedMap<Integer, Long> perYear = new TreeMap<Integer, Long>();
+        perYear.put(Integer.MIN_VALUE, 1L);
+        perYear.put(1990, 1L);
+        perYear.put(2000, 1L);
+        perYear.put(Integer.MAX_VALUE, 2L);
+        assertEquals(perYear, report.getBooksPerYear());
+    }
+}
@@ -0,0 +1,151 @@
+package com.my.project.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.junit.Test;
+
+public class ReadThroughCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong();
+
+    private final Function<String, String> loader = new Function<String, String>() {
+        public String apply(String key) {
+            loads.incrementAndGet();
+            return key.startsWith("missing") ? null : "title of " + key;
+        }
+    };
+
+    private final LongSupplier clock = new LongSupplier() {
+        public long getAsLong() {
+            return now.get();
+        }
+    };
+
+    @Test
+    public void testHitAndMiss() {
+        ReadThroughCache<String, String> cache = new ReadThroughCache<String, String>(loader, 10, 1, TimeUnit.MINUTES);
+        assertEquals("title of 8131721019", cache.get("8131721019"));
+        assertEquals("title of 8131721019", cache.get("8131721019"));
+        assertNull(cache.get("missing"));
+        assertNull(cache.get("missing"));
+
+        assertEquals(2, loads.get());
+        CacheStats stats = cache.getStats();
+        assertEquals(2, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(2, stats.getLoads());
+    }
+
+    @Test
+    public void testExpiry() {
+        ReadThroughCache<String, String> cache =
+            new ReadThroughCache<String, String>(loader, 10, 100, TimeUnit.NANOSECONDS, clock);
+        cache.get("8131721019");
+        now.set(99);
+        cache.get("8131721019");
+        assertEquals(1, loads.get());
+        now.set(100);
+        cache.get("8131721019");
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        ReadThroughCache<String, String> cache = new ReadThroughCache<String, String>(loader, 10, 1, TimeUnit.MINUTES);
+        cache.get("8131721019");
+        cache.invalidate("8131721019");
+        cache.get("8131721019");
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testEvictOldestFirst() {
+        ReadThroughCache<String, String> cache = new ReadThroughCache<String, String>(loader, 3, 1, TimeUnit.MINUTES);
+        for(int i = 0; i < 5; i++) {
+            cache.get("isbn" + i);
+        }
+        assertEquals(3, cache.size());
+        assertEquals(2, cache.getStats().getEvictions());
+        assertNull(cache.getIfPresent("isbn0"));
+        assertEquals("title of isbn4", cache.getIfPresent("isbn4"));
+    }
+
+    @Test
+    public void testLoadFailureIsNotCached() {
+        final AtomicInteger calls = new AtomicInteger();
+        ReadThroughCache<String, String> cache = new ReadThroughCache<String, String>(new Function<String, String>() {
+            public String apply(String key) {
+                if(calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("database down");
+                }
+                return "title";
+            }
+        }, 10, 1, TimeUnit.MINUTES);
+        try {
+            cache.get("8131721019");
+            fail();
+        } catch (IllegalStateException expected) {
+            //next call retries
+        }
+        assertEquals("title", cache.get("8131721019"));
+        assertEquals(1, cache.getStats().getLoadFailures());
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ReadThroughCache<String, String> cache = new ReadThroughCache<String, String>(
+            new Function<String, String>() {
+                public String apply(String key) {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "title";
+                }
+            }, 10, 1, TimeUnit.MINUTES);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for(int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() {
+                        return cache.get("8131721019");
+                    }
+                }));
+            }
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            release.countDown();
+            for(Future<String> result : results) {
+                assertEquals("title", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,210 @@
+package com.my.project.cdc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.my.project.Book;
+import com.my.project.Isbn;
+import com.my.project.store.OffHeapBookStore;
+
+public class ChangeRingBufferTest {
+
+    private final ChangeRingBuffer buffer = new ChangeRingBuffer(64);
+
+    @After
+    public void tearDown() {
+        buffer.close();
+    }
+
+    /**
+     * Collects events and counts down a latch per event.
+     */
+    private static class Recorder implements ChangeListener {
+
+        final List<ChangeEvent> events = Collections.synchronizedList(new ArrayList<ChangeEvent>());
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch received;
+        final long pauseMillis;
+
+        Recorder(int expected, long pauseMillis) {
+            this.received = new CountDownLatch(expected);
+            this.pauseMillis = pauseMillis;
+        }
+
+        public void onEvents(List<ChangeEvent> batch) {
+            batchSizes.add(batch.size());
+            events.addAll(batch);
+            for(int i = 0; i < batch.size(); i++) {
+                received.countDown();
+            }
+            if(pauseMillis > 0) {
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBlockingSubscriberGetsEveryEventInOrder() throws Exception {
+        final int producers = 4;
+        final int perProducer = 5000;
+        Recorder recorder = new Recorder(producers * perProducer, 0);
+        buffer.subscribe(recorder, ChangeRingBuffer.Overflow.BLOCK, 16);
+
+        Thread[] threads = new Thread[producers];
+        for(int p = 0; p < producers; p++) {
+            final String isbn = String.valueOf(p);
+            threads[p] = new Thread(new Runnable() {
+                public void run() {
+                    for(int i = 0; i < perProducer; i++) {
+                        buffer.publish(ChangeEvent.Type.UPDATE, isbn, null, new Book(String.valueOf(i)));
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(recorder.received.await(10, TimeUnit.SECONDS));
+
+        //no gaps, and each producer's events in its own order
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        for(int i = 0; i < recorder.events.size(); i++) {
+            ChangeEvent event = recorder.events.get(i);
+            assertEquals(i, event.getSequence());
+            int producer = Integer.parseInt(event.getIsbn());
+            int value = Integer.parseInt(event.getAfter().getTitle());
+            assertEquals(last[producer] + 1, value);
+            last[producer] = value;
+        }
+        for(int size : recorder.batchSizes) {
+            assertTrue(size <= 16);
+        }
+    }
+
+    @Test
+    public void testIdleSubscriberIsWokenByPublish() throws Exception {
+        Recorder recorder = new Recorder(1, 0);
+        buffer.subscribe(recorder, ChangeRingBuffer.Overflow.BLOCK, 8);
+        //long enough for the subscriber to stop spinning and park
+        Thread.sleep(300);
+        buffer.publish(ChangeEvent.Type.ADD, "isbn", null, new Book("t"));
+        //well within the idle park, so the producer must have woken it
+        assertTrue(recorder.received.await(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testDroppingSubscriberDoesNotHoldBackProducers() throws Exception {
+        Recorder slow = new Recorder(1, 50);
+        Subscription subscription = buffer.subscribe(slow, ChangeRingBuffer.Overflow.DROP, 8);
+        for(int i = 0; i < 10000; i++) {
+            buffer.publish(ChangeEvent.Type.ADD, "isbn", null, new Book("t"));
+        }
+        assertTrue(slow.received.await(10, TimeUnit.SECONDS));
+        //the subscriber skips ahead and ends at the last event
+        long deadline = System.currentTimeMillis() + 10000;
+        while(subscription.getSequence() < 10000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(10000, subscription.getSequence());
+        assertTrue(subscription.getDropped() > 0);
+        assertEquals(10000, slow.events.size() + subscription.getDropped());
+        long previous = -1;
+        for(ChangeEvent event : slow.events) {
+            assertTrue(event.getSequence() > previous);
+            previous = event.getSequence();
+        }
+    }
+
+    @Test
+    public void testRepositoryPublishesSnapshots() throws Exception {
+        Recorder recorder = new Recorder(3, 0);
+        buffer.subscribe(recorder, ChangeRingBuffer.Overflow.BLOCK, ChangeRingBuffer.DEFAULT_BATCH_SIZE);
+        CdcBookRepository repository = new CdcBookRepository(new OffHeapBookStore(), buffer);
+        String isbn = Isbn.toString(Isbn.complete(978000000001L));
+
+        Book book = new Book(isbn, "Compilers", Arrays.asList("Alfred V. Aho"), "Pearson", 2006, 1009, null);
+        repository.addBook(book);
+        book.setTitle("Changed after adding");
+        repository.updateBook(new Book(isbn, "Compilers 2nd Edition", Arrays.asList("Alfred V. Aho"), "Pearson", 2007, 1009, null));
+        repository.setBookTitle(repository.getBook(isbn), "Dragon Book");
+        //a missing book changes nothing and publishes nothing
+        assertNull(repository.updateBook(new Book(Isbn.toString(Isbn.complete(978000000002L)), "Missing", null, null, null, null, null)));
+
+        assertTrue(recorder.received.await(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(3, recorder.events.size());
+        ChangeEvent added = recorder.events.get(0);
+        assertEquals(ChangeEvent.Type.ADD, added.getType());
+        assertNull(added.getBefore());
+        assertEquals("Compilers", added.getAfter().getTitle());
+
+        ChangeEvent updated = recorder.events.get(1);
+        assertEquals(ChangeEvent.Type.UPDATE, updated.getType());
+        assertEquals("Compilers", updated.getBefore().getTitle());
+        assertEquals(Integer.valueOf(2007), updated.getAfter().getYearOfPublication());
+
+        ChangeEvent retitled = recorder.events.get(2);
+        assertEquals(ChangeEvent.Type.SET_TITLE, retitled.getType());
+        assertEquals(2, retitled.getSequence());
+        assertEquals("Compilers 2nd Edition", retitled.getBefore().getTitle());
+        assertEquals("Dragon Book", retitled.getAfter().getTitle());
+        assertEquals(isbn, retitled.getIsbn());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityMustBePowerOfTwo() {
+        new ChangeRingBuffer(100);
+    }
+
+    @Test
+    public void testSubscribingWhileProducersRun() throws Exception {
+        final int events = 20000;
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                for(int i = 0; i < events; i++) {
+                    buffer.publish(ChangeEvent.Type.UPDATE, "isbn", null, null);
+                }
+            }
+        });
+        producer.start();
+        List<Recorder> recorders = new ArrayList<Recorder>();
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        for(int i = 0; i < 20; i++) {
+            Recorder recorder = new Recorder(0, 0);
+            recorders.add(recorder);
+            subscriptions.add(buffer.subscribe(recorder, ChangeRingBuffer.Overflow.BLOCK, 16));
+        }
+        producer.join();
+        for(int i = 0; i < subscriptions.size(); i++) {
+            Subscription subscription = subscriptions.get(i);
+            long deadline = System.currentTimeMillis() + 5000;
+            while(subscription.getSequence() < events && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            //every event from the start on, without gaps
+            List<ChangeEvent> received = recorders.get(i).events;
+            assertEquals(0, subscription.getDropped());
+            assertEquals(events - received.get(0).getSequence(), received.size());
+            for(int j = 1; j < received.size(); j++) {
+                assertEquals(received.get(j - 1).getSequence() + 1, received.get(j).getSequence());
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.my.project.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.my.project.Book;
+
+public class BookCodecTest {
+
+    private static Book compilers() {
+        return new Book("8131721019", "Compilers Principles", Arrays.asList(
+            "D. Jeffrey Ulman",
+            "Ravi Sethi",
+            "Alfred V. Aho",
+            "Monica S. Lam"), "Pearson Education Singapore Pte Ltd", 2008, 1009, "BOOK_IMAGE");
+    }
+
+    private static void assertSameBook(Book expected, Book actual) {
+        assertEquals(expected.getIsbn(), actual.getIsbn());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getAuthors(), actual.getAuthors());
+        assertEquals(expected.getPublication(), actual.getPublication());
+        assertEquals(expected.getYearOfPublication(), actual.getYearOfPublication());
+        assertEquals(expected.getNumberOfPages(), actual.getNumberOfPages());
+        assertEquals(expected.getImage(), actual.getImage());
+    }
+
+    @Test
+    public void testRoundTripHeapAndDirect() {
+        Book book = compilers();
+        byte[] bytes = BookCodec.toBytes(book);
+        assertEquals(BookCodec.sizeOf(book), bytes.length);
+        assertSameBook(book, BookCodec.fromBytes(bytes));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(100 + bytes.length);
+        direct.position(100);
+        BookCodec.encode(book, direct);
+        assertEquals(100 + bytes.length, direct.position());
+        direct.position(100);
+        assertSameBook(book, BookCodec.decode(direct));
+        assertEquals(100 + bytes.length, direct.position());
+    }
+
+    @Test
+    public void testNullsAndUnicode() {
+        Book sparse = new Book(null, "Ünïcødé 書 📚", Arrays.asList("Auteur", null), null, null, 12, null);
+        assertSameBook(sparse, BookCodec.fromBytes(BookCodec.toBytes(sparse)));
+
+        Book empty = new Book();
+        assertEquals(2, BookCodec.sizeOf(empty));
+        assertSameBook(empty, BookCodec.fromBytes(BookCodec.toBytes(empty)));
+    }
+
+    @Test
+    public void testStringsAreUtf8() {
+        //unpaired surrogates are replaced like String.getBytes does
+        String title = "aé书📚\uD800z";
+        Book book = new Book(title);
+        ByteBuffer buffer = ByteBuffer.wrap(BookCodec.toBytes(book));
+        byte[] expected = title.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, buffer.getInt(2));
+        byte[] actual = new byte[expected.length];
+        buffer.position(6);
+        buffer.get(actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testReadSingleFields() {
+        Book book = compilers();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(10 + BookCodec.sizeOf(book));
+        buffer.position(10);
+        BookCodec.encode(book, buffer);
+        buffer.position(0);
+
+        assertEquals("8131721019", BookCodec.readIsbn(buffer, 10));
+        assertEquals("Compilers Principles", BookCodec.readTitle(buffer, 10));
+        assertEquals("Pearson Education Singapore Pte Ltd", BookCodec.readPublication(buffer, 10));
+        assertEquals("BOOK_IMAGE", BookCodec.readImage(buffer, 10));
+        assertEquals((Integer) 2008, BookCodec.readYearOfPublication(buffer, 10));
+        assertEquals((Integer) 1009, BookCodec.readNumberOfPages(buffer, 10));
+        assertEquals(book.getAuthors(), BookCodec.readAuthors(buffer, 10));
+        assertEquals(0, buffer.position());
+
+        ByteBuffer sparse = ByteBuffer.wrap(BookCodec.toBytes(new Book(null, "Title", null, null, null, 5, null)));
+        assertNull(BookCodec.readIsbn(sparse, 0));
+        assertEquals("Title", BookCodec.readTitle(sparse, 0));
+        assertNull(BookCodec.readYearOfPublication(sparse, 0));
+        assertEquals((Integer) 5, BookCodec.readNumberOfPages(sparse, 0));
+        assertNull(BookCodec.readAuthors(sparse, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectNewerVersion() {
+        byte[] bytes = BookCodec.toBytes(compilers());
+        bytes[0] = BookCodec.VERSION + 1;
+        BookCodec.fromBytes(bytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectInvalidVersion() {
+        byte[] bytes = BookCodec.toBytes(compilers());
+        bytes[0] = 0;
+        BookCodec.fromBytes(bytes);
+    }
+}
@@ -0,0 +1,180 @@
+package com.my.project.image;
+
+import static com.my.project.TestBooks.isbn;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.my.project.Book;
+import com.my.project.TestBooks;
+import com.my.project.store.OffHeapBookStore;
+
+public class ImageStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Book book(int i, String image) {
+        Book book = TestBooks.book(i, "Title " + i);
+        book.setImage(image);
+        return book;
+    }
+
+    private static int blobFiles(File directory) {
+        int count = 0;
+        for(String name : directory.list()) {
+            if(name.endsWith(".blob")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testDeduplicatesAndCountsReferences() throws IOException {
+        File directory = folder.newFolder();
+        ImageStore store = new ImageStore(directory);
+        ImageRef first = store.put("BOOK_IMAGE");
+        ImageRef second = store.put("BOOK_IMAGE".getBytes(StandardCharsets.UTF_8));
+        ImageRef other = store.put("OTHER_IMAGE");
+
+        assertEquals(first, second);
+        assertEquals(first, ImageRef.parse(first.toString()));
+        assertTrue(ImageRef.isRef(first.toString()));
+        assertFalse(ImageRef.isRef("BOOK_IMAGE"));
+        assertEquals(2, store.getImageCount());
+        assertEquals(2, blobFiles(directory));
+        assertEquals(2, store.getReferenceCount(first));
+        assertEquals("BOOK_IMAGE".length() + "OTHER_IMAGE".length(), store.getStoredBytes());
+
+        assertFalse(store.release(first));
+        assertEquals("BOOK_IMAGE", store.readString(first));
+        assertTrue(store.release(first));
+        assertNull(store.read(first));
+        assertEquals(0, store.getReferenceCount(first));
+        assertEquals(1, blobFiles(directory));
+        assertEquals("OTHER_IMAGE", store.readString(other));
+        store.close();
+    }
+
+    @Test
+    public void testReadsRanges() throws IOException {
+        ImageStore store = new ImageStore(folder.newFolder());
+        byte[] image = new byte[100000];
+        for(int i = 0; i < image.length; i++) {
+            image[i] = (byte) (i * 31);
+        }
+        ImageRef ref = store.put(image);
+
+        ByteBuffer range = store.read(ref, 5000, 100);
+        assertFalse(range.isDirect());
+        assertEquals(100, range.remaining());
+        assertEquals(image[5000], range.get(0));
+        assertEquals(image[5099], range.get(99));
+        //a range past the threshold is mapped
+        ByteBuffer whole = store.read(ref);
+        assertTrue(whole.isDirect());
+        assertEquals(image.length, whole.remaining());
+        assertEquals(image[99999], whole.get(99999));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1000, store.transferTo(ref, 99000, 1000, Channels.newChannel(out)));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(image, 99000, 100000), out.toByteArray()));
+
+        File copy = folder.newFile();
+        FileOutputStream file = new FileOutputStream(copy);
+        try {
+            assertEquals(image.length, store.transferTo(ref, file.getChannel()));
+        } finally {
+            file.close();
+        }
+        assertEquals(image.length, copy.length());
+        try {
+            store.read(ref, 99999, 2);
+            throw new AssertionError("Range past the end was read");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        assertEquals(0, store.read(ref, 100000, 0).remaining());
+
+        //a buffer read before the image is deleted stays readable
+        assertTrue(store.release(ref));
+        assertEquals(image[5099], range.get(99));
+        assertEquals(image[99999], whole.get(99999));
+        assertNull(store.read(ref, 0, 1));
+        store.close();
+    }
+
+    @Test
+    public void testRecoversCountsAndDeletesUnreferenced() throws IOException {
+        File directory = folder.newFolder();
+        ImageStore store = new ImageStore(directory);
+        ImageRef kept = store.put("KEPT");
+        store.acquire(kept);
+        ImageRef released = store.put("RELEASED");
+        store.release(released);
+        store.close();
+        //a blob written by a crash before its reference was logged
+        FileOutputStream orphan = new FileOutputStream(new File(directory, new ImageRef(new byte[32]).toHex()
+            + ".blob"));
+        orphan.write(1);
+        orphan.close();
+
+        store = new ImageStore(directory);
+        assertEquals(1, store.getImageCount());
+        assertEquals(1, blobFiles(directory));
+        assertEquals(2, store.getReferenceCount(kept));
+        assertEquals("KEPT", store.readString(kept));
+        //the log was compacted to one record per image
+        assertEquals(36, new File(directory, ImageStore.REFS_FILE).length());
+        store.close();
+    }
+
+    @Test
+    public void testRepositoryStoresReferences() throws IOException {
+        ImageStore images = new ImageStore(folder.newFolder());
+        ImageStoringBookRepository repository = new ImageStoringBookRepository(new OffHeapBookStore(1024), images);
+        Book first = book(1, "BOOK_IMAGE");
+        repository.addBook(first);
+        repository.addBook(book(2, "BOOK_IMAGE"));
+        //the book of the caller keeps its image
+        assertEquals("BOOK_IMAGE", first.getImage());
+
+        String image = repository.getBook(isbn(1)).getImage();
+        assertTrue(ImageRef.isRef(image));
+        ImageRef ref = ImageRef.parse(image);
+        assertEquals(image, repository.getBook(isbn(2)).getImage());
+        assertEquals(1, images.getImageCount());
+        assertEquals(2, images.getReferenceCount(ref));
+
+        //a book read back keeps its reference when written again
+        repository.addBook(book(3, image));
+        assertEquals(3, images.getReferenceCount(ref));
+
+        repository.updateBook(book(1, "NEW_IMAGE"));
+        repository.updateBook(book(2, null));
+        assertEquals(1, images.getReferenceCount(ref));
+        assertEquals("NEW_IMAGE", images.readString(ImageRef.parse(repository.getBook(isbn(1)).getImage())));
+        assertNull(repository.getBook(isbn(2)).getImage());
+
+        repository.updateBook(book(3, "NEW_IMAGE"));
+        assertEquals(1, images.getImageCount());
+        assertNull(repository.updateBook(book(4, "NEW_IMAGE")));
+        assertEquals(2, images.getReferenceCount(ImageRef.parse(repository.getBook(isbn(3)).getImage())));
+        images.close();
+    }
+}
@@ -0,0 +1,206 @@
+package com.my.project.index;
+
+import static com.my.project.TestBooks.isbn;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.my.project.Book;
+import com.my.project.store.OffHeapBookStore;
+
+public class IndexedBookRepositoryTest {
+
+    private OffHeapBookStore store;
+    private IndexedBookRepository repository;
+
+    @Before
+    public void setUp() {
+        store = new OffHeapBookStore(4096);
+        //books already in the store are indexed on construction
+        store.addBook(new Book(isbn(0), "Existing", Arrays.asList("Alfred V. Aho"), "Pearson", 2006, 1000, null));
+        repository = new IndexedBookRepository(store);
+        for(int i = 1; i <= 20; i++) {
+            repository.addBook(new Book(isbn(i), "Title " + i, Arrays.asList("Author " + i % 4, "Alfred V. Aho"),
+                i % 2 == 0 ? "Pearson" : "BPB Publications", 2000 + i % 10, 100, null));
+        }
+    }
+
+    private static List<String> isbns(Page<Book> page) {
+        List<String> isbns = new ArrayList<String>();
+        for(Book book : page.getItems()) {
+            isbns.add(book.getIsbn());
+        }
+        return isbns;
+    }
+
+    @Test
+    public void testFindByAuthorWithPaging() {
+        Page<Book> first = repository.findByAuthor("alfred v. aho ", 0, 15);
+        assertEquals(21, first.getTotal());
+        assertEquals(15, first.getItems().size());
+        assertTrue(first.hasNext());
+        assertEquals(isbn(0), first.getItems().get(0).getIsbn());
+
+        Page<Book> second = repository.findByAuthor("Alfred V. Aho", 15, 15);
+        assertEquals(6, second.getItems().size());
+        assertFalse(second.hasNext());
+        assertEquals(isbn(20), second.getItems().get(5).getIsbn());
+
+        assertEquals(Arrays.asList(isbn(4), isbn(8), isbn(12), isbn(16), isbn(20)),
+            isbns(repository.findByAuthor("Author 0", 0, 10)));
+        assertEquals(0, repository.findByAuthor("Nobody", 0, 10).getTotal());
+    }
+
+    @Test
+    public void testFindByPublisher() {
+        assertEquals(11, repository.findByPublisher("PEARSON", 0, 100).getTotal());
+        assertEquals(10, repository.findByPublisher("BPB Publications", 0, 100).getTotal());
+    }
+
+    @Test
+    public void testFindByYearRange() {
+        Page<Book> page = repository.findByYearRange(2008, 2009, 0, 10);
+        //years 2008 and 2009 in year order, then ISBN order
+        assertEquals(Arrays.asList(isbn(8), isbn(18), isbn(9), isbn(19)), isbns(page));
+        assertEquals(3, repository.findByYearRange(2006, 2006, 0, 10).getTotal());
+        assertEquals(0, repository.findByYearRange(2010, 2000, 0, 10).getTotal());
+    }
+
+    @Test
+    public void testUpdateMovesPostings() {
+        repository.updateBook(new Book(isbn(8), "Title 8", Arrays.asList("Monica S. Lam"), "O'Reilly", 2012, 100, null));
+
+        assertEquals(Arrays.asList(isbn(8)), isbns(repository.findByAuthor("Monica S. Lam", 0, 10)));
+        assertEquals(20, repository.findByAuthor("Alfred V. Aho", 0, 100).getTotal());
+        assertEquals(Arrays.asList(isbn(4), isbn(12), isbn(16), isbn(20)),
+            isbns(repository.findByAuthor("Author 0", 0, 10)));
+        assertEquals(10, repository.findByPublisher("Pearson", 0, 100).getTotal());
+        assertEquals(Arrays.asList(isbn(8)), isbns(repository.findByYearRange(2012, 2020, 0, 10)));
+        assertEquals(Arrays.asList(isbn(18)), isbns(repository.findByYearRange(2008, 2008, 0, 10)));
+
+        //updating a book that does not exist changes nothing
+        repository.updateBook(new Book(isbn(99), "Missing", Arrays.asList("Monica S. Lam"), null, null, null, null));
+        assertEquals(1, repository.findByAuthor("Monica S. Lam", 0, 10).getTotal());
+    }
+
+    @Test
+    public void testIndexKeepsItsOwnCopy() {
+        Book book = new Book(isbn(50), "Title", new ArrayList<String>(Arrays.asList("Ravi Sethi")), null, null, null, null);
+        repository.addBook(book);
+        book.getAuthors().set(0, "Someone Else");
+        repository.updateBook(book);
+        assertEquals(0, repository.findByAuthor("Ravi Sethi", 0, 10).getTotal());
+        assertEquals(1, repository.findByAuthor("Someone Else", 0, 10).getTotal());
+    }
+
+    @Test
+    public void testTitleSearchFollowsWrites() {
+        repository.addBook(new Book(isbn(30), "Compilers: Principles, Techniques, and Tools", null, null, null, null, null));
+        assertEquals(isbn(30), repository.searchTitles("compilers", 10).get(0).getIsbn());
+        assertEquals(isbn(30), repository.typeahead("compilers princ", 10).get(0).getIsbn());
+        assertEquals(Arrays.asList("compilers"), repository.suggestTitleWords("comp", 10));
+
+        repository.setBookTitle(store.getBook(isbn(30)), "Let Us C");
+        assertTrue(repository.searchTitles("compilers", 10).isEmpty());
+        repository.updateBook(new Book(isbn(30), "Let Us C++", null, null, null, null, null));
+        assertEquals("Let Us C++", repository.typeahead("let us", 10).get(0).getTitle());
+        //books already in the store are searchable too
+        assertEquals(isbn(0), repository.searchTitles("existing", 10).get(0).getIsbn());
+    }
+
+    @Test
+    public void testCursorPaging() {
+        List<String> walked = new ArrayList<String>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page<Book> page = repository.findByAuthor("Alfred V. Aho", cursor, 4);
+            walked.addAll(isbns(page));
+            cursor = page.getNextCursor();
+            assertEquals(cursor != null, page.hasNext());
+            pages++;
+        } while(cursor != null);
+        assertEquals(isbns(repository.findByAuthor("Alfred V. Aho", 0, 100)), walked);
+        assertEquals(6, pages);
+
+        //pages end on a year boundary as well as inside a year
+        for(int limit = 1; limit <= 5; limit++) {
+            walked.clear();
+            cursor = null;
+            do {
+                Page<Book> page = repository.findByYearRange(2006, 2009, cursor, limit);
+                walked.addAll(isbns(page));
+                cursor = page.getNextCursor();
+            } while(cursor != null);
+            assertEquals(isbns(repository.findByYearRange(2006, 2009, 0, 100)), walked);
+        }
+        assertTrue(repository.findByPublisher("Nobody", null, 10).getItems().isEmpty());
+    }
+
+    @Test
+    public void testCursorPagingEndsBeforeEmptyYears() {
+        //2009 loses its books, so the range ends with five years without books
+        repository.updateBook(new Book(isbn(9), "Title 9", null, null, 2020, 100, null));
+        repository.updateBook(new Book(isbn(19), "Title 19", null, null, 2020, 100, null));
+        List<String> all = isbns(repository.findByYearRange(2006, 2013, 0, 100));
+        assertEquals(7, all.size());
+
+        List<String> walked = new ArrayList<String>();
+        for(int limit = 1; limit <= 8; limit++) {
+            walked.clear();
+            String cursor = null;
+            int pages = 0;
+            do {
+                Page<Book> page = repository.findByYearRange(2006, 2013, cursor, limit);
+                assertFalse(page.getItems().isEmpty());
+                walked.addAll(isbns(page));
+                cursor = page.getNextCursor();
+                pages++;
+            } while(cursor != null);
+            assertEquals(all, walked);
+            //no empty page after the last book
+            assertEquals((all.size() + limit - 1) / limit, pages);
+        }
+    }
+
+    @Test
+    public void testPageIsFetchedInOneCall() {
+        final AtomicInteger lookups = new AtomicInteger();
+        final AtomicInteger batches = new AtomicInteger();
+        IndexedBookRepository counted = new IndexedBookRepository(new OffHeapBookStore(4096) {
+            @Override
+            public Book getBook(String isbn) {
+                lookups.incrementAndGet();
+                return super.getBook(isbn);
+            }
+
+            @Override
+            public Map<String, Book> getBooks(Collection<String> isbns) {
+                batches.incrementAndGet();
+                Map<String, Book> books = new LinkedHashMap<String, Book>();
+                for(String isbn : isbns) {
+                    books.put(isbn, super.getBook(isbn));
+                }
+                return books;
+            }
+        });
+        for(int i = 1; i <= 20; i++) {
+            counted.addBook(new Book(isbn(i), "Title " + i, Arrays.asList("Alfred V. Aho"), null, null, null, null));
+        }
+        assertEquals(10, counted.findByAuthor("Alfred V. Aho", null, 10).getItems().size());
+        assertEquals(10, counted.findByAuthor("Alfred V. Aho", 5, 10).getItems().size());
+        assertEquals(2, batches.get());
+        assertEquals(0, lookups.get());
+    }
+}
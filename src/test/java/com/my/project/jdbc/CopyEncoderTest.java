@@ -0,0 +1,16 @@
+package com.my.project.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CopyEncoderTest {
+
+    @Test
+    public void testEncodeRow() {
+        CopyEncoder encoder = new CopyEncoder();
+        assertEquals("8131721019\tLet\\tUs\\nC\t\\N\t2012\n",
+            encoder.add("8131721019").add("Let\tUs\nC").add((String) null).add(2012).endRow());
+        assertEquals("C:\\\\BOOK_IMAGE\t\\N\n", encoder.add("C:\\BOOK_IMAGE").add((Integer) null).endRow());
+    }
+}
@@ -0,0 +1,87 @@
+package com.my.project.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogTest {
+
+    private final List<LoggingEvent> events = new ArrayList<LoggingEvent>();
+    private Log log;
+
+    @Before
+    public void setUp() {
+        log = Log.getLog(LogTest.class);
+        Logger logger = log.getLogger();
+        logger.setAdditivity(false);
+        logger.setLevel(Level.INFO);
+        logger.addAppender(new AppenderSkeleton() {
+            @Override
+            protected void append(LoggingEvent event) {
+                //found out lazily from the current stack
+                event.getLocationInformation();
+                events.add(event);
+            }
+
+            public void close() {
+            }
+
+            public boolean requiresLayout() {
+                return false;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        log.getLogger().removeAllAppenders();
+    }
+
+    @Test
+    public void testFormat() {
+        StringBuilder out = new StringBuilder();
+        assertEquals(2, Log.format(out, "{} of {} in {}", 2, "a", 12345678901L, null));
+        assertEquals("a of 12345678901 in {}", out.toString());
+        out.setLength(0);
+        assertEquals(1, Log.format(out, "done", 1, "a", null, null) + 1);
+        assertEquals("done", out.toString());
+    }
+
+    @Test
+    public void testTrailingThrowable() {
+        IllegalStateException failure = new IllegalStateException("down");
+        log.warn("Cannot open {}", "file", failure);
+        log.error("Failed {}", failure);
+
+        assertEquals("Cannot open file", events.get(0).getRenderedMessage());
+        assertSame(failure, events.get(0).getThrowableInformation().getThrowable());
+        //used by the placeholder
+        assertEquals("Failed java.lang.IllegalStateException: down", events.get(1).getRenderedMessage());
+        assertNull(events.get(1).getThrowableInformation());
+    }
+
+    @Test
+    public void testDisabledLevelDoesNotRenderArguments() {
+        Object argument = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("rendered");
+            }
+        };
+        log.debug("Argument {}", argument);
+        assertEquals(0, events.size());
+        log.info("Location");
+        assertEquals(LogTest.class.getName(), events.get(0).getLocationInformation().getClassName());
+    }
+}
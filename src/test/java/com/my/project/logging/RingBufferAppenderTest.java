@@ -0,0 +1,169 @@
+package com.my.project.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Test;
+
+public class RingBufferAppenderTest {
+
+    private final Recorder recorder = new Recorder();
+    private final RingBufferAppender appender = new RingBufferAppender();
+    private Logger logger;
+
+    @After
+    public void tearDown() {
+        recorder.gate.countDown();
+        appender.close();
+        if(logger != null) {
+            logger.removeAllAppenders();
+        }
+    }
+
+    /**
+     * Collects events, waiting for the gate to open before each.
+     */
+    private static class Recorder extends AppenderSkeleton {
+
+        final List<LoggingEvent> events = Collections.synchronizedList(new ArrayList<LoggingEvent>());
+        final CountDownLatch gate = new CountDownLatch(1);
+        volatile boolean gated;
+
+        @Override
+        protected void append(LoggingEvent event) {
+            if(gated) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            events.add(event);
+        }
+
+        public void close() {
+        }
+
+        public boolean requiresLayout() {
+            return false;
+        }
+    }
+
+    private Logger logger(int bufferSize, boolean blocking) {
+        appender.setName("test");
+        appender.setBufferSize(bufferSize);
+        appender.setBlocking(blocking);
+        appender.addAppender(recorder);
+        appender.activateOptions();
+        logger = Logger.getLogger(RingBufferAppenderTest.class.getName() + "." + bufferSize + "." + blocking);
+        logger.setAdditivity(false);
+        logger.setLevel(Level.DEBUG);
+        logger.addAppender(appender);
+        return logger;
+    }
+
+    @Test
+    public void testPassesOnEventsInOrderAndDrainsOnClose() throws Exception {
+        final Logger logger = logger(64, true);
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++) {
+            final String name = "writer-" + t;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for(int i = 0; i < 1000; i++) {
+                        logger.info(Integer.valueOf(i));
+                    }
+                }
+            }, name);
+            threads[t].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        appender.close();
+
+        assertEquals(4000, recorder.events.size());
+        int[] next = new int[threads.length];
+        for(LoggingEvent event : recorder.events) {
+            int thread = event.getThreadName().charAt("writer-".length()) - '0';
+            assertEquals(String.valueOf(next[thread]), event.getRenderedMessage());
+            next[thread]++;
+        }
+        assertEquals(0, appender.getDiscarded());
+    }
+
+    @Test
+    public void testDiscardsWhenFull() throws Exception {
+        Logger logger = logger(16, false);
+        recorder.gated = true;
+        //returns although the recorder holds up the flusher
+        for(int i = 0; i < 100; i++) {
+            logger.info("event " + i);
+        }
+        long discarded = appender.getDiscarded();
+        //one taken by the flusher, up to 16 queued
+        assertTrue(String.valueOf(discarded), discarded >= 100 - 17 && discarded < 100 - 15);
+        recorder.gate.countDown();
+        appender.close();
+
+        List<String> warnings = new ArrayList<String>();
+        for(LoggingEvent event : recorder.events) {
+            if(event.getLevel() == Level.WARN) {
+                warnings.add(event.getRenderedMessage());
+            }
+        }
+        assertEquals(Collections.singletonList("Discarded " + discarded
+            + " logging events, the buffer of 16 events was full"), warnings);
+        assertEquals(100 - discarded + 1, recorder.events.size());
+    }
+
+    @Test
+    public void testEventAfterFlusherFinishedIsDiscarded() {
+        Logger logger = logger(16, true);
+        logger.info("before");
+        appender.close();
+        //a logging thread that passed the stopping check just before close
+        appender.append(new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "late", null));
+
+        assertEquals(1, recorder.events.size());
+        assertEquals(1, appender.getDiscarded());
+    }
+
+    @Test
+    public void testBlocksWhenFull() throws Exception {
+        final Logger logger = logger(4, true);
+        recorder.gated = true;
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                for(int i = 0; i < 10; i++) {
+                    logger.info("event " + i);
+                }
+            }
+        });
+        writer.start();
+        writer.join(200);
+        assertTrue(writer.isAlive());
+
+        recorder.gate.countDown();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        appender.close();
+        assertEquals(10, recorder.events.size());
+        assertEquals(0, appender.getDiscarded());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBufferSizeMustBePowerOfTwo() {
+        appender.setBufferSize(100);
+    }
+}
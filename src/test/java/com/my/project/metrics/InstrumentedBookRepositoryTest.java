@@ -0,0 +1,119 @@
+package com.my.project.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.MBeanServer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.jdbc.DataAccessException;
+
+public class InstrumentedBookRepositoryTest {
+
+    private BookRepository delegate;
+    private BookMetrics metrics;
+    private InstrumentedBookRepository repository;
+
+    @Before
+    public void setUp() {
+        delegate = mock(BookRepository.class);
+        //time every call
+        metrics = new BookMetrics("test", 1);
+        repository = new InstrumentedBookRepository(delegate, metrics);
+    }
+
+    @Test
+    public void testCountsCallsAndErrors() {
+        when(delegate.getBook("1")).thenReturn(new Book("Title"));
+        when(delegate.getBook("2")).thenThrow(new DataAccessException("down"));
+        for(int i = 0; i < 10; i++) {
+            assertEquals("Title", repository.getBook("1").getTitle());
+        }
+        try {
+            repository.getBook("2");
+            fail();
+        } catch (DataAccessException e) {
+            //rethrown unchanged
+        }
+        repository.setBookTitle(null, "Title");
+
+        OperationMetrics getBook = metrics.get(BookMetrics.Operation.GET_BOOK);
+        assertEquals(11, getBook.getCalls());
+        assertEquals(1, getBook.getErrors());
+        assertTrue(getBook.getMaxMicros() > 0);
+        assertEquals(1, metrics.get(BookMetrics.Operation.SET_BOOK_TITLE).getCalls());
+        assertEquals(0, metrics.get(BookMetrics.Operation.ADD_BOOK).getCalls());
+    }
+
+    @Test
+    public void testSampledTiming() {
+        InstrumentedBookRepository sampled = new InstrumentedBookRepository(delegate, new BookMetrics("sampled", 8));
+        for(int i = 0; i < 8000; i++) {
+            sampled.getBook("1");
+        }
+        OperationMetrics getBook = sampled.getMetrics().get(BookMetrics.Operation.GET_BOOK);
+        assertEquals(8000, getBook.getCalls());
+        long timed = getBook.getLatency().getCount();
+        assertTrue(String.valueOf(timed), timed > 700 && timed < 1300);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimingIntervalMustBePowerOfTwo() {
+        new BookMetrics("test", 10);
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        repository.getBookTitleByIsbn("1");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        metrics.registerMBeans(server);
+        try {
+            Object calls = server.getAttribute(metrics.objectName(BookMetrics.Operation.GET_BOOK_TITLE_BY_ISBN), "Calls");
+            assertEquals(1L, calls);
+            //registering again replaces the beans
+            metrics.registerMBeans(server);
+        } finally {
+            metrics.unregisterMBeans(server);
+        }
+        assertTrue(!server.isRegistered(metrics.objectName(BookMetrics.Operation.GET_BOOK)));
+    }
+
+    @Test
+    public void testTextEndpoint() throws Exception {
+        repository.addBook(new Book("Title"));
+        MetricsHttpServer server = new MetricsHttpServer(new InetSocketAddress("127.0.0.1", 0), metrics);
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort()
+                + MetricsHttpServer.PATH).openConnection();
+            assertEquals(200, connection.getResponseCode());
+            InputStream in = connection.getInputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for(int read; (read = in.read(buffer)) > 0; ) {
+                body.write(buffer, 0, read);
+            }
+            in.close();
+            String text = new String(body.toByteArray(), StandardCharsets.UTF_8);
+            assertTrue(text, text.contains("book_repository_calls_total{repository=\"test\",operation=\"addBook\"} 1\n"));
+            assertTrue(text, text.contains("book_repository_errors_total{repository=\"test\",operation=\"getBook\"} 0\n"));
+            assertTrue(text, text.contains("book_repository_latency_seconds{repository=\"test\",operation=\"addBook\",quantile=\"0.99\"} 0.0"));
+        } finally {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.my.project.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        assertEquals(0, LatencyHistogram.index(-5));
+        for(long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.lowestValue(index) <= value);
+            assertTrue(value <= LatencyHistogram.highestValue(index));
+        }
+        //about 3% wide at any magnitude
+        for(long value = 1 << 20; value > 0 && value < 1L << LatencyHistogram.MAX_BITS; value = value * 3 + 7) {
+            int index = LatencyHistogram.index(value);
+            long low = LatencyHistogram.lowestValue(index);
+            long high = LatencyHistogram.highestValue(index);
+            assertTrue(low <= value && value <= high);
+            assertTrue(high - low <= low / LatencyHistogram.SUB_BUCKETS);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    //1 to 10000 microseconds, 250 times each over all threads
+                    for(int i = 1; i <= 10000; i++) {
+                        histogram.record(i * 1000L);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(40000, snapshot.getCount());
+        assertEquals(5000000, snapshot.getValueAtPercentile(50), 5000000 * 0.04);
+        assertEquals(9900000, snapshot.getValueAtPercentile(99), 9900000 * 0.04);
+        assertEquals(10000000, snapshot.getMax(), 10000000 * 0.04);
+        assertEquals(5000000, snapshot.getMean(), 5000000 * 0.04);
+        assertEquals(0, new LatencyHistogram().snapshot().getValueAtPercentile(99));
+    }
+}
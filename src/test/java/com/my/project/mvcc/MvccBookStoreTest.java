@@ -0,0 +1,166 @@
+package com.my.project.mvcc;
+
+import static com.my.project.TestBooks.book;
+import static com.my.project.TestBooks.isbn;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.my.project.Book;
+import com.my.project.store.OffHeapBookStore;
+
+public class MvccBookStoreTest {
+
+    @Test
+    public void testSnapshotSeesStateWhenOpened() {
+        MvccBookStore store = new MvccBookStore();
+        store.addBook(book(1, "First", 100));
+        store.addBook(book(2, "Second", 200));
+
+        MvccBookStore.Snapshot snapshot = store.snapshot();
+        store.updateBook(book(1, "First revised", 110));
+        store.addBook(book(3, "Third", 300));
+        store.deleteBook(isbn(2));
+
+        List<Book> before = snapshot.getAllBooks();
+        assertEquals(2, before.size());
+        assertEquals("First", before.get(0).getTitle());
+        assertEquals("Second", before.get(1).getTitle());
+        assertNull(snapshot.getBook(isbn(3)));
+        snapshot.close();
+
+        List<Book> after = store.getAllBooks();
+        assertEquals(2, after.size());
+        assertEquals("First revised", after.get(0).getTitle());
+        assertEquals(isbn(3), after.get(1).getIsbn());
+        assertNull(store.getBook(isbn(2)));
+        assertNull(store.updateBook(book(2, "Gone", 1)));
+        try {
+            snapshot.getAllBooks();
+            throw new AssertionError("Closed snapshot was read");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testSetTitleCreatesVersion() {
+        MvccBookStore store = new MvccBookStore();
+        store.addBook(book(1, "First", 100));
+        Book read = store.getBook(isbn(1));
+        Book caller = book(1, "First", 100);
+
+        store.setBookTitle(caller, "Renamed");
+        assertEquals("Renamed", caller.getTitle());
+        assertEquals("First", read.getTitle());
+        assertEquals("Renamed", store.getBookTitleByIsbn(isbn(1)));
+        assertEquals(2, store.getVersion());
+        //changing a book read from the store does not change the store
+        read.setTitle("Changed");
+        assertEquals("Renamed", store.getBook(isbn(1)).getTitle());
+    }
+
+    @Test
+    public void testCleanKeepsWhatOpenSnapshotsRead() {
+        MvccBookStore store = new MvccBookStore();
+        store.addBook(book(1, "v0", 0));
+        store.addBook(book(2, "Deleted", 0));
+        MvccBookStore.Snapshot pinned = store.snapshot();
+        for(int i = 1; i <= 5; i++) {
+            store.updateBook(book(1, "v" + i, i));
+        }
+        store.deleteBook(isbn(2));
+        assertEquals(8, store.getVersionCount());
+
+        //the pinned snapshot needs v0 and the deleted book, nothing between is droppable yet
+        assertEquals(0, store.clean());
+        assertEquals("v0", pinned.getBook(isbn(1)).getTitle());
+        assertEquals("Deleted", pinned.getBook(isbn(2)).getTitle());
+        pinned.close();
+        assertEquals(0, store.getOpenSnapshots());
+
+        //all versions of 1 but the latest, and the deleted book with its tombstone
+        assertEquals(7, store.clean());
+        assertEquals(1, store.getVersionCount());
+        assertEquals(7, store.getPrunedVersions());
+        assertEquals("v5", store.getBook(isbn(1)).getTitle());
+        assertTrue(store.addBook(book(2, "Again", 1)) != null);
+        store.close();
+    }
+
+    @Test
+    public void testWritesThroughDelegate() {
+        OffHeapBookStore delegate = new OffHeapBookStore(1024);
+        delegate.addBook(book(1, "Loaded", 100));
+        MvccBookStore store = new MvccBookStore(delegate);
+        assertEquals("Loaded", store.getBook(isbn(1)).getTitle());
+
+        store.addBook(book(2, "Added", 200));
+        store.updateBook(book(1, "Updated", 110));
+        assertEquals("Added", delegate.getBookTitleByIsbn(isbn(2)));
+        assertEquals("Updated", delegate.getBookTitleByIsbn(isbn(1)));
+        assertEquals("Updated", store.getBookTitleByIsbn(isbn(1)));
+        assertNull(store.updateBook(book(3, "Missing", 1)));
+        assertNull(store.getBook(isbn(3)));
+        try {
+            store.addBook(book(2, "Twice", 1));
+            throw new AssertionError("Duplicate was added");
+        } catch (IllegalStateException e) {
+            //the delegate refused, the store kept the book
+            assertEquals("Added", store.getBookTitleByIsbn(isbn(2)));
+        }
+    }
+
+    @Test
+    public void testScansNeverSeeHalfWrittenBooks() throws InterruptedException {
+        final MvccBookStore store = new MvccBookStore();
+        for(int i = 0; i < 100; i++) {
+            store.addBook(book(i, "0", 0));
+        }
+        store.startCleaner(1, TimeUnit.MILLISECONDS);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread scanner = new Thread(new Runnable() {
+            public void run() {
+                while(!done.get()) {
+                    MvccBookStore.Snapshot snapshot = store.snapshot();
+                    try {
+                        final long[] total = new long[1];
+                        snapshot.forEach(new MvccBookStore.Visitor() {
+                            public void visit(Book book) {
+                                if(!book.getTitle().equals(String.valueOf(book.getNumberOfPages()))) {
+                                    failure.set("Half written " + book.getIsbn());
+                                }
+                                total[0]++;
+                            }
+                        });
+                        if(total[0] != 100) {
+                            failure.set("Saw " + total[0] + " books");
+                        }
+                    } finally {
+                        snapshot.close();
+                    }
+                }
+            }
+        });
+        scanner.start();
+        for(int round = 1; round <= 200; round++) {
+            for(int i = 0; i < 100; i++) {
+                store.updateBook(book(i, String.valueOf(round), round));
+            }
+        }
+        done.set(true);
+        scanner.join();
+        store.close();
+        assertNull(failure.get());
+        assertFalse(store.getVersionCount() < 100);
+    }
+}
@@ -0,0 +1,394 @@
+package com.my.project.replication;
+
+import static com.my.project.TestBooks.book;
+import static com.my.project.TestBooks.isbn;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.replication.ReplicatedBookDAL.Consistency;
+import com.my.project.store.OffHeapBookStore;
+
+public class ReplicatedBookDALTest {
+
+    private static final int BOOKS = 100;
+
+    private BookRepository primary;
+
+    private static Replica replica(String name) {
+        return new Replica(name, new OffHeapBookStore(1024 * 1024));
+    }
+
+    /**
+     * Applies entries in process, or holds them while told to.
+     */
+    private static class HeldTransport implements ReplicationTransport {
+
+        private final Replica replica;
+        private final List<ReplicationEntry> held = new ArrayList<ReplicationEntry>();
+        private boolean holding;
+
+        HeldTransport(Replica replica) {
+            this.replica = replica;
+        }
+
+        @Override
+        public synchronized void send(ReplicationEntry entry) {
+            if(holding) {
+                held.add(entry);
+            } else {
+                replica.apply(entry);
+            }
+        }
+
+        synchronized void hold() {
+            holding = true;
+        }
+
+        synchronized void release() {
+            for(ReplicationEntry entry : held) {
+                replica.apply(entry);
+            }
+            held.clear();
+            holding = false;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        primary = new OffHeapBookStore(1024 * 1024);
+        for(int i = 0; i < BOOKS; i++) {
+            primary.addBook(book(i, "Title " + i));
+        }
+    }
+
+    @Test
+    public void testSeedsAndReadsFromReplicas() {
+        Map<Replica, ReplicationTransport> replicas = new LinkedHashMap<Replica, ReplicationTransport>();
+        for(int i = 0; i < 2; i++) {
+            Replica replica = replica("replica-" + i);
+            replicas.put(replica, new InProcessTransport(replica));
+        }
+        ReplicatedBookDAL dal = new ReplicatedBookDAL(primary, replicas, Consistency.READ_YOUR_WRITES, 0,
+            TimeUnit.MILLISECONDS);
+        try {
+            assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+            assertEquals(BOOKS, dal.getSequence());
+            for(Replica replica : replicas.keySet()) {
+                assertEquals(BOOKS, replica.getStore().getAllBooks().size());
+            }
+            assertEquals(BOOKS, dal.getAllBooks().size());
+
+            //whichever serves it, the writing thread reads its own write
+            for(int i = 0; i < BOOKS; i++) {
+                dal.setBookTitle(book(i, null), "Renamed " + i);
+                assertEquals("Renamed " + i, dal.getBookTitleByIsbn(isbn(i)));
+                dal.addBook(book(BOOKS + i, "Added " + i));
+                assertEquals("Added " + i, dal.getBook(isbn(BOOKS + i)).getTitle());
+            }
+            assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+            for(Replica replica : replicas.keySet()) {
+                assertEquals("Renamed 5", replica.getStore().getBookTitleByIsbn(isbn(5)));
+                assertEquals(BOOKS * 2, replica.getStore().getAllBooks().size());
+            }
+            assertEquals(BOOKS * 2, dal.getAllBooks().size());
+            assertTrue(dal.getReplicaReads() > 0);
+        } finally {
+            dal.close();
+        }
+    }
+
+    @Test
+    public void testReadYourWritesFallsBackToPrimary() throws InterruptedException {
+        Replica replica = replica("replica");
+        HeldTransport transport = new HeldTransport(replica);
+        ReplicatedBookDAL dal = new ReplicatedBookDAL(primary, singletonMap(replica, transport),
+            Consistency.READ_YOUR_WRITES, 0, TimeUnit.MILLISECONDS);
+        try {
+            assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+            transport.hold();
+            dal.updateBook(book(1, "Updated"));
+            long primaryReads = dal.getPrimaryReads();
+            assertEquals("Updated", dal.getBookTitleByIsbn(isbn(1)));
+            assertEquals(primaryReads + 1, dal.getPrimaryReads());
+
+            //another thread has not written, the replica serves it the old title
+            final AtomicReference<String> title = new AtomicReference<String>();
+            final ReplicatedBookDAL reader = dal;
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    title.set(reader.getBookTitleByIsbn(isbn(1)));
+                }
+            });
+            thread.start();
+            thread.join();
+            assertEquals("Title 1", title.get());
+
+            transport.release();
+            assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+            long replicaReads = dal.getReplicaReads();
+            assertEquals("Updated", dal.getBookTitleByIsbn(isbn(1)));
+            assertEquals(replicaReads + 1, dal.getReplicaReads());
+        } finally {
+            dal.close();
+        }
+    }
+
+    @Test
+    public void testBoundedStaleness() throws InterruptedException {
+        Replica replica = replica("replica");
+        HeldTransport transport = new HeldTransport(replica);
+        ReplicatedBookDAL dal = new ReplicatedBookDAL(primary, singletonMap(replica, transport),
+            Consistency.BOUNDED_STALENESS, 1, TimeUnit.SECONDS);
+        try {
+            assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+            transport.hold();
+            dal.updateBook(book(1, "Updated"));
+            //within the bound the replica serves the old title
+            assertEquals("Title 1", dal.getBookTitleByIsbn(isbn(1)));
+
+            Thread.sleep(1200);
+            assertEquals("Updated", dal.getBookTitleByIsbn(isbn(1)));
+            assertTrue(dal.getPrimaryReads() > 0);
+
+            transport.release();
+            assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+            long replicaReads = dal.getReplicaReads();
+            assertEquals("Updated", dal.getBookTitleByIsbn(isbn(1)));
+            assertEquals(replicaReads + 1, dal.getReplicaReads());
+        } finally {
+            dal.close();
+        }
+    }
+
+    @Test
+    public void testStopsReadingFromFailedReplica() {
+        Replica replica = replica("replica");
+        final HeldTransport held = new HeldTransport(replica);
+        ReplicationTransport failing = new ReplicationTransport() {
+            public void send(ReplicationEntry entry) throws IOException {
+                if(entry.getSequence() > BOOKS) {
+                    throw new IOException("Connection reset");
+                }
+                held.send(entry);
+            }
+
+            public void flush() {
+            }
+
+            public void close() {
+            }
+        };
+        ReplicatedBookDAL dal = new ReplicatedBookDAL(primary, singletonMap(replica, failing),
+            Consistency.BOUNDED_STALENESS, 1, TimeUnit.HOURS);
+        try {
+            dal.updateBook(book(1, "Updated"));
+            //the failed replica is no longer waited for
+            assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+            assertEquals(BOOKS, replica.getAppliedSequence());
+            assertEquals("Updated", dal.getBookTitleByIsbn(isbn(1)));
+            assertEquals(0, dal.getReplicaReads());
+        } finally {
+            dal.close();
+        }
+    }
+
+    @Test
+    public void testUnseededReplicaIsNotRead() throws InterruptedException {
+        Replica replica = replica("replica");
+        HeldTransport transport = new HeldTransport(replica);
+        transport.hold();
+        ReplicatedBookDAL dal = new ReplicatedBookDAL(primary, singletonMap(replica, transport),
+            Consistency.READ_YOUR_WRITES, 0, TimeUnit.MILLISECONDS);
+        try {
+            //this thread has not written, still the replica lacks the books of the primary
+            assertEquals("Title 1", dal.getBookTitleByIsbn(isbn(1)));
+            assertEquals(1, dal.getPrimaryReads());
+
+            transport.release();
+            assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+            assertEquals("Title 1", dal.getBookTitleByIsbn(isbn(1)));
+            assertEquals(1, dal.getReplicaReads());
+        } finally {
+            dal.close();
+        }
+    }
+
+    @Test
+    public void testReplicaFollowsNewLog() {
+        Replica replica = replica("replica");
+        ReplicatedBookDAL first = new ReplicatedBookDAL(primary, singletonMap(replica, new InProcessTransport(replica)),
+            Consistency.READ_YOUR_WRITES, 0, TimeUnit.MILLISECONDS);
+        for(int i = 0; i < BOOKS; i++) {
+            first.updateBook(book(i, "First " + i));
+        }
+        assertTrue(first.awaitReplication(10, TimeUnit.SECONDS));
+        first.close();
+        assertEquals(BOOKS * 2, replica.getAppliedSequence());
+        primary.updateBook(book(1, "Direct"));
+
+        ReplicatedBookDAL second = new ReplicatedBookDAL(primary,
+            singletonMap(replica, new InProcessTransport(replica)), Consistency.READ_YOUR_WRITES, 0,
+            TimeUnit.MILLISECONDS);
+        try {
+            assertTrue(second.awaitReplication(10, TimeUnit.SECONDS));
+            assertEquals(second.getEpoch(), replica.getEpoch());
+            assertEquals(BOOKS, replica.getAppliedSequence());
+            assertEquals("Direct", replica.getStore().getBookTitleByIsbn(isbn(1)));
+            assertEquals("Direct", second.getBookTitleByIsbn(isbn(1)));
+            assertEquals(1, second.getReplicaReads());
+            try {
+                replica.apply(new ReplicationEntry(first.getEpoch(), BOOKS * 2 + 1, 0, book(1, "Stale")));
+                throw new AssertionError("Applied an entry of the earlier log");
+            } catch (IllegalStateException e) {
+                //expected
+            }
+            assertEquals("Direct", replica.getStore().getBookTitleByIsbn(isbn(1)));
+        } finally {
+            second.close();
+        }
+    }
+
+    @Test
+    public void testStopsShippingToReplicaFallenBehind() {
+        Replica replica = replica("replica");
+        final InProcessTransport applying = new InProcessTransport(replica);
+        final CountDownLatch stuck = new CountDownLatch(1);
+        ReplicationTransport blocking = new ReplicationTransport() {
+            public void send(ReplicationEntry entry) throws IOException {
+                if(entry.getSequence() > BOOKS) {
+                    try {
+                        stuck.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException("Interrupted while sending");
+                    }
+                }
+                applying.send(entry);
+            }
+
+            public void flush() {
+            }
+
+            public void close() {
+            }
+        };
+        ReplicatedBookDAL dal = new ReplicatedBookDAL(primary, singletonMap(replica, blocking),
+            Consistency.BOUNDED_STALENESS, 1, TimeUnit.HOURS, 2);
+        try {
+            assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+            //one write is being sent, two fill the queue, the next finds it full
+            for(int i = 0; i < 4; i++) {
+                dal.updateBook(book(i, "Updated " + i));
+            }
+            assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+            assertEquals(BOOKS, replica.getAppliedSequence());
+            assertEquals("Updated 3", dal.getBookTitleByIsbn(isbn(3)));
+            assertEquals(0, dal.getReplicaReads());
+        } finally {
+            dal.close();
+        }
+    }
+
+    @Test
+    public void testReplicatesOverLoopbackSocket() throws IOException {
+        Replica replica = replica("replica");
+        ReplicaServer server = new ReplicaServer(replica, 0);
+        try {
+            ReplicatedBookDAL dal = new ReplicatedBookDAL(primary,
+                singletonMap(replica, new SocketTransport(server.getAddress())), Consistency.READ_YOUR_WRITES, 0,
+                TimeUnit.MILLISECONDS);
+            try {
+                for(int i = 0; i < BOOKS; i++) {
+                    dal.updateBook(book(i, "Updated " + i));
+                    dal.addBook(book(BOOKS + i, "Added " + i));
+                }
+                assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+                assertEquals(BOOKS * 3, replica.getAppliedSequence());
+                List<Book> books = replica.getStore().getAllBooks();
+                assertEquals(BOOKS * 2, books.size());
+                assertEquals("Updated 7", replica.getStore().getBookTitleByIsbn(isbn(7)));
+                assertEquals(Arrays.asList("Author " + (BOOKS + 7)),
+                    replica.getStore().getBook(isbn(BOOKS + 7)).getAuthors());
+                assertEquals("Added 7", dal.getBookTitleByIsbn(isbn(BOOKS + 7)));
+                assertEquals(1, dal.getReplicaReads());
+            } finally {
+                dal.close();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testReplicaServerDropsBadFrames() throws IOException {
+        Replica replica = replica("replica");
+        ReplicaServer server = new ReplicaServer(replica, 0);
+        try {
+            //a frame claiming a huge book, then one whose book cannot be decoded
+            sendFrame(server, Integer.MAX_VALUE, new byte[0]);
+            sendFrame(server, 3, new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff});
+
+            ReplicatedBookDAL dal = new ReplicatedBookDAL(primary,
+                singletonMap(replica, new SocketTransport(server.getAddress())), Consistency.READ_YOUR_WRITES, 0,
+                TimeUnit.MILLISECONDS);
+            try {
+                dal.updateBook(book(7, "Updated 7"));
+                assertTrue(dal.awaitReplication(10, TimeUnit.SECONDS));
+                assertEquals("Updated 7", replica.getStore().getBookTitleByIsbn(isbn(7)));
+            } finally {
+                dal.close();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    private static void sendFrame(ReplicaServer server, int length, byte[] book) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(server.getAddress());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeLong(1);
+            out.writeLong(1);
+            out.writeLong(0);
+            out.writeInt(length);
+            out.write(book);
+            out.flush();
+            //the server closes the connection once it has refused the frame
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static Map<Replica, ReplicationTransport> singletonMap(Replica replica, ReplicationTransport transport) {
+        Map<Replica, ReplicationTransport> replicas = new LinkedHashMap<Replica, ReplicationTransport>();
+        replicas.put(replica, transport);
+        return replicas;
+    }
+}
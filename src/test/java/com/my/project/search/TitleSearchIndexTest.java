@@ -0,0 +1,144 @@
+package com.my.project.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TitleSearchIndexTest {
+
+    private TitleSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new TitleSearchIndex();
+        index.index("1", "Compilers: Principles, Techniques, and Tools");
+        index.index("2", "Let Us C 13th Edition");
+        index.index("3", "Let Us C++");
+        index.index("4", "Principles of Compiler Design");
+        index.index("5", "Élan and Compilers, Compilers, Compilers");
+    }
+
+    private static List<String> isbns(List<SearchHit> hits) {
+        List<String> isbns = new ArrayList<String>();
+        for(SearchHit hit : hits) {
+            isbns.add(hit.getIsbn());
+        }
+        return isbns;
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals(Arrays.asList("let", "us", "c", "13th", "edition"), TitleAnalyzer.tokenize("Let Us C 13th Edition"));
+        assertEquals(Arrays.asList("elan", "cafe"), TitleAnalyzer.tokenize("  Élan -- CAFÉ! "));
+        assertTrue(TitleAnalyzer.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void testPostingListRoundTrip() {
+        PostingList postings = new PostingList();
+        int[] docs = {0, 1, 200, 70000, 3000000};
+        for(int doc : docs) {
+            postings.add(doc, doc % 5 + 1);
+        }
+        PostingList.Cursor cursor = postings.cursor();
+        for(int doc : docs) {
+            assertTrue(cursor.next());
+            assertEquals(doc, cursor.doc());
+            assertEquals(doc % 5 + 1, cursor.frequency());
+        }
+        assertTrue(!cursor.next());
+        //gaps of one byte, frequencies of one byte
+        assertTrue(postings.bytes() < docs.length * 5);
+    }
+
+    @Test
+    public void testPostingListAdvance() {
+        PostingList postings = new PostingList();
+        for(int doc = 0; doc < 10000; doc += 3) {
+            postings.add(doc, 1);
+        }
+        PostingList.Cursor cursor = postings.cursor();
+        assertTrue(cursor.advance(0));
+        assertEquals(0, cursor.doc());
+        //over many skip blocks, onto a gap, backwards and past the end
+        assertTrue(cursor.advance(5000));
+        assertEquals(5001, cursor.doc());
+        assertTrue(cursor.advance(192));
+        assertEquals(5001, cursor.doc());
+        assertTrue(cursor.advance(9999));
+        assertEquals(9999, cursor.doc());
+        assertTrue(!cursor.advance(10000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPostingListRejectsOutOfOrder() {
+        PostingList postings = new PostingList();
+        postings.add(5, 1);
+        postings.add(5, 1);
+    }
+
+    @Test
+    public void testSearchRanksByBm25() {
+        List<SearchHit> hits = index.search("compilers principles", 10);
+        //both terms beat one term, and the short title beats the long one
+        assertEquals(Arrays.asList("1", "5", "4"), isbns(hits));
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+
+        assertEquals(Arrays.asList("2"), isbns(index.search("let us c 13th edition", 1)));
+        assertEquals(Arrays.asList("5"), isbns(index.search("ELAN", 10)));
+        assertTrue(index.search("pascal", 10).isEmpty());
+    }
+
+    @Test
+    public void testTypeahead() {
+        assertEquals(Arrays.asList("compilers", "compiler"), index.suggest("Comp", 10));
+        assertEquals(Arrays.asList("compilers"), index.suggest("comp", 1));
+        //all complete words must match, the shorter title ranks first
+        assertEquals(Arrays.asList("3", "2"), isbns(index.searchPrefix("let us c", 10)));
+        assertEquals(Arrays.asList("4"), isbns(index.searchPrefix("design", 10)));
+        assertEquals(Arrays.asList("4"), isbns(index.searchPrefix("principles of comp", 10)));
+        //"compiler" is rarer than "compilers" and weighs more
+        assertEquals(Arrays.asList("4", "1"), isbns(index.searchPrefix("principles comp", 10)));
+        assertTrue(index.searchPrefix("", 10).isEmpty());
+        assertTrue(index.searchPrefix("pascal c", 10).isEmpty());
+    }
+
+    @Test
+    public void testTypeaheadOverManyBooks() {
+        for(int i = 0; i < 1000; i++) {
+            index.index("c" + i, "Compilers volume " + i + " of the complete works");
+        }
+        //a bare prefix ranks the short titles of the champion lists
+        assertEquals(Arrays.asList("4", "5"), isbns(index.searchPrefix("compiler", 2)));
+        assertEquals(Arrays.asList("c777"), isbns(index.searchPrefix("complete 777", 10)));
+        assertEquals(Arrays.asList("c12", "c120", "c121"), isbns(index.searchPrefix("volume 12", 3)).subList(0, 3));
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        index.index("2", "Programming in ANSI C");
+        assertEquals(Arrays.asList("3"), isbns(index.search("let", 10)));
+        assertEquals(Arrays.asList("2"), isbns(index.search("ansi", 10)));
+        index.remove("3");
+        assertTrue(index.search("let", 10).isEmpty());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testRebuildDropsRemovedDocuments() {
+        for(int i = 0; i < 5000; i++) {
+            index.index("2", "Let Us C edition " + i);
+        }
+        assertEquals(5, index.size());
+        assertEquals(Arrays.asList("2"), isbns(index.search("4999", 10)));
+        assertTrue(index.search("10", 10).isEmpty());
+        //terms of removed titles are gone up to the rebuild threshold of removed documents
+        assertTrue(index.termCount() < 1024 + 20);
+    }
+}
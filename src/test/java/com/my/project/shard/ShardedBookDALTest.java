@@ -0,0 +1,221 @@
+package com.my.project.shard;
+
+import static com.my.project.TestBooks.book;
+import static com.my.project.TestBooks.isbn;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.my.project.Book;
+import com.my.project.BookRepository;
+import com.my.project.store.OffHeapBookStore;
+
+public class ShardedBookDALTest {
+
+    private static final int BOOKS = 2000;
+
+    private Map<String, BookRepository> shards;
+    private ShardedBookDAL dal;
+
+    @Before
+    public void setUp() {
+        shards = new LinkedHashMap<String, BookRepository>();
+        for(int i = 0; i < 4; i++) {
+            shards.put("shard-" + i, new OffHeapBookStore(1024 * 1024));
+        }
+        dal = new ShardedBookDAL(shards);
+        for(int i = 0; i < BOOKS; i++) {
+            dal.addBook(book(i, "Title " + i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dal.close();
+    }
+
+    @Test
+    public void testRoutesAndSpreadsBooks() {
+        for(Map.Entry<String, BookRepository> shard : shards.entrySet()) {
+            int size = ((OffHeapBookStore) shard.getValue()).size();
+            //128 virtual nodes keep every shard within about 20% of a fair share
+            assertTrue(shard.getKey() + " holds " + size, size > BOOKS / 4 * 0.75 && size < BOOKS / 4 * 1.25);
+        }
+        assertEquals("Title 7", dal.getBook(isbn(7)).getTitle());
+        assertEquals("Title 7", shards.get(dal.shardFor(isbn(7))).getBookTitleByIsbn(isbn(7)));
+        assertNull(dal.getBook(isbn(BOOKS)));
+
+        dal.updateBook(book(7, "Updated"));
+        assertEquals("Updated", dal.getBookTitleByIsbn(isbn(7)));
+        assertNull(dal.updateBook(book(BOOKS, "Missing")));
+    }
+
+    @Test
+    public void testGetAllBooksMergesShardsInOrder() {
+        List<Book> books = dal.getAllBooks();
+        assertEquals(BOOKS, books.size());
+        for(int i = 1; i < books.size(); i++) {
+            assertTrue(books.get(i - 1).getIsbn().compareTo(books.get(i).getIsbn()) < 0);
+        }
+    }
+
+    @Test
+    public void testAddShardMovesAFairShareAndKeepsWrites() throws InterruptedException, ExecutionException {
+        Map<String, String> before = new HashMap<String, String>();
+        for(int i = 0; i < BOOKS; i++) {
+            before.put(isbn(i), dal.shardFor(isbn(i)));
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        final Map<String, String> written = new ConcurrentHashMap<String, String>(before.size());
+        for(int i = 0; i < BOOKS; i++) {
+            written.put(isbn(i), "Title " + i);
+        }
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                for(int round = 0; !done.get(); round++) {
+                    int i = round % BOOKS;
+                    dal.updateBook(book(i, "Round " + round));
+                    written.put(isbn(i), "Round " + round);
+                }
+            }
+        });
+        writer.start();
+        OffHeapBookStore added = new OffHeapBookStore(1024 * 1024);
+        Future<Integer> copied = dal.addShard("shard-4", added);
+        int moved = copied.get();
+        done.set(true);
+        writer.join();
+
+        assertFalse(dal.isRebalancing());
+        assertEquals(5, dal.getShards().size());
+        //every moving book is copied, also those the dual write reached first
+        assertEquals(added.size(), moved);
+        //about a fifth of the books move, all of them to the new shard
+        assertTrue("moved " + added.size(), added.size() > BOOKS / 5 * 0.75 && added.size() < BOOKS / 5 * 1.25);
+        for(int i = 0; i < BOOKS; i++) {
+            String now = dal.shardFor(isbn(i));
+            assertTrue(now.equals(before.get(isbn(i))) || now.equals("shard-4"));
+        }
+        //every book is served by its owner with its last write
+        List<Book> books = dal.getAllBooks();
+        assertEquals(BOOKS, books.size());
+        for(Book book : books) {
+            String owner = dal.shardFor(book.getIsbn());
+            BookRepository shard = owner.equals("shard-4") ? added : shards.get(owner);
+            assertEquals(written.get(book.getIsbn()), book.getTitle());
+            assertEquals(book.getTitle(), shard.getBookTitleByIsbn(book.getIsbn()));
+        }
+        dal.addBook(book(BOOKS, "After"));
+        assertEquals("After", dal.getBook(isbn(BOOKS)).getTitle());
+    }
+
+    @Test
+    public void testRetriedAddShardReplacesStaleCopies() throws InterruptedException {
+        final AtomicBoolean failing = new AtomicBoolean(true);
+        final AtomicInteger writes = new AtomicInteger();
+        OffHeapBookStore added = new OffHeapBookStore(1024 * 1024) {
+            @Override
+            public synchronized String addBook(Book book) {
+                if(failing.get() && writes.incrementAndGet() > BOOKS / 20) {
+                    throw new IllegalStateException("down");
+                }
+                return super.addBook(book);
+            }
+        };
+        try {
+            dal.addShard("shard-4", added).get();
+            throw new AssertionError("Adding the shard did not fail");
+        } catch (ExecutionException e) {
+            //expected
+        }
+        assertFalse(dal.isRebalancing());
+        assertTrue(added.size() > 0);
+        for(int i = 0; i < BOOKS; i++) {
+            dal.updateBook(book(i, "Updated " + i));
+        }
+
+        failing.set(false);
+        int moved = dal.addShard("shard-4", added).join();
+        assertEquals(added.size(), moved);
+        for(int i = 0; i < BOOKS; i++) {
+            assertEquals("Updated " + i, dal.getBookTitleByIsbn(isbn(i)));
+        }
+    }
+
+    @Test
+    public void testReadsIgnoreStaleCopiesWhileRebalancing() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch paused = new CountDownLatch(1);
+        ShardedBookDAL rebalancing = new ShardedBookDAL(shards, HashRing.DEFAULT_VIRTUAL_NODES, executor);
+        try {
+            //copies left by a failed attempt, older than the books of the shards
+            OffHeapBookStore added = new OffHeapBookStore(1024 * 1024);
+            for(int i = 0; i < BOOKS; i++) {
+                added.addBook(book(i, "Stale " + i));
+            }
+            //holds the copy back
+            executor.submit(new Callable<Void>() {
+                public Void call() throws InterruptedException {
+                    paused.await();
+                    return null;
+                }
+            });
+            Future<Integer> copied = rebalancing.addShard("shard-4", added);
+            assertTrue(rebalancing.isRebalancing());
+            for(int i = 0; i < BOOKS; i++) {
+                assertEquals("Title " + i, rebalancing.getBookTitleByIsbn(isbn(i)));
+                assertEquals("Title " + i, rebalancing.getBook(isbn(i)).getTitle());
+            }
+            paused.countDown();
+            copied.get();
+            for(int i = 0; i < BOOKS; i++) {
+                assertEquals("Title " + i, rebalancing.getBookTitleByIsbn(isbn(i)));
+            }
+        } finally {
+            paused.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRingIsStableAcrossInstances() {
+        HashRing ring = new HashRing(Arrays.asList("a", "b", "c"), 16);
+        HashRing same = new HashRing(Arrays.asList("a", "b", "c"), 16);
+        HashRing grown = ring.withShard("d");
+        int moved = 0;
+        for(int i = 0; i < 1000; i++) {
+            assertEquals(ring.shardFor(isbn(i)), same.shardFor(isbn(i)));
+            if(!grown.shardFor(isbn(i)).equals(ring.shardFor(isbn(i)))) {
+                assertEquals("d", grown.shardFor(isbn(i)));
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, moved > 100 && moved < 450);
+        try {
+            ring.withShard("a");
+            throw new AssertionError("Duplicate shard was added");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+}
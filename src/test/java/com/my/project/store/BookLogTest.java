@@ -0,0 +1,236 @@
+package com.my.project.store;
+
+import static com.my.project.TestBooks.isbn;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.my.project.Book;
+
+public class BookLogTest {
+
+    //small segments so the tests roll over and compact several of them
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private BookLog log;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("books");
+        log = new BookLog(directory, SEGMENT_SIZE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        log.close();
+    }
+
+    private static Book book(int i, String title) {
+        return new Book(isbn(i), title, Arrays.asList("Author " + i, "Ünïcødé 書"),
+            "Publisher", 2000 + i % 20, 100 + i, null);
+    }
+
+    @Test
+    public void testAddUpdateAndGet() {
+        log.addBook(book(1, "First"));
+        log.addBook(book(2, "Second"));
+        assertEquals("First", log.getBookTitleByIsbn(isbn(1)));
+        assertEquals(Arrays.asList("Author 2", "Ünïcødé 書"), log.getBook(isbn(2)).getAuthors());
+        assertNull(log.getBook(isbn(3)));
+
+        assertEquals(isbn(1), log.updateBook(book(1, "First Revised")));
+        assertNull(log.updateBook(book(3, "Missing")));
+        log.setBookTitle(log.getBook(isbn(2)), "Second Revised");
+
+        assertEquals(2, log.size());
+        assertEquals("First Revised", log.getBookTitleByIsbn(isbn(1)));
+        assertEquals("Second Revised", log.getBookTitleByIsbn(isbn(2)));
+        //in order of the last write
+        assertEquals("First Revised", log.getAllBooks().get(0).getTitle());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddDuplicate() {
+        log.addBook(book(1, "First"));
+        log.addBook(book(1, "First"));
+    }
+
+    @Test
+    public void testReopenFromCheckpoint() throws IOException {
+        for(int i = 0; i < 100; i++) {
+            log.addBook(book(i, "Title " + i));
+        }
+        log.close();
+        assertTrue(new File(directory, BookLog.CHECKPOINT_FILE).exists());
+
+        log = new BookLog(directory, SEGMENT_SIZE);
+        log.addBook(book(100, "Title 100"));
+        assertEquals(101, log.size());
+        assertEquals("Title 42", log.getBookTitleByIsbn(isbn(42)));
+    }
+
+    @Test
+    public void testCheckpointSkipsSealedSegments() throws IOException {
+        for(int i = 0; i < 100; i++) {
+            log.addBook(book(i, "Title " + i));
+        }
+        assertTrue(log.segmentCount() > 2);
+        log.close();
+
+        //a sealed segment before the checkpoint is not read again, so the flip goes unnoticed
+        flip(new File(directory, "0000000000.log"), 20);
+        log = new BookLog(directory, SEGMENT_SIZE);
+        log.addBook(book(100, "Title 100"));
+        assertEquals(101, log.size());
+        assertEquals("Title 99", log.getBookTitleByIsbn(isbn(99)));
+    }
+
+    @Test
+    public void testReplayWithoutCheckpoint() throws IOException {
+        for(int i = 0; i < 100; i++) {
+            log.addBook(book(i, "Title " + i));
+        }
+        log.updateBook(book(7, "Title 7 Revised"));
+        log.close();
+        assertTrue(new File(directory, BookLog.CHECKPOINT_FILE).delete());
+
+        log = new BookLog(directory, SEGMENT_SIZE);
+        assertEquals(100, log.size());
+        assertEquals("Title 7 Revised", log.getBookTitleByIsbn(isbn(7)));
+    }
+
+    @Test
+    public void testRecoverFromTornRecord() throws IOException {
+        log.addBook(book(1, "First"));
+        log.addBook(book(2, "Second"));
+        log.addBook(book(3, "Third"));
+        log.close();
+        assertTrue(new File(directory, BookLog.CHECKPOINT_FILE).delete());
+
+        //cut the last record in half, as a crash in the middle of writing it would
+        File segment = new File(directory, "0000000000.log");
+        int end = recordEnd(segment, 3);
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.setLength(end - 10);
+        } finally {
+            raf.close();
+        }
+
+        log = new BookLog(directory, SEGMENT_SIZE);
+        assertEquals(2, log.size());
+        assertNull(log.getBook(isbn(3)));
+        assertEquals("Second", log.getBookTitleByIsbn(isbn(2)));
+
+        //the log carries on after the last complete record
+        log.addBook(book(3, "Third Again"));
+        log.close();
+        assertTrue(new File(directory, BookLog.CHECKPOINT_FILE).delete());
+        log = new BookLog(directory, SEGMENT_SIZE);
+        assertEquals(3, log.size());
+        assertEquals("Third Again", log.getBookTitleByIsbn(isbn(3)));
+    }
+
+    @Test
+    public void testCorruptSealedSegmentFailsOpen() throws IOException {
+        for(int i = 0; i < 100; i++) {
+            log.addBook(book(i, "Title " + i));
+        }
+        int segments = log.segmentCount();
+        assertTrue(segments > 2);
+        log.close();
+        assertTrue(new File(directory, BookLog.CHECKPOINT_FILE).delete());
+
+        //flip a payload byte of the first record
+        flip(new File(directory, "0000000000.log"), 20);
+        try {
+            new BookLog(directory, SEGMENT_SIZE);
+            fail("Opened a log with a corrupt sealed segment");
+        } catch(IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("0000000000.log"));
+        }
+        assertEquals(segments, directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".log");
+            }
+        }).length);
+
+        //nothing was lost, the restored segment opens with every book
+        flip(new File(directory, "0000000000.log"), 20);
+        log = new BookLog(directory, SEGMENT_SIZE);
+        assertEquals(100, log.size());
+        assertEquals("Title 0", log.getBookTitleByIsbn(isbn(0)));
+    }
+
+    private static void flip(File file, int position) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xff);
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        for(int i = 0; i < 20; i++) {
+            log.addBook(book(i, "Title " + i));
+        }
+        for(int round = 0; round < 10; round++) {
+            for(int i = 0; i < 20; i++) {
+                log.updateBook(book(i, "Title " + i + " round " + round));
+            }
+        }
+        int before = log.segmentCount();
+        assertTrue(log.compact() > 0);
+        assertTrue(log.segmentCount() < before);
+        assertEquals("Title 5 round 9", log.getBookTitleByIsbn(isbn(5)));
+        assertEquals(20, log.getAllBooks().size());
+
+        log.close();
+        assertTrue(new File(directory, BookLog.CHECKPOINT_FILE).delete());
+        log = new BookLog(directory, SEGMENT_SIZE);
+        assertEquals(20, log.size());
+        for(int i = 0; i < 20; i++) {
+            assertEquals("Title " + i + " round 9", log.getBookTitleByIsbn(isbn(i)));
+        }
+    }
+
+    /**
+     * @return the offset after the given number of records
+     */
+    private static int recordEnd(File segment, int records) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(segment, "r");
+        try {
+            int offset = 0;
+            for(int i = 0; i < records; i++) {
+                raf.seek(offset);
+                offset += 8 + raf.readInt();
+            }
+            return offset;
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.my.project.store;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.my.project.Isbn;
+
+public class LongIndexTest {
+
+    @Test
+    public void testPutGetRemove() {
+        LongIndex index = new LongIndex(4);
+        assertEquals(LongIndex.NOT_FOUND, index.get(9788131721018L));
+        assertEquals(LongIndex.NOT_FOUND, index.put(9788131721018L, 7));
+        assertEquals(7, index.put(9788131721018L, 8));
+        assertEquals(8, index.get(9788131721018L));
+        assertEquals(1, index.size());
+        assertEquals(8, index.remove(9788131721018L));
+        assertEquals(LongIndex.NOT_FOUND, index.get(9788131721018L));
+        assertEquals(LongIndex.NOT_FOUND, index.remove(9788131721018L));
+        assertEquals(0, index.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectNegativeValue() {
+        new LongIndex().put(9788131721018L, -1);
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        LongIndex index = new LongIndex(16);
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        Random random = new Random(42);
+        for(int i = 0; i < 200000; i++) {
+            long key = Isbn.complete(978000000000L + random.nextInt(50000));
+            if(random.nextInt(4) == 0) {
+                Long removed = expected.remove(key);
+                assertEquals(removed == null ? LongIndex.NOT_FOUND : removed, index.remove(key));
+            } else {
+                Long previous = expected.put(key, (long) i);
+                assertEquals(previous == null ? LongIndex.NOT_FOUND : previous, index.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        for(Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals((long) entry.getValue(), index.get(entry.getKey()));
+        }
+        final Map<Long, Long> visited = new HashMap<Long, Long>();
+        index.forEach(new LongIndex.Visitor() {
+            public void visit(long key, long value) {
+                visited.put(key, value);
+            }
+        });
+        assertEquals(expected, visited);
+    }
+}
@@ -0,0 +1,192 @@
+package com.my.project.store;
+
+import static com.my.project.TestBooks.isbn;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.my.project.Book;
+
+public class OffHeapBookStoreTest {
+
+    private OffHeapBookStore store;
+
+    @Before
+    public void setUp() {
+        //small chunks so the tests cross chunk boundaries
+        store = new OffHeapBookStore(4096);
+    }
+
+    private static Book compilers() {
+        return new Book("8131721019", "Compilers Principles", Arrays.asList(
+            "D. Jeffrey Ulman",
+            "Ravi Sethi",
+            "Alfred V. Aho",
+            "Monica S. Lam"), "Pearson Education Singapore Pte Ltd", 2008, 1009, "BOOK_IMAGE");
+    }
+
+    @Test
+    public void testAddAndGetBook() {
+        store.addBook(compilers());
+        store.addBook(new Book("9788183331630", "Let Us C 13th Edition", Arrays.asList("Yashavant Kanetkar"),
+            "BPB PUBLICATIONS", 2012, 675, "BOOK_IMAGE"));
+
+        Book book = store.getBook("8131721019");
+        assertEquals("Compilers Principles", book.getTitle());
+        assertEquals(compilers().getAuthors(), book.getAuthors());
+        assertEquals("Pearson Education Singapore Pte Ltd", book.getPublication());
+        assertEquals((Integer) 2008, book.getYearOfPublication());
+        assertEquals((Integer) 1009, book.getNumberOfPages());
+        assertEquals("BOOK_IMAGE", book.getImage());
+        assertEquals("Let Us C 13th Edition", store.getBookTitleByIsbn("9788183331630"));
+        assertNull(store.getBook("9780000000002"));
+        assertNull(store.getBookTitleByIsbn("9780000000002"));
+    }
+
+    @Test
+    public void testNullValues() {
+        store.addBook(new Book("8131721019", null, null, null, null, null, null));
+        Book book = store.getBook("8131721019");
+        assertNull(book.getTitle());
+        assertNull(book.getAuthors());
+        assertNull(book.getYearOfPublication());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddDuplicate() {
+        store.addBook(compilers());
+        store.addBook(compilers());
+    }
+
+    @Test
+    public void testIsbn10And13FindSameBook() {
+        store.addBook(compilers());
+        assertEquals("Compilers Principles", store.getBookTitleByIsbn("978-81-317-2101-8"));
+        //the ISBN is returned as it was stored
+        assertEquals("8131721019", store.getBook("9788131721018").getIsbn());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddInvalidIsbn() {
+        store.addBook(new Book("8131721018", "Bad Check Digit", null, null, null, null, null));
+    }
+
+    @Test
+    public void testUpdateBook() {
+        store.addBook(compilers());
+        Book book = compilers();
+        book.setAuthors(Arrays.asList("Alfred V. Aho"));
+        book.setNumberOfPages(null);
+        assertEquals("8131721019", store.updateBook(book));
+        assertNull(store.updateBook(new Book("9780000000002", "Missing", null, null, null, null, null)));
+
+        Book updated = store.getBook("8131721019");
+        assertEquals(Arrays.asList("Alfred V. Aho"), updated.getAuthors());
+        assertNull(updated.getNumberOfPages());
+        assertEquals(1, store.getAllBooks().size());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testSetBookTitle() {
+        Book book = compilers();
+        store.addBook(book);
+        store.setBookTitle(book, "Dragon Book");
+        assertEquals("Dragon Book", book.getTitle());
+        assertEquals("Dragon Book", store.getBookTitleByIsbn("8131721019"));
+        assertEquals(4, store.getBook("8131721019").getAuthors().size());
+        assertEquals(1, store.getAllBooks().size());
+    }
+
+    @Test
+    public void testManyBooks() {
+        int count = Column.ROWS_PER_CHUNK + 100;
+        for(int i = 0; i < count; i++) {
+            store.addBook(new Book(isbn(i), "Title " + i, Arrays.asList("Author " + i),
+                "Publisher " + (i % 10), 1950 + i % 70, i, "BOOK_IMAGE"));
+        }
+        assertEquals(count, store.size());
+        Book last = store.getBook(isbn(count - 1));
+        assertEquals("Title " + (count - 1), last.getTitle());
+        assertEquals((Integer) (count - 1), last.getNumberOfPages());
+
+        List<Book> all = store.getAllBooks();
+        assertEquals(count, all.size());
+        assertEquals("Publisher 7", all.get(7).getPublication());
+        assertTrue(store.offHeapBytes() > 0);
+    }
+
+    @Test
+    public void testCompactReclaimsRetiredRows() {
+        for(int i = 0; i < 100; i++) {
+            store.addBook(new Book(isbn(i), "Title " + i, Arrays.asList("Author " + i), "Publisher", 2000, i, null));
+        }
+        assertEquals(0, store.retiredBytes());
+        for(int round = 0; round < 20; round++) {
+            for(int i = 0; i < 100; i++) {
+                store.updateBook(new Book(isbn(i), "Title " + i + " round " + round, Arrays.asList("Author " + i),
+                    "Publisher", 2000, i, null));
+            }
+        }
+        store.setBookTitle(store.getBook(isbn(7)), "Renamed");
+        long retired = store.retiredBytes();
+        long reserved = store.offHeapBytes();
+        assertTrue(String.valueOf(retired), retired > 20 * 100 * 48);
+
+        store.compact();
+        assertEquals(0, store.retiredBytes());
+        assertTrue(store.offHeapBytes() < reserved);
+        assertEquals(100, store.size());
+        List<Book> all = store.getAllBooks();
+        assertEquals(100, all.size());
+        assertEquals("Title 0 round 19", all.get(0).getTitle());
+        assertEquals("Renamed", store.getBookTitleByIsbn(isbn(7)));
+        assertEquals(Arrays.asList("Author 42"), store.getBook(isbn(42)).getAuthors());
+
+        //the compacted store takes writes as before
+        store.updateBook(new Book(isbn(3), "After", null, "Publisher", null, null, null));
+        assertEquals("After", store.getBookTitleByIsbn(isbn(3)));
+        assertEquals(100, store.getAllBooks().size());
+    }
+
+    @Test
+    public void testScanDuringUpdates() throws InterruptedException {
+        final int books = 200;
+        final String[] isbns = new String[books];
+        for(int i = 0; i < books; i++) {
+            isbns[i] = isbn(i);
+            store.addBook(new Book(isbns[i], "Title", null, null, null, 0, null));
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                for(int i = 0; !done.get(); i++) {
+                    store.updateBook(new Book(isbns[i % books], "Title", null, null, null, i, null));
+                }
+            }
+        });
+        writer.start();
+        try {
+            for(int scan = 0; scan < 500; scan++) {
+                Set<String> seen = new HashSet<String>();
+                for(Book book : store.getAllBooks()) {
+                    assertTrue("returned twice: " + book.getIsbn(), seen.add(book.getIsbn()));
+                }
+                assertEquals(books, seen.size());
+                assertEquals(isbns[scan % books], store.getBook(isbns[scan % books]).getIsbn());
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+    }
+}
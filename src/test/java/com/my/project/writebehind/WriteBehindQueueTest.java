@@ -0,0 +1,274 @@
+package com.my.project.writebehind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.my.project.Book;
+
+public class WriteBehindQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Records the batches as strings, failing the first <code>failures</code>
+     * writes and every write including the <code>poison</code> ISBN.
+     */
+    private static class Recorder implements BatchWriter {
+
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+        volatile int failures;
+        String poison;
+
+        public void write(List<WriteOperation> batch) {
+            if(failures > 0) {
+                failures--;
+                throw new IllegalStateException("down");
+            }
+            List<String> written = new ArrayList<String>();
+            for(WriteOperation operation : batch) {
+                if(operation.getIsbn().equals(poison)) {
+                    throw new IllegalArgumentException("poison");
+                }
+                written.add(operation + (operation.getBook() != null ? " " + operation.getBook().getTitle() : ""));
+            }
+            batches.add(written);
+        }
+    }
+
+    private static Book book(String isbn, String title) {
+        return new Book(isbn, title, Arrays.asList("Author"), "Publisher", 2000, 100, null);
+    }
+
+    @Test
+    public void testCoalescesAndCancels() throws IOException {
+        Recorder recorder = new Recorder();
+        WriteBehindQueue queue = new WriteBehindQueue(recorder, null, 100, 1, TimeUnit.HOURS, 1000);
+        try {
+            queue.save(book("1", "First"));
+            queue.update(book("1", "Second"));
+            queue.update(book("1", "Third"));
+            queue.save(book("2", "Saved"));
+            queue.delete("2");
+            queue.update(book("3", "Updated"));
+            queue.delete("3");
+            queue.delete("4");
+            queue.delete("4");
+            queue.delete("5");
+            queue.save(book("5", "Saved again"));
+            assertEquals(5, queue.getPending());
+
+            queue.flush();
+            //the save after the delete is queued behind it
+            assertEquals(Collections.singletonList(Arrays.asList("SAVE 1 Third", "DELETE 3", "DELETE 4",
+                "DELETE 5", "SAVE 5 Saved again")), recorder.batches);
+            assertEquals(5, queue.getCoalesced());
+            assertEquals(5, queue.getWritten());
+            assertEquals(0, queue.getPending());
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void testDeleteAfterSaveBehindAnotherCall() throws IOException {
+        Recorder recorder = new Recorder();
+        WriteBehindQueue queue = new WriteBehindQueue(recorder, null, 100, 1, TimeUnit.HOURS, 1000);
+        try {
+            //the save does not fold into the update, so the delete must not just cancel it
+            queue.update(book("1", "Updated"));
+            queue.save(book("1", "Saved"));
+            queue.delete("1");
+            queue.save(book("2", "Saved"));
+            queue.delete("2");
+            queue.flush();
+            assertEquals(Collections.singletonList(Arrays.asList("UPDATE 1 Updated", "DELETE 1")),
+                recorder.batches);
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void testBatchesOnSizeAndTime() throws Exception {
+        Recorder recorder = new Recorder();
+        WriteBehindQueue queue = new WriteBehindQueue(recorder, null, 10, 50, TimeUnit.MILLISECONDS, 1000);
+        try {
+            for(int i = 0; i < 25; i++) {
+                queue.save(book(String.valueOf(i), "Title"));
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while(queue.getWritten() < 25 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            List<Integer> sizes = new ArrayList<Integer>();
+            for(List<String> batch : recorder.batches) {
+                sizes.add(batch.size());
+            }
+            assertEquals(Arrays.asList(10, 10, 5), sizes);
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void testRetriesFailedBatch() throws IOException {
+        Recorder recorder = new Recorder();
+        recorder.failures = 2;
+        WriteBehindQueue queue = new WriteBehindQueue(recorder, null);
+        try {
+            queue.save(book("1", "First"));
+            queue.flush();
+            assertEquals(Collections.singletonList(Arrays.asList("SAVE 1 First")), recorder.batches);
+            assertTrue(queue.getFailed().isEmpty());
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void testMovesFailingOperationsAside() throws IOException {
+        Recorder recorder = new Recorder();
+        recorder.poison = "2";
+        WriteBehindQueue queue = new WriteBehindQueue(recorder, null, 100, 1, TimeUnit.HOURS, 1000);
+        try {
+            queue.save(book("1", "First"));
+            queue.save(book("2", "Poison"));
+            queue.save(book("3", "Third"));
+            queue.flush();
+            assertEquals(Arrays.asList(Arrays.asList("SAVE 1 First"), Arrays.asList("SAVE 3 Third")),
+                recorder.batches);
+            assertEquals(1, queue.getFailed().size());
+            assertEquals("2", queue.getFailed().get(0).getIsbn());
+            assertEquals(2, queue.getWritten());
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void testCloseStopsRetrying() throws IOException {
+        File directory = folder.newFolder("journal");
+        Recorder down = new Recorder();
+        down.failures = Integer.MAX_VALUE;
+        WriteBehindQueue queue = new WriteBehindQueue(down, directory);
+        queue.save(book("1", "First"));
+        long start = System.nanoTime();
+        queue.close();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertTrue(queue.getFailed().isEmpty());
+
+        //the call stays in the journal for the next queue
+        Recorder recorder = new Recorder();
+        WriteBehindQueue reopened = new WriteBehindQueue(recorder, directory, 100, 1, TimeUnit.HOURS, 1000);
+        try {
+            reopened.flush();
+            assertEquals(Collections.singletonList(Arrays.asList("SAVE 1 First")), recorder.batches);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testQueuesCopies() throws IOException {
+        Recorder recorder = new Recorder();
+        WriteBehindQueue queue = new WriteBehindQueue(recorder, null, 100, 1, TimeUnit.HOURS, 1000);
+        try {
+            Book book = book("1", "First");
+            queue.save(book);
+            book.setTitle("Changed");
+            queue.flush();
+            assertEquals(Collections.singletonList(Arrays.asList("SAVE 1 First")), recorder.batches);
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedQueueRefusesCalls() throws IOException {
+        WriteBehindQueue queue = new WriteBehindQueue(new Recorder(), null);
+        queue.close();
+        queue.delete("1");
+    }
+
+    @Test
+    public void testRecoversFromJournal() throws IOException {
+        File directory = folder.newFolder("journal");
+        //never writes on its own, like a process that crashes before its first batch
+        Recorder crashed = new Recorder();
+        WriteBehindQueue queue = new WriteBehindQueue(crashed, directory, 100, 1, TimeUnit.HOURS, 1000);
+        queue.save(book("1", "First"));
+        queue.update(book("1", "Second"));
+        queue.save(book("2", "Saved"));
+        queue.delete("3");
+        File[] segments = directory.listFiles();
+        assertEquals(1, segments.length);
+        //a record torn by the crash
+        FileOutputStream torn = new FileOutputStream(segments[0], true);
+        torn.write(new byte[] {0, 0, 0, 42, 1, 2});
+        torn.close();
+
+        Recorder recorder = new Recorder();
+        WriteBehindQueue recovered = new WriteBehindQueue(recorder, directory, 100, 1, TimeUnit.HOURS, 1000);
+        try {
+            assertEquals(3, recovered.getPending());
+            recovered.flush();
+            assertEquals(Collections.singletonList(Arrays.asList("SAVE 1 Second", "SAVE 2 Saved", "DELETE 3")),
+                recorder.batches);
+            //written calls are dropped from the journal
+            for(File segment : directory.listFiles()) {
+                assertEquals(0, segment.length());
+            }
+        } finally {
+            recovered.close();
+        }
+        WriteBehindQueue reopened = new WriteBehindQueue(recorder, directory, 100, 1, TimeUnit.HOURS, 1000);
+        assertEquals(0, reopened.getPending());
+        reopened.close();
+        assertTrue(crashed.batches.isEmpty());
+    }
+
+    @Test
+    public void testTornSealedSegmentFailsRecovery() throws IOException {
+        File directory = folder.newFolder("journal");
+        //a segment per record
+        WriteJournal journal = new WriteJournal(directory, 1);
+        for(int i = 0; i < 4; i++) {
+            journal.append(i, WriteOperation.Type.SAVE, "1", book("1", "Title " + i));
+        }
+        journal.close();
+        File[] segments = directory.listFiles();
+        Arrays.sort(segments);
+        assertEquals(4, segments.length);
+        RandomAccessFile first = new RandomAccessFile(segments[0], "rw");
+        first.seek(first.length() - 1);
+        int last = first.read();
+        first.seek(first.length() - 1);
+        first.write(last ^ 1);
+        first.close();
+
+        try {
+            new WriteBehindQueue(new Recorder(), directory);
+            fail("Opened a journal with a torn sealed segment");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(segments[0].getName()));
+        }
+        //nothing is deleted
+        assertEquals(4, directory.listFiles().length);
+    }
+}